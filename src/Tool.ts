@@ -15,6 +15,8 @@ import { ANTLRv4Parser } from "./generated/ANTLRv4Parser.js";
 import { ClassFactory } from "./ClassFactory.js";
 import { UndefChecker } from "./UndefChecker.js";
 import { AnalysisPipeline } from "./analysis/AnalysisPipeline.js";
+import { LeftRecursiveRuleCache } from "./analysis/LeftRecursiveRuleCache.js";
+import { TreeParserError } from "./antlr3/tree/TreeParserError.js";
 import { IATNFactory } from "./automata/IATNFactory.js";
 import { LexerATNFactory } from "./automata/LexerATNFactory.js";
 import { ParserATNFactory } from "./automata/ParserATNFactory.js";
@@ -24,10 +26,14 @@ import { parseToolParameters, type IToolParameters } from "./tool-parameters.js"
 import { Graph } from "./misc/Graph.js";
 import { ToolANTLRLexer } from "./parse/ToolANTLRLexer.js";
 import { ToolANTLRParser } from "./parse/ToolANTLRParser.js";
+import { RuleCollector } from "./semantics/RuleCollector.js";
 import { SemanticPipeline } from "./semantics/SemanticPipeline.js";
 import { GrammarType } from "./support/GrammarType.js";
+import type { IWalkerInstrumentation } from "./support/IWalkerInstrumentation.js";
 import { LogManager } from "./support/LogManager.js";
 import { ParseTreeToASTConverter } from "./support/ParseTreeToASTConverter.js";
+import { WalkerProfiler } from "./support/WalkerProfiler.js";
+import { WalkerTimeline } from "./support/WalkerTimeline.js";
 import { BuildDependencyGenerator } from "./tool/BuildDependencyGenerator.js";
 import { DOTGenerator } from "./tool/DOTGenerator.js";
 import { ErrorManager } from "./tool/ErrorManager.js";
@@ -39,6 +45,7 @@ import { Rule } from "./tool/Rule.js";
 import { GrammarAST } from "./tool/ast/GrammarAST.js";
 import { GrammarRootAST } from "./tool/ast/GrammarRootAST.js";
 import type { RuleAST } from "./tool/ast/RuleAST.js";
+import { CompositeGrammarTreeVisitor } from "./tree-walkers/CompositeGrammarTreeVisitor.js";
 import type { IGrammar, ITool } from "./types.js";
 import { convertArrayToString } from "./support/helpers.js";
 
@@ -54,6 +61,15 @@ export class Tool implements ITool {
 
     public readonly toolParameters: IToolParameters = { args: [], encoding: "utf-8" };
 
+    /** Trees of rewritten left-recursive rules, to avoid parsing them again. Set with `--left-recursion-cache`. */
+    public leftRecursiveRuleCache?: LeftRecursiveRuleCache;
+
+    /**
+     * Receives the work of the tree walkers per grammar rule. Without it, no measurements are taken.
+     * Set to a {@link WalkerProfiler} with `--walker-profile` or to a {@link WalkerTimeline} with `--walker-timeline`.
+     */
+    public instrumentation?: IWalkerInstrumentation;
+
     // helper vars for option management
     protected haveOutputDir = false;
 
@@ -67,6 +83,16 @@ export class Tool implements ITool {
         }
 
         this.grammarFiles = this.toolParameters.args;
+        if (this.toolParameters.leftRecursionCache) {
+            this.leftRecursiveRuleCache = new LeftRecursiveRuleCache(this.toolParameters.leftRecursionCache);
+        }
+
+        if (this.toolParameters.walkerProfile) {
+            this.instrumentation = new WalkerProfiler(this.toolParameters.walkerProfileRuleHeap ?? false);
+        } else if (this.toolParameters.walkerTimeline) {
+            this.instrumentation = new WalkerTimeline();
+        }
+
         this.errorManager = new ErrorManager(this.toolParameters.msgFormat, this.toolParameters.longMessages,
             this.toolParameters.warningsAreErrors);
     }
@@ -84,6 +110,15 @@ export class Tool implements ITool {
                     antlr.errorManager.toolError(ErrorType.INTERNAL_ERROR, ioe);
                 }
             }
+
+            if (antlr.toolParameters.walkerProfile) {
+                try {
+                    writeFileSync(antlr.toolParameters.walkerProfile, JSON.stringify(antlr.instrumentation, null, 4));
+                } catch (ioe) {
+                    antlr.errorManager.toolError(ErrorType.CANNOT_WRITE_FILE, ioe,
+                        antlr.toolParameters.walkerProfile);
+                }
+            }
         }
 
         antlr.exit(0);
@@ -194,7 +229,9 @@ export class Tool implements ITool {
     }
 
     public processNonCombinedGrammar(g: Grammar, genCode: boolean): void {
-        const ruleFail = this.checkForRuleIssues(g);
+        // The rule collector needs the same (untransformed) AST as the rule checks, so let both share one tree walk.
+        const ruleCollector = new RuleCollector(g);
+        const ruleFail = this.checkForRuleIssues(g, ruleCollector);
         if (ruleFail) {
             return;
         }
@@ -202,7 +239,7 @@ export class Tool implements ITool {
         const prevErrors = this.errorManager.errors;
 
         // MAKE SURE GRAMMAR IS SEMANTICALLY CORRECT (FILL IN GRAMMAR OBJECT)
-        const sem = new SemanticPipeline(g);
+        const sem = new SemanticPipeline(g, ruleCollector);
         sem.process();
 
         if (this.errorManager.errors > prevErrors) {
@@ -219,7 +256,14 @@ export class Tool implements ITool {
             factory = new ParserATNFactory(g);
         }
 
-        g.atn = factory.createATN();
+        try {
+            g.atn = factory.createATN();
+        } catch (e) {
+            this.reportWalkerError(e);
+
+            return;
+        }
+
         if (this.toolParameters.generateATNDot) {
             this.generateATNs(g);
         }
@@ -246,7 +290,11 @@ export class Tool implements ITool {
         if (genCode) {
             const gen = new CodeGenPipeline(g, codeGenerator, this.toolParameters.generateListener,
                 this.toolParameters.generateVisitor);
-            gen.process(this.toolParameters);
+            try {
+                gen.process(this.toolParameters);
+            } catch (e) {
+                this.reportWalkerError(e);
+            }
         }
     }
 
@@ -256,8 +304,10 @@ export class Tool implements ITool {
      * parser/lexer to avoid exceptions later. Return true if we find multiple
      * definitions of the same rule or a reference to an undefined rule or
      * parser rule ref in lexer rule.
+     *
+     * If a rule collector is given, it is run in the same tree walk as the undefined rule check.
      */
-    public checkForRuleIssues(g: Grammar): boolean {
+    public checkForRuleIssues(g: Grammar, ruleCollector?: RuleCollector): boolean {
         // check for redefined rules
         const rulesNode = g.ast.getFirstChildWithType(ANTLRv4Parser.RULES) as GrammarAST;
         const rules: GrammarAST[] = [...rulesNode.getAllChildrenWithType(ANTLRv4Parser.RULE)];
@@ -283,7 +333,16 @@ export class Tool implements ITool {
         }
 
         const chk = new UndefChecker(g.isLexer(), ruleToAST, this.errorManager);
-        chk.visitGrammar(g.ast);
+        chk.instrumentation = this.instrumentation;
+        chk.directWalking = this.toolParameters.directTreeWalk ?? false;
+        if (ruleCollector) {
+            const walker = new CompositeGrammarTreeVisitor(chk, ruleCollector);
+            walker.instrumentation = this.instrumentation;
+            walker.directWalking = chk.directWalking;
+            walker.visitGrammar(g.ast);
+        } else {
+            chk.visitGrammar(g.ast);
+        }
 
         return redefinition || chk.badRef;
     }
@@ -565,6 +624,21 @@ export class Tool implements ITool {
         throw new Error("ANTLR panic");
     }
 
+    /**
+     * Reports the failure of a tree walker in strict mode (see `TreeParser.strict`) as internal error. Any other
+     * error is rethrown.
+     *
+     * @param e The caught error.
+     */
+    protected reportWalkerError(e: unknown): void {
+        if (!(e instanceof TreeParserError)) {
+            throw e;
+        }
+
+        // The message names the walker, the node type and the position of the node.
+        this.errorManager.toolError(ErrorType.INTERNAL_ERROR, e.message);
+    }
+
     protected writeDOTFile(g: Grammar, rulOrName: Rule | string, dot: string): void {
         const name = rulOrName instanceof Rule ? rulOrName.g.name + "." + rulOrName.name : rulOrName;
         const fileName = this.getOutputFile(g, name + ".dot");
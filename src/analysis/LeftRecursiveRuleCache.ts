@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { CharStream, CommonToken, type Token } from "antlr4ng";
+import { createHash } from "node:crypto";
+import { mkdirSync, readFileSync, writeFileSync } from "node:fs";
+import { join } from "node:path";
+
+import { Constants } from "../Constants1.js";
+import { ANTLRv4Parser } from "../generated/ANTLRv4Parser.js";
+import { antlrVersion } from "../tool-parameters.js";
+import { Grammar } from "../tool/Grammar.js";
+import { ActionAST } from "../tool/ast/ActionAST.js";
+import { AltAST } from "../tool/ast/AltAST.js";
+import { BlockAST } from "../tool/ast/BlockAST.js";
+import { GrammarAST } from "../tool/ast/GrammarAST.js";
+import { GrammarASTWithOptions } from "../tool/ast/GrammarASTWithOptions.js";
+import { NotAST } from "../tool/ast/NotAST.js";
+import { OptionalBlockAST } from "../tool/ast/OptionalBlockAST.js";
+import { PlusBlockAST } from "../tool/ast/PlusBlockAST.js";
+import { PredAST } from "../tool/ast/PredAST.js";
+import { RangeAST } from "../tool/ast/RangeAST.js";
+import { RuleAST } from "../tool/ast/RuleAST.js";
+import { RuleRefAST } from "../tool/ast/RuleRefAST.js";
+import { SetAST } from "../tool/ast/SetAST.js";
+import { StarBlockAST } from "../tool/ast/StarBlockAST.js";
+import { TerminalAST } from "../tool/ast/TerminalAST.js";
+
+/** A node of a rule tree, with its token, as stored in the cache. */
+interface ISerializedNode {
+    kind: string;
+    type: number;
+    text: string;
+    line: number;
+    column: number;
+    channel: number;
+    tokenIndex: number;
+    start: number;
+    stop: number;
+    startIndex: number;
+    stopIndex: number;
+    greedy?: boolean;
+    altLabel?: ISerializedNode;
+    children?: ISerializedNode[];
+}
+
+/**
+ * A content-addressed cache for the trees of rewritten left-recursive rules, which avoids parsing the text of a
+ * rewritten rule again, when the same rule was rewritten before (in this or, with a cache directory, an earlier run).
+ *
+ * The key of an entry is a hash of the rewritten rule text, the target language and the tool version. The rule text
+ * is derived from the original rule (and its options) only, except for the token indexes it refers to. These are
+ * stored relative to the first of them, so that moving a rule in its grammar file does not change its key.
+ *
+ * Cached trees are stored as they come from the parser, that is, before the transformations applied to new rules.
+ * Entries which cannot be read or restored are treated as missing and failing to write an entry is not an error.
+ *
+ * Only the parse of the rewritten rule text is saved. The rule walker still runs for each rule, because its result
+ * (the rewritten text) is the cache key, and the `LeftRecursiveRuleAltInfo` objects point into the restored tree,
+ * so they are set up again for each hit.
+ */
+export class LeftRecursiveRuleCache {
+    /** Increase when the stored format changes, to ignore older entries. */
+    private static readonly formatVersion = 1;
+
+    private static readonly tokenIndexPattern = new RegExp(`<${Constants.TOKENINDEX_OPTION_NAME}=(\\d+)`, "g");
+
+    /** The node kinds `getKind` returns. */
+    private static readonly nodeKinds = new Set([
+        "Rule", "Block", "Alt", "Pred", "Action", "RuleRef", "Terminal", "Optional", "Star", "Plus", "Not", "Set",
+        "Range", "Grammar",
+    ]);
+
+    /** The number of rules found in the cache. */
+    public hits = 0;
+
+    /** The number of rules which had to be parsed. */
+    public misses = 0;
+
+    readonly #directory?: string;
+    readonly #entries = new Map<string, ISerializedNode>();
+
+    /**
+     * @param directory The folder in which entries are stored, one file per entry. Without a folder entries are only
+     *                  kept in memory.
+     */
+    public constructor(directory?: string) {
+        this.#directory = directory;
+    }
+
+    /**
+     * Looks up the tree for a rewritten rule.
+     *
+     * @param g The grammar the rule belongs to.
+     * @param ruleText The text of the rewritten rule.
+     * @param language The target language the rule was rewritten for.
+     *
+     * @returns A new tree for the rule or `undefined` if the rule is not in the cache.
+     */
+    public get(g: Grammar, ruleText: string, language: string): RuleAST | undefined {
+        const [key, base] = this.createKey(ruleText, language);
+        let entry = this.#entries.get(key);
+        if (entry === undefined && this.#directory !== undefined) {
+            try {
+                entry = JSON.parse(readFileSync(join(this.#directory, key + ".json"), "utf8")) as ISerializedNode;
+                this.#entries.set(key, entry);
+            } catch {
+                // Not cached or not readable.
+            }
+        }
+
+        let tree: GrammarAST | undefined;
+        if (entry !== undefined) {
+            // An entry which does not have the stored shape (e.g. a damaged or foreign file) counts as missing.
+            try {
+                if (this.isValidNode(entry) && entry.kind === "Rule" && entry.type === ANTLRv4Parser.RULE) {
+                    // The input stream provides the source name for the new tokens. Their text is set explicitly.
+                    const stream = CharStream.fromString(ruleText);
+                    stream.name = g.fileName;
+                    tree = this.restore(entry, stream, base);
+                }
+            } catch {
+                tree = undefined;
+            }
+
+            if (tree === undefined) {
+                this.#entries.delete(key);
+            }
+        }
+
+        if (tree === undefined) {
+            ++this.misses;
+
+            return undefined;
+        }
+
+        ++this.hits;
+
+        return tree as RuleAST;
+    }
+
+    /**
+     * Adds the tree of a rewritten rule to the cache.
+     *
+     * @param ruleText The text of the rewritten rule.
+     * @param language The target language the rule was rewritten for.
+     * @param ruleAST The tree created by the parser for the text.
+     */
+    public set(ruleText: string, language: string, ruleAST: RuleAST): void {
+        const [key, base] = this.createKey(ruleText, language);
+        const entry = this.serialize(ruleAST, base);
+        this.#entries.set(key, entry);
+
+        if (this.#directory !== undefined) {
+            try {
+                mkdirSync(this.#directory, { recursive: true });
+                writeFileSync(join(this.#directory, key + ".json"), JSON.stringify(entry), "utf8");
+            } catch {
+                // The entry is still available in memory.
+            }
+        }
+    }
+
+    /** @returns The key for the given rule text and the token index which the indexes in the entry are relative to. */
+    private createKey(ruleText: string, language: string): [string, number] {
+        let base: number | undefined;
+        const normalized = ruleText.replace(LeftRecursiveRuleCache.tokenIndexPattern, (_, index: string) => {
+            base ??= Number(index);
+
+            return `<${Constants.TOKENINDEX_OPTION_NAME}=${Number(index) - base}`;
+        });
+
+        const hash = createHash("sha256");
+        hash.update(`${antlrVersion}\n${LeftRecursiveRuleCache.formatVersion}\n${language}\n`);
+        hash.update(normalized);
+
+        return [hash.digest("hex"), base ?? 0];
+    }
+
+    private serialize(t: GrammarAST, base: number): ISerializedNode {
+        const token = t.token!;
+        const node: ISerializedNode = {
+            kind: this.getKind(t),
+            type: token.type,
+            text: token.text ?? "",
+            line: token.line,
+            column: token.column,
+            channel: token.channel,
+            tokenIndex: token.tokenIndex,
+            start: token.start,
+            stop: token.stop,
+            startIndex: t.startIndex,
+            stopIndex: t.stopIndex,
+        };
+
+        if (this.isTokenIndexValue(t)) {
+            node.text = String(Number(node.text) - base);
+        }
+
+        if (t instanceof OptionalBlockAST || t instanceof StarBlockAST || t instanceof PlusBlockAST) {
+            node.greedy = t.isGreedy();
+        }
+
+        if (t instanceof AltAST && t.altLabel) {
+            node.altLabel = this.serialize(t.altLabel, base);
+        }
+
+        if (t.getChildCount() > 0) {
+            node.children = t.getChildrenAsArray().map((child) => {
+                return this.serialize(child, base);
+            });
+        }
+
+        return node;
+    }
+
+    private restore(node: ISerializedNode, stream: CharStream, base: number): GrammarAST {
+        const token = CommonToken.fromType(node.type, node.text);
+        token.line = node.line;
+        token.column = node.column;
+        token.channel = node.channel;
+        token.tokenIndex = node.tokenIndex;
+        token.start = node.start;
+        token.stop = node.stop;
+        token.inputStream = stream;
+
+        const t = this.createNode(node, token);
+        t.startIndex = node.startIndex;
+        t.stopIndex = node.stopIndex;
+
+        if (node.altLabel && t instanceof AltAST) {
+            t.altLabel = this.restore(node.altLabel, stream, base);
+        }
+
+        for (const child of node.children ?? []) {
+            t.addChild(this.restore(child, stream, base));
+        }
+
+        if (t.getType() === ANTLRv4Parser.ELEMENT_OPTIONS) {
+            for (const option of t.getChildrenAsArray()) {
+                const value = option.getChild(1) as GrammarAST | null;
+                if (value && this.isTokenIndexValue(value)) {
+                    value.setText(String(Number(value.getText()) + base));
+                }
+            }
+        }
+
+        // Options are set from the options subtree, like the parse tree converter does.
+        if (t instanceof GrammarASTWithOptions) {
+            const options = t.getFirstChildWithType(ANTLRv4Parser.OPTIONS)
+                ?? t.getFirstChildWithType(ANTLRv4Parser.ELEMENT_OPTIONS);
+            if (options) {
+                Grammar.setNodeOptions(t, options as GrammarAST);
+            }
+        }
+
+        return t;
+    }
+
+    /** @returns true if the value has the shape of a serialized node, including all its descendants. */
+    private isValidNode(value: unknown): value is ISerializedNode {
+        if (typeof value !== "object" || value === null) {
+            return false;
+        }
+
+        const node = value as Record<string, unknown>;
+        if (typeof node.kind !== "string" || !LeftRecursiveRuleCache.nodeKinds.has(node.kind)
+            || typeof node.text !== "string") {
+            return false;
+        }
+
+        const numbers = ["type", "line", "column", "channel", "tokenIndex", "start", "stop", "startIndex",
+            "stopIndex"];
+        if (!numbers.every((name) => {
+            return Number.isInteger(node[name]);
+        })) {
+            return false;
+        }
+
+        const hasGreedy = node.kind === "Optional" || node.kind === "Star" || node.kind === "Plus";
+        if (hasGreedy !== (typeof node.greedy === "boolean")) {
+            return false;
+        }
+
+        if (node.altLabel !== undefined && !this.isValidNode(node.altLabel)) {
+            return false;
+        }
+
+        if (node.children === undefined) {
+            return true;
+        }
+
+        return Array.isArray(node.children) && node.children.length > 0 && node.children.every((child) => {
+            return this.isValidNode(child);
+        });
+    }
+
+    /** @returns The name of the node class, for the node classes the parse tree converter creates in a rule. */
+    private getKind(t: GrammarAST): string {
+        const classes: Array<[string, abstract new (...args: never[]) => GrammarAST]> = [
+            ["Rule", RuleAST], ["Block", BlockAST], ["Alt", AltAST], ["Pred", PredAST], ["Action", ActionAST],
+            ["RuleRef", RuleRefAST], ["Terminal", TerminalAST], ["Optional", OptionalBlockAST], ["Star", StarBlockAST],
+            ["Plus", PlusBlockAST], ["Not", NotAST], ["Set", SetAST], ["Range", RangeAST],
+        ];
+
+        // Subclasses come before their base classes (PredAST before ActionAST).
+        const entry = classes.find(([_, c]) => {
+            return t instanceof c;
+        });
+
+        return entry?.[0] ?? "Grammar";
+    }
+
+    private createNode(node: ISerializedNode, token: Token): GrammarAST {
+        switch (node.kind) {
+            case "Rule": { return new RuleAST(token); }
+            case "Block": { return new BlockAST(token); }
+            case "Alt": { return new AltAST(token); }
+            case "Pred": { return new PredAST(token); }
+            case "Action": { return new ActionAST(token); }
+            case "RuleRef": { return new RuleRefAST(token); }
+            case "Terminal": { return new TerminalAST(token); }
+            case "Optional": { return new OptionalBlockAST(node.type, token, node.greedy!); }
+            case "Star": { return new StarBlockAST(node.type, token, node.greedy!); }
+            case "Plus": { return new PlusBlockAST(node.type, token, node.greedy!); }
+            case "Not": { return new NotAST(node.type, token); }
+            case "Set": { return new SetAST(node.type, token, node.text); }
+            case "Range": { return new RangeAST(token); }
+            default: { return new GrammarAST(token); }
+        }
+    }
+
+    /** @returns true if the node is the value of a `tokenIndex` element option. */
+    private isTokenIndexValue(t: GrammarAST): boolean {
+        const assign = t.parent as GrammarAST | null;
+
+        return t.getType() === ANTLRv4Parser.INT && assign?.getType() === ANTLRv4Parser.ASSIGN
+            && assign.getChild(0)?.getText() === Constants.TOKENINDEX_OPTION_NAME
+            && (assign.parent as GrammarAST | null)?.getType() === ANTLRv4Parser.ELEMENT_OPTIONS;
+    }
+}
@@ -52,6 +52,9 @@ export class LeftRecursiveRuleTransformer {
     public g: Grammar;
     public tool: Tool;
 
+    // Reduces the sets in all rewritten rules.
+    #transformPipeline?: GrammarTransformPipeline;
+
     public constructor(ast: GrammarRootAST, rules: Rule[], g: Grammar) {
         this.ast = ast;
         this.rules = rules;
@@ -104,12 +107,15 @@ export class LeftRecursiveRuleTransformer {
         const prevRuleAST = r.ast;
         const ruleName = prevRuleAST.getChild(0)!.getText();
         const leftRecursiveRuleWalker = new LeftRecursiveRuleAnalyzer(prevRuleAST, this.tool, ruleName, language);
+        const instrumentation = this.tool.instrumentation;
+        instrumentation?.enterRule(leftRecursiveRuleWalker.constructor.name, ruleName);
         let isLeftRec: boolean;
         try {
             isLeftRec = leftRecursiveRuleWalker.rec_rule();
         } catch {
             isLeftRec = false; // didn't match; oh well
         }
+        instrumentation?.exitRule(leftRecursiveRuleWalker.constructor.name, ruleName, prevRuleAST);
 
         if (!isLeftRec) {
             return false;
@@ -137,12 +143,13 @@ export class LeftRecursiveRuleTransformer {
         r.ast = t;
 
         // Reduce sets in newly created rule tree
-        const transform = new GrammarTransformPipeline(this.g, this.g.tool);
-        transform.reduceBlocksToSets(r.ast);
+        this.#transformPipeline ??= new GrammarTransformPipeline(this.g, this.g.tool);
+        this.#transformPipeline.reduceChangedBlocksToSets([r.ast]);
 
         // Rerun semantic checks on the new rule
         const ruleCollector = new RuleCollector(this.g);
         ruleCollector.visit(t, ANTLRv4Parser.RULE_ruleSpec);
+        ruleCollector.parseRuleAttributes();
         const basics = new BasicSemanticChecks(this.g, ruleCollector);
         // disable the assoc element option checks because they are already
         // handled for the pre-transformed rule.
@@ -201,6 +208,16 @@ export class LeftRecursiveRuleTransformer {
     }
 
     public parseArtificialRule(g: Grammar, ruleText: string): RuleAST | undefined {
+        const cache = this.tool.leftRecursiveRuleCache;
+        const language = this.g.getLanguage() ?? "Java";
+        const cached = cache?.get(g, ruleText, language);
+        if (cached) {
+            GrammarTransformPipeline.setGrammarPtr(g, cached);
+            GrammarTransformPipeline.augmentTokensWithOriginalPosition(g, cached);
+
+            return cached;
+        }
+
         const stream = CharStream.fromString(ruleText);
         stream.name = g.fileName;
         const lexer = new ANTLRv4Lexer(stream);
@@ -209,10 +226,14 @@ export class LeftRecursiveRuleTransformer {
         const ruleStart = null;
 
         try {
+            const errors = this.tool.errorManager.errors;
             const r = p.ruleSpec();
             const root = new GrammarAST();
             ParseTreeToASTConverter.convertRuleSpecToAST(r, root);
             const ruleAST = root.getChild(0) as RuleAST;
+            if (this.tool.errorManager.errors === errors) {
+                cache?.set(ruleText, language, ruleAST);
+            }
 
             GrammarTransformPipeline.setGrammarPtr(g, ruleAST);
             GrammarTransformPipeline.augmentTokensWithOriginalPosition(g, ruleAST);
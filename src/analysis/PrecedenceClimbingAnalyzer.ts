@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import {
+    ATN, ATNState, BlockStartState, IntervalSet, LL1Analyzer, PrecedencePredicateTransition, PredicateTransition,
+    RuleStopState, RuleTransition, StarLoopEntryState, Token,
+} from "antlr4ng";
+
+import { LeftRecursiveRule } from "../tool/LeftRecursiveRule.js";
+
+/** The operator table of a left recursive rule, used to parse its operator loop without ATN prediction. */
+export interface IOperatorTable {
+    /** Maps a token type to the operator alternative (from 1) which starts with it, or to 0 for no operator. */
+    operatorAlts: number[];
+
+    /** The precedence of each operator alternative (index 0 is unused). */
+    precedences: number[];
+}
+
+/**
+ * Determines if the operator loop of a left recursive rule can be parsed by precedence climbing, that is, by looking
+ * up the operator alternative for the current token in a table and checking only its precedence.
+ *
+ * This gives the same result as the adaptive prediction of the loop if:
+ * - each operator alternative starts with a set of tokens and these sets are disjoint,
+ * - the operator alternatives contain no other predicates than their precedence predicates before the first token and
+ * - no operator token can follow the rule outside of its own operator loop. Otherwise leaving the loop might be the
+ *   right choice, even if an operator token is next.
+ *
+ * Associativity is not part of the table. It is encoded already in the precedence argument the right operand of an
+ * alternative is parsed with.
+ */
+export class PrecedenceClimbingAnalyzer {
+    /**
+     * @param atn The parser ATN.
+     * @param r The left recursive rule.
+     * @param loopEntry The entry state of the operator loop of the rule.
+     *
+     * @returns The operator table for the rule or `undefined`, if the operator loop does not meet the conditions.
+     */
+    public static getOperatorTable(atn: ATN, r: LeftRecursiveRule,
+        loopEntry: StarLoopEntryState): IOperatorTable | undefined {
+        const blockStart = loopEntry.transitions[0]?.target;
+        if (!(blockStart instanceof BlockStartState) || !blockStart.endState) {
+            return undefined;
+        }
+
+        const analyzer = new LL1Analyzer(atn);
+        const operators = new IntervalSet();
+        const altLookSets: number[][] = [];
+        const precedences = [0];
+        for (const transition of blockStart.transitions) {
+            const precedence = this.getPrecedence(transition.target, blockStart.endState);
+            if (precedence === undefined) {
+                return undefined;
+            }
+
+            // EPSILON and EOF are below the first user token type.
+            const look = analyzer.look(transition.target, blockStart.endState);
+            const types = look.toArray();
+            if (types.length === 0 || types[0] < Token.MIN_USER_TOKEN_TYPE || look.and(operators).length !== 0) {
+                return undefined;
+            }
+
+            operators.addSet(look);
+            altLookSets.push(types);
+            precedences.push(precedence);
+        }
+
+        if (this.getExternalFollow(atn, analyzer, r, loopEntry).and(operators).length !== 0) {
+            return undefined;
+        }
+
+        const maxType = Math.max(...altLookSets.map((types) => {
+            return types[types.length - 1];
+        }));
+        const operatorAlts = new Array<number>(maxType + 1).fill(0);
+        altLookSets.forEach((types, index) => {
+            for (const type of types) {
+                operatorAlts[type] = index + 1;
+            }
+        });
+
+        return { operatorAlts, precedences };
+    }
+
+    /**
+     * Collects the predicates which can be evaluated before the first token of an operator alternative is matched.
+     * Rule references are followed into the called rule and, in case that rule matches nothing, to their follow state.
+     *
+     * @returns The precedence of the alternative or `undefined`, if there's no precedence predicate or there are other
+     *          predicates.
+     */
+    private static getPrecedence(altStart: ATNState, blockEnd: ATNState): number | undefined {
+        let precedence: number | undefined;
+        const visited = new Set<number>();
+        const pending = [altStart];
+        while (pending.length > 0) {
+            const state = pending.pop()!;
+            if (state === blockEnd || state instanceof RuleStopState || visited.has(state.stateNumber)) {
+                continue;
+            }
+
+            visited.add(state.stateNumber);
+            for (const transition of state.transitions) {
+                if (!transition.isEpsilon) {
+                    continue;
+                }
+
+                if (transition instanceof PrecedencePredicateTransition) {
+                    if (precedence !== undefined && precedence !== transition.precedence) {
+                        return undefined;
+                    }
+                    precedence = transition.precedence;
+                } else if (transition instanceof PredicateTransition) {
+                    return undefined;
+                } else if (transition instanceof RuleTransition) {
+                    pending.push(transition.followState);
+                }
+
+                pending.push(transition.target);
+            }
+        }
+
+        return precedence;
+    }
+
+    /**
+     * Computes the tokens which can follow the given rule, except for those which follow it from within its own
+     * operator loop. References in the rule itself are followed only up to the loop entry, references in other rules
+     * up to the end of that rule, continuing with the follow set of that rule.
+     */
+    private static getExternalFollow(atn: ATN, analyzer: LL1Analyzer, r: LeftRecursiveRule,
+        loopEntry: StarLoopEntryState): IntervalSet {
+        const follow = new IntervalSet();
+        const visited = new Set<number>([r.index]);
+        const pending = [r.index];
+        while (pending.length > 0) {
+            const ruleIndex = pending.pop()!;
+            let referenced = false;
+            for (const state of atn.states) {
+                for (const transition of state?.transitions ?? []) {
+                    if (!(transition instanceof RuleTransition) || transition.target.ruleIndex !== ruleIndex) {
+                        continue;
+                    }
+
+                    referenced = true;
+                    const caller = state!.ruleIndex;
+                    const look = analyzer.look(transition.followState, caller === r.index ? loopEntry : undefined);
+                    follow.addSet(look);
+                    if (look.contains(Token.EPSILON) && !visited.has(caller)) {
+                        visited.add(caller);
+                        pending.push(caller);
+                    }
+                }
+            }
+
+            if (!referenced) {
+                follow.addOne(Token.EOF);
+            }
+        }
+
+        return follow;
+    }
+}
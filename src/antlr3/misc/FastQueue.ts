@@ -33,7 +33,7 @@ export class FastQueue<T> {
 
     public clear(): void {
         this.p = 0;
-        this.data.splice(0);
+        this.data.length = 0;
     }
 
     /** Get and remove first element in queue */
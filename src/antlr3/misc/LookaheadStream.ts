@@ -47,6 +47,8 @@ export abstract class LookaheadStream<T> extends FastQueue<T> {
         this.currentElementIndex = 0;
         this.p = 0;
         this.prevElement = null;
+        this.markDepth = 0;
+        this.eof = null;
     }
 
     /**
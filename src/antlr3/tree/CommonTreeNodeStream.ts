@@ -74,13 +74,21 @@ export class CommonTreeNodeStream extends LookaheadStream<CommonTree>
         this.it = new TreeIterator(this.adaptor, this.root);
     }
 
-    public override reset(): void {
+    /**
+     * Rewinds the stream, so that it acts like a freshly constructed one. If a tree is given the stream switches
+     * to it, keeping its buffers, iterator and navigation nodes. This allows to walk many trees with a single stream.
+     */
+    public override reset(tree?: CommonTree): void {
         super.reset();
-        this.it.reset();
+        if (tree) {
+            this.root = tree;
+        }
+
+        this.it.reset(tree);
         this.hasNilRoot = false;
         this.level = 0;
         this.previousLocationElement = null;
-        this.calls = [];
+        this.calls.length = 0;
     }
 
     /**
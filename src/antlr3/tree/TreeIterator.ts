@@ -59,7 +59,15 @@ export class TreeIterator {
         this.eof = adaptor.create(Token.EOF, "EOF");
     }
 
-    public reset(): void {
+    /**
+     * Rewinds the iterator, optionally switching to a new tree. The navigation nodes and the queue are kept,
+     * so an iterator can be reused for any number of trees.
+     */
+    public reset(root?: CommonTree): void {
+        if (root) {
+            this.root = root;
+        }
+
         this.firstTime = true;
         this.tree = this.root;
         this.nodes.clear();
@@ -13,12 +13,15 @@ import {
 } from "antlr4ng";
 
 import { Constants } from "../../Constants1.js";
+import type { IWalkerInstrumentation } from "../../support/IWalkerInstrumentation.js";
 import type { CommonTree } from "../../tree/CommonTree.js";
 import { BaseRecognizer } from "../BaseRecognizer.js";
 import type { IRecognizerSharedState } from "../IRecognizerSharedState.js";
+import type { CommonTreeNodeStream } from "./CommonTreeNodeStream.js";
 import type { TreeAdaptor } from "./TreeAdaptor.js";
 import type { TreeNodeStream } from "./TreeNodeStream.js";
 import { MismatchedTreeNodeException } from "../MismatchTreeNodeException.js";
+import { TreeParserError } from "./TreeParserError.js";
 
 /**
  * A parser for a stream of tree nodes.  "tree grammars" result in a subclass
@@ -30,6 +33,23 @@ export class TreeParser extends BaseRecognizer {
     static #dotdot = /.*[^.]\\.\\.[^.].*/g;
     static #doubleEtc = /.*\\.\\.\\.\\s+\\.\\.\\..*/g;
 
+    // markers used in compiled contexts
+    static #ellipsis = -1;
+    static #unknownName = -2;
+
+    /**
+     * When set, the first recognition error ends the walk with a {@link TreeParserError}, instead of reporting the
+     * error and continuing with the next rule. Use this for trees created by the tool itself, where a mismatch is an
+     * internal error. Recovering mode (the default) reports all mismatches, which is more useful for debugging.
+     */
+    public strict = false;
+
+    /**
+     * Receives the start and end of each grammar rule, for walkers which walk several rules in one go. Walkers which
+     * get only one rule at a time are instrumented by the code which runs them.
+     */
+    public instrumentation?: IWalkerInstrumentation;
+
     #input?: TreeNodeStream;
 
     public constructor(input?: TreeNodeStream, state?: IRecognizerSharedState) {
@@ -42,6 +62,20 @@ export class TreeParser extends BaseRecognizer {
      */
     public static inContext(adaptor: TreeAdaptor, tokenNames: string[], t: CommonTree | null,
         context: string): boolean {
+        return TreeParser.inCompiledContext(adaptor, t, TreeParser.compileContext(tokenNames, context));
+    }
+
+    /**
+     * Converts a context description, as used by {@link inContext}, to a list of token types. Such a compiled context
+     * can then be checked by {@link inCompiledContext} without any string processing, which is much cheaper when the
+     * same context is checked for many nodes.
+     *
+     * @param tokenNames The token names of the parser that will check the context.
+     * @param context The context to compile, e.g. "RULE BLOCK" or "RULE ...".
+     *
+     * @returns The token types in the context, from root to leaf.
+     */
+    public static compileContext(tokenNames: string[], context: string): Int32Array {
         if (context.match(TreeParser.#dotdot)) { // don't allow "..", must be "..."
             throw new Error("invalid syntax: ..");
         }
@@ -51,30 +85,53 @@ export class TreeParser extends BaseRecognizer {
         }
 
         context = context.replaceAll("\\.\\.\\.", " ... "); // ensure spaces around ...
-        context = context.trim();
-        const nodes = context.split(/\s+/);
-        let ni = nodes.length - 1;
+        const nodes = context.trim().split(/\s+/);
+
+        return Int32Array.from(nodes, (name) => {
+            if (name === "...") {
+                return TreeParser.#ellipsis;
+            }
+
+            const type = tokenNames.indexOf(name);
+
+            return type === -1 ? TreeParser.#unknownName : type;
+        });
+    }
+
+    /**
+     * Does the same as {@link inContext}, but with a context compiled by {@link compileContext}. Only the parent
+     * pointers of the given node are followed.
+     *
+     * @param adaptor The adaptor to use for tree access.
+     * @param t The node whose ancestors are checked.
+     * @param context The compiled context.
+     *
+     * @returns `true` if the ancestors of the given node match the context.
+     */
+    public static inCompiledContext(adaptor: TreeAdaptor, t: CommonTree | null, context: Int32Array): boolean {
+        let ni = context.length - 1;
         t = adaptor.getParent(t);
         while (ni >= 0 && t !== null) {
-            if (nodes[ni] === "...") {
-                // walk upwards until we see nodes[ni-1] then continue walking
+            if (context[ni] === TreeParser.#ellipsis) {
+                // walk upwards until we see context[ni-1] then continue walking
                 if (ni === 0) {
                     return true;
                 }
 
                 // ... at start is no-op
-                const goal = nodes[ni - 1];
-                const ancestor = TreeParser.getAncestor(adaptor, tokenNames, t, goal);
-                if (ancestor === null) {
+                const goal = context[ni - 1];
+                while (t !== null && adaptor.getType(t) !== goal) {
+                    t = adaptor.getParent(t);
+                }
+
+                if (t === null) {
                     return false;
                 }
 
-                t = ancestor;
                 ni--;
             }
 
-            const name = tokenNames[adaptor.getType(t)];
-            if (name !== nodes[ni]) {
+            if (adaptor.getType(t) !== context[ni]) {
                 return false;
             }
 
@@ -91,26 +148,23 @@ export class TreeParser extends BaseRecognizer {
         return true;
     }
 
-    /** Helper for static inContext */
-    protected static getAncestor(adaptor: TreeAdaptor, tokenNames: string[], t: CommonTree | null,
-        goal: string): CommonTree | null {
-        while (t !== null) {
-            const name = tokenNames[adaptor.getType(t)];
-            if (name === goal) {
-                return t;
-            }
-
-            t = adaptor.getParent(t);
-        }
-
-        return null;
-    }
-
     public override reset(): void {
         super.reset(); // reset all recognizer state variables
         this.#input!.seek(0); // rewind the input
     }
 
+    /**
+     * Prepares this parser for a walk over another tree. The recognizer state is reset and the current input
+     * (which must be a {@link CommonTreeNodeStream}) is switched to the given tree. That way a single parser,
+     * its shared state and its node stream can be used for many trees, instead of creating new ones for each.
+     *
+     * @param tree The tree to walk next.
+     */
+    public resetTo(tree: CommonTree): void {
+        super.reset();
+        (this.#input as CommonTreeNodeStream).reset(tree);
+    }
+
     public set input(input: TreeNodeStream) {
         this.#input = input;
     }
@@ -123,6 +177,23 @@ export class TreeParser extends BaseRecognizer {
         return this.#input!.getSourceName();
     }
 
+    public override reportError(e: RecognitionException): void {
+        if (!this.strict) {
+            super.reportError(e);
+
+            return;
+        }
+
+        const node = this.#input?.LT(1) ?? null;
+        let nodeType = "<EOF>";
+        if (node) {
+            const type = this.#input!.getTreeAdaptor().getType(node);
+            nodeType = this.getTokenNames()[type] ?? String(type);
+        }
+
+        throw new TreeParserError(this.constructor.name, node, nodeType, e);
+    }
+
     /**
      * Match '.' in tree parser has special meaning.  Skip node or
      *  entire tree if node has children.  If children, scan until
@@ -200,6 +271,18 @@ export class TreeParser extends BaseRecognizer {
         return TreeParser.inContext(this.#input!.getTreeAdaptor(), this.getTokenNames(), this.#input!.LT(1), context);
     }
 
+    /**
+     * Checks if the current node (LT(1)) is in the given context. Same as {@link inContext}, but for a context
+     * compiled by {@link compileContext}.
+     *
+     * @param context The compiled context.
+     *
+     * @returns `true` if the ancestors of the current node match the context.
+     */
+    public inCompiledContext(context: Int32Array): boolean {
+        return TreeParser.inCompiledContext(this.#input!.getTreeAdaptor(), this.#input!.LT(1), context);
+    }
+
     public override traceIn(ruleName: string, ruleIndex: number): void {
         super.traceIn(ruleName, ruleIndex, this.#input!.LT(1));
     }
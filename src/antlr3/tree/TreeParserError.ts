@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import type { RecognitionException } from "antlr4ng";
+
+import type { CommonTree } from "../../tree/CommonTree.js";
+
+/**
+ * Thrown by a tree parser in strict mode (see {@link TreeParser.strict}) for the first node it cannot match. Tree
+ * parsers only walk trees created by the tool itself, so such an error is an internal error, not a user error.
+ */
+export class TreeParserError extends Error {
+    /** The name of the tree parser which failed. */
+    public readonly walker: string;
+
+    /** The node at which the tree parser failed, if any. */
+    public readonly node: CommonTree | null;
+
+    /** The name of the type of that node. */
+    public readonly nodeType: string;
+
+    public constructor(walker: string, node: CommonTree | null, nodeType: string, cause: RecognitionException) {
+        const position = node ? ` (${node.getLine()}:${node.getCharPositionInLine()})` : "";
+        super(`${walker} cannot match node ${nodeType}${position}: ${cause.message}`, { cause });
+
+        this.name = "TreeParserError";
+        this.walker = walker;
+        this.node = node;
+        this.nodeType = nodeType;
+    }
+}
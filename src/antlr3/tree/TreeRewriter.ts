@@ -26,6 +26,15 @@ export class TreeRewriter extends TreeParser {
     protected originalTokenStream: TokenStream;
     protected originalAdaptor: TreeAdaptor;
 
+    /**
+     * When set, all rule applications share a single node stream and recognizer state, which are reset for each
+     * subtree. Otherwise a new stream and state are created for every node visited in {@link downUp}.
+     */
+    protected reuseNodeStream = true;
+
+    #rewriteInput?: CommonTreeNodeStream;
+    #rewriteState?: IRecognizerSharedState;
+
     public constructor(input: TreeNodeStream, state?: IRecognizerSharedState) {
         state ??= createRecognizerSharedState();
         super(input, state);
@@ -71,10 +80,21 @@ export class TreeRewriter extends TreeParser {
     private applyOnce = (t: CommonTree, whichRule: () => ITreeRuleReturnScope<CommonTree> | undefined): CommonTree => {
         try {
             // share TreeParser object but not parsing-related state
-            this.state = createRecognizerSharedState();
-            const input = new CommonTreeNodeStream(this.originalAdaptor as CommonTreeAdaptor, t);
-            input.setTokenStream(this.originalTokenStream);
-            this.input = input;
+            if (this.reuseNodeStream && this.#rewriteInput) {
+                this.state = this.#rewriteState!;
+                this.input = this.#rewriteInput;
+                this.resetTo(t);
+            } else {
+                this.state = createRecognizerSharedState();
+                const input = new CommonTreeNodeStream(this.originalAdaptor as CommonTreeAdaptor, t);
+                input.setTokenStream(this.originalTokenStream);
+                this.input = input;
+
+                if (this.reuseNodeStream) {
+                    this.#rewriteInput = input;
+                    this.#rewriteState = this.state;
+                }
+            }
 
             this.setBacktrackingLevel(1);
             const r = whichRule();
@@ -24,6 +24,20 @@ export class ATNOptimizer {
         ATNOptimizer.optimizeStates(atn);
     }
 
+    /** Removes the deleted (null) states from the ATN and renumbers the other states. */
+    public static optimizeStates(atn: ATN): void {
+        const compressed = new Array<ATNState>();
+        let i = 0; // new state number
+        for (const s of atn.states) {
+            if (s !== null) {
+                compressed.push(s);
+                s.stateNumber = i; // reset state number as we shift to new position
+                i++;
+            }
+        }
+        atn.states.splice(0, atn.states.length, ...compressed); // clear and add all
+    }
+
     private static optimizeSets(g: Grammar, atn: ATN): void {
         if (g.isParser()) {
             // parser codegen doesn't currently support SetTransition
@@ -120,17 +134,4 @@ export class ATNOptimizer {
         }
     }
 
-    private static optimizeStates(atn: ATN): void {
-        const compressed = new Array<ATNState>();
-        let i = 0; // new state number
-        for (const s of atn.states) {
-            if (s !== null) {
-                compressed.push(s);
-                s.stateNumber = i; // reset state number as we shift to new position
-                i++;
-            }
-        }
-        atn.states.splice(0, atn.states.length, ...compressed); // clear and add all
-    }
-
 }
@@ -20,16 +20,39 @@ export class ATNVisitor {
         // intentionally empty
     }
 
+    /**
+     * Visits the states depth first and in transition order, like a recursive walk would do, but keeps the path
+     * on an explicit stack. ATN paths get as long as the rule blocks are deeply nested.
+     *
+     * @param s The state to start with.
+     * @param visited The numbers of the states visited so far.
+     */
     private doVisit(s: ATNState, visited: Set<number>): void {
         if (visited.has(s.stateNumber)) {
             return;
         }
 
         visited.add(s.stateNumber);
-
         this.visitState(s);
-        for (const t of s.transitions) {
-            this.doVisit(t.target, visited);
+
+        // Each entry is a state and the index of its next transition to follow.
+        const path: Array<[ATNState, number]> = [[s, 0]];
+        while (path.length > 0) {
+            const top = path[path.length - 1];
+            const [state, index] = top;
+            if (index >= state.transitions.length) {
+                path.pop();
+
+                continue;
+            }
+
+            top[1] = index + 1;
+            const target = state.transitions[index].target;
+            if (!visited.has(target.stateNumber)) {
+                visited.add(target.stateNumber);
+                this.visitState(target);
+                path.push([target, 0]);
+            }
         }
     }
 
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import {
+    ATN, ATNState, AtomTransition, BlockStartState, DecisionState, EpsilonTransition, LoopEndState, NotSetTransition,
+    RangeTransition, RuleTransition, SetTransition, WildcardTransition, type Transition,
+} from "antlr4ng";
+
+import type { LexerGrammar } from "../tool/LexerGrammar.js";
+
+/**
+ * Shares the sub-ATNs of structurally identical lexer fragment rules. Calls of a duplicate fragment are redirected
+ * to the first fragment with the same structure and the states of the duplicate are removed from the ATN, which
+ * leaves only an epsilon transition from its start to its stop state.
+ *
+ * Only fragments are shared, because the stop state of a token rule determines the token type. Fragments with
+ * actions or predicates are not shared either, as those refer to their rule by index. Calls of other rules are
+ * compared by the rule they (finally) call, so fragments which only differ in calls of identical fragments are
+ * shared too.
+ */
+export class FragmentRuleSharing {
+    private constructor() {
+        // intentionally empty
+    }
+
+    /**
+     * Runs the sharing on the given lexer ATN.
+     *
+     * @param g The grammar of the ATN.
+     * @param atn The ATN to change.
+     *
+     * @returns The number of fragments which were removed.
+     */
+    public static share(g: LexerGrammar, atn: ATN): number {
+        const fragments = Array.from(g.rules.values()).filter((rule) => {
+            return rule.isFragment();
+        });
+
+        // The rule each rule is replaced by, which is the rule itself if it is not shared. Entries can form chains,
+        // when a rule is replaced by one which is replaced later, so always resolve them with `find`.
+        const canonical = atn.ruleToStartState.map((_, index) => {
+            return index;
+        });
+        const find = (ruleIndex: number): number => {
+            let root = ruleIndex;
+            while (canonical[root] !== root) {
+                root = canonical[root];
+            }
+
+            // Path compression.
+            while (canonical[ruleIndex] !== root) {
+                const next = canonical[ruleIndex];
+                canonical[ruleIndex] = root;
+                ruleIndex = next;
+            }
+
+            return root;
+        };
+
+        // Replacing a fragment can make the fragments calling it equal, so repeat until nothing changes.
+        let changed = true;
+        while (changed) {
+            changed = false;
+
+            const rulesByForm = new Map<string, number>();
+            for (const rule of fragments) {
+                if (canonical[rule.index] !== rule.index) {
+                    continue;
+                }
+
+                const form = FragmentRuleSharing.getCanonicalForm(atn, rule.index, find);
+                if (form === undefined) {
+                    continue;
+                }
+
+                const existing = rulesByForm.get(form);
+                if (existing === undefined) {
+                    rulesByForm.set(form, rule.index);
+                } else {
+                    canonical[rule.index] = existing;
+                    changed = true;
+                }
+            }
+        }
+
+        let count = 0;
+        const removed = new Set<ATNState>();
+        for (let ruleIndex = 0; ruleIndex < canonical.length; ++ruleIndex) {
+            if (canonical[ruleIndex] === ruleIndex) {
+                continue;
+            }
+
+            for (const state of FragmentRuleSharing.getRuleBody(atn, ruleIndex)) {
+                atn.removeState(state);
+                removed.add(state);
+            }
+
+            const start = atn.ruleToStartState[ruleIndex]!;
+            while (start.transitions.length > 0) {
+                start.removeTransition(0);
+            }
+            start.addTransition(new EpsilonTransition(atn.ruleToStopState[ruleIndex]!));
+            ++count;
+        }
+
+        if (count === 0) {
+            return 0;
+        }
+
+        for (const state of atn.states) {
+            if (!state) {
+                continue;
+            }
+
+            for (let i = 0; i < state.transitions.length; ++i) {
+                const transition = state.transitions[i];
+                if (transition instanceof RuleTransition && find(transition.ruleIndex) !== transition.ruleIndex) {
+                    const ruleIndex = find(transition.ruleIndex);
+                    state.setTransition(i, new RuleTransition(atn.ruleToStartState[ruleIndex]!, ruleIndex,
+                        transition.precedence, transition.followState));
+                }
+            }
+        }
+
+        // Decisions in the removed states are gone, so renumber the remaining ones.
+        const decisions = atn.decisionToState.filter((decision) => {
+            return !removed.has(decision);
+        });
+        atn.decisionToState.length = 0;
+        for (const decision of decisions) {
+            decision.decision = atn.decisionToState.length;
+            atn.decisionToState.push(decision);
+        }
+
+        return count;
+    }
+
+    /**
+     * Creates a description of the structure of a rule's sub-ATN, with the states numbered in the order they are
+     * reached from the rule start state. Two rules with the same description match the same input.
+     *
+     * @param atn The ATN containing the rule.
+     * @param ruleIndex The index of the rule.
+     * @param find Returns the rule which (finally) replaces a rule, used for rule calls.
+     *
+     * @returns The description or `undefined`, if the rule cannot be shared.
+     */
+    private static getCanonicalForm(atn: ATN, ruleIndex: number,
+        find: (ruleIndex: number) => number): string | undefined {
+        const start = atn.ruleToStartState[ruleIndex]!;
+        const stop = atn.ruleToStopState[ruleIndex]!;
+
+        const numbers = new Map<ATNState, number>([[start, 0]]);
+        const queue: ATNState[] = [start];
+        const getNumber = (state: ATNState): number => {
+            if (state === stop) {
+                return -1;
+            }
+
+            let n = numbers.get(state);
+            if (n === undefined) {
+                n = numbers.size;
+                numbers.set(state, n);
+                queue.push(state);
+            }
+
+            return n;
+        };
+
+        const parts: string[] = [];
+        for (let i = 0; i < queue.length; ++i) {
+            const state = queue[i];
+
+            let part = String((state.constructor as typeof ATNState).stateType);
+            if (state instanceof DecisionState && state.nonGreedy) {
+                part += "?";
+            }
+
+            if (state instanceof BlockStartState) {
+                part += ">" + getNumber(state.endState);
+            } else if (state instanceof LoopEndState) {
+                part += "<" + getNumber(state.loopBackState!);
+            }
+
+            for (const transition of state.transitions) {
+                if (transition instanceof RuleTransition) {
+                    part += ` call${find(transition.ruleIndex)}:${getNumber(transition.followState)}`;
+
+                    continue;
+                }
+
+                const label = FragmentRuleSharing.getLabel(transition);
+                if (label === undefined) {
+                    return undefined;
+                }
+
+                part += ` ${label}:${getNumber(transition.target)}`;
+            }
+
+            parts.push(part);
+        }
+
+        return parts.join(";");
+    }
+
+    /** @returns A description of what the transition matches or `undefined` for actions and predicates. */
+    private static getLabel(transition: Transition): string | undefined {
+        if (transition instanceof EpsilonTransition) {
+            return "eps";
+        }
+
+        if (transition instanceof AtomTransition) {
+            return String(transition.labelValue);
+        }
+
+        if (transition instanceof RangeTransition) {
+            return `${transition.start}..${transition.stop}`;
+        }
+
+        if (transition instanceof NotSetTransition) {
+            return "~" + transition.label.toString();
+        }
+
+        if (transition instanceof SetTransition) {
+            return transition.label.toString();
+        }
+
+        if (transition instanceof WildcardTransition) {
+            return ".";
+        }
+
+        return undefined;
+    }
+
+    /** @returns The states of a rule, without its start and stop state. */
+    private static getRuleBody(atn: ATN, ruleIndex: number): ATNState[] {
+        const start = atn.ruleToStartState[ruleIndex]!;
+        const stop = atn.ruleToStopState[ruleIndex]!;
+
+        const visited = new Set<ATNState>([start, stop]);
+        const queue: ATNState[] = [start];
+        for (let i = 0; i < queue.length; ++i) {
+            for (const transition of queue[i].transitions) {
+                const next = transition instanceof RuleTransition ? transition.followState : transition.target;
+                if (!visited.has(next)) {
+                    visited.add(next);
+                    queue.push(next);
+                }
+            }
+        }
+
+        return queue.slice(1);
+    }
+}
@@ -30,6 +30,8 @@ import { TerminalAST } from "../tool/ast/TerminalAST.js";
 import type { CommonTree } from "../tree/CommonTree.js";
 import { ATNOptimizer } from "./ATNOptimizer.js";
 import { CharactersDataCheckStatus } from "./CharactersDataCheckStatus.js";
+import { FragmentRuleSharing } from "./FragmentRuleSharing.js";
+import { LexerATNMinimizer } from "./LexerATNMinimizer.js";
 import type { IStatePair } from "./IATNFactory.js";
 import { ParserATNFactory } from "./ParserATNFactory.js";
 import { RangeBorderCharactersData } from "./RangeBorderCharactersData.js";
@@ -124,10 +126,24 @@ export class LexerATNFactory extends ParserATNFactory {
      */
     private actionToIndexMap = new Map<LexerAction, number>();
 
+    /**
+     * When set, structurally identical fragment rules share one sub-ATN (see {@link FragmentRuleSharing}), which makes
+     * the serialized ATN smaller. Set from the `shareFragments` tool parameter.
+     */
+    protected shareFragments: boolean;
+
+    /**
+     * When set, redundant basic states are removed from the finished ATN (see {@link LexerATNMinimizer}). Set from the
+     * `minimizeLexerAtn` tool parameter.
+     */
+    protected minimizeATN: boolean;
+
     private readonly ruleCommands = new Array<string>();
 
     public constructor(g: LexerGrammar, codeGenerator?: CodeGenerator) {
         super(g);
+        this.shareFragments = g.tool.toolParameters.shareFragments ?? false;
+        this.minimizeATN = g.tool.toolParameters.minimizeLexerAtn ?? false;
 
         // use codegen to get correct language templates for lexer commands
         codeGenerator ??= new CodeGenerator(g);
@@ -174,9 +190,17 @@ export class LexerATNFactory extends ParserATNFactory {
             }
         }
 
+        if (this.shareFragments) {
+            FragmentRuleSharing.share(this.g as LexerGrammar, this.atn);
+        }
+
         ATNOptimizer.optimize(this.g, this.atn);
         this.checkEpsilonClosure();
 
+        if (this.minimizeATN && LexerATNMinimizer.minimize(this.g as LexerGrammar, this.atn) > 0) {
+            ATNOptimizer.optimizeStates(this.atn);
+        }
+
         return this.atn;
     }
 
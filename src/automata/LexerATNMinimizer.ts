@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import {
+    ActionTransition, ATN, ATNState, AtomTransition, EpsilonTransition, NotSetTransition, PredicateTransition,
+    RangeTransition, RuleTransition, SetTransition, WildcardTransition, type Transition,
+} from "antlr4ng";
+
+import type { LexerGrammar } from "../tool/LexerGrammar.js";
+
+/**
+ * Removes redundant basic states from a lexer ATN, mode by mode, after it was built and optimized:
+ *
+ * - A basic state with a single epsilon transition is skipped: all transitions to it go to its target instead.
+ *   This collapses chains of such states into a single transition.
+ * - Basic states of the same rule with a single, equal transition (same kind, label and target) are merged.
+ *
+ * This is repeated until no state is removed anymore. Only basic states are touched, so decisions, blocks, loops and
+ * rule start and stop states keep the structure the lexer ATN simulator expects. Actions and predicates are kept
+ * as transitions, so they are still executed at the same position in the input. Fewer states mean fewer closure
+ * steps for each input character.
+ */
+export class LexerATNMinimizer {
+    private constructor() {
+        // intentionally empty
+    }
+
+    /**
+     * Minimizes the states of all rules in all modes. Removed states are set to null in the ATN, so run
+     * `ATNOptimizer.optimizeStates` afterwards.
+     *
+     * @param g The grammar of the ATN.
+     * @param atn The ATN to change.
+     *
+     * @returns The number of removed states.
+     */
+    public static minimize(g: LexerGrammar, atn: ATN): number {
+        let count = 0;
+        for (const rules of g.modes.values()) {
+            const ruleIndexes = new Set(rules.map((rule) => {
+                return rule.index;
+            }));
+
+            while (true) {
+                const removed = LexerATNMinimizer.minimizeStep(atn, ruleIndexes);
+                if (removed === 0) {
+                    break;
+                }
+
+                count += removed;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Runs one round of epsilon skipping and merging over the states of the given rules.
+     *
+     * @returns The number of removed states.
+     */
+    private static minimizeStep(atn: ATN, ruleIndexes: Set<number>): number {
+        const states = atn.states.filter((state): state is ATNState => {
+            return state !== null && ruleIndexes.has(state.ruleIndex);
+        });
+
+        // Maps each state to be removed to the state which takes its place.
+        const replacements = new Map<ATNState, ATNState>();
+        for (const state of states) {
+            if (LexerATNMinimizer.isBasicWithOneTransition(state)) {
+                const transition = state.transitions[0];
+                if (transition instanceof EpsilonTransition && transition.target !== state) {
+                    replacements.set(state, transition.target);
+                }
+            }
+        }
+
+        // Epsilon cycles cannot be skipped as a whole. Keep one state of each.
+        for (const state of Array.from(replacements.keys())) {
+            const seen = new Set<ATNState>([state]);
+            let next = replacements.get(state);
+            while (next && replacements.has(next)) {
+                if (seen.has(next)) {
+                    replacements.delete(state);
+
+                    break;
+                }
+
+                seen.add(next);
+                next = replacements.get(next);
+            }
+        }
+
+        const resolve = (state: ATNState): ATNState => {
+            let next = replacements.get(state);
+            while (next) {
+                state = next;
+                next = replacements.get(state);
+            }
+
+            return state;
+        };
+
+        const statesBySignature = new Map<string, ATNState>();
+        for (const state of states) {
+            if (replacements.has(state) || !LexerATNMinimizer.isBasicWithOneTransition(state)) {
+                continue;
+            }
+
+            const signature = LexerATNMinimizer.getSignature(state.transitions[0], resolve);
+            if (signature === undefined) {
+                continue;
+            }
+
+            const key = `${state.ruleIndex} ${signature}`;
+            const existing = statesBySignature.get(key);
+            if (existing === undefined) {
+                statesBySignature.set(key, state);
+            } else {
+                replacements.set(state, existing);
+            }
+        }
+
+        if (replacements.size === 0) {
+            return 0;
+        }
+
+        for (const state of states) {
+            if (replacements.has(state)) {
+                continue;
+            }
+
+            for (const transition of state.transitions) {
+                if (transition instanceof RuleTransition) {
+                    transition.followState = resolve(transition.followState);
+                } else {
+                    transition.target = resolve(transition.target);
+                }
+            }
+        }
+
+        for (const state of replacements.keys()) {
+            atn.removeState(state);
+        }
+
+        return replacements.size;
+    }
+
+    private static isBasicWithOneTransition(state: ATNState): boolean {
+        return (state.constructor as typeof ATNState).stateType === ATNState.BASIC && state.transitions.length === 1;
+    }
+
+    /**
+     * @returns A description of what the transition does and where it leads to, which is equal for transitions which
+     *          can be exchanged, or `undefined` if the transition is not supported for merging.
+     */
+    private static getSignature(transition: Transition, resolve: (state: ATNState) => ATNState): string | undefined {
+        const target = resolve(transition.target).stateNumber;
+
+        if (transition instanceof RuleTransition) {
+            const follow = resolve(transition.followState).stateNumber;
+
+            return `call ${transition.ruleIndex} ${transition.precedence} ${follow}`;
+        }
+
+        if (transition instanceof ActionTransition) {
+            return `action ${transition.ruleIndex} ${transition.actionIndex} ${transition.isCtxDependent} ${target}`;
+        }
+
+        if (transition instanceof PredicateTransition) {
+            return `pred ${transition.ruleIndex} ${transition.predIndex} ${transition.isCtxDependent} ${target}`;
+        }
+
+        if (transition instanceof AtomTransition) {
+            return `atom ${transition.labelValue} ${target}`;
+        }
+
+        if (transition instanceof RangeTransition) {
+            return `range ${transition.start} ${transition.stop} ${target}`;
+        }
+
+        if (transition instanceof NotSetTransition) {
+            return `notSet ${transition.label.toString()} ${target}`;
+        }
+
+        if (transition instanceof SetTransition) {
+            return `set ${transition.label.toString()} ${target}`;
+        }
+
+        if (transition instanceof WildcardTransition) {
+            return `wildcard ${target}`;
+        }
+
+        return undefined;
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import {
+    ActionTransition, ATN, ATNState, AtomTransition, DecisionState, EpsilonTransition, Lexer, NotSetTransition,
+    PrecedencePredicateTransition, PredicateTransition, RangeTransition, RuleStopState, RuleTransition, SetTransition,
+    Token,
+} from "antlr4ng";
+
+/** A lexer ATN configuration, like `LexerATNConfig`. */
+export interface ILexerConfig {
+    state: ATNState;
+
+    /** The index of the token rule (1-based), in the order of the mode's rules. */
+    alt: number;
+
+    /** The index of the call stack, see `LexerDFABuilder.contexts`. */
+    context: number;
+
+    /** The index of the list of lexer actions, see `LexerDFABuilder.actionLists`. */
+    actions: number;
+
+    passedThroughNonGreedyDecision: boolean;
+}
+
+/** An ordered set of configurations, like `OrderedATNConfigSet`. */
+interface IConfigSet {
+    configs: ILexerConfig[];
+    keys: Set<string>;
+}
+
+/** A state of the DFA of a lexer mode. */
+export interface ILexerDFAState {
+    configs: ILexerConfig[];
+
+    /** The token type, if this is an accept state, otherwise 0. */
+    tokenType: number;
+
+    /** The indexes of the lexer actions to run, when a token is accepted in this state. */
+    actions: number[];
+
+    /** Maps a symbol class to the next state. */
+    edges: Map<number, number>;
+}
+
+/**
+ * Converts the modes of a lexer ATN to DFAs (by subset construction), for lexers which do not need the ATN simulator
+ * at runtime. The construction follows the rules of `LexerATNSimulator` (rule priority, non-greedy loops, EOF
+ * handling and the collection of lexer actions), so that the DFA accepts the same tokens as the simulator. In fact
+ * it is the DFA the simulator would build for all possible input.
+ *
+ * A mode cannot be converted, if it contains predicates, position dependent (custom) actions or if its DFA grows too
+ * large. Such modes are left to the ATN simulator.
+ *
+ * Input symbols are grouped into classes, which are matched by the same transitions. Class 0 is EOF, class `i > 0`
+ * contains the code points from `classStarts[i - 1]` up to (excluding) `classStarts[i]`.
+ */
+export class LexerDFABuilder {
+    /** The version of the format, which {@link serialize} produces. */
+    public static readonly serializedVersion = 1;
+
+    /** The default limit for the number of DFA states per mode. */
+    public static readonly defaultMaxStates = 10000;
+
+    /** The first code point of each symbol class (except the EOF class). */
+    public readonly classStarts: number[];
+
+    /** The parent and the return state of each call stack, with the empty stack at index 0. */
+    private readonly contexts = [-1, -1];
+    private readonly contextIndexes = new Map<string, number>();
+
+    /** The lists of lexer action indexes collected on the way to a configuration, with the empty list at index 0. */
+    private readonly actionLists: number[][] = [[]];
+    private readonly actionListIndexes = new Map<string, number>([["", 0]]);
+
+    /** Set when a mode contains something the DFA cannot represent. */
+    private unsupported = false;
+
+    public constructor(private readonly atn: ATN, private readonly maxStates = LexerDFABuilder.defaultMaxStates) {
+        const starts = new Set<number>([Lexer.MIN_CHAR_VALUE]);
+        for (const state of atn.states) {
+            for (const transition of state?.transitions ?? []) {
+                if (transition.isEpsilon || !transition.label) {
+                    continue;
+                }
+
+                for (const interval of transition.label) {
+                    if (interval.stop >= Lexer.MIN_CHAR_VALUE) {
+                        starts.add(Math.max(interval.start, Lexer.MIN_CHAR_VALUE));
+                    }
+
+                    if (interval.stop < Lexer.MAX_CHAR_VALUE) {
+                        starts.add(interval.stop + 1);
+                    }
+                }
+            }
+        }
+
+        this.classStarts = Array.from(starts).sort((a, b) => {
+            return a - b;
+        });
+    }
+
+    /**
+     * Builds the DFAs of all modes of a lexer ATN and serializes them.
+     *
+     * @param atn The lexer ATN.
+     * @param maxStates The maximum number of DFA states per mode.
+     *
+     * @returns The serialized DFAs or `undefined`, if no mode could be converted.
+     */
+    public static build(atn: ATN, maxStates = LexerDFABuilder.defaultMaxStates): number[] | undefined {
+        const builder = new LexerDFABuilder(atn, maxStates);
+        const modes = atn.modeToStartState.map((_, mode) => {
+            return builder.buildMode(mode);
+        });
+
+        if (modes.every((states) => {
+            return states === undefined;
+        })) {
+            return undefined;
+        }
+
+        return builder.serialize(modes);
+    }
+
+    /** @returns The number of symbol classes, including the EOF class. */
+    public get classCount(): number {
+        return this.classStarts.length + 1;
+    }
+
+    /**
+     * Converts one mode to a DFA.
+     *
+     * @param mode The mode index.
+     *
+     * @returns The DFA states, with the start state first, or `undefined` if the mode cannot be converted.
+     */
+    public buildMode(mode: number): ILexerDFAState[] | undefined {
+        this.unsupported = false;
+
+        const startState = this.atn.modeToStartState[mode]!;
+        const startConfigs = this.createConfigSet();
+        startState.transitions.forEach((transition, index) => {
+            this.closure({
+                state: transition.target,
+                alt: index + 1,
+                context: 0,
+                actions: 0,
+                passedThroughNonGreedyDecision: false,
+            }, startConfigs, false, false);
+        });
+
+        const states: ILexerDFAState[] = [];
+        const stateIndexes = new Map<string, number>();
+        const addState = (configSet: IConfigSet): number => {
+            const key = Array.from(configSet.keys).join(" ");
+            let index = stateIndexes.get(key);
+            if (index === undefined) {
+                index = states.length;
+                stateIndexes.set(key, index);
+
+                const stop = configSet.configs.find((config) => {
+                    return config.state instanceof RuleStopState;
+                });
+                states.push({
+                    configs: configSet.configs,
+                    tokenType: stop ? this.atn.ruleToTokenType[stop.state.ruleIndex] : 0,
+                    actions: stop ? this.actionLists[stop.actions] : [],
+                    edges: new Map(),
+                });
+            }
+
+            return index;
+        };
+
+        addState(startConfigs);
+        for (let i = 0; i < states.length; ++i) {
+            const state = states[i];
+            for (const symbolClass of this.getCandidateClasses(state.configs)) {
+                const symbol = symbolClass === 0 ? Token.EOF : this.classStarts[symbolClass - 1];
+                const reach = this.computeReach(state.configs, symbol);
+                if (this.unsupported) {
+                    return undefined;
+                }
+
+                if (reach.configs.length > 0) {
+                    state.edges.set(symbolClass, addState(reach));
+                }
+            }
+
+            if (states.length > this.maxStates) {
+                return undefined;
+            }
+        }
+
+        return this.unsupported ? undefined : states;
+    }
+
+    /**
+     * Serializes the DFAs of all modes as a list of integers:
+     *
+     * - the format version, the number of class starts and the class starts
+     * - the number of modes and for each mode the number of DFA states (0 for modes without a DFA), followed by
+     *   the states of the mode
+     * - for each state: the token type (0 if not accepting), the number of lexer actions and the action indexes,
+     *   the number of edges and for each edge the symbol class and the target state
+     *
+     * @param modes The DFA states of each mode.
+     *
+     * @returns The serialized DFAs.
+     */
+    public serialize(modes: Array<ILexerDFAState[] | undefined>): number[] {
+        const data = [LexerDFABuilder.serializedVersion, this.classStarts.length, ...this.classStarts, modes.length];
+        for (const states of modes) {
+            data.push(states?.length ?? 0);
+            for (const state of states ?? []) {
+                data.push(state.tokenType, state.actions.length, ...state.actions, state.edges.size);
+                const symbolClasses = Array.from(state.edges.keys()).sort((a, b) => {
+                    return a - b;
+                });
+
+                for (const symbolClass of symbolClasses) {
+                    data.push(symbolClass, state.edges.get(symbolClass)!);
+                }
+            }
+        }
+
+        return data;
+    }
+
+    /** @returns The class of the given symbol (EOF or code point). */
+    public getClass(symbol: number): number {
+        if (symbol === Token.EOF) {
+            return 0;
+        }
+
+        let low = 0;
+        let high = this.classStarts.length - 1;
+        while (low <= high) {
+            const middle = (low + high) >> 1;
+            if (this.classStarts[middle] > symbol) {
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return high + 1;
+    }
+
+    /** @returns The symbol classes which can lead to another state from the given configurations. */
+    private getCandidateClasses(configs: ILexerConfig[]): number[] {
+        const classes = new Set<number>([0]);
+        for (const config of configs) {
+            for (const transition of config.state.transitions) {
+                if (transition.isEpsilon) {
+                    continue;
+                }
+
+                if (!transition.label || transition instanceof NotSetTransition) {
+                    for (let symbolClass = 1; symbolClass < this.classCount; ++symbolClass) {
+                        classes.add(symbolClass);
+                    }
+
+                    break;
+                }
+
+                for (const interval of transition.label) {
+                    if (interval.stop < Lexer.MIN_CHAR_VALUE) {
+                        continue;
+                    }
+
+                    const last = this.getClass(interval.stop);
+                    for (let symbolClass = this.getClass(Math.max(interval.start, 0)); symbolClass <= last;
+                        ++symbolClass) {
+                        classes.add(symbolClass);
+                    }
+                }
+            }
+        }
+
+        return Array.from(classes).sort((a, b) => {
+            return a - b;
+        });
+    }
+
+    /** Computes the configurations reached by matching the symbol, like `LexerATNSimulator.getReachableConfigSet`. */
+    private computeReach(closure: ILexerConfig[], symbol: number): IConfigSet {
+        const reach = this.createConfigSet();
+
+        // Once an alternative reached an accept state, its configurations after a non-greedy decision are skipped.
+        let skipAlt = 0;
+        for (const config of closure) {
+            const currentAltReachedAcceptState = config.alt === skipAlt;
+            if (currentAltReachedAcceptState && config.passedThroughNonGreedyDecision) {
+                continue;
+            }
+
+            for (const transition of config.state.transitions) {
+                if (transition.matches(symbol, Lexer.MIN_CHAR_VALUE, Lexer.MAX_CHAR_VALUE)) {
+                    const next = this.derive(config, transition.target);
+                    if (this.closure(next, reach, currentAltReachedAcceptState, symbol === Token.EOF)) {
+                        skipAlt = config.alt;
+
+                        break;
+                    }
+                }
+            }
+        }
+
+        return reach;
+    }
+
+    /**
+     * Adds the configurations reachable by epsilon transitions, like `LexerATNSimulator.closure`.
+     *
+     * @returns True if the alternative of the configuration reached an accept state.
+     */
+    private closure(config: ILexerConfig, configs: IConfigSet, currentAltReachedAcceptState: boolean,
+        treatEofAsEpsilon: boolean): boolean {
+        if (config.state instanceof RuleStopState) {
+            if (config.context === 0) {
+                this.addConfig(configs, config);
+
+                return true;
+            }
+
+            // Return from a fragment rule.
+            const returnState = this.atn.states[this.contexts[2 * config.context + 1]]!;
+            const next = this.derive(config, returnState);
+            next.context = this.contexts[2 * config.context];
+
+            return this.closure(next, configs, currentAltReachedAcceptState, treatEofAsEpsilon);
+        }
+
+        if (config.state.transitions.some((transition) => {
+            return !transition.isEpsilon;
+        })) {
+            if (!currentAltReachedAcceptState || !config.passedThroughNonGreedyDecision) {
+                this.addConfig(configs, config);
+            }
+        }
+
+        for (const transition of config.state.transitions) {
+            let next: ILexerConfig | undefined;
+            if (transition instanceof RuleTransition) {
+                next = this.derive(config, transition.target);
+                next.context = this.pushContext(config.context, transition.followState.stateNumber);
+            } else if (transition instanceof PredicateTransition
+                || transition instanceof PrecedencePredicateTransition) {
+                this.unsupported = true;
+            } else if (transition instanceof ActionTransition) {
+                next = this.derive(config, transition.target);
+
+                // Actions are only executed in the token rule itself, not in the fragment rules it calls.
+                if (config.context === 0) {
+                    if (this.atn.lexerActions[transition.actionIndex].isPositionDependent) {
+                        this.unsupported = true;
+                    }
+
+                    next.actions = this.appendAction(config.actions, transition.actionIndex);
+                }
+            } else if (transition instanceof EpsilonTransition) {
+                next = this.derive(config, transition.target);
+            } else if (treatEofAsEpsilon && (transition instanceof AtomTransition
+                || transition instanceof RangeTransition
+                || (transition instanceof SetTransition && !(transition instanceof NotSetTransition)))) {
+                if (transition.matches(Token.EOF, Lexer.MIN_CHAR_VALUE, Lexer.MAX_CHAR_VALUE)) {
+                    next = this.derive(config, transition.target);
+                }
+            }
+
+            if (next) {
+                currentAltReachedAcceptState = this.closure(next, configs, currentAltReachedAcceptState,
+                    treatEofAsEpsilon);
+            }
+        }
+
+        return currentAltReachedAcceptState;
+    }
+
+    /** @returns A copy of the configuration for the given state. */
+    private derive(config: ILexerConfig, state: ATNState): ILexerConfig {
+        return {
+            ...config,
+            state,
+            passedThroughNonGreedyDecision: config.passedThroughNonGreedyDecision
+                || (state instanceof DecisionState && state.nonGreedy),
+        };
+    }
+
+    private createConfigSet(): IConfigSet {
+        return { configs: [], keys: new Set() };
+    }
+
+    private addConfig(configs: IConfigSet, config: ILexerConfig): void {
+        const key = `${config.state.stateNumber}/${config.alt}/${config.context}/${config.actions}/` +
+            `${config.passedThroughNonGreedyDecision ? 1 : 0}`;
+        if (!configs.keys.has(key)) {
+            configs.keys.add(key);
+            configs.configs.push(config);
+        }
+    }
+
+    private pushContext(parent: number, returnState: number): number {
+        const key = `${parent}/${returnState}`;
+        let index = this.contextIndexes.get(key);
+        if (index === undefined) {
+            index = this.contexts.length / 2;
+            this.contexts.push(parent, returnState);
+            this.contextIndexes.set(key, index);
+        }
+
+        return index;
+    }
+
+    private appendAction(list: number, actionIndex: number): number {
+        const actions = [...this.actionLists[list], actionIndex];
+        const key = actions.join(",");
+        let index = this.actionListIndexes.get(key);
+        if (index === undefined) {
+            index = this.actionLists.length;
+            this.actionLists.push(actions);
+            this.actionListIndexes.set(key, index);
+        }
+
+        return index;
+    }
+}
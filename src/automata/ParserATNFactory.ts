@@ -60,12 +60,28 @@ export class ParserATNFactory implements IParserATNFactory, IATNFactory {
 
     protected readonly preventEpsilonOptionalBlocks = new Array<[Rule, ATNState, ATNState]>();
 
+    /**
+     * When set, the ATN builders walk the rule trees in strict mode (see `TreeParser.strict`). A tree which
+     * does not match then ends ATN construction with a single internal error, instead of being reported and skipped.
+     * Set from the `strictWalking` tool parameter.
+     */
+    protected strictWalking: boolean;
+
+    /**
+     * When set, rule blocks are built with `ATNBuilder.walkRuleBlock`, which reads the AST directly and keeps nested
+     * blocks on an explicit work stack. Deeply nested blocks then cannot exhaust the native stack. There is no error
+     * recovery in this mode. Set from the `directAtnWalk` tool parameter.
+     */
+    protected directWalking: boolean;
+
     public constructor(g: IGrammar) {
         this.g = g;
 
         const atnType = g instanceof LexerGrammar ? ATN.LEXER : ATN.PARSER;
         const maxTokenType = g.getMaxTokenType();
         this.atn = new ATN(atnType, maxTokenType);
+        this.strictWalking = g.tool.toolParameters.strictWalking ?? false;
+        this.directWalking = g.tool.toolParameters.directAtnWalk ?? false;
     }
 
     /**
@@ -697,16 +713,19 @@ export class ParserATNFactory implements IParserATNFactory, IATNFactory {
     protected _createATN(rules: Rule[]): void {
         this.createRuleStartAndStopATNStates();
 
-        const adaptor = new GrammarASTAdaptor();
+        // One builder (and node stream) is used for all rules.
+        let b: ATNBuilder | undefined;
         for (const r of rules) {
             // find rule's block
             const blk = r.ast.getFirstChildWithType(ANTLRv4Parser.BLOCK) as GrammarAST;
-            const nodes = new CommonTreeNodeStream(adaptor, blk);
-            const b = new ATNBuilder(nodes, this);
+            if (b) {
+                b.resetTo(blk);
+            } else {
+                b = new ATNBuilder(new CommonTreeNodeStream(new GrammarASTAdaptor(), blk), this);
+                b.strict = this.strictWalking;
+            }
 
-            this.setCurrentRuleName(r.name);
-            const h = b.ruleBlock(null)!;
-            this.rule(r.ast, r.name, h);
+            this.buildRule(b, r, blk);
         }
     }
 
@@ -758,6 +777,39 @@ export class ParserATNFactory implements IParserATNFactory, IATNFactory {
         }
     }
 
+    /**
+     * Builds the states of a single rule.
+     *
+     * @param b The builder to use, which must be set up for the rule block already.
+     * @param r The rule to build.
+     * @param blk The block of the rule.
+     */
+    private buildRule(b: ATNBuilder, r: Rule, blk: GrammarAST): void {
+        const instrumentation = this.g.tool.instrumentation;
+        const stateStart = this.atn.states.length;
+        instrumentation?.enterRule(b.constructor.name, r.name);
+
+        this.setCurrentRuleName(r.name);
+        const h = this.directWalking ? b.walkRuleBlock(blk) : b.ruleBlock(null)!;
+        this.rule(r.ast, r.name, h);
+
+        if (instrumentation) {
+            instrumentation.exitRule(b.constructor.name, r.name, blk);
+
+            // States removed while building are null.
+            let states = 0;
+            let transitions = 0;
+            for (let i = stateStart; i < this.atn.states.length; ++i) {
+                const state = this.atn.states[i];
+                if (state) {
+                    ++states;
+                    transitions += state.transitions.length;
+                }
+            }
+            instrumentation.ruleATNCreated(this.g.name, r.name, states, transitions);
+        }
+    }
+
     static {
         ClassFactory.createParserATNFactory = (g: IGrammar) => {
             return new ParserATNFactory(g);
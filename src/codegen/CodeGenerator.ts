@@ -48,6 +48,18 @@ export class CodeGenerator {
 
     public lineWidth = 72;
 
+    /**
+     * Render each parser rule function as soon as its output model is built (see `OutputModelController`). Set from
+     * the `streamRuleFunctions` tool parameter.
+     */
+    public renderRuleFunctionsEagerly: boolean;
+
+    /**
+     * Parse operator loops of left recursive rules by precedence climbing, where possible. Set from the
+     * `precedenceClimbing` tool parameter.
+     */
+    public precedenceClimbing: boolean;
+
     private target: Target;
 
     static readonly #vocabFilePattern =
@@ -79,6 +91,8 @@ export class CodeGenerator {
             this.language = language!;
         }
 
+        this.renderRuleFunctionsEagerly = this.tool.toolParameters.streamRuleFunctions ?? false;
+        this.precedenceClimbing = this.tool.toolParameters.precedenceClimbing ?? false;
         this.target = new (CodeGenerator.#languageMap.get(this.language)!)(this);
     }
 
@@ -263,6 +277,9 @@ export class CodeGenerator {
     private createController(forceAtn?: boolean): OutputModelController {
         const factory = new ParserFactory(this, forceAtn);
         const controller = new OutputModelController(factory);
+        controller.renderRuleFunctionsEagerly = this.renderRuleFunctionsEagerly;
+        controller.precedenceClimbing = this.precedenceClimbing;
+        controller.strictWalking = this.tool.toolParameters.strictWalking ?? false;
         factory.setController(controller);
 
         return controller;
@@ -6,13 +6,15 @@
 
 /* eslint-disable jsdoc/require-param, jsdoc/require-returns */
 
-import type { IST } from "stringtemplate4ts";
+import { StarLoopEntryState } from "antlr4ng";
+import { AutoIndentWriter, ST, StringWriter, type IST } from "stringtemplate4ts";
 
 import { ANTLRv4Parser } from "../generated/ANTLRv4Parser.js";
 
 import { CommonTreeNodeStream } from "../antlr3/tree/CommonTreeNodeStream.js";
 import { SourceGenTriggers } from "../tree-walkers/SourceGenTriggers.js";
 
+import { PrecedenceClimbingAnalyzer } from "../analysis/PrecedenceClimbingAnalyzer.js";
 import { Utils } from "../misc/Utils.js";
 import { GrammarASTAdaptor } from "../parse/GrammarASTAdaptor.js";
 import { Alternative } from "../tool/Alternative.js";
@@ -27,6 +29,7 @@ import { PredAST } from "../tool/ast/PredAST.js";
 import { CodeGenerator } from "./CodeGenerator.js";
 import { CodeGeneratorExtension } from "./CodeGeneratorExtension.js";
 import { OutputModelFactory } from "./OutputModelFactory.js";
+import { OutputModelWalker } from "./OutputModelWalker.js";
 import { Action } from "./model/Action.js";
 import { AltBlock } from "./model/AltBlock.js";
 import { BaseListenerFile } from "./model/BaseListenerFile.js";
@@ -41,6 +44,7 @@ import { LexerFile } from "./model/LexerFile.js";
 import { ListenerFile } from "./model/ListenerFile.js";
 import { OutputModelObject } from "./model/OutputModelObject.js";
 import { Parser } from "./model/Parser.js";
+import { PrecedenceLoop } from "./model/PrecedenceLoop.js";
 import { ParserFile } from "./model/ParserFile.js";
 import { RuleActionFunction } from "./model/RuleActionFunction.js";
 import { RuleFunction } from "./model/RuleFunction.js";
@@ -77,8 +81,30 @@ export class OutputModelController {
     public currentBlock: CodeBlock;
     public currentOuterMostAlternativeBlock: CodeBlockForOuterMostAlt;
 
+    /**
+     * When set, each parser rule function is rendered as soon as its output model is built. Only the generated text
+     * is kept; the SrcOp tree of the rule and its templates are released. Memory use during code generation is
+     * then bounded by the largest rule, instead of by the output model of the whole grammar.
+     */
+    public renderRuleFunctionsEagerly = false;
+
+    /**
+     * When set, rule trees are walked in strict mode (see `TreeParser.strict`). A tree which does not match then
+     * ends code generation with a single internal error, instead of being reported and skipped.
+     */
+    public strictWalking = false;
+
+    /**
+     * When set, the operator loops of left recursive rules are parsed by precedence climbing where possible (see
+     * `PrecedenceClimbingAnalyzer`), provided the target templates support it.
+     */
+    public precedenceClimbing = false;
+
     private currentOuterMostAlt: Alternative;
 
+    /** The whitespace in front of the rule functions in the parser template (see `findRuleFunctionIndentation`). */
+    private ruleFunctionIndentation = "";
+
     public constructor(factory: OutputModelFactory) {
         this.delegate = factory;
     }
@@ -99,8 +125,10 @@ export class OutputModelController {
         file.parser = this.parser(file);
 
         const g = this.delegate.getGrammar()!;
+        const scope = this.createRuleFunctionScope(file, header);
         for (const r of g.rules.values()) {
             this.buildRuleFunction(file.parser, r);
+            this.releaseRuleFunction(file.parser, header, scope);
         }
 
         return file;
@@ -291,20 +319,43 @@ export class OutputModelController {
             const alt = opAltsCode[i];
             alt.insertOp(0, altAction);
         }
+
+        if (this.precedenceClimbing && codegenTemplates.isDefined("PrecedenceLoop")) {
+            const loopEntry = opAltStarBlock.ast!.atnState as StarLoopEntryState;
+            const table = PrecedenceClimbingAnalyzer.getOperatorTable(this.getGrammar()!.atn!, r, loopEntry);
+            if (table) {
+                // Ops were inserted in front of the loop above, so look it up again.
+                const loopIndex = outerAlt.ops.indexOf(opAltStarBlock);
+                if (loopIndex < 0) {
+                    throw new Error(`The operator loop of rule ${r.name} is not in its outermost alternative`);
+                }
+
+                ruleFunction.operatorAlts = table.operatorAlts;
+                ruleFunction.precedences = table.precedences;
+                outerAlt.ops[loopIndex] = new PrecedenceLoop(this.delegate, opAltStarBlock, opAltsCode, r.name);
+            }
+        }
     }
 
     public buildNormalRuleFunction(r: Rule, ruleFunction: RuleFunction): void {
         const gen = this.delegate.getGenerator()!;
 
         // TRIGGER factory functions for rule alts, elements
-        const adaptor = new GrammarASTAdaptor(r.ast.token?.inputStream ?? undefined);
-
         const blk = r.ast.getFirstChildWithType(ANTLRv4Parser.BLOCK) as GrammarAST;
-        const nodes = new CommonTreeNodeStream(adaptor, blk);
-        this.walker = new SourceGenTriggers(nodes, this);
+        if (this.walker) {
+            // Reuse the walker of the previous rule, with its node stream.
+            this.walker.resetTo(blk);
+        } else {
+            const adaptor = new GrammarASTAdaptor(r.ast.token?.inputStream ?? undefined);
+            this.walker = new SourceGenTriggers(new CommonTreeNodeStream(adaptor, blk), this);
+        }
+        this.walker.strict = this.strictWalking;
 
         // walk AST of rule alts/elements
+        const instrumentation = this.getGrammar()!.tool.instrumentation;
+        instrumentation?.enterRule(this.walker.constructor.name, r.name);
         ruleFunction.code = this.walker.block(null, null)!;
+        instrumentation?.exitRule(this.walker.constructor.name, r.name, blk);
         ruleFunction.hasLookaheadBlock = this.walker.hasLookaheadBlock;
         ruleFunction.ctxType = gen.getTarget().getRuleFunctionContextStructName(ruleFunction);
         ruleFunction.postamble = this.rulePostamble(ruleFunction, r);
@@ -548,4 +599,107 @@ export class OutputModelController {
     public getCodeBlockLevel(): number {
         return this.codeBlockLevel;
     }
+
+    /**
+     * Collects the attributes which templates of a rule function can see when the rule function is rendered as part
+     * of the whole file, i.e. the attributes of the parser file and parser templates.
+     *
+     * @param file The parser file, which contains no rule function yet.
+     * @param header True if the output model is for a header file.
+     *
+     * @returns The attribute values by name, or undefined if rule functions are not rendered eagerly.
+     */
+    private createRuleFunctionScope(file: ParserFile, header: boolean): Map<string, unknown> | undefined {
+        if (!this.renderRuleFunctionsEagerly) {
+            return undefined;
+        }
+
+        const gen = this.delegate.getGenerator()!;
+        const fileST = new OutputModelWalker(gen.tool, gen.getTemplates()).walk(file, header);
+
+        // Attributes of the parser template hide those of the file template with the same name.
+        const scope = new Map<string, unknown>();
+        for (const st of [fileST, fileST.getAttribute("parser") as IST]) {
+            for (const name of st.impl?.formalArguments?.keys() ?? []) {
+                const value = st.getAttribute(name);
+                if (value !== null && value !== undefined) {
+                    scope.set(name, value);
+                }
+            }
+        }
+
+        this.ruleFunctionIndentation = this.findRuleFunctionIndentation(file, header);
+
+        return scope;
+    }
+
+    /**
+     * Renders the given parser file with a marker in place of the rule functions, to find the indentation which the
+     * rule functions get in the file. Rule functions are expected to start on their own line, as in all targets.
+     *
+     * @param file The parser file, which contains no rule function yet.
+     * @param header True if the output model is for a header file.
+     *
+     * @returns The whitespace in front of the rule functions.
+     */
+    private findRuleFunctionIndentation(file: ParserFile, header: boolean): string {
+        const gen = this.delegate.getGenerator()!;
+        const fileST = new OutputModelWalker(gen.tool, gen.getTemplates()).walk(file, header);
+        const marker = "\u0000funcs\u0000";
+        (fileST.getAttribute("parser") as IST).add("funcs", marker);
+
+        const writer = new StringWriter();
+        const indentWriter = new AutoIndentWriter(writer);
+        indentWriter.setLineWidth(gen.lineWidth);
+        fileST.write(indentWriter);
+
+        const text = writer.toString();
+        const index = text.indexOf(marker);
+        if (index < 0) {
+            return "";
+        }
+
+        const line = text.substring(text.lastIndexOf("\n", index) + 1, index);
+
+        return /^\s*/.exec(line)![0];
+    }
+
+    /**
+     * Renders the rule function which was added last to the given parser, if rule functions are to be rendered
+     * eagerly, and releases its output model.
+     *
+     * @param parser The parser which contains the rule function.
+     * @param header True if the output model is for a header file.
+     * @param scope The attributes of the enclosing templates (see `createRuleFunctionScope`).
+     */
+    private releaseRuleFunction(parser: Parser, header: boolean, scope: Map<string, unknown> | undefined): void {
+        if (scope === undefined) {
+            return;
+        }
+
+        const ruleFunction = parser.funcs[parser.funcs.length - 1];
+        const gen = this.delegate.getGenerator()!;
+
+        // Render the function nested in a template with the enclosing attributes, to resolve them like in the file.
+        // It is indented like in the file too, so that lines are wrapped and anchored at the same columns.
+        const st = new ST(this.ruleFunctionIndentation + "<ruleFunction>");
+        for (const [name, value] of scope) {
+            st.add(name, value);
+        }
+        st.add("ruleFunction", new OutputModelWalker(gen.tool, gen.getTemplates()).walk(ruleFunction, header));
+
+        const writer = new StringWriter();
+        const indentWriter = new AutoIndentWriter(writer);
+        indentWriter.setLineWidth(gen.lineWidth);
+        st.write(indentWriter);
+
+        // Remove the indentation again. The file template adds it when it writes the text.
+        const indentation = this.ruleFunctionIndentation;
+        const lines = writer.toString().split("\n").map((line) => {
+            return indentation.length > 0 && line.startsWith(indentation) ? line.substring(indentation.length) : line;
+        });
+        ruleFunction.renderedText = lines.join("\n");
+        ruleFunction.code = [];
+        ruleFunction.postamble = undefined;
+    }
 }
@@ -40,6 +40,13 @@ export class OutputModelWalker {
     }
 
     public walk(omo: OutputModelObject, header: boolean): IST {
+        if (omo.renderedText !== undefined) {
+            const rendered = new ST("<text>");
+            rendered.add("text", omo.renderedText);
+
+            return rendered;
+        }
+
         // CREATE TEMPLATE FOR THIS OUTPUT OBJECT
         let templateName = omo.constructor.name;
         if (header) {
@@ -569,6 +569,14 @@ export abstract class Target {
         return true;
     }
 
+    /**
+     * @returns True if the target can generate a lexer which matches tokens with DFAs built at generation time,
+     *          instead of the lexer ATN simulator (see `LexerDFABuilder`).
+     */
+    public supportsLexerDFA(): boolean {
+        return false;
+    }
+
     public needsHeader(): boolean {
         return false;
     }
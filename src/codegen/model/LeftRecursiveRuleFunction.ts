@@ -14,6 +14,10 @@ import { RuleContextDecl } from "./decl/RuleContextDecl.js";
 import { RuleContextListDecl } from "./decl/RuleContextListDecl.js";
 
 export class LeftRecursiveRuleFunction extends RuleFunction {
+    /** The operator tables of the rule, if its operator loop is parsed by precedence climbing. */
+    public operatorAlts?: number[];
+    public precedences?: number[];
+
     public constructor(factory: OutputModelFactory, r: LeftRecursiveRule) {
         super(factory, r);
 
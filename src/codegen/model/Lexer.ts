@@ -4,6 +4,7 @@
  * can be found in the LICENSE.txt file in the project root.
  */
 
+import { LexerDFABuilder } from "../../automata/LexerDFABuilder.js";
 import { ModelElement } from "../../misc/ModelElement.js";
 import { LexerGrammar } from "../../tool/LexerGrammar.js";
 import { Rule } from "../../tool/Rule.js";
@@ -19,6 +20,9 @@ export class Lexer extends Recognizer {
     public readonly modes: string[];
     public readonly escapedModeNames: string[] = [];
 
+    /** The serialized DFAs of the lexer modes, if the lexer matches tokens without the ATN simulator. */
+    public readonly dfa?: number[];
+
     @ModelElement
     public actionFuncs = new Map<Rule, RuleActionFunction>();
 
@@ -38,5 +42,9 @@ export class Lexer extends Recognizer {
         for (const mode of this.modes) {
             this.escapedModeNames.push(target.escapeIfNeeded(mode));
         }
+
+        if (file.genLexerDFA && target.supportsLexerDFA()) {
+            this.dfa = LexerDFABuilder.build(g.atn!);
+        }
     }
 }
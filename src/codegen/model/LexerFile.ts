@@ -16,6 +16,7 @@ export class LexerFile extends OutputFile {
     public exportMacro?: string; // from -DexportMacro cmd-line
     public genListener: boolean; // from -listener cmd-line
     public genVisitor: boolean; // from -visitor cmd-line
+    public genLexerDFA: boolean; // from --lexer-dfa cmd-line
 
     @ModelElement
     public lexer: Lexer;
@@ -30,5 +31,6 @@ export class LexerFile extends OutputFile {
         this.exportMacro = factory.getGrammar()!.getOptionString("exportMacro");
         this.genListener = toolParameters.generateListener ?? true;
         this.genVisitor = toolParameters.generateVisitor ?? false;
+        this.genLexerDFA = toolParameters.lexerDfa ?? false;
     }
 }
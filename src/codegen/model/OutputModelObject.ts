@@ -14,6 +14,12 @@ export abstract class OutputModelObject {
     public factory?: OutputModelFactory;
     public ast?: IGrammarAST;
 
+    /**
+     * The generated text of this object, if it was rendered already (and its nested model objects were released).
+     * The output model walker then uses this text instead of walking the object.
+     */
+    public renderedText?: string;
+
     public constructor(factory?: OutputModelFactory, ast?: IGrammarAST) {
         this.factory = factory;
         this.ast = ast;
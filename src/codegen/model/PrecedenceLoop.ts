@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { OutputModelFactory } from "../OutputModelFactory.js";
+import { CodeBlockForAlt } from "./CodeBlockForAlt.js";
+import { StarBlock } from "./StarBlock.js";
+
+/**
+ * The operator loop of a left recursive rule, parsed by precedence climbing. Instead of predicting the loop and then
+ * the operator alternative, the alternative is looked up in the operator table of the rule and only its precedence is
+ * checked (see `PrecedenceClimbingAnalyzer`).
+ */
+export class PrecedenceLoop extends StarBlock {
+    /** The name of the rule, which is also the prefix of the names of its operator tables. */
+    public readonly ruleName: string;
+
+    /**
+     * @param factory The output model factory.
+     * @param loop The loop to replace, with the iteration ops of the rule.
+     * @param alts The code blocks of the operator alternatives.
+     * @param ruleName The name of the left recursive rule.
+     */
+    public constructor(factory: OutputModelFactory, loop: StarBlock, alts: CodeBlockForAlt[], ruleName: string) {
+        super(factory, loop.ast!, alts);
+        this.ruleName = ruleName;
+        this.iteration = loop.iteration;
+    }
+}
@@ -45,6 +45,10 @@ export class TypeScriptTarget extends Target {
         return true;
     }
 
+    public override supportsLexerDFA(): boolean {
+        return true;
+    }
+
     protected override get reservedWords(): Set<string> {
         return TypeScriptTarget.reservedWords;
     }
@@ -102,6 +102,8 @@ export class BasicSemanticChecks extends GrammarTreeVisitor {
 
         this.g = g;
         this.ruleCollector = ruleCollector;
+        this.instrumentation = g.tool.instrumentation;
+        this.directWalking = g.tool.toolParameters.directTreeWalk ?? false;
     }
 
     public process(): void {
@@ -33,14 +33,59 @@ export class RuleCollector extends GrammarTreeVisitor {
     public altLabelToRuleName = new Map<string, string>();
     private grammarCaseInsensitive = false;
 
+    /**
+     * Rules whose argument, return value and local declarations still must be parsed. This is done after the walk
+     * (see {@link parseRuleAttributes}), because it can produce errors, which must not be reported when the collector
+     * runs together with other visitors in a single pass (see CompositeGrammarTreeVisitor) and those found problems.
+     */
+    private pendingAttributes = new Array<{
+        rule: Rule;
+        arg: ActionAST | null;
+        returns: ActionAST | null;
+        locals: ActionAST | null;
+        outerAltNumber: number;
+    }>();
+
     public constructor(g: Grammar) {
         super();
 
         this.g = g;
+        this.instrumentation = g.tool.instrumentation;
+        this.directWalking = g.tool.toolParameters.directTreeWalk ?? false;
     }
 
     public process(ast: GrammarRootAST): void {
         this.visitGrammar(ast);
+        this.parseRuleAttributes();
+    }
+
+    /**
+     * Parses the argument, return value and local declarations of all rules found since the last call.
+     * Must be called after the tree walk if the collector was not run via {@link process}.
+     */
+    public parseRuleAttributes(): void {
+        for (const { rule: r, arg, returns, locals, outerAltNumber } of this.pendingAttributes) {
+            if (arg !== null) {
+                r.args = ScopeParser.parseTypedArgList(arg, arg.getText(), this.g);
+                r.args.type = DictType.Argument;
+                r.args.ast = arg;
+                arg.resolver = r.alt[outerAltNumber];
+            }
+
+            if (returns !== null) {
+                r.retvals = ScopeParser.parseTypedArgList(returns, returns.getText(), this.g);
+                r.retvals.type = DictType.Return;
+                r.retvals.ast = returns;
+            }
+
+            if (locals !== null) {
+                r.locals = ScopeParser.parseTypedArgList(locals, locals.getText(), this.g);
+                r.locals.type = DictType.Local;
+                r.locals.ast = locals;
+            }
+        }
+
+        this.pendingAttributes = [];
     }
 
     public override discoverRule(rule: RuleAST, id: GrammarAST, modifiers: GrammarAST[], arg: ActionAST | null,
@@ -55,23 +100,10 @@ export class RuleCollector extends GrammarTreeVisitor {
         }
         this.nameToRuleMap.set(r.name, r);
 
-        if (arg !== null) {
-            r.args = ScopeParser.parseTypedArgList(arg, arg.getText(), this.g);
-            r.args.type = DictType.Argument;
-            r.args.ast = arg;
-            arg.resolver = r.alt[this.currentOuterAltNumber];
-        }
-
-        if (returns !== null) {
-            r.retvals = ScopeParser.parseTypedArgList(returns, returns.getText(), this.g);
-            r.retvals.type = DictType.Return;
-            r.retvals.ast = returns;
-        }
-
-        if (locals !== null) {
-            r.locals = ScopeParser.parseTypedArgList(locals, locals.getText(), this.g);
-            r.locals.type = DictType.Local;
-            r.locals.ast = locals;
+        if (arg !== null || returns !== null || locals !== null) {
+            this.pendingAttributes.push({
+                rule: r, arg, returns, locals, outerAltNumber: this.currentOuterAltNumber
+            });
         }
 
         for (const a of actions) {
@@ -50,13 +50,23 @@ import { UseDefAnalyzer } from "./UseDefAnalyzer.js";
  *  tokens and rules from the imported grammars into a single collection.
  */
 export class SemanticPipeline {
-    public constructor(private g: Grammar) {
+    /**
+     * @param g The grammar to process.
+     * @param ruleCollector An optional rule collector, which already walked the grammar AST (e.g. as part of a
+     *                      combined pass with other visitors). If not given, a new collector is run here.
+     */
+    public constructor(private g: Grammar, private ruleCollector?: RuleCollector) {
     }
 
     public process(): void {
         // COLLECT RULE OBJECTS
-        const ruleCollector = new RuleCollector(this.g);
-        ruleCollector.process(this.g.ast);
+        let ruleCollector = this.ruleCollector;
+        if (ruleCollector) {
+            ruleCollector.parseRuleAttributes();
+        } else {
+            ruleCollector = new RuleCollector(this.g);
+            ruleCollector.process(this.g.ast);
+        }
 
         // DO BASIC / EASY SEMANTIC CHECKS
         let prevErrors = this.g.tool.errorManager.errors;
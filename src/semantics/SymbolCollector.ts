@@ -48,6 +48,8 @@ export class SymbolCollector extends GrammarTreeVisitor {
         super();
 
         this.g = g;
+        this.instrumentation = g.tool.instrumentation;
+        this.directWalking = g.tool.toolParameters.directTreeWalk ?? false;
     }
 
     public process(ast: GrammarAST): void {
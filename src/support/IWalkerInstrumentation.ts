@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import type { GrammarAST } from "../tool/ast/GrammarAST.js";
+
+/**
+ * Receives the work of the tree walking phases per grammar rule. Set it on the tool (see `Tool.instrumentation`) to
+ * find out which rules of a grammar take most of the processing time.
+ *
+ * A phase is named after the class of the walker doing the work (e.g. `RuleCollector`, `BlockSetTransformer`,
+ * `ATNBuilder`, `LeftRecursiveRuleAnalyzer` or `SourceGenTriggers`). Calls for one phase and rule always come in
+ * pairs, unless the walk of a rule is aborted by an error. Phases can be nested (e.g. the walkers which run again for
+ * a rewritten left recursive rule).
+ */
+export interface IWalkerInstrumentation {
+    /**
+     * Called when a phase starts walking a whole grammar, before the calls for the rules of the grammar.
+     *
+     * @param phase The name of the phase.
+     * @param grammarName The name of the grammar.
+     */
+    enterGrammar(phase: string, grammarName: string): void;
+
+    /**
+     * Called when a phase is done with a whole grammar.
+     *
+     * @param phase The name of the phase.
+     * @param grammarName The name of the grammar.
+     * @param tree The tree of the grammar.
+     */
+    exitGrammar(phase: string, grammarName: string, tree: GrammarAST): void;
+
+    /**
+     * Called when a phase starts with a grammar rule.
+     *
+     * @param phase The name of the phase.
+     * @param ruleName The name of the grammar rule.
+     */
+    enterRule(phase: string, ruleName: string): void;
+
+    /**
+     * Called when a phase is done with a grammar rule.
+     *
+     * @param phase The name of the phase.
+     * @param ruleName The name of the grammar rule.
+     * @param tree The (sub) tree of the rule which was walked.
+     */
+    exitRule(phase: string, ruleName: string, tree: GrammarAST): void;
+
+    /**
+     * Called by the ATN factory after it built the states of a grammar rule.
+     *
+     * @param grammarName The name of the grammar.
+     * @param ruleName The name of the grammar rule.
+     * @param states The number of states created for the rule (without its start and stop state).
+     * @param transitions The number of transitions of these states.
+     */
+    ruleATNCreated(grammarName: string, ruleName: string, states: number, transitions: number): void;
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import type { GrammarAST } from "../tool/ast/GrammarAST.js";
+import type { Grammar } from "../tool/Grammar.js";
+import type { IWalkerInstrumentation } from "./IWalkerInstrumentation.js";
+
+/** The collected values of a phase or a rule in a phase. */
+export interface IWalkerProfile {
+    /** The number of times the rule was walked (for a phase: the number of rules walked). */
+    count: number;
+
+    /** The wall time in milliseconds. */
+    time: number;
+
+    /**
+     * The growth of the used heap. This is an approximation, because garbage collection can run in between. For a
+     * phase it is measured over its walks of whole grammars, for a rule only if rule sampling is enabled (see
+     * {@link WalkerProfiler.constructor}).
+     */
+    allocatedBytes: number;
+
+    /** The number of tree nodes walked. */
+    nodes: number;
+}
+
+/** The ATN created for a rule. */
+export interface IRuleATNProfile {
+    states: number;
+    transitions: number;
+}
+
+/**
+ * The profile of all phases, as exported by {@link WalkerProfiler.toJSON}. Rules are keyed by the grammar name and
+ * the rule name, separated by a dot (e.g. `PLexer.A`), because a tool run can process several grammars.
+ */
+export interface IWalkerProfileReport {
+    phases: Record<string, IWalkerProfile & { rules: Record<string, IWalkerProfile>; }>;
+    atn: Record<string, IRuleATNProfile>;
+}
+
+/** An entered, but not yet exited rule or grammar (with an empty rule name). */
+interface IOpenRule {
+    phase: string;
+    ruleName: string;
+    start: number;
+    heapUsed: number;
+}
+
+/** Collects wall time, heap growth and node counts per phase and grammar rule, and the ATN size per rule. */
+export class WalkerProfiler implements IWalkerInstrumentation {
+    readonly #phases = new Map<string, Map<string, IWalkerProfile>>();
+    readonly #atn = new Map<string, IRuleATNProfile>();
+    readonly #open: IOpenRule[] = [];
+
+    /**
+     * The node counts of the trees reported so far. A tree is not changed anymore after a phase reported it (the
+     * transformers report a rule after they changed it), so each tree is counted only once.
+     */
+    readonly #nodeCounts = new WeakMap<GrammarAST, number>();
+
+    /** The heap growth per phase, over the walks of whole grammars. */
+    readonly #phaseHeap = new Map<string, number>();
+    readonly #openGrammars: IOpenRule[] = [];
+
+    /**
+     * @param sampleRuleHeap When set, the used heap is also read before and after each rule, which is about as
+     *                       expensive as the walk of a small rule. Otherwise only the heap growth of phases is
+     *                       measured.
+     */
+    public constructor(private readonly sampleRuleHeap = false) {
+    }
+
+    /** @returns The number of nodes in the given tree. */
+    public static countNodes(tree: GrammarAST): number {
+        let count = 0;
+        const pending = [tree];
+        while (pending.length > 0) {
+            const node = pending.pop()!;
+            ++count;
+            for (let i = 0; i < node.getChildCount(); ++i) {
+                pending.push(node.getChild(i) as GrammarAST);
+            }
+        }
+
+        return count;
+    }
+
+    public enterGrammar(phase: string, grammarName: string): void {
+        // The other totals of a phase are summed from its rules.
+        this.#openGrammars.push({ phase, ruleName: "", start: 0, heapUsed: process.memoryUsage().heapUsed });
+    }
+
+    public exitGrammar(phase: string, grammarName: string, tree: GrammarAST): void {
+        const heapUsed = process.memoryUsage().heapUsed;
+        const open = WalkerProfiler.popOpen(this.#openGrammars, phase, "");
+        if (open) {
+            const growth = Math.max(0, heapUsed - open.heapUsed);
+            this.#phaseHeap.set(phase, (this.#phaseHeap.get(phase) ?? 0) + growth);
+        }
+    }
+
+    public enterRule(phase: string, ruleName: string): void {
+        const heapUsed = this.sampleRuleHeap ? process.memoryUsage().heapUsed : 0;
+        this.#open.push({ phase, ruleName, start: performance.now(), heapUsed });
+    }
+
+    public exitRule(phase: string, ruleName: string, tree: GrammarAST): void {
+        const time = performance.now();
+        const heapUsed = this.sampleRuleHeap ? process.memoryUsage().heapUsed : 0;
+        const open = WalkerProfiler.popOpen(this.#open, phase, ruleName);
+        if (!open) {
+            return;
+        }
+
+        let rules = this.#phases.get(phase);
+        if (!rules) {
+            rules = new Map<string, IWalkerProfile>();
+            this.#phases.set(phase, rules);
+        }
+
+        // Hand made trees have no grammar.
+        const grammar = tree.g as Grammar | undefined;
+        const key = WalkerProfiler.ruleKey(grammar?.name ?? "", ruleName);
+        let profile = rules.get(key);
+        if (!profile) {
+            profile = { count: 0, time: 0, allocatedBytes: 0, nodes: 0 };
+            rules.set(key, profile);
+        }
+
+        let nodes = this.#nodeCounts.get(tree);
+        if (nodes === undefined) {
+            nodes = WalkerProfiler.countNodes(tree);
+            this.#nodeCounts.set(tree, nodes);
+        }
+
+        ++profile.count;
+        profile.time += time - open.start;
+        profile.allocatedBytes += Math.max(0, heapUsed - open.heapUsed);
+        profile.nodes += nodes;
+    }
+
+    public ruleATNCreated(grammarName: string, ruleName: string, states: number, transitions: number): void {
+        const key = WalkerProfiler.ruleKey(grammarName, ruleName);
+        const profile = this.#atn.get(key) ?? { states: 0, transitions: 0 };
+        profile.states += states;
+        profile.transitions += transitions;
+        this.#atn.set(key, profile);
+    }
+
+    /** @returns The collected values, with the totals per phase. Use `JSON.stringify(profiler)` to export them. */
+    public toJSON(): IWalkerProfileReport {
+        const report: IWalkerProfileReport = { phases: {}, atn: Object.fromEntries(this.#atn) };
+        for (const [phase, rules] of this.#phases) {
+            const total = { count: 0, time: 0, allocatedBytes: 0, nodes: 0, rules: Object.fromEntries(rules) };
+            for (const profile of rules.values()) {
+                total.count += profile.count;
+                total.time += profile.time;
+                total.allocatedBytes += profile.allocatedBytes;
+                total.nodes += profile.nodes;
+            }
+
+            // Phases which are only run per rule use the sum of their rules (zero, unless rule sampling is enabled).
+            total.allocatedBytes = this.#phaseHeap.get(phase) ?? total.allocatedBytes;
+            report.phases[phase] = total;
+        }
+
+        return report;
+    }
+
+    /** @returns The key of a rule in the report. */
+    private static ruleKey(grammarName: string, ruleName: string): string {
+        return grammarName.length > 0 ? `${grammarName}.${ruleName}` : ruleName;
+    }
+
+    /** @returns The innermost open entry for the given phase and rule, after removing those of aborted walks. */
+    private static popOpen(open: IOpenRule[], phase: string, ruleName: string): IOpenRule | undefined {
+        let entry: IOpenRule | undefined;
+        do {
+            entry = open.pop();
+        } while (entry && (entry.phase !== phase || entry.ruleName !== ruleName));
+
+        return entry;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { performance } from "node:perf_hooks";
+
+import type { Grammar } from "../tool/Grammar.js";
+import type { GrammarAST } from "../tool/ast/GrammarAST.js";
+import type { IWalkerInstrumentation } from "./IWalkerInstrumentation.js";
+import { WalkerProfiler } from "./WalkerProfiler.js";
+
+/** The details of a walker measure. */
+export interface IWalkerMeasureDetail {
+    grammar: string;
+
+    /** The rule name or an empty string for the walk of a whole grammar. */
+    rule: string;
+
+    /** The number of tree nodes walked. */
+    nodes: number;
+}
+
+/** A started, but not yet finished walk. */
+interface IOpenWalk {
+    phase: string;
+    name: string;
+    start: number;
+}
+
+/**
+ * Emits the work of the tree walkers as user timing measures (see `node:perf_hooks`): one for each walk of a whole
+ * grammar (e.g. each semantic check) and one for each grammar rule in a phase. The measures are named after their
+ * phase, with the prefix {@link WalkerTimeline.prefix}. Their start time and duration are those of the walk and their
+ * detail is an {@link IWalkerMeasureDetail}.
+ *
+ * The measures can be received with a `PerformanceObserver`, together with `gc` entries, or recorded by running node
+ * with `--trace-event-categories node.perf.usertiming,v8`, which puts them into one trace with garbage collection and
+ * compilation events. They are removed from the performance timeline once they are created, so that it doesn't grow
+ * in a long running process.
+ */
+export class WalkerTimeline implements IWalkerInstrumentation {
+    public static readonly prefix = "antlr-ng:";
+
+    readonly #open: IOpenWalk[] = [];
+
+    public enterGrammar(phase: string, grammarName: string): void {
+        this.#open.push({ phase, name: "", start: performance.now() });
+    }
+
+    public exitGrammar(phase: string, grammarName: string, tree: GrammarAST): void {
+        this.measure(phase, "", { grammar: grammarName, rule: "", nodes: WalkerProfiler.countNodes(tree) });
+    }
+
+    public enterRule(phase: string, ruleName: string): void {
+        this.#open.push({ phase, name: ruleName, start: performance.now() });
+    }
+
+    public exitRule(phase: string, ruleName: string, tree: GrammarAST): void {
+        // Hand made trees have no grammar.
+        const grammar = tree.g as Grammar | undefined;
+        this.measure(phase, ruleName, {
+            grammar: grammar?.name ?? "",
+            rule: ruleName,
+            nodes: WalkerProfiler.countNodes(tree),
+        });
+    }
+
+    public ruleATNCreated(grammarName: string, ruleName: string, states: number, transitions: number): void {
+        // Not part of the timeline.
+    }
+
+    private measure(phase: string, name: string, detail: IWalkerMeasureDetail): void {
+        const end = performance.now();
+
+        // Skip walks which were aborted.
+        let open: IOpenWalk | undefined;
+        do {
+            open = this.#open.pop();
+        } while (open && (open.phase !== phase || open.name !== name));
+
+        if (!open) {
+            return;
+        }
+
+        const measureName = WalkerTimeline.prefix + phase;
+        performance.measure(measureName, { start: open.start, end, detail });
+        performance.clearMeasures(measureName);
+    }
+}
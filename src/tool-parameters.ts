@@ -27,6 +27,18 @@ export interface IToolParameters {
     forceAtn?: boolean,
     log?: boolean,
     exactOutputDir?: boolean,
+    leftRecursionCache?: string,
+    walkerProfile?: string,
+    walkerProfileRuleHeap?: boolean,
+    walkerTimeline?: boolean,
+    shareFragments?: boolean,
+    minimizeLexerAtn?: boolean,
+    lexerDfa?: boolean,
+    streamRuleFunctions?: boolean,
+    strictWalking?: boolean,
+    precedenceClimbing?: boolean,
+    directAtnWalk?: boolean,
+    directTreeWalk?: boolean,
 }
 
 export const antlrVersion = "0.4.0"; //packageJson.default.version;
@@ -79,6 +91,29 @@ export const parseToolParameters = (args: string[]): IToolParameters => {
         .option<boolean>("--log [boolean]", "Dump lots of logging info to antlrng-timestamp.log.", parseBoolean, false)
         .option<boolean>("--exact-output-dir [boolean]", "All output goes into -o dir regardless of paths/package",
             parseBoolean, false)
+        .option("--left-recursion-cache <path>", "Cache rewritten left-recursive rules in this directory.")
+        .option("--walker-profile <file>", "Write the time and memory used per phase and grammar rule to this " +
+            "JSON file.")
+        .option<boolean>("--walker-profile-rule-heap [boolean]", "Also measure the memory used per grammar rule with " +
+            "--walker-profile, which slows down the processing.", parseBoolean, false)
+        .option<boolean>("--walker-timeline [boolean]", "Emit a performance measure for each walk of a grammar or " +
+            "grammar rule (ignored with --walker-profile).", parseBoolean, false)
+        .option<boolean>("--share-fragments [boolean]", "Let structurally identical lexer fragment rules share " +
+            "one sub-ATN, for a smaller serialized ATN.", parseBoolean, false)
+        .option<boolean>("--minimize-lexer-atn [boolean]", "Remove redundant epsilon and basic states from lexer " +
+            "ATNs, for fewer closure steps in the generated lexer.", parseBoolean, false)
+        .option<boolean>("--lexer-dfa [boolean]", "Convert the lexer modes to DFAs at generation time and generate a " +
+            "table driven lexer (only supported by some targets).", parseBoolean, false)
+        .option<boolean>("--stream-rule-functions [boolean]", "Render each parser rule function as soon as it is " +
+            "built and release its output model, to limit memory use during code generation.", parseBoolean, false)
+        .option<boolean>("--strict-walking [boolean]", "Stop ATN construction and code generation with an internal " +
+            "error at the first unexpected grammar tree node, instead of recovering.", parseBoolean, false)
+        .option<boolean>("--precedence-climbing [boolean]", "Parse the operator loops of left recursive rules by " +
+            "precedence climbing where possible (only supported by some targets).", parseBoolean, false)
+        .option<boolean>("--direct-atn-walk [boolean]", "Build the rule ATNs by walking the rule trees directly, " +
+            "with an explicit stack for nested blocks instead of recursion.", parseBoolean, false)
+        .option<boolean>("--direct-tree-walk [boolean]", "Run the semantic checks by walking the grammar trees " +
+            "directly, instead of through a tree node stream.", parseBoolean, false)
         .argument("<grammar...>", "A list of grammar files.")
         .version(`ANTLRng ${antlrVersion}`);
 
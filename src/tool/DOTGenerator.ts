@@ -25,7 +25,8 @@ export class DOTGenerator {
     /** Library of output templates; use {@code <attrname>} format. */
     private static readonly templateUrl = new URL("../../templates/dot/graphs.stg", import.meta.url);
 
-    private static readonly stLib = new STGroupFile(this.templateUrl.pathname);
+    /** Loaded on first use, so that tool runs which generate no DOT output do not pay for it. */
+    private static stLib?: STGroupFile;
 
     protected arrowhead = "normal";
     protected rankdir = "LR";
@@ -37,6 +38,12 @@ export class DOTGenerator {
         this.grammar = grammar;
     }
 
+    private static getTemplates(): STGroupFile {
+        DOTGenerator.stLib ??= new STGroupFile(DOTGenerator.templateUrl.pathname);
+
+        return DOTGenerator.stLib;
+    }
+
     /**
      * @returns a String containing a DOT description that, when displayed, will show the incoming state machine
      * visually.  All nodes reachable from startState will be included.
@@ -46,7 +53,7 @@ export class DOTGenerator {
 
         // The output DOT graph for visualization
         const markedStates = new Set<ATNState>();
-        const dot = DOTGenerator.stLib.getInstanceOf("atn");
+        const dot = DOTGenerator.getTemplates().getInstanceOf("atn");
         if (!dot) {
             throw new Error("no such template: atn");
         }
@@ -80,7 +87,7 @@ export class DOTGenerator {
                     const rr = (edge);
 
                     // don't jump to other rules, but display edge to follow node
-                    edgeST = DOTGenerator.stLib.getInstanceOf("edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("edge");
                     if (!edgeST) {
                         throw new Error("no such template: edge");
                     }
@@ -101,21 +108,21 @@ export class DOTGenerator {
                 }
 
                 if (edge instanceof ActionTransition) {
-                    edgeST = DOTGenerator.stLib.getInstanceOf("action-edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("action-edge");
                     if (!edgeST) {
                         throw new Error("no such template: action-edge");
                     }
 
                     edgeST.add("label", this.getEdgeLabel(edge.toString()));
                 } else if (edge instanceof AbstractPredicateTransition) {
-                    edgeST = DOTGenerator.stLib.getInstanceOf("edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("edge");
                     if (!edgeST) {
                         throw new Error("no such template: edge");
                     }
 
                     edgeST.add("label", this.getEdgeLabel(String(edge)));
                 } else if (edge.isEpsilon) {
-                    edgeST = DOTGenerator.stLib.getInstanceOf("epsilon-edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("epsilon-edge");
                     if (!edgeST) {
                         throw new Error("no such template: epsilon-edge");
                     }
@@ -132,7 +139,7 @@ export class DOTGenerator {
 
                     edgeST.add("loopback", loopback);
                 } else if (edge instanceof AtomTransition) {
-                    edgeST = DOTGenerator.stLib.getInstanceOf("edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("edge");
                     if (!edgeST) {
                         throw new Error("no such template: edge");
                     }
@@ -146,7 +153,7 @@ export class DOTGenerator {
 
                     edgeST.add("label", this.getEdgeLabel(label));
                 } else if (edge instanceof SetTransition) {
-                    edgeST = DOTGenerator.stLib.getInstanceOf("edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("edge");
                     if (!edgeST) {
                         throw new Error("no such template: edge");
                     }
@@ -164,7 +171,7 @@ export class DOTGenerator {
 
                     edgeST.add("label", this.getEdgeLabel(label));
                 } else if (edge instanceof RangeTransition) {
-                    edgeST = DOTGenerator.stLib.getInstanceOf("edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("edge");
                     if (!edgeST) {
                         throw new Error("no such template: edge");
                     }
@@ -178,7 +185,7 @@ export class DOTGenerator {
 
                     edgeST.add("label", this.getEdgeLabel(label));
                 } else {
-                    edgeST = DOTGenerator.stLib.getInstanceOf("edge");
+                    edgeST = DOTGenerator.getTemplates().getInstanceOf("edge");
                     if (!edgeST) {
                         throw new Error("no such template: edge");
                     }
@@ -205,7 +212,7 @@ export class DOTGenerator {
                 continue;
             }
 
-            const st = DOTGenerator.stLib.getInstanceOf("stopstate");
+            const st = DOTGenerator.getTemplates().getInstanceOf("stopstate");
             if (!st) {
                 throw new Error("no such template: stopstate");
             }
@@ -220,7 +227,7 @@ export class DOTGenerator {
                 continue;
             }
 
-            const st = DOTGenerator.stLib.getInstanceOf("state");
+            const st = DOTGenerator.getTemplates().getInstanceOf("state");
             if (!st) {
                 throw new Error("no such template: state");
             }
@@ -239,7 +246,7 @@ export class DOTGenerator {
             return "";
         }
 
-        const dot = DOTGenerator.stLib.getInstanceOf("dfa");
+        const dot = DOTGenerator.getTemplates().getInstanceOf("dfa");
         if (!dot) {
             throw new Error("no such template: dfa");
         }
@@ -254,7 +261,7 @@ export class DOTGenerator {
                 continue;
             }
 
-            const st = DOTGenerator.stLib.getInstanceOf("stopstate");
+            const st = DOTGenerator.getTemplates().getInstanceOf("stopstate");
             if (!st) {
                 throw new Error("no such template: stopstate");
             }
@@ -273,7 +280,7 @@ export class DOTGenerator {
                 continue;
             }
 
-            const st = DOTGenerator.stLib.getInstanceOf("state");
+            const st = DOTGenerator.getTemplates().getInstanceOf("state");
             if (!st) {
                 throw new Error("no such template: state");
             }
@@ -298,7 +305,7 @@ export class DOTGenerator {
                     label = this.grammar.getTokenDisplayName(ttype)!;
                 }
 
-                const st = DOTGenerator.stLib.getInstanceOf("edge");
+                const st = DOTGenerator.getTemplates().getInstanceOf("edge");
                 if (!st) {
                     throw new Error("no such template: edge");
                 }
@@ -19,6 +19,7 @@ import { Tool } from "../Tool.js";
 import { GrammarASTAdaptor } from "../parse/GrammarASTAdaptor.js";
 import { GrammarToken } from "../parse/GrammarToken.js";
 import { GrammarType } from "../support/GrammarType.js";
+import { MurmurHash } from "../support/MurmurHash.js";
 import { isTokenName } from "../support/helpers.js";
 import type { CommonTree } from "../tree/CommonTree.js";
 import { ErrorType } from "./ErrorType.js";
@@ -35,6 +36,12 @@ import { TerminalAST } from "./ast/TerminalAST.js";
 export class GrammarTransformPipeline {
     public g: Grammar;
 
+    // The transformer used for all rules given to reduceChangedBlocksToSets.
+    #ruleTransformer?: BlockSetTransformer;
+
+    // The content hash of each rule folded by reduceChangedBlocksToSets (by rule name), taken after folding.
+    readonly #foldedRuleHashes = new Map<string, number>();
+
     public constructor(g: Grammar, private tool: Tool) {
         this.g = g;
     }
@@ -85,6 +92,26 @@ export class GrammarTransformPipeline {
         }
     }
 
+    /** @returns a hash over the types, texts and structure of all nodes in the given tree. */
+    private static hashTree(root: GrammarAST): number {
+        let hash = MurmurHash.initialize();
+        let count = 0;
+        const pending: GrammarAST[] = [root];
+        while (pending.length > 0) {
+            const node = pending.pop()!;
+            hash = MurmurHash.update(hash, node.getType());
+            hash = MurmurHash.update(hash, node.getText());
+            hash = MurmurHash.update(hash, node.getChildCount());
+            count += 3;
+
+            for (let i = node.getChildCount() - 1; i >= 0; --i) {
+                pending.push(node.getChild(i) as GrammarAST);
+            }
+        }
+
+        return MurmurHash.finish(hash, count);
+    }
+
     public process(): void {
         const grammarRoot = this.g.ast;
 
@@ -101,7 +128,49 @@ export class GrammarTransformPipeline {
         const adaptor = new GrammarASTAdaptor();
         const transformer = new BlockSetTransformer(nodes, this.g);
         transformer.setTreeAdaptor(adaptor);
+
+        // The transformer reports the rules it walks.
+        const instrumentation = this.tool.instrumentation;
+        transformer.instrumentation = instrumentation;
+        const grammarRoot = root instanceof GrammarRootAST ? root : undefined;
+        if (grammarRoot) {
+            instrumentation?.enterGrammar(transformer.constructor.name, this.g.name);
+        }
+
         transformer.downUp(root);
+
+        if (grammarRoot) {
+            instrumentation?.exitGrammar(transformer.constructor.name, this.g.name, grammarRoot);
+        }
+    }
+
+    /**
+     * Reduces blocks to sets, like {@link reduceBlocksToSets}, but only in the given rules. This is meant for rules
+     * which were added or replaced after the grammar was transformed, e.g. rewritten left recursive rules or the
+     * edited rules of a grammar tree which a tool keeps between runs. All calls on this pipeline share one transformer.
+     *
+     * A rule whose content hash is the same as after this pipeline folded it the last time is skipped, so all rules
+     * of a grammar can be passed in after an edit and only the changed ones are walked.
+     *
+     * @param rules The RULE nodes to fold.
+     */
+    public reduceChangedBlocksToSets(rules: Iterable<GrammarAST>): void {
+        for (const rule of rules) {
+            const name = rule.getChild(0)?.getText() ?? "";
+            if (this.#foldedRuleHashes.get(name) === GrammarTransformPipeline.hashTree(rule)) {
+                continue;
+            }
+
+            if (!this.#ruleTransformer) {
+                this.#ruleTransformer = new BlockSetTransformer(new CommonTreeNodeStream(new GrammarASTAdaptor(),
+                    rule), this.g);
+                this.#ruleTransformer.setTreeAdaptor(new GrammarASTAdaptor());
+                this.#ruleTransformer.instrumentation = this.tool.instrumentation;
+            }
+
+            this.#ruleTransformer.downUp(rule);
+            this.#foldedRuleHashes.set(name, GrammarTransformPipeline.hashTree(rule));
+        }
     }
 
     public expandParameterizedLoop(t: GrammarAST): GrammarAST {
@@ -17,7 +17,6 @@ import { MismatchedSetException } from "../antlr3/MismatchedSetException.js";
 import { NoViableAltException } from "../antlr3/NoViableAltException.js";
 import type { TreeNodeStream } from "../antlr3/tree/TreeNodeStream.js";
 import { TreeParser } from "../antlr3/tree/TreeParser.js";
-import { TreeRuleReturnScope } from "../antlr3/tree/TreeRuleReturnScope.js";
 import type { IATNFactory, IStatePair } from "../automata/IATNFactory.js";
 import { Constants } from "../Constants1.js";
 import { ANTLRv4Lexer } from "../generated/ANTLRv4Lexer.js";
@@ -44,43 +43,18 @@ export class ATNBuilder extends TreeParser {
         "RULE", "RULEMODIFIERS", "RULES", "SET", "WILDCARD"
     ];
 
-    public static lexerCommandExpr_return = class lexerCommandExpr_return extends TreeRuleReturnScope {
-    };
-
-    // $ANTLR end "lexerCommandExpr"
-
-    public static element_return = class element_return extends TreeRuleReturnScope {
-        public p: IStatePair;
-    };
-
-    // $ANTLR end "labeledElement"
-
-    public static subrule_return = class subrule_return extends TreeRuleReturnScope {
-        public p: IStatePair;
-    };
-
-    // $ANTLR end "subrule"
-
-    public static blockSet_return = class blockSet_return extends TreeRuleReturnScope {
-        public p: IStatePair;
-    };
-
-    // $ANTLR end "blockSet"
-
-    public static setElement_return = class setElement_return extends TreeRuleReturnScope {
-    };
-
-    // $ANTLR end "setElement"
-
-    public static atom_return = class atom_return extends TreeRuleReturnScope {
-        public p: IStatePair;
-    };
+    protected factory?: IATNFactory;
 
-    public static terminal_return = class terminal_return extends TreeRuleReturnScope {
-        public p: IStatePair;
-    };
+    // The work stack of the direct walk (see walkRuleBlock), as parallel arrays which are reused for all rules. For
+    // each node whose children are still being built: the node, the EBNF root of a block (if there is one), the index
+    // of the next child to build and the index of the first fragment of its children in walkFragments.
+    private readonly walkNodes: GrammarAST[] = [];
+    private readonly walkEbnfRoots: Array<GrammarAST | null> = [];
+    private readonly walkNextChild: number[] = [];
+    private readonly walkFirstFragment: number[] = [];
 
-    protected factory?: IATNFactory;
+    /** The ATN fragments built so far for the children of the nodes on the work stack. */
+    private readonly walkFragments: IStatePair[] = [];
 
     public constructor(input: TreeNodeStream, stateOrFactory?: IRecognizerSharedState | IATNFactory) {
         if (!stateOrFactory) {
@@ -108,6 +82,51 @@ export class ATNBuilder extends TreeParser {
         return "org/antlr/v4/parse/ATNBuilder.g";
     }
 
+    /**
+     * Builds the ATN for a rule block like {@link ruleBlock}, but reads the children of the AST nodes directly,
+     * instead of matching them in the node stream. Nested blocks and alternatives are kept on an explicit work stack,
+     * so the native stack depth does not depend on how deeply blocks are nested. The factory methods are called in
+     * the same order as with the stream based rules. There is no error recovery, so the tree must be well formed.
+     *
+     * @param t The BLOCK node of a rule.
+     *
+     * @returns The start and end state of the rule block.
+     */
+    public walkRuleBlock(t: GrammarAST): IStatePair {
+        // Drop what is left over from a walk which ended with an exception.
+        this.walkNodes.length = 0;
+        this.walkEbnfRoots.length = 0;
+        this.walkNextChild.length = 0;
+        this.walkFirstFragment.length = 0;
+        this.walkFragments.length = 0;
+
+        let alt = 1;
+        this.factory!.setCurrentOuterAlt(alt);
+
+        this.pushNode(t, null, 0);
+        while (true) {
+            const top = this.walkNodes.length - 1;
+            const node = this.walkNodes[top];
+            const next = this.walkNextChild[top];
+            if (next < node.getChildCount()) {
+                this.walkNextChild[top] = next + 1;
+                this.walkChild(node, next, node.getChild(next) as GrammarAST);
+
+                continue;
+            }
+
+            const p = this.finishNode();
+            if (this.walkNodes.length === 0) {
+                return p;
+            }
+
+            this.walkFragments.push(p);
+            if (this.walkNodes.length === 1) {
+                this.factory!.setCurrentOuterAlt(++alt);
+            }
+        }
+    }
+
     // $ANTLR start "dummy"
     // org/antlr/v4/parse/ATNBuilder.g:80:1: dummy : block[null] ;
     public dummy(): void {
@@ -482,7 +501,7 @@ export class ATNBuilder extends TreeParser {
                                     {
                                         const e = this.element();
 
-                                        els.push(e.p);
+                                        els.push(e!);
                                     }
                                     break;
                                 }
@@ -622,7 +641,7 @@ export class ATNBuilder extends TreeParser {
 
                         this.match(this.input, Constants.UP, null);
 
-                        cmd = this.factory!.lexerCallCommand(ID5, lexerCommandExpr6.start as GrammarAST);
+                        cmd = this.factory!.lexerCallCommand(ID5, lexerCommandExpr6!);
                     }
                     break;
                 }
@@ -652,9 +671,8 @@ export class ATNBuilder extends TreeParser {
 
     // $ANTLR start "lexerCommandExpr"
     // org/antlr/v4/parse/ATNBuilder.g:126:1: lexerCommandExpr : ( ID | INT );
-    public lexerCommandExpr(): ATNBuilder.lexerCommandExpr_return {
-        const retval = new ATNBuilder.lexerCommandExpr_return();
-        retval.start = this.input.LT(1);
+    public lexerCommandExpr(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         try {
             // org/antlr/v4/parse/ATNBuilder.g:127:2: ( ID | INT )
@@ -677,14 +695,14 @@ export class ATNBuilder extends TreeParser {
             }
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "element"
     // org/antlr/v4/parse/ATNBuilder.g:131:1: element returns [IStatePair p] : ( labeledElement | atom | subrule | ACTION | SEMPRED | ^( ACTION . ) | ^( SEMPRED . ) | ^( NOT b= blockSet[true] ) | LEXER_CHAR_SET );
-    public element(): ATNBuilder.element_return {
-        const retval = new ATNBuilder.element_return();
-        retval.start = this.input.LT(1);
+    public element(): IStatePair | null {
+        const start = this.input.LT(1) as GrammarAST;
+        let p: IStatePair | null = null;
 
         let ACTION11 = null;
         let SEMPRED12 = null;
@@ -739,17 +757,7 @@ export class ATNBuilder extends TreeParser {
                             if (((LA13_4 >= Constants.UP && LA13_4 <= ANTLRv4Lexer.ACTION) || LA13_4 === ANTLRv4Lexer.ASSIGN || LA13_4 === ANTLRv4Lexer.DOT || LA13_4 === ANTLRv4Lexer.LEXER_CHAR_SET || LA13_4 === ANTLRv4Lexer.NOT || LA13_4 === ANTLRv4Lexer.PLUS_ASSIGN || LA13_4 === ANTLRv4Lexer.RANGE || LA13_4 === ANTLRv4Lexer.RULE_REF || LA13_4 === ANTLRv4Lexer.SEMPRED || LA13_4 === ANTLRv4Lexer.STRING_LITERAL || LA13_4 === ANTLRv4Lexer.TOKEN_REF || (LA13_4 >= ANTLRv4Lexer.BLOCK && LA13_4 <= ANTLRv4Lexer.CLOSURE) || (LA13_4 >= ANTLRv4Lexer.OPTIONAL && LA13_4 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA13_4 >= ANTLRv4Lexer.SET && LA13_4 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt13 = 4;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae =
-                                        new NoViableAltException("", 13, 4, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 13, 4, this.input);
                             }
                         }
 
@@ -766,17 +774,7 @@ export class ATNBuilder extends TreeParser {
                             if (((LA13_5 >= Constants.UP && LA13_5 <= ANTLRv4Lexer.ACTION) || LA13_5 === ANTLRv4Lexer.ASSIGN || LA13_5 === ANTLRv4Lexer.DOT || LA13_5 === ANTLRv4Lexer.LEXER_CHAR_SET || LA13_5 === ANTLRv4Lexer.NOT || LA13_5 === ANTLRv4Lexer.PLUS_ASSIGN || LA13_5 === ANTLRv4Lexer.RANGE || LA13_5 === ANTLRv4Lexer.RULE_REF || LA13_5 === ANTLRv4Lexer.SEMPRED || LA13_5 === ANTLRv4Lexer.STRING_LITERAL || LA13_5 === ANTLRv4Lexer.TOKEN_REF || (LA13_5 >= ANTLRv4Lexer.BLOCK && LA13_5 <= ANTLRv4Lexer.CLOSURE) || (LA13_5 >= ANTLRv4Lexer.OPTIONAL && LA13_5 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA13_5 >= ANTLRv4Lexer.SET && LA13_5 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt13 = 5;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae =
-                                        new NoViableAltException("", 13, 5, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 13, 5, this.input);
                             }
                         }
 
@@ -811,7 +809,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         labeledElement8 = this.labeledElement();
 
-                        retval.p = labeledElement8!;
+                        p = labeledElement8!;
                     }
                     break;
                 }
@@ -821,7 +819,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         atom9 = this.atom();
 
-                        retval.p = atom9.p;
+                        p = atom9;
                     }
 
                     break;
@@ -832,7 +830,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         subrule10 = this.subrule();
 
-                        retval.p = subrule10.p;
+                        p = subrule10;
                     }
                     break;
                 }
@@ -841,7 +839,7 @@ export class ATNBuilder extends TreeParser {
                     // org/antlr/v4/parse/ATNBuilder.g:135:6: ACTION
                     {
                         ACTION11 = this.match(this.input, ANTLRv4Lexer.ACTION, null) as GrammarAST;
-                        retval.p = this.factory!.action(ACTION11 as ActionAST);
+                        p = this.factory!.action(ACTION11 as ActionAST);
                     }
                     break;
                 }
@@ -850,7 +848,7 @@ export class ATNBuilder extends TreeParser {
                     // org/antlr/v4/parse/ATNBuilder.g:136:6: SEMPRED
                     {
                         SEMPRED12 = this.match(this.input, ANTLRv4Lexer.SEMPRED, null) as GrammarAST;
-                        retval.p = this.factory!.sempred(SEMPRED12 as PredAST);
+                        p = this.factory!.sempred(SEMPRED12 as PredAST);
                     }
                     break;
                 }
@@ -863,7 +861,7 @@ export class ATNBuilder extends TreeParser {
                         this.matchAny(this.input);
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = this.factory!.action(ACTION13 as ActionAST);
+                        p = this.factory!.action(ACTION13 as ActionAST);
                     }
                     break;
                 }
@@ -876,7 +874,7 @@ export class ATNBuilder extends TreeParser {
                         this.matchAny(this.input);
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = this.factory!.sempred(SEMPRED14 as PredAST);
+                        p = this.factory!.sempred(SEMPRED14 as PredAST);
                     }
                     break;
                 }
@@ -890,7 +888,7 @@ export class ATNBuilder extends TreeParser {
 
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = b.p;
+                        p = b;
                     }
                     break;
                 }
@@ -899,7 +897,7 @@ export class ATNBuilder extends TreeParser {
                     // org/antlr/v4/parse/ATNBuilder.g:140:7: LEXER_CHAR_SET
                     {
                         this.match(this.input, ANTLRv4Lexer.LEXER_CHAR_SET, null);
-                        retval.p = this.factory!.charSetLiteral((retval.start as GrammarAST))!;
+                        p = this.factory!.charSetLiteral(start)!;
                     }
                     break;
                 }
@@ -915,7 +913,7 @@ export class ATNBuilder extends TreeParser {
             }
         }
 
-        return retval;
+        return p;
     }
     // $ANTLR end "element"
 
@@ -946,7 +944,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         const atom15 = this.atom();
 
-                        p = atom15.p;
+                        p = atom15;
                     }
                     break;
                 }
@@ -960,7 +958,7 @@ export class ATNBuilder extends TreeParser {
 
                         this.match(this.input, Constants.UP, null);
 
-                        p = blockSet16.p;
+                        p = blockSet16;
                     }
                     break;
                 }
@@ -1012,7 +1010,7 @@ export class ATNBuilder extends TreeParser {
 
                         this.match(this.input, Constants.UP, null);
 
-                        p = this.factory!.label(element17.p);
+                        p = this.factory!.label(element17!);
                     }
                     break;
                 }
@@ -1027,7 +1025,7 @@ export class ATNBuilder extends TreeParser {
 
                         this.match(this.input, Constants.UP, null);
 
-                        p = this.factory!.listLabel(element18.p);
+                        p = this.factory!.listLabel(element18!);
                     }
                     break;
                 }
@@ -1048,9 +1046,9 @@ export class ATNBuilder extends TreeParser {
 
     // $ANTLR start "subrule"
     // org/antlr/v4/parse/ATNBuilder.g:153:1: subrule returns [IStatePair p] : ( ^( OPTIONAL block[$start] ) | ^( CLOSURE block[$start] ) | ^( POSITIVE_CLOSURE block[$start] ) | block[null] );
-    public subrule(): ATNBuilder.subrule_return {
-        const retval = new ATNBuilder.subrule_return();
-        retval.start = this.input.LT(1);
+    public subrule(): IStatePair | null {
+        const start = this.input.LT(1) as GrammarAST;
+        let p: IStatePair | null = null;
 
         try {
             // org/antlr/v4/parse/ATNBuilder.g:154:2: ( ^( OPTIONAL block[$start] ) | ^( CLOSURE block[$start] ) | ^( POSITIVE_CLOSURE block[$start] ) | block[null] )
@@ -1096,11 +1094,11 @@ export class ATNBuilder extends TreeParser {
                     {
                         this.match(this.input, ANTLRv4Lexer.OPTIONAL, null);
                         this.match(this.input, Constants.DOWN, null);
-                        const block19 = this.block((retval.start as GrammarAST));
+                        const block19 = this.block(start);
 
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = block19!;
+                        p = block19!;
                     }
                     break;
                 }
@@ -1110,11 +1108,11 @@ export class ATNBuilder extends TreeParser {
                     {
                         this.match(this.input, ANTLRv4Lexer.CLOSURE, null);
                         this.match(this.input, Constants.DOWN, null);
-                        const block20 = this.block((retval.start as GrammarAST));
+                        const block20 = this.block(start);
 
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = block20!;
+                        p = block20!;
                     }
                     break;
                 }
@@ -1124,11 +1122,11 @@ export class ATNBuilder extends TreeParser {
                     {
                         this.match(this.input, ANTLRv4Lexer.POSITIVE_CLOSURE, null);
                         this.match(this.input, Constants.DOWN, null);
-                        const block21 = this.block((retval.start as GrammarAST));
+                        const block21 = this.block(start);
 
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = block21!;
+                        p = block21!;
                     }
                     break;
                 }
@@ -1138,7 +1136,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         const block22 = this.block(null);
 
-                        retval.p = block22!;
+                        p = block22!;
                     }
                     break;
                 }
@@ -1154,14 +1152,14 @@ export class ATNBuilder extends TreeParser {
             }
         }
 
-        return retval;
+        return p;
     }
 
     // $ANTLR start "blockSet"
     // org/antlr/v4/parse/ATNBuilder.g:160:1: blockSet[boolean invert] returns [IStatePair p] : ^( SET ( setElement )+ ) ;
-    public blockSet(invert: boolean): ATNBuilder.blockSet_return {
-        const retval = new ATNBuilder.blockSet_return();
-        retval.start = this.input.LT(1);
+    public blockSet(invert: boolean): IStatePair | null {
+        const start = this.input.LT(1) as GrammarAST;
+        let p: IStatePair | null = null;
 
         const alts = new Array<GrammarAST>();
         try {
@@ -1186,7 +1184,7 @@ export class ATNBuilder extends TreeParser {
                             {
                                 const setElement23 = this.setElement();
 
-                                alts.push(setElement23.start as GrammarAST);
+                                alts.push(setElement23!);
                             }
                             break;
                         }
@@ -1206,7 +1204,7 @@ export class ATNBuilder extends TreeParser {
 
                 this.match(this.input, Constants.UP, null);
 
-                retval.p = this.factory!.set((retval.start as GrammarAST), alts, invert);
+                p = this.factory!.set(start, alts, invert);
             }
 
         } catch (re) {
@@ -1217,14 +1215,13 @@ export class ATNBuilder extends TreeParser {
             }
         }
 
-        return retval;
+        return p;
     }
 
     // $ANTLR start "setElement"
     // org/antlr/v4/parse/ATNBuilder.g:166:1: setElement : ( ^( STRING_LITERAL . ) | ^( TOKEN_REF . ) | STRING_LITERAL | TOKEN_REF | ^( RANGE a= STRING_LITERAL b= STRING_LITERAL ) | LEXER_CHAR_SET );
-    public setElement(): ATNBuilder.setElement_return {
-        const retval = new ATNBuilder.setElement_return();
-        retval.start = this.input.LT(1);
+    public setElement(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         try {
             // org/antlr/v4/parse/ATNBuilder.g:167:2: ( ^( STRING_LITERAL . ) | ^( TOKEN_REF . ) | STRING_LITERAL | TOKEN_REF | ^( RANGE a= STRING_LITERAL b= STRING_LITERAL ) | LEXER_CHAR_SET )
@@ -1241,17 +1238,7 @@ export class ATNBuilder extends TreeParser {
                                 || LA18_1 === ANTLRv4Lexer.TOKEN_REF)) {
                                 alt18 = 3;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae =
-                                        new NoViableAltException("", 18, 1, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 18, 1, this.input);
                             }
                         }
 
@@ -1270,17 +1257,7 @@ export class ATNBuilder extends TreeParser {
                                 || LA18_2 === ANTLRv4Lexer.TOKEN_REF)) {
                                 alt18 = 4;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae =
-                                        new NoViableAltException("", 18, 2, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 18, 2, this.input);
                             }
                         }
 
@@ -1382,14 +1359,14 @@ export class ATNBuilder extends TreeParser {
             }
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "atom"
     // org/antlr/v4/parse/ATNBuilder.g:175:1: atom returns [IStatePair p] : ( range | ^( DOT ID terminal ) | ^( DOT ID ruleref ) | ^( WILDCARD . ) | WILDCARD | blockSet[false] | terminal | ruleref );
-    public atom(): ATNBuilder.atom_return {
-        const retval = new ATNBuilder.atom_return();
-        retval.start = this.input.LT(1);
+    public atom(): IStatePair | null {
+        const start = this.input.LT(1) as GrammarAST;
+        let p: IStatePair | null = null;
 
         try {
             // org/antlr/v4/parse/ATNBuilder.g:176:2: ( range | ^( DOT ID terminal ) | ^( DOT ID ruleref ) | ^( WILDCARD . ) | WILDCARD | blockSet[false] | terminal | ruleref )
@@ -1415,47 +1392,16 @@ export class ATNBuilder extends TreeParser {
                                     if ((LA19_10 === ANTLRv4Lexer.RULE_REF)) {
                                         alt19 = 3;
                                     } else {
-                                        const nvaeMark = this.input.mark();
-                                        const lastIndex = this.input.index;
-                                        try {
-                                            for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                                this.input.consume();
-                                            }
-                                            const nvae = new NoViableAltException("", 19, 10, this.input);
-                                            throw nvae;
-                                        } finally {
-                                            this.input.seek(lastIndex);
-                                            this.input.release(nvaeMark);
-                                        }
+                                        throw new NoViableAltException("", 19, 10, this.input);
                                     }
                                 }
 
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                        this.input.consume();
-                                    }
-                                    const nvae = new NoViableAltException("", 19, 7, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 19, 7, this.input);
                             }
 
                         } else {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 19, 2, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 19, 2, this.input);
                         }
 
                     }
@@ -1471,16 +1417,7 @@ export class ATNBuilder extends TreeParser {
                             if ((LA19_3 === ANTLRv4Lexer.EOF || (LA19_3 >= Constants.UP && LA19_3 <= ANTLRv4Lexer.ACTION) || LA19_3 === ANTLRv4Lexer.ASSIGN || LA19_3 === ANTLRv4Lexer.DOT || LA19_3 === ANTLRv4Lexer.LEXER_CHAR_SET || LA19_3 === ANTLRv4Lexer.NOT || LA19_3 === ANTLRv4Lexer.PLUS_ASSIGN || LA19_3 === ANTLRv4Lexer.RANGE || LA19_3 === ANTLRv4Lexer.RULE_REF || LA19_3 === ANTLRv4Lexer.SEMPRED || LA19_3 === ANTLRv4Lexer.STRING_LITERAL || LA19_3 === ANTLRv4Lexer.TOKEN_REF || (LA19_3 >= ANTLRv4Lexer.BLOCK && LA19_3 <= ANTLRv4Lexer.CLOSURE) || (LA19_3 >= ANTLRv4Lexer.OPTIONAL && LA19_3 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA19_3 >= ANTLRv4Lexer.SET && LA19_3 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt19 = 5;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae = new NoViableAltException("", 19, 3, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 19, 3, this.input);
                             }
                         }
 
@@ -1522,7 +1459,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         const range24 = this.range();
 
-                        retval.p = range24!;
+                        p = range24!;
                     }
                     break;
                 }
@@ -1537,7 +1474,7 @@ export class ATNBuilder extends TreeParser {
 
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = terminal25.p;
+                        p = terminal25;
                     }
                     break;
                 }
@@ -1552,7 +1489,7 @@ export class ATNBuilder extends TreeParser {
 
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = ruleref26!;
+                        p = ruleref26!;
                     }
                     break;
                 }
@@ -1565,7 +1502,7 @@ export class ATNBuilder extends TreeParser {
                         this.matchAny(this.input);
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = this.factory!.wildcard((retval.start as GrammarAST));
+                        p = this.factory!.wildcard(start);
                     }
                     break;
                 }
@@ -1574,7 +1511,7 @@ export class ATNBuilder extends TreeParser {
                     // org/antlr/v4/parse/ATNBuilder.g:180:7: WILDCARD
                     {
                         this.match(this.input, ANTLRv4Lexer.WILDCARD, null);
-                        retval.p = this.factory!.wildcard((retval.start as GrammarAST));
+                        p = this.factory!.wildcard(start);
                     }
                     break;
                 }
@@ -1584,7 +1521,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         const blockSet27 = this.blockSet(false);
 
-                        retval.p = blockSet27.p;
+                        p = blockSet27;
                     }
                     break;
                 }
@@ -1594,7 +1531,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         const terminal28 = this.terminal();
 
-                        retval.p = terminal28.p;
+                        p = terminal28;
                     }
                     break;
                 }
@@ -1604,7 +1541,7 @@ export class ATNBuilder extends TreeParser {
                     {
                         const ruleref29 = this.ruleref();
 
-                        retval.p = ruleref29!;
+                        p = ruleref29!;
                     }
                     break;
                 }
@@ -1620,7 +1557,7 @@ export class ATNBuilder extends TreeParser {
             }
         }
 
-        return retval;
+        return p;
     }
     // $ANTLR end "atom"
 
@@ -1650,18 +1587,7 @@ export class ATNBuilder extends TreeParser {
                                     if ((LA23_4 === Constants.UP)) {
                                         alt23 = 2;
                                     } else {
-                                        const nvaeMark = this.input.mark();
-                                        const lastIndex = this.input.index;
-                                        try {
-                                            for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                                this.input.consume();
-                                            }
-                                            const nvae = new NoViableAltException("", 23, 4, this.input);
-                                            throw nvae;
-                                        } finally {
-                                            this.input.seek(lastIndex);
-                                            this.input.release(nvaeMark);
-                                        }
+                                        throw new NoViableAltException("", 23, 4, this.input);
                                     }
                                 }
 
@@ -1684,19 +1610,7 @@ export class ATNBuilder extends TreeParser {
                         }
 
                         default: {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                    this.input.consume();
-                                }
-                                const nvae =
-                                    new NoViableAltException("", 23, 2, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 23, 2, this.input);
                         }
 
                     }
@@ -1704,17 +1618,7 @@ export class ATNBuilder extends TreeParser {
                     if ((LA23_1 === ANTLRv4Lexer.EOF || (LA23_1 >= Constants.UP && LA23_1 <= ANTLRv4Lexer.ACTION) || LA23_1 === ANTLRv4Lexer.ASSIGN || LA23_1 === ANTLRv4Lexer.DOT || LA23_1 === ANTLRv4Lexer.LEXER_CHAR_SET || LA23_1 === ANTLRv4Lexer.NOT || LA23_1 === ANTLRv4Lexer.PLUS_ASSIGN || LA23_1 === ANTLRv4Lexer.RANGE || LA23_1 === ANTLRv4Lexer.RULE_REF || LA23_1 === ANTLRv4Lexer.SEMPRED || LA23_1 === ANTLRv4Lexer.STRING_LITERAL || LA23_1 === ANTLRv4Lexer.TOKEN_REF || (LA23_1 >= ANTLRv4Lexer.BLOCK && LA23_1 <= ANTLRv4Lexer.CLOSURE) || (LA23_1 >= ANTLRv4Lexer.OPTIONAL && LA23_1 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA23_1 >= ANTLRv4Lexer.SET && LA23_1 <= ANTLRv4Lexer.WILDCARD))) {
                         alt23 = 3;
                     } else {
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae =
-                                new NoViableAltException("", 23, 1, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 23, 1, this.input);
                     }
                 }
 
@@ -1882,9 +1786,9 @@ export class ATNBuilder extends TreeParser {
 
     // $ANTLR start "terminal"
     // org/antlr/v4/parse/ATNBuilder.g:196:1: terminal returns [IStatePair p] : ( ^( STRING_LITERAL . ) | STRING_LITERAL | ^( TOKEN_REF ARG_ACTION . ) | ^( TOKEN_REF . ) | TOKEN_REF );
-    public terminal(): ATNBuilder.terminal_return {
-        const retval = new ATNBuilder.terminal_return();
-        retval.start = this.input.LT(1);
+    public terminal(): IStatePair | null {
+        const start = this.input.LT(1) as GrammarAST;
+        let p: IStatePair | null = null;
 
         try {
             // org/antlr/v4/parse/ATNBuilder.g:197:5: ( ^( STRING_LITERAL . ) | STRING_LITERAL | ^( TOKEN_REF ARG_ACTION . ) | ^( TOKEN_REF . ) | TOKEN_REF )
@@ -1898,16 +1802,7 @@ export class ATNBuilder extends TreeParser {
                     if ((LA24_1 === ANTLRv4Lexer.EOF || (LA24_1 >= Constants.UP && LA24_1 <= ANTLRv4Lexer.ACTION) || LA24_1 === ANTLRv4Lexer.ASSIGN || LA24_1 === ANTLRv4Lexer.DOT || LA24_1 === ANTLRv4Lexer.LEXER_CHAR_SET || LA24_1 === ANTLRv4Lexer.NOT || LA24_1 === ANTLRv4Lexer.PLUS_ASSIGN || LA24_1 === ANTLRv4Lexer.RANGE || LA24_1 === ANTLRv4Lexer.RULE_REF || LA24_1 === ANTLRv4Lexer.SEMPRED || LA24_1 === ANTLRv4Lexer.STRING_LITERAL || LA24_1 === ANTLRv4Lexer.TOKEN_REF || (LA24_1 >= ANTLRv4Lexer.BLOCK && LA24_1 <= ANTLRv4Lexer.CLOSURE) || (LA24_1 >= ANTLRv4Lexer.OPTIONAL && LA24_1 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA24_1 >= ANTLRv4Lexer.SET && LA24_1 <= ANTLRv4Lexer.WILDCARD))) {
                         alt24 = 2;
                     } else {
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae = new NoViableAltException("", 24, 1, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 24, 1, this.input);
                     }
                 }
 
@@ -1924,18 +1819,7 @@ export class ATNBuilder extends TreeParser {
                                 if (((LA24_7 >= Constants.DOWN && LA24_7 <= Constants.UP))) {
                                     alt24 = 4;
                                 } else {
-                                    const nvaeMark = this.input.mark();
-                                    const lastIndex = this.input.index;
-                                    try {
-                                        for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                            this.input.consume();
-                                        }
-                                        const nvae = new NoViableAltException("", 24, 7, this.input);
-                                        throw nvae;
-                                    } finally {
-                                        this.input.seek(lastIndex);
-                                        this.input.release(nvaeMark);
-                                    }
+                                    throw new NoViableAltException("", 24, 7, this.input);
                                 }
                             }
 
@@ -1943,18 +1827,7 @@ export class ATNBuilder extends TreeParser {
                             if (((LA24_5 >= ANTLRv4Lexer.ACTION && LA24_5 <= ANTLRv4Lexer.ACTION_STRING_LITERAL) || (LA24_5 >= ANTLRv4Lexer.ARG_OR_CHARSET && LA24_5 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt24 = 4;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                        this.input.consume();
-                                    }
-                                    const nvae = new NoViableAltException("", 24, 5, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 24, 5, this.input);
                             }
                         }
 
@@ -1962,16 +1835,7 @@ export class ATNBuilder extends TreeParser {
                         if ((LA24_2 === ANTLRv4Lexer.EOF || (LA24_2 >= Constants.UP && LA24_2 <= ANTLRv4Lexer.ACTION) || LA24_2 === ANTLRv4Lexer.ASSIGN || LA24_2 === ANTLRv4Lexer.DOT || LA24_2 === ANTLRv4Lexer.LEXER_CHAR_SET || LA24_2 === ANTLRv4Lexer.NOT || LA24_2 === ANTLRv4Lexer.PLUS_ASSIGN || LA24_2 === ANTLRv4Lexer.RANGE || LA24_2 === ANTLRv4Lexer.RULE_REF || LA24_2 === ANTLRv4Lexer.SEMPRED || LA24_2 === ANTLRv4Lexer.STRING_LITERAL || LA24_2 === ANTLRv4Lexer.TOKEN_REF || (LA24_2 >= ANTLRv4Lexer.BLOCK && LA24_2 <= ANTLRv4Lexer.CLOSURE) || (LA24_2 >= ANTLRv4Lexer.OPTIONAL && LA24_2 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA24_2 >= ANTLRv4Lexer.SET && LA24_2 <= ANTLRv4Lexer.WILDCARD))) {
                             alt24 = 5;
                         } else {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 24, 2, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 24, 2, this.input);
                         }
                     }
 
@@ -1991,7 +1855,7 @@ export class ATNBuilder extends TreeParser {
                         this.matchAny(this.input);
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = this.factory!.stringLiteral((retval.start as GrammarAST) as TerminalAST)!;
+                        p = this.factory!.stringLiteral(start as TerminalAST)!;
                     }
                     break;
                 }
@@ -2000,7 +1864,7 @@ export class ATNBuilder extends TreeParser {
                     // org/antlr/v4/parse/ATNBuilder.g:198:7: STRING_LITERAL
                     {
                         this.match(this.input, ANTLRv4Lexer.STRING_LITERAL, null);
-                        retval.p = this.factory!.stringLiteral((retval.start as GrammarAST) as TerminalAST)!;
+                        p = this.factory!.stringLiteral(start as TerminalAST)!;
                     }
                     break;
                 }
@@ -2014,7 +1878,7 @@ export class ATNBuilder extends TreeParser {
                         this.matchAny(this.input);
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = this.factory!.tokenRef((retval.start as GrammarAST) as TerminalAST)!;
+                        p = this.factory!.tokenRef(start as TerminalAST)!;
                     }
                     break;
                 }
@@ -2027,7 +1891,7 @@ export class ATNBuilder extends TreeParser {
                         this.matchAny(this.input);
                         this.match(this.input, Constants.UP, null);
 
-                        retval.p = this.factory!.tokenRef((retval.start as GrammarAST) as TerminalAST)!;
+                        p = this.factory!.tokenRef(start as TerminalAST)!;
                     }
                     break;
                 }
@@ -2036,7 +1900,7 @@ export class ATNBuilder extends TreeParser {
                     // org/antlr/v4/parse/ATNBuilder.g:201:7: TOKEN_REF
                     {
                         this.match(this.input, ANTLRv4Lexer.TOKEN_REF, null);
-                        retval.p = this.factory!.tokenRef((retval.start as GrammarAST) as TerminalAST)!;
+                        p = this.factory!.tokenRef(start as TerminalAST)!;
                     }
                     break;
                 }
@@ -2052,7 +1916,7 @@ export class ATNBuilder extends TreeParser {
             }
         }
 
-        return retval;
+        return p;
     }
     // $ANTLR end "terminal"
 
@@ -2153,47 +2017,16 @@ export class ATNBuilder extends TreeParser {
                                 }
 
                                 default: {
-                                    const nvaeMark = this.input.mark();
-                                    const lastIndex = this.input.index;
-                                    try {
-                                        for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                            this.input.consume();
-                                        }
-                                        const nvae = new NoViableAltException("", 26, 4, this.input);
-                                        throw nvae;
-                                    } finally {
-                                        this.input.seek(lastIndex);
-                                        this.input.release(nvaeMark);
-                                    }
+                                    throw new NoViableAltException("", 26, 4, this.input);
                                 }
 
                             }
                         } else {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                    this.input.consume();
-                                }
-                                const nvae = new NoViableAltException("", 26, 3, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 26, 3, this.input);
                         }
 
                     } else {
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae = new NoViableAltException("", 26, 2, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 26, 2, this.input);
                     }
 
                 } else {
@@ -2275,14 +2108,200 @@ export class ATNBuilder extends TreeParser {
             }
         }
     }
-}
 
-export namespace ATNBuilder {
-    export type lexerCommandExpr_return = InstanceType<typeof ATNBuilder.lexerCommandExpr_return>;
-    export type element_return = InstanceType<typeof ATNBuilder.element_return>;
-    export type subrule_return = InstanceType<typeof ATNBuilder.subrule_return>;
-    export type blockSet_return = InstanceType<typeof ATNBuilder.blockSet_return>;
-    export type setElement_return = InstanceType<typeof ATNBuilder.setElement_return>;
-    export type atom_return = InstanceType<typeof ATNBuilder.atom_return>;
-    export type terminal_return = InstanceType<typeof ATNBuilder.terminal_return>;
+    /**
+     * Puts a node whose children must be built first on the work stack of the direct walk.
+     *
+     * @param node The node to push.
+     * @param ebnfRoot The EBNF root, if the node is the block of a subrule.
+     * @param firstChild The index of the first child to build.
+     */
+    private pushNode(node: GrammarAST, ebnfRoot: GrammarAST | null, firstChild: number): void {
+        this.walkNodes.push(node);
+        this.walkEbnfRoots.push(ebnfRoot);
+        this.walkNextChild.push(firstChild);
+        this.walkFirstFragment.push(this.walkFragments.length);
+    }
+
+    /**
+     * Builds a child of the node on top of the work stack of the direct walk. Leaves are built immediately and their
+     * ATN fragment is added to the fragments of the parent. Other children are pushed on the work stack.
+     *
+     * @param parent The node the child belongs to.
+     * @param index The index of the child in its parent.
+     * @param child The child to build.
+     */
+    private walkChild(parent: GrammarAST, index: number, child: GrammarAST): void {
+        switch (parent.getType()) {
+            case ANTLRv4Lexer.BLOCK: {
+                if (child.getType() !== ANTLRv4Lexer.OPTIONS) {
+                    this.pushNode(child, null, 0);
+                }
+
+                break;
+            }
+
+            case ANTLRv4Lexer.LEXER_ALT_ACTION: {
+                if (index === 0) {
+                    this.pushNode(child, null, 0);
+                } else if (child.getType() === ANTLRv4Lexer.LEXER_ACTION_CALL) {
+                    this.walkFragments.push(this.factory!.lexerCallCommand(child.getChild(0) as GrammarAST,
+                        child.getChild(1) as GrammarAST));
+                } else {
+                    this.walkFragments.push(this.factory!.lexerCommand(child));
+                }
+
+                break;
+            }
+
+            case ANTLRv4Lexer.ALT: {
+                switch (child.getType()) {
+                    case ANTLRv4Lexer.ELEMENT_OPTIONS: {
+                        break;
+                    }
+
+                    case ANTLRv4Lexer.EPSILON: {
+                        this.walkFragments.push(this.factory!.epsilon(child));
+                        break;
+                    }
+
+                    default: {
+                        this.walkElement(child);
+                        break;
+                    }
+                }
+
+                break;
+            }
+
+            default: {
+                // The element of a labeled element.
+                this.walkElement(child);
+                break;
+            }
+        }
+    }
+
+    private walkElement(t: GrammarAST): void {
+        switch (t.getType()) {
+            case ANTLRv4Lexer.ASSIGN:
+            case ANTLRv4Lexer.PLUS_ASSIGN: {
+                // Skip the label ID.
+                this.pushNode(t, null, 1);
+                break;
+            }
+
+            case ANTLRv4Lexer.BLOCK: {
+                this.pushNode(t, null, 0);
+                break;
+            }
+
+            case ANTLRv4Lexer.CLOSURE:
+            case ANTLRv4Lexer.OPTIONAL:
+            case ANTLRv4Lexer.POSITIVE_CLOSURE: {
+                this.pushNode(t.getChild(0) as GrammarAST, t, 0);
+                break;
+            }
+
+            case ANTLRv4Lexer.ACTION: {
+                this.walkFragments.push(this.factory!.action(t as ActionAST));
+                break;
+            }
+
+            case ANTLRv4Lexer.SEMPRED: {
+                this.walkFragments.push(this.factory!.sempred(t as PredAST));
+                break;
+            }
+
+            case ANTLRv4Lexer.NOT: {
+                const set = t.getChild(0) as GrammarAST;
+                this.walkFragments.push(this.factory!.set(set, set.getChildrenAsArray(), true));
+                break;
+            }
+
+            case ANTLRv4Lexer.LEXER_CHAR_SET: {
+                this.walkFragments.push(this.factory!.charSetLiteral(t)!);
+                break;
+            }
+
+            default: {
+                this.walkFragments.push(this.walkAtom(t));
+                break;
+            }
+        }
+    }
+
+    private walkAtom(t: GrammarAST): IStatePair {
+        switch (t.getType()) {
+            case ANTLRv4Lexer.RANGE: {
+                return this.factory!.range(t.getChild(0) as GrammarAST, t.getChild(1) as GrammarAST)!;
+            }
+
+            case ANTLRv4Lexer.DOT: {
+                return this.walkAtom(t.getChild(1) as GrammarAST);
+            }
+
+            case ANTLRv4Lexer.WILDCARD: {
+                return this.factory!.wildcard(t);
+            }
+
+            case ANTLRv4Lexer.SET: {
+                return this.factory!.set(t, t.getChildrenAsArray(), false);
+            }
+
+            case ANTLRv4Lexer.RULE_REF: {
+                return this.factory!.ruleRef(t)!;
+            }
+
+            case ANTLRv4Lexer.STRING_LITERAL: {
+                return this.factory!.stringLiteral(t as TerminalAST)!;
+            }
+
+            default: {
+                return this.factory!.tokenRef(t as TerminalAST)!;
+            }
+        }
+    }
+
+    /**
+     * Removes the node on top of the work stack of the direct walk, after all its children were built, and creates
+     * its ATN fragment from the fragments of its children.
+     *
+     * @returns The start and end state of the fragment.
+     */
+    private finishNode(): IStatePair {
+        const t = this.walkNodes.pop()!;
+        const ebnfRoot = this.walkEbnfRoots.pop() ?? null;
+        const first = this.walkFirstFragment.pop()!;
+        this.walkNextChild.pop();
+
+        switch (t.getType()) {
+            case ANTLRv4Lexer.BLOCK: {
+                return this.factory!.block(t as BlockAST, ebnfRoot, this.walkFragments.splice(first))!;
+            }
+
+            case ANTLRv4Lexer.LEXER_ALT_ACTION: {
+                const [alt, ...commands] = this.walkFragments.splice(first);
+
+                return this.factory!.lexerAltCommands(alt, this.factory!.alt(commands));
+            }
+
+            case ANTLRv4Lexer.ALT: {
+                // An epsilon alternative is represented by the epsilon fragment alone.
+                if (t.getChild(t.getChildCount() - 1)!.getType() === ANTLRv4Lexer.EPSILON) {
+                    return this.walkFragments.pop()!;
+                }
+
+                return this.factory!.alt(this.walkFragments.splice(first));
+            }
+
+            case ANTLRv4Lexer.ASSIGN: {
+                return this.factory!.label(this.walkFragments.pop()!);
+            }
+
+            default: {
+                return this.factory!.listLabel(this.walkFragments.pop()!);
+            }
+        }
+    }
 }
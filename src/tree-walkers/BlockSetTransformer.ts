@@ -31,6 +31,7 @@ import { BlockAST } from "../tool/ast/BlockAST.js";
 import { GrammarAST } from "../tool/ast/GrammarAST.js";
 import { Grammar } from "../tool/Grammar.js";
 import { GrammarTransformPipeline } from "../tool/GrammarTransformPipeline.js";
+import type { CommonTree } from "../tree/CommonTree.js";
 
 export class BlockSetTransformer extends TreeRewriter {
     // Needed for context in the inContext method.
@@ -50,7 +51,13 @@ export class BlockSetTransformer extends TreeRewriter {
         "PREDICATE_OPTIONS", "Argument", "TargetLanguageAction", "LexerCharSet",
     ];
 
+    // The contexts checked in setAlt and blockSet, compiled once instead of being parsed for each node.
+    private static readonly ruleBlockContext = TreeRewriter.compileContext(BlockSetTransformer.tokenNames,
+        "RULE BLOCK");
+    private static readonly ruleContext = TreeRewriter.compileContext(BlockSetTransformer.tokenNames, "RULE");
+
     private currentRuleName?: string;
+    private currentRule?: GrammarAST;
     private currentAlt: GrammarAST;
     private g: Grammar;
 
@@ -70,6 +77,14 @@ export class BlockSetTransformer extends TreeRewriter {
         }
     }
 
+    /** Reports the rules walked to the instrumentation (if set), while walking the tree once. */
+    public override downUp(t: CommonTree, showTransformations?: boolean): CommonTree {
+        const result = super.downUp(t, showTransformations);
+        this.exitCurrentRule();
+
+        return result;
+    }
+
     public getDelegates(): TreeRewriter[] {
         return [];
     }
@@ -245,7 +260,13 @@ export class BlockSetTransformer extends TreeRewriter {
                             }
 
                             if (this.state.backtracking === 1) {
+                                // Rules are not nested, so a rule ends where the next one starts.
+                                this.exitCurrentRule();
                                 this.currentRuleName = id?.getText() ?? undefined;
+                                if (this.instrumentation) {
+                                    this.currentRule = retval.start as GrammarAST;
+                                    this.instrumentation.enterRule(this.constructor.name, this.currentRuleName ?? "");
+                                }
                             }
 
                             // org/antlr/v4/parse/BlockSetTransformer.g:64:69: ( . )+
@@ -438,7 +459,7 @@ export class BlockSetTransformer extends TreeRewriter {
             // org/antlr/v4/parse/BlockSetTransformer.g:71:2: ({...}? ALT )
             // org/antlr/v4/parse/BlockSetTransformer.g:71:4: {...}? ALT
             {
-                if (!((this.inContext("RULE BLOCK")))) {
+                if (!((this.inCompiledContext(BlockSetTransformer.ruleBlockContext)))) {
                     if (this.state.backtracking > 0) {
                         this.state.failed = true;
 
@@ -687,7 +708,7 @@ export class BlockSetTransformer extends TreeRewriter {
             // org/antlr/v4/parse/BlockSetTransformer.g:97:2: ({...}? ^( BLOCK ^(alt= ALT ( elementOptions )? {...}? setElement[inLexer] ) ( ^( ALT ( elementOptions )? setElement[inLexer] ) )+ ) -> ^( BLOCK[$BLOCK.token] ^( ALT[$BLOCK.token,\"ALT\"] ^( SET[$BLOCK.token, \"SET\"] ( setElement )+ ) ) ) |{...}? ^( BLOCK ^( ALT ( elementOptions )? setElement[inLexer] ) ( ^( ALT ( elementOptions )? setElement[inLexer] ) )+ ) -> ^( SET[$BLOCK.token, \"SET\"] ( setElement )+ ) )
             let _first_0 = null;
             // org/antlr/v4/parse/BlockSetTransformer.g:97:4: {...}? ^( BLOCK ^(alt= ALT ( elementOptions )? {...}? setElement[inLexer] ) ( ^( ALT ( elementOptions )? setElement[inLexer] ) )+ )
-            if (this.inContext("RULE")) {
+            if (this.inCompiledContext(BlockSetTransformer.ruleContext)) {
                 _last = this.input.LT(1) as GrammarAST;
                 const _save_last_1 = _last;
                 let _first_1 = null;
@@ -1327,16 +1348,7 @@ export class BlockSetTransformer extends TreeRewriter {
 
                                 return retval;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 11, 1, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 11, 1, this.input);
                         }
                     }
 
@@ -1860,18 +1872,7 @@ export class BlockSetTransformer extends TreeRewriter {
 
                                         return retval;
                                     }
-                                    const nvaeMark = this.input.mark();
-                                    const lastIndex = this.input.index;
-                                    try {
-                                        for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                            this.input.consume();
-                                        }
-                                        const nvae = new NoViableAltException("", 13, 4, this.input);
-                                        throw nvae;
-                                    } finally {
-                                        this.input.seek(lastIndex);
-                                        this.input.release(nvaeMark);
-                                    }
+                                    throw new NoViableAltException("", 13, 4, this.input);
                                 }
 
                             }
@@ -1881,18 +1882,7 @@ export class BlockSetTransformer extends TreeRewriter {
 
                                 return retval;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                    this.input.consume();
-                                }
-                                const nvae = new NoViableAltException("", 13, 3, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 13, 3, this.input);
                         }
 
                     } else {
@@ -1901,16 +1891,7 @@ export class BlockSetTransformer extends TreeRewriter {
 
                             return retval;
                         }
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae = new NoViableAltException("", 13, 2, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 13, 2, this.input);
                     }
 
                 } else {
@@ -2258,4 +2239,11 @@ export class BlockSetTransformer extends TreeRewriter {
 
         return retval;
     }
+
+    private exitCurrentRule(): void {
+        if (this.currentRule) {
+            this.instrumentation?.exitRule(this.constructor.name, this.currentRuleName ?? "", this.currentRule);
+            this.currentRule = undefined;
+        }
+    }
 }
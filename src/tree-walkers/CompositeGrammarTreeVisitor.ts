@@ -0,0 +1,1079 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+/* eslint-disable @typescript-eslint/naming-convention */
+
+import type { ActionAST } from "../tool/ast/ActionAST.js";
+import type { AltAST } from "../tool/ast/AltAST.js";
+import type { GrammarAST } from "../tool/ast/GrammarAST.js";
+import type { GrammarASTWithOptions } from "../tool/ast/GrammarASTWithOptions.js";
+import type { GrammarRootAST } from "../tool/ast/GrammarRootAST.js";
+import type { PredAST } from "../tool/ast/PredAST.js";
+import type { RuleAST } from "../tool/ast/RuleAST.js";
+import type { TerminalAST } from "../tool/ast/TerminalAST.js";
+import { GrammarTreeVisitor } from "./GrammarTreeVisitor.js";
+
+/**
+ * A grammar tree visitor which walks the tree only once and forwards every callback (discover*, finish*,
+ * enter*, exit* and all the element callbacks) to a list of other grammar tree visitors, in the order they were
+ * registered. This allows to run several independent checks/collectors in a single pass, instead of serializing the
+ * grammar AST into a new node stream for each of them.
+ *
+ * The registered visitors are never used to walk the tree themselves, but their walker context (current rule,
+ * current outer alternative etc.) is kept in sync with this visitor, so they can rely on it in their callbacks.
+ * Note: visitors which depend on the final results of another visitor (e.g. BasicSemanticChecks, which needs
+ * all rules collected by RuleCollector) must not be combined with that visitor.
+ */
+export class CompositeGrammarTreeVisitor extends GrammarTreeVisitor {
+    /**
+     * The registered visitors. Typed as this class because the enter/exit hooks are protected and can only be called
+     * via an instance of this class (which is a valid view, since we only call methods declared in the base class).
+     */
+    private readonly listeners: CompositeGrammarTreeVisitor[];
+
+    public constructor(...visitors: GrammarTreeVisitor[]) {
+        super();
+
+        this.listeners = visitors as CompositeGrammarTreeVisitor[];
+    }
+
+    /** @returns the visitors which are notified by this visitor. */
+    public get visitors(): readonly GrammarTreeVisitor[] {
+        return this.listeners;
+    }
+
+    /**
+     * Adds another visitor to the end of the notification list.
+     *
+     * @param visitor The visitor to add.
+     */
+    public addVisitor(visitor: GrammarTreeVisitor): void {
+        this.listeners.push(visitor as CompositeGrammarTreeVisitor);
+    }
+
+    public override discoverGrammar(root: GrammarRootAST, ID: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.discoverGrammar(root, ID);
+        }
+    }
+
+    public override finishPrequels(firstPrequel: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finishPrequels(firstPrequel);
+        }
+    }
+
+    public override finishGrammar(root: GrammarRootAST, ID: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finishGrammar(root, ID);
+        }
+    }
+
+    public override grammarOption(ID: GrammarAST | null, valueAST: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.grammarOption(ID, valueAST);
+        }
+    }
+
+    public override ruleOption(ID: GrammarAST | null, valueAST: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.ruleOption(ID, valueAST);
+        }
+    }
+
+    public override blockOption(ID: GrammarAST | null, valueAST: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.blockOption(ID, valueAST);
+        }
+    }
+
+    public override defineToken(ID: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.defineToken(ID);
+        }
+    }
+
+    public override defineChannel(ID: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.defineChannel(ID);
+        }
+    }
+
+    public override globalNamedAction(scope: GrammarAST | null, ID: GrammarAST, action: ActionAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.globalNamedAction(scope, ID, action);
+        }
+    }
+
+    public override importGrammar(label: GrammarAST | null, ID: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.importGrammar(label, ID);
+        }
+    }
+
+    public override modeDef(m: GrammarAST | null, ID: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.modeDef(m, ID);
+        }
+    }
+
+    public override discoverRules(rules: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.discoverRules(rules);
+        }
+    }
+
+    public override finishRules(rule: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finishRules(rule);
+        }
+    }
+
+    public override discoverRule(rule: RuleAST | null, ID: GrammarAST | null, modifiers: Array<GrammarAST | null>,
+        arg: ActionAST | null, returns: ActionAST | null, throws: GrammarAST | null,
+        options: GrammarAST | null, locals: ActionAST | null,
+        actions: Array<GrammarAST | null>,
+        block: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.discoverRule(rule, ID, modifiers, arg, returns, throws, options, locals, actions, block);
+        }
+    }
+
+    public override finishRule(rule: RuleAST | null, ID: GrammarAST | null, block: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finishRule(rule, ID, block);
+        }
+    }
+
+    public override discoverLexerRule(rule: RuleAST | null, ID: GrammarAST | null, modifiers: GrammarAST[],
+        options: GrammarAST | null, block: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.discoverLexerRule(rule, ID, modifiers, options, block);
+        }
+    }
+
+    public override finishLexerRule(rule: RuleAST | null, ID: GrammarAST | null, block: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finishLexerRule(rule, ID, block);
+        }
+    }
+
+    public override ruleCatch(arg: GrammarAST, action: ActionAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.ruleCatch(arg, action);
+        }
+    }
+
+    public override finallyAction(action: ActionAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finallyAction(action);
+        }
+    }
+
+    public override discoverOuterAlt(alt: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.discoverOuterAlt(alt);
+        }
+    }
+
+    public override finishOuterAlt(alt: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finishOuterAlt(alt);
+        }
+    }
+
+    public override discoverAlt(alt: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.discoverAlt(alt);
+        }
+    }
+
+    public override finishAlt(alt: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.finishAlt(alt);
+        }
+    }
+
+    public override ruleRef(ref: GrammarAST, arg: ActionAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.ruleRef(ref, arg);
+        }
+    }
+
+    public override tokenRef(ref: TerminalAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.tokenRef(ref);
+        }
+    }
+
+    public override elementOption(t: GrammarASTWithOptions): GrammarTreeVisitor.elementOption_return;
+    public override elementOption(t: GrammarASTWithOptions, ID: GrammarAST, valueAST: GrammarAST | null): void;
+    public override elementOption(...args: unknown[]): GrammarTreeVisitor.elementOption_return | void {
+        if (args.length !== 3) {
+            // This is the walker rule, not the callback.
+            return super.elementOption(args[0] as GrammarASTWithOptions);
+        }
+
+        const [t, ID, valueAST] = args as [GrammarASTWithOptions, GrammarAST, GrammarAST | null];
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.elementOption(t, ID, valueAST);
+        }
+    }
+
+    public override stringRef(ref: TerminalAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.stringRef(ref);
+        }
+    }
+
+    public override wildcardRef(ref: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.wildcardRef(ref);
+        }
+    }
+
+    public override actionInAlt(action: ActionAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.actionInAlt(action);
+        }
+    }
+
+    public override sempredInAlt(pred: PredAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.sempredInAlt(pred);
+        }
+    }
+
+    public override label(op: GrammarAST | null, ID: GrammarAST | null, element: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.label(op, ID, element);
+        }
+    }
+
+    public override lexerCallCommand(outerAltNumber: number, ID: GrammarAST, arg: GrammarAST | null): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.lexerCallCommand(outerAltNumber, ID, arg);
+        }
+    }
+
+    public override lexerCommand(): GrammarTreeVisitor.lexerCommand_return;
+    public override lexerCommand(outerAltNumber: number, ID: GrammarAST): void;
+    public override lexerCommand(...args: unknown[]): GrammarTreeVisitor.lexerCommand_return | void {
+        if (args.length !== 2) {
+            // This is the walker rule, not the callback.
+            return super.lexerCommand();
+        }
+
+        const [outerAltNumber, ID] = args as [number, GrammarAST];
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.lexerCommand(outerAltNumber, ID);
+        }
+    }
+
+    protected override enterGrammarSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterGrammarSpec(tree);
+        }
+    }
+
+    protected override exitGrammarSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitGrammarSpec(tree);
+        }
+    }
+
+    protected override enterPrequelConstructs(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterPrequelConstructs(tree);
+        }
+    }
+
+    protected override exitPrequelConstructs(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitPrequelConstructs(tree);
+        }
+    }
+
+    protected override enterPrequelConstruct(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterPrequelConstruct(tree);
+        }
+    }
+
+    protected override exitPrequelConstruct(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitPrequelConstruct(tree);
+        }
+    }
+
+    protected override enterOptionsSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterOptionsSpec(tree);
+        }
+    }
+
+    protected override exitOptionsSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitOptionsSpec(tree);
+        }
+    }
+
+    protected override enterOption(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterOption(tree);
+        }
+    }
+
+    protected override exitOption(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitOption(tree);
+        }
+    }
+
+    protected override enterOptionValue(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterOptionValue(tree);
+        }
+    }
+
+    protected override exitOptionValue(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitOptionValue(tree);
+        }
+    }
+
+    protected override enterDelegateGrammars(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterDelegateGrammars(tree);
+        }
+    }
+
+    protected override exitDelegateGrammars(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitDelegateGrammars(tree);
+        }
+    }
+
+    protected override enterDelegateGrammar(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterDelegateGrammar(tree);
+        }
+    }
+
+    protected override exitDelegateGrammar(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitDelegateGrammar(tree);
+        }
+    }
+
+    protected override enterTokensSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterTokensSpec(tree);
+        }
+    }
+
+    protected override exitTokensSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitTokensSpec(tree);
+        }
+    }
+
+    protected override enterTokenSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterTokenSpec(tree);
+        }
+    }
+
+    protected override exitTokenSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitTokenSpec(tree);
+        }
+    }
+
+    protected override enterChannelsSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterChannelsSpec(tree);
+        }
+    }
+
+    protected override exitChannelsSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitChannelsSpec(tree);
+        }
+    }
+
+    protected override enterChannelSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterChannelSpec(tree);
+        }
+    }
+
+    protected override exitChannelSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitChannelSpec(tree);
+        }
+    }
+
+    protected override enterAction(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterAction(tree);
+        }
+    }
+
+    protected override exitAction(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitAction(tree);
+        }
+    }
+
+    protected override enterRules(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRules(tree);
+        }
+    }
+
+    protected override exitRules(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRules(tree);
+        }
+    }
+
+    protected override enterMode(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterMode(tree);
+        }
+    }
+
+    protected override exitMode(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitMode(tree);
+        }
+    }
+
+    protected override enterLexerRule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerRule(tree);
+        }
+    }
+
+    protected override exitLexerRule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerRule(tree);
+        }
+    }
+
+    protected override enterRule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRule(tree);
+        }
+    }
+
+    protected override exitRule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRule(tree);
+        }
+    }
+
+    protected override enterExceptionGroup(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterExceptionGroup(tree);
+        }
+    }
+
+    protected override exitExceptionGroup(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitExceptionGroup(tree);
+        }
+    }
+
+    protected override enterExceptionHandler(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterExceptionHandler(tree);
+        }
+    }
+
+    protected override exitExceptionHandler(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitExceptionHandler(tree);
+        }
+    }
+
+    protected override enterFinallyClause(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterFinallyClause(tree);
+        }
+    }
+
+    protected override exitFinallyClause(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitFinallyClause(tree);
+        }
+    }
+
+    protected override enterLocals(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLocals(tree);
+        }
+    }
+
+    protected override exitLocals(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLocals(tree);
+        }
+    }
+
+    protected override enterRuleReturns(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRuleReturns(tree);
+        }
+    }
+
+    protected override exitRuleReturns(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRuleReturns(tree);
+        }
+    }
+
+    protected override enterThrowsSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterThrowsSpec(tree);
+        }
+    }
+
+    protected override exitThrowsSpec(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitThrowsSpec(tree);
+        }
+    }
+
+    protected override enterRuleAction(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRuleAction(tree);
+        }
+    }
+
+    protected override exitRuleAction(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRuleAction(tree);
+        }
+    }
+
+    protected override enterRuleModifier(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRuleModifier(tree);
+        }
+    }
+
+    protected override exitRuleModifier(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRuleModifier(tree);
+        }
+    }
+
+    protected override enterLexerRuleBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerRuleBlock(tree);
+        }
+    }
+
+    protected override exitLexerRuleBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerRuleBlock(tree);
+        }
+    }
+
+    protected override enterRuleBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRuleBlock(tree);
+        }
+    }
+
+    protected override exitRuleBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRuleBlock(tree);
+        }
+    }
+
+    protected override enterLexerOuterAlternative(tree: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerOuterAlternative(tree);
+        }
+    }
+
+    protected override exitLexerOuterAlternative(tree: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerOuterAlternative(tree);
+        }
+    }
+
+    protected override enterOuterAlternative(tree: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterOuterAlternative(tree);
+        }
+    }
+
+    protected override exitOuterAlternative(tree: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitOuterAlternative(tree);
+        }
+    }
+
+    protected override enterLexerAlternative(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerAlternative(tree);
+        }
+    }
+
+    protected override exitLexerAlternative(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerAlternative(tree);
+        }
+    }
+
+    protected override enterLexerElements(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerElements(tree);
+        }
+    }
+
+    protected override exitLexerElements(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerElements(tree);
+        }
+    }
+
+    protected override enterLexerElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerElement(tree);
+        }
+    }
+
+    protected override exitLexerElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerElement(tree);
+        }
+    }
+
+    protected override enterLexerBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerBlock(tree);
+        }
+    }
+
+    protected override exitLexerBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerBlock(tree);
+        }
+    }
+
+    protected override enterLexerAtom(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerAtom(tree);
+        }
+    }
+
+    protected override exitLexerAtom(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerAtom(tree);
+        }
+    }
+
+    protected override enterActionElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterActionElement(tree);
+        }
+    }
+
+    protected override exitActionElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitActionElement(tree);
+        }
+    }
+
+    protected override enterAlternative(tree: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterAlternative(tree);
+        }
+    }
+
+    protected override exitAlternative(tree: AltAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitAlternative(tree);
+        }
+    }
+
+    protected override enterLexerCommand(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerCommand(tree);
+        }
+    }
+
+    protected override exitLexerCommand(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerCommand(tree);
+        }
+    }
+
+    protected override enterLexerCommandExpr(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerCommandExpr(tree);
+        }
+    }
+
+    protected override exitLexerCommandExpr(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerCommandExpr(tree);
+        }
+    }
+
+    protected override enterElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterElement(tree);
+        }
+    }
+
+    protected override exitElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitElement(tree);
+        }
+    }
+
+    protected override enterAstOperand(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterAstOperand(tree);
+        }
+    }
+
+    protected override exitAstOperand(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitAstOperand(tree);
+        }
+    }
+
+    protected override enterLabeledElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLabeledElement(tree);
+        }
+    }
+
+    protected override exitLabeledElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLabeledElement(tree);
+        }
+    }
+
+    protected override enterSubrule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterSubrule(tree);
+        }
+    }
+
+    protected override exitSubrule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitSubrule(tree);
+        }
+    }
+
+    protected override enterLexerSubrule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterLexerSubrule(tree);
+        }
+    }
+
+    protected override exitLexerSubrule(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitLexerSubrule(tree);
+        }
+    }
+
+    protected override enterBlockSuffix(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterBlockSuffix(tree);
+        }
+    }
+
+    protected override exitBlockSuffix(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitBlockSuffix(tree);
+        }
+    }
+
+    protected override enterEbnfSuffix(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterEbnfSuffix(tree);
+        }
+    }
+
+    protected override exitEbnfSuffix(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitEbnfSuffix(tree);
+        }
+    }
+
+    protected override enterAtom(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterAtom(tree);
+        }
+    }
+
+    protected override exitAtom(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitAtom(tree);
+        }
+    }
+
+    protected override enterBlockSet(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterBlockSet(tree);
+        }
+    }
+
+    protected override exitBlockSet(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitBlockSet(tree);
+        }
+    }
+
+    protected override enterSetElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterSetElement(tree);
+        }
+    }
+
+    protected override exitSetElement(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitSetElement(tree);
+        }
+    }
+
+    protected override enterBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterBlock(tree);
+        }
+    }
+
+    protected override exitBlock(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitBlock(tree);
+        }
+    }
+
+    protected override enterRuleref(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRuleref(tree);
+        }
+    }
+
+    protected override exitRuleref(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRuleref(tree);
+        }
+    }
+
+    protected override enterRange(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterRange(tree);
+        }
+    }
+
+    protected override exitRange(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitRange(tree);
+        }
+    }
+
+    protected override enterTerminal(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterTerminal(tree);
+        }
+    }
+
+    protected override exitTerminal(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitTerminal(tree);
+        }
+    }
+
+    protected override enterElementOptions(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterElementOptions(tree);
+        }
+    }
+
+    protected override exitElementOptions(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitElementOptions(tree);
+        }
+    }
+
+    protected override enterElementOption(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.enterElementOption(tree);
+        }
+    }
+
+    protected override exitElementOption(tree: GrammarAST): void {
+        for (const v of this.listeners) {
+            this.syncState(v);
+            v.exitElementOption(tree);
+        }
+    }
+
+    /**
+     * Copies the walker context of this visitor to the given visitor, so that it sees the same values as if it
+     * had walked the tree itself.
+     *
+     * @param v The visitor to update.
+     */
+    private syncState(v: GrammarTreeVisitor): void {
+        v.grammarName = this.grammarName;
+        v.currentRuleAST = this.currentRuleAST;
+        v.currentModeName = this.currentModeName;
+        v.currentRuleName = this.currentRuleName;
+        v.currentOuterAltRoot = this.currentOuterAltRoot;
+        v.currentOuterAltNumber = this.currentOuterAltNumber;
+        v.rewriteEBNFLevel = this.rewriteEBNFLevel;
+    }
+}
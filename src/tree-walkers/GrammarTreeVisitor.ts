@@ -30,6 +30,28 @@ import type { PredAST } from "../tool/ast/PredAST.js";
 import type { RuleAST } from "../tool/ast/RuleAST.js";
 import type { TerminalAST } from "../tool/ast/TerminalAST.js";
 
+/** The kinds of pending steps of the direct walk through nested blocks (see `GrammarTreeVisitor.runSteps`). */
+enum WalkStep {
+    Alternative,
+    Element,
+    ElementOptions,
+    OptionsSpec,
+    RuleAction,
+    LexerAlternative,
+    LexerElement,
+    LexerCommand,
+    FinishAlternative,
+    FinishLabeledElement,
+    ExitElement,
+    ExitSubrule,
+    ExitBlock,
+    ExitLexerAlternative,
+    ExitLexerElements,
+    ExitLexerElement,
+    ExitLexerSubrule,
+    ExitLexerBlock,
+}
+
 /**
  * The definitive ANTLR v3 tree grammar to walk/visit ANTLR v4 grammars.
  *  Parses trees created by ANTLRParser.g.
@@ -66,160 +88,9 @@ export class GrammarTreeVisitor extends TreeParser {
         public firstOne: GrammarAST | null = null;
     };
 
-    public static prequelConstruct_return = class prequelConstruct_return extends TreeRuleReturnScope {
-    };
-
-    public static optionsSpec_return = class optionsSpec_return extends TreeRuleReturnScope {
-    };
-
-    public static option_return = class option_return extends TreeRuleReturnScope {
-    };
-
-    public static optionValue_return = class optionValue_return extends TreeRuleReturnScope {
-        public v: string;
-    };
-
-    public static delegateGrammars_return = class delegateGrammars_return extends TreeRuleReturnScope {
-    };
-
-    public static delegateGrammar_return = class delegateGrammar_return extends TreeRuleReturnScope {
-    };
-
-    public static tokensSpec_return = class tokensSpec_return extends TreeRuleReturnScope {
-    };
-
-    public static tokenSpec_return = class tokenSpec_return extends TreeRuleReturnScope {
-    };
-
-    public static channelsSpec_return = class channelsSpec_return extends TreeRuleReturnScope {
-    };
-
-    public static channelSpec_return = class channelSpec_return extends TreeRuleReturnScope {
-    };
-
-    public static action_return = class action_return extends TreeRuleReturnScope {
-    };
-
-    public static rules_return = class rules_return extends TreeRuleReturnScope {
-    };
-
-    public static mode_return = class mode_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerRule_return = class lexerRule_return extends TreeRuleReturnScope {
-    };
-
-    public static rule_return = class rule_return extends TreeRuleReturnScope {
-    };
-
-    public static exceptionGroup_return = class exceptionGroup_return extends TreeRuleReturnScope {
-    };
-
-    public static exceptionHandler_return = class exceptionHandler_return extends TreeRuleReturnScope {
-    };
-
-    public static finallyClause_return = class finallyClause_return extends TreeRuleReturnScope {
-    };
-
-    public static locals_return = class locals_return extends TreeRuleReturnScope {
-    };
-
-    public static ruleReturns_return = class ruleReturns_return extends TreeRuleReturnScope {
-    };
-
-    public static throwsSpec_return = class throwsSpec_return extends TreeRuleReturnScope {
-    };
-
-    public static ruleAction_return = class ruleAction_return extends TreeRuleReturnScope {
-    };
-
-    public static ruleModifier_return = class ruleModifier_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerRuleBlock_return = class lexerRuleBlock_return extends TreeRuleReturnScope {
-    };
-
-    public static ruleBlock_return = class ruleBlock_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerOuterAlternative_return = class lexerOuterAlternative_return extends TreeRuleReturnScope {
-    };
-
-    public static outerAlternative_return = class outerAlternative_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerAlternative_return = class lexerAlternative_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerElements_return = class lexerElements_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerElement_return = class lexerElement_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerBlock_return = class lexerBlock_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerAtom_return = class lexerAtom_return extends TreeRuleReturnScope {
-    };
-
-    public static actionElement_return = class actionElement_return extends TreeRuleReturnScope {
-    };
-
-    public static alternative_return = class alternative_return extends TreeRuleReturnScope {
-    };
-
     public static lexerCommand_return = class lexerCommand_return extends TreeRuleReturnScope {
     };
 
-    public static lexerCommandExpr_return = class lexerCommandExpr_return extends TreeRuleReturnScope {
-    };
-
-    public static element_return = class element_return extends TreeRuleReturnScope {
-    };
-
-    public static astOperand_return = class astOperand_return extends TreeRuleReturnScope {
-    };
-
-    public static labeledElement_return = class labeledElement_return extends TreeRuleReturnScope {
-    };
-
-    public static subrule_return = class subrule_return extends TreeRuleReturnScope {
-    };
-
-    public static lexerSubrule_return = class lexerSubrule_return extends TreeRuleReturnScope {
-    };
-
-    public static blockSuffix_return = class blockSuffix_return extends TreeRuleReturnScope {
-    };
-
-    public static ebnfSuffix_return = class ebnfSuffix_return extends TreeRuleReturnScope {
-    };
-
-    public static atom_return = class atom_return extends TreeRuleReturnScope {
-    };
-
-    public static blockSet_return = class blockSet_return extends TreeRuleReturnScope {
-    };
-
-    public static setElement_return = class setElement_return extends TreeRuleReturnScope {
-    };
-
-    public static block_return = class block_return extends TreeRuleReturnScope {
-    };
-
-    public static ruleRef_return = class ruleRef_return extends TreeRuleReturnScope {
-    };
-
-    public static range_return = class range_return extends TreeRuleReturnScope {
-    };
-
-    public static terminal_return = class terminal_return extends TreeRuleReturnScope {
-    };
-
-    public static elementOptions_return = class elementOptions_return extends TreeRuleReturnScope {
-    };
-
     public static elementOption_return = class elementOption_return extends TreeRuleReturnScope {
     };
 
@@ -231,6 +102,22 @@ export class GrammarTreeVisitor extends TreeParser {
     public currentOuterAltNumber = 1; // 1..n
     public rewriteEBNFLevel = 0;
 
+    /**
+     * When set, {@link visitGrammar} and {@link visit} recurse directly over the children of the AST nodes, instead
+     * of reading them from a node stream. Callbacks, enter/exit hooks and the context fields are triggered in exactly
+     * the same order, but without navigation nodes, lookahead or marker buffers, and nested blocks are kept on an
+     * explicit work stack. The tree must be well formed (as produced by the grammar parser), because there is no error
+     * recovery in this mode. The semantic visitors set it from the `directTreeWalk` tool parameter.
+     */
+    public directWalking = false;
+
+    private upNode?: GrammarAST;
+
+    // Pending steps of the direct walk through nested blocks, which are run last in, first out. Each step is the kind
+    // of work to do and the node to do it for.
+    private readonly walkStepKinds: WalkStep[] = [];
+    private readonly walkStepNodes: GrammarAST[] = [];
+
     public constructor(input?: TreeNodeStream, state?: IRecognizerSharedState) {
         super(input, state ?? createRecognizerSharedState());
     }
@@ -248,22 +135,45 @@ export class GrammarTreeVisitor extends TreeParser {
     }
 
     public visitGrammar(t: GrammarRootAST): void {
-        this.visit(t, ANTLRv4Parser.RULE_grammarSpec);
+        this.instrumentation?.enterGrammar(this.constructor.name, t.getGrammarName() ?? "");
+        if (this.directWalking) {
+            this.walkGrammarSpec(t);
+        } else {
+            this.input = this.createNodeStream(t);
+            this.grammarSpec();
+        }
+        this.instrumentation?.exitGrammar(this.constructor.name, t.getGrammarName() ?? "", t);
     }
 
-    public visit(t: GrammarAST, ruleIndex: number): void {
-        const input = t.token!.inputStream!;
-        const nodes = new CommonTreeNodeStream(ClassFactory.createGrammarASTAdaptor(input), t);
-        this.input = nodes;
+    /**
+     * Walks the given (sub) tree, starting with the given walker rule. Only rules listed in
+     * {@link GrammarTreeVisitor.EntryRule} can be used as entry point, which is checked at compile time.
+     *
+     * @param t The tree to walk.
+     * @param ruleIndex The index of the rule to start with.
+     */
+    public visit(t: GrammarAST, ruleIndex: GrammarTreeVisitor.EntryRule): void {
+        if (!this.directWalking) {
+            this.input = this.createNodeStream(t);
+        }
+
         switch (ruleIndex) {
             case ANTLRv4Parser.RULE_grammarSpec: {
-                this.grammarSpec();
+                if (this.directWalking) {
+                    this.walkGrammarSpec(t as GrammarRootAST);
+                } else {
+                    this.grammarSpec();
+                }
 
                 break;
             }
 
             case ANTLRv4Parser.RULE_ruleSpec: {
-                this.ruleSpec();
+                if (this.directWalking) {
+                    this.walkRuleSpec(t);
+                } else {
+                    this.ruleSpec();
+                }
 
                 break;
             }
@@ -274,6 +184,12 @@ export class GrammarTreeVisitor extends TreeParser {
         }
     }
 
+    protected createNodeStream(t: GrammarAST): TreeNodeStream {
+        const input = t.token!.inputStream!;
+
+        return new CommonTreeNodeStream(ClassFactory.createGrammarASTAdaptor(input), t);
+    }
+
     public discoverGrammar(root: GrammarRootAST, ID: GrammarAST | null): void { /**/ }
     public finishPrequels(firstPrequel: GrammarAST | null): void { /**/ }
     public finishGrammar(root: GrammarRootAST, ID: GrammarAST | null): void { /**/ }
@@ -567,7 +483,7 @@ export class GrammarTreeVisitor extends TreeParser {
                                 this.match(this.input, Constants.UP, null);
 
                                 this.lexerCallCommand(this.currentOuterAltNumber, ID25,
-                                    lexerCommandExpr26.start as GrammarAST);
+                                    lexerCommandExpr26!);
                             }
                             break;
                         }
@@ -785,11 +701,10 @@ export class GrammarTreeVisitor extends TreeParser {
 
     // $ANTLR start "prequelConstruct"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:368:1: prequelConstruct : ( optionsSpec | delegateGrammars | tokensSpec | channelsSpec | action );
-    public prequelConstruct(): GrammarTreeVisitor.prequelConstruct_return {
-        const retval = new GrammarTreeVisitor.prequelConstruct_return();
-        retval.start = this.input.LT(1);
+    public prequelConstruct(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterPrequelConstructs((retval.start as GrammarAST));
+        this.enterPrequelConstructs(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:375:2: ( optionsSpec | delegateGrammars | tokensSpec | channelsSpec | action )
@@ -887,7 +802,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitPrequelConstructs((retval.start as GrammarAST));
+            this.exitPrequelConstructs(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -899,16 +814,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "optionsSpec"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:382:1: optionsSpec : ^( OPTIONS ( option )* ) ;
-    public optionsSpec(): GrammarTreeVisitor.optionsSpec_return {
-        const retval = new GrammarTreeVisitor.optionsSpec_return();
-        retval.start = this.input.LT(1);
+    public optionsSpec(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterOptionsSpec((retval.start as GrammarAST));
+        this.enterOptionsSpec(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:389:2: ( ^( OPTIONS ( option )* ) )
@@ -948,7 +862,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitOptionsSpec((retval.start as GrammarAST));
+            this.exitOptionsSpec(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -960,19 +874,18 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "option"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:392:1: option : ^(a= ASSIGN ID v= optionValue ) ;
-    public option(): GrammarTreeVisitor.option_return {
-        const retval = new GrammarTreeVisitor.option_return();
-        retval.start = this.input.LT(1);
+    public option(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ID4 = null;
         let v = null;
 
-        this.enterOption((retval.start as GrammarAST));
+        this.enterOption(start!);
         const rule = this.inContext("RULE ...");
         const block = this.inContext("BLOCK ...");
 
@@ -988,20 +901,20 @@ export class GrammarTreeVisitor extends TreeParser {
                 this.match(this.input, Constants.UP, null);
 
                 if (block) {
-                    this.blockOption(ID4, v.start as GrammarAST | null ?? null);
+                    this.blockOption(ID4, v);
                 } else {
                     // most specific first
                     if (rule) {
-                        this.ruleOption(ID4, v.start as GrammarAST | null ?? null);
+                        this.ruleOption(ID4, v);
                     } else {
-                        this.grammarOption(ID4, v.start as GrammarAST | null ?? null);
+                        this.grammarOption(ID4, v);
                     }
 
                 }
 
             }
 
-            this.exitOption((retval.start as GrammarAST));
+            this.exitOption(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1013,17 +926,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "optionValue"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:409:1: optionValue returns [String v] : ( ID | STRING_LITERAL | INT );
-    public optionValue(): GrammarTreeVisitor.optionValue_return {
-        const retval = new GrammarTreeVisitor.optionValue_return();
-        retval.start = this.input.LT(1);
+    public optionValue(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterOptionValue((retval.start as GrammarAST));
-        retval.v = (retval.start as GrammarAST).token?.text ?? "";
+        this.enterOptionValue(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:417:5: ( ID | STRING_LITERAL | INT )
@@ -1039,7 +950,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 }
             }
 
-            this.exitOptionValue((retval.start as GrammarAST));
+            this.exitOptionValue(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1049,16 +960,15 @@ export class GrammarTreeVisitor extends TreeParser {
             }
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "delegateGrammars"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:422:1: delegateGrammars : ^( IMPORT ( delegateGrammar )+ ) ;
-    public delegateGrammars(): GrammarTreeVisitor.delegateGrammars_return {
-        const retval = new GrammarTreeVisitor.delegateGrammars_return();
-        retval.start = this.input.LT(1);
+    public delegateGrammars(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterDelegateGrammars((retval.start as GrammarAST));
+        this.enterDelegateGrammars(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:429:2: ( ^( IMPORT ( delegateGrammar )+ ) )
@@ -1103,7 +1013,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitDelegateGrammars((retval.start as GrammarAST));
+            this.exitDelegateGrammars(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1115,19 +1025,18 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "delegateGrammar"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:432:1: delegateGrammar : ( ^( ASSIGN label= ID id= ID ) |id= ID );
-    public delegateGrammar(): GrammarTreeVisitor.delegateGrammar_return {
-        const retval = new GrammarTreeVisitor.delegateGrammar_return();
-        retval.start = this.input.LT(1);
+    public delegateGrammar(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let label = null;
         let id = null;
 
-        this.enterDelegateGrammar((retval.start as GrammarAST));
+        this.enterDelegateGrammar(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:439:5: ( ^( ASSIGN label= ID id= ID ) |id= ID )
@@ -1173,7 +1082,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitDelegateGrammar((retval.start as GrammarAST));
+            this.exitDelegateGrammar(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1185,16 +1094,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "tokensSpec"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:443:1: tokensSpec : ^( TOKENS ( tokenSpec )+ ) ;
-    public tokensSpec(): GrammarTreeVisitor.tokensSpec_return {
-        const retval = new GrammarTreeVisitor.tokensSpec_return();
-        retval.start = this.input.LT(1);
+    public tokensSpec(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterTokensSpec((retval.start as GrammarAST));
+        this.enterTokensSpec(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:450:2: ( ^( TOKENS ( tokenSpec )+ ) )
@@ -1239,7 +1147,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitTokensSpec((retval.start as GrammarAST));
+            this.exitTokensSpec(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1251,18 +1159,17 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "tokenSpec"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:453:1: tokenSpec : ID ;
-    public tokenSpec(): GrammarTreeVisitor.tokenSpec_return {
-        const retval = new GrammarTreeVisitor.tokenSpec_return();
-        retval.start = this.input.LT(1);
+    public tokenSpec(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ID5 = null;
 
-        this.enterTokenSpec((retval.start as GrammarAST));
+        this.enterTokenSpec(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:460:2: ( ID )
@@ -1272,7 +1179,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 this.defineToken(ID5);
             }
 
-            this.exitTokenSpec((retval.start as GrammarAST));
+            this.exitTokenSpec(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1284,16 +1191,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "channelsSpec"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:463:1: channelsSpec : ^( CHANNELS ( channelSpec )+ ) ;
-    public channelsSpec(): GrammarTreeVisitor.channelsSpec_return {
-        const retval = new GrammarTreeVisitor.channelsSpec_return();
-        retval.start = this.input.LT(1);
+    public channelsSpec(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterChannelsSpec((retval.start as GrammarAST));
+        this.enterChannelsSpec(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:470:2: ( ^( CHANNELS ( channelSpec )+ ) )
@@ -1338,7 +1244,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitChannelsSpec((retval.start as GrammarAST));
+            this.exitChannelsSpec(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1350,18 +1256,17 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "channelSpec"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:473:1: channelSpec : ID ;
-    public channelSpec(): GrammarTreeVisitor.channelSpec_return {
-        const retval = new GrammarTreeVisitor.channelSpec_return();
-        retval.start = this.input.LT(1);
+    public channelSpec(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ID6 = null;
 
-        this.enterChannelSpec((retval.start as GrammarAST));
+        this.enterChannelSpec(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:480:2: ( ID )
@@ -1371,7 +1276,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 this.defineChannel(ID6);
             }
 
-            this.exitChannelSpec((retval.start as GrammarAST));
+            this.exitChannelSpec(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1383,20 +1288,19 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "action"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:483:1: action : ^( AT (sc= ID )? name= ID ACTION ) ;
-    public action(): GrammarTreeVisitor.action_return {
-        const retval = new GrammarTreeVisitor.action_return();
-        retval.start = this.input.LT(1);
+    public action(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let sc = null;
         let name = null;
         let ACTION7 = null;
 
-        this.enterAction((retval.start as GrammarAST));
+        this.enterAction(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:490:2: ( ^( AT (sc= ID )? name= ID ACTION ) )
@@ -1433,7 +1337,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 this.globalNamedAction(sc, name, ACTION7 as ActionAST);
             }
 
-            this.exitAction((retval.start as GrammarAST));
+            this.exitAction(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1445,18 +1349,17 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "rules"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:493:1: rules : ^( RULES ( rule | lexerRule )* ) ;
-    public rules(): GrammarTreeVisitor.rules_return {
-        const retval = new GrammarTreeVisitor.rules_return();
-        retval.start = this.input.LT(1);
+    public rules(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let RULES8 = null;
 
-        this.enterRules((retval.start as GrammarAST));
+        this.enterRules(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:500:5: ( ^( RULES ( rule | lexerRule )* ) )
@@ -1519,7 +1422,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitRules((retval.start as GrammarAST));
+            this.exitRules(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1531,19 +1434,18 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "mode"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:503:1: mode : ^( MODE ID ( lexerRule )* ) ;
-    public mode(): GrammarTreeVisitor.mode_return {
-        const retval = new GrammarTreeVisitor.mode_return();
-        retval.start = this.input.LT(1);
+    public mode(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ID9 = null;
         let MODE10 = null;
 
-        this.enterMode((retval.start as GrammarAST));
+        this.enterMode(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:510:2: ( ^( MODE ID ( lexerRule )* ) )
@@ -1584,7 +1486,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitMode((retval.start as GrammarAST));
+            this.exitMode(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1596,14 +1498,13 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerRule"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:513:1: lexerRule : ^( RULE TOKEN_REF ( ^( RULEMODIFIERS m= FRAGMENT ) )? (opts= optionsSpec )* lexerRuleBlock ) ;
-    public lexerRule(): GrammarTreeVisitor.lexerRule_return {
-        const retval = new GrammarTreeVisitor.lexerRule_return();
-        retval.start = this.input.LT(1);
+    public lexerRule(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let m = null;
         let TOKEN_REF11 = null;
@@ -1611,7 +1512,7 @@ export class GrammarTreeVisitor extends TreeParser {
         let opts = null;
         let lexerRuleBlock13 = null;
 
-        this.enterLexerRule((retval.start as GrammarAST));
+        this.enterLexerRule(start!);
         const mods = new Array<GrammarAST>();
         this.currentOuterAltNumber = 0;
 
@@ -1624,6 +1525,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 TOKEN_REF11 = this.match(this.input, ANTLRv4Parser.TOKEN_REF, null) as GrammarAST | null;
                 this.currentRuleName = TOKEN_REF11?.getText() ?? null;
                 this.currentRuleAST = RULE12;
+                this.instrumentation?.enterRule(this.constructor.name, this.currentRuleName ?? "");
                 // org/antlr/v4/parse/GrammarTreeVisitor.g:524:4: ( ^( RULEMODIFIERS m= FRAGMENT ) )?
                 let alt13 = 2;
                 const LA13_0 = this.input.LA(1);
@@ -1674,19 +1576,20 @@ export class GrammarTreeVisitor extends TreeParser {
                     }
                 }
 
-                this.discoverLexerRule(RULE12 as RuleAST, TOKEN_REF11, mods, opts?.start as GrammarAST | null ?? null,
+                this.discoverLexerRule(RULE12 as RuleAST, TOKEN_REF11, mods, opts,
                     this.input.LT(1) as GrammarAST);
                 lexerRuleBlock13 = this.lexerRuleBlock();
 
                 this.finishLexerRule(RULE12 as RuleAST, TOKEN_REF11,
-                    lexerRuleBlock13.start as GrammarAST | null ?? null);
+                    lexerRuleBlock13);
+                this.instrumentation?.exitRule(this.constructor.name, this.currentRuleName ?? "", RULE12!);
                 this.currentRuleName = null; this.currentRuleAST = null;
 
                 this.match(this.input, Constants.UP, null);
 
             }
 
-            this.exitLexerRule((retval.start as GrammarAST));
+            this.exitLexerRule(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1698,14 +1601,13 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "rule"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:535:1: rule : ^( RULE RULE_REF ( ^( RULEMODIFIERS (m= ruleModifier )+ ) )? ( ARG_ACTION )? (ret= ruleReturns )? (thr= throwsSpec )? (loc= locals )? (opts= optionsSpec |a= ruleAction )* ruleBlock exceptionGroup ) ;
-    public ruleSpec(): GrammarTreeVisitor.rule_return {
-        const retval = new GrammarTreeVisitor.rule_return();
-        retval.start = this.input.LT(1);
+    public ruleSpec(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let RULE_REF14 = null;
         let RULE15 = null;
@@ -1718,7 +1620,7 @@ export class GrammarTreeVisitor extends TreeParser {
         let a = null;
         let ruleBlock17 = null;
 
-        this.enterRule((retval.start as GrammarAST));
+        this.enterRule(start!);
         const mods = new Array<GrammarAST | null>();
         const actions = new Array<GrammarAST | null>(); // track roots
         this.currentOuterAltNumber = 0;
@@ -1731,6 +1633,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 this.match(this.input, Constants.DOWN, null);
                 RULE_REF14 = this.match(this.input, ANTLRv4Parser.RULE_REF, null) as GrammarAST | null;
                 this.currentRuleName = (RULE_REF14 !== null ? RULE_REF14.getText() : null); this.currentRuleAST = RULE15;
+                this.instrumentation?.enterRule(this.constructor.name, this.currentRuleName ?? "");
                 // org/antlr/v4/parse/GrammarTreeVisitor.g:546:4: ( ^( RULEMODIFIERS (m= ruleModifier )+ ) )?
                 let alt16 = 2;
                 const LA16_0 = this.input.LA(1);
@@ -1759,7 +1662,7 @@ export class GrammarTreeVisitor extends TreeParser {
                                         {
                                             m = this.ruleModifier();
 
-                                            mods.push(m.start as GrammarAST | null);
+                                            mods.push(m);
                                         }
                                         break;
                                     }
@@ -1894,7 +1797,7 @@ export class GrammarTreeVisitor extends TreeParser {
                             {
                                 a = this.ruleAction();
 
-                                actions.push(a.start as GrammarAST | null);
+                                actions.push(a);
                             }
                             break;
                         }
@@ -1906,26 +1809,24 @@ export class GrammarTreeVisitor extends TreeParser {
                     }
                 }
 
-                const retStart = ret?.start as GrammarAST | null ?? null;
-                const thrStart = thr?.start as GrammarAST | null ?? null;
-                const locStart = loc?.start as GrammarAST | null ?? null;
                 this.discoverRule(RULE15 as RuleAST | null, RULE_REF14, mods, ARG_ACTION16 as ActionAST,
-                    retStart?.getChild(0) as ActionAST | null ?? null, thrStart,
-                    opts?.start as GrammarAST | null ?? null,
-                    locStart?.getChild(0) as ActionAST | null ?? null,
+                    ret?.getChild(0) as ActionAST | null ?? null, thr,
+                    opts,
+                    loc?.getChild(0) as ActionAST | null ?? null,
                     actions, this.input.LT(1) as GrammarAST);
                 ruleBlock17 = this.ruleBlock();
 
                 this.exceptionGroup();
 
-                this.finishRule(RULE15 as RuleAST | null, RULE_REF14, ruleBlock17.start as GrammarAST);
+                this.finishRule(RULE15 as RuleAST | null, RULE_REF14, ruleBlock17!);
+                this.instrumentation?.exitRule(this.constructor.name, this.currentRuleName ?? "", RULE15!);
                 this.currentRuleName = null;
                 this.currentRuleAST = null;
                 this.match(this.input, Constants.UP, null);
 
             }
 
-            this.exitRule((retval.start as GrammarAST));
+            this.exitRule(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -1937,16 +1838,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "exceptionGroup"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:564:1: exceptionGroup : ( exceptionHandler )* ( finallyClause )? ;
-    public exceptionGroup(): GrammarTreeVisitor.exceptionGroup_return {
-        const retval = new GrammarTreeVisitor.exceptionGroup_return();
-        retval.start = this.input.LT(1);
+    public exceptionGroup(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterExceptionGroup((retval.start as GrammarAST));
+        this.enterExceptionGroup(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:571:5: ( ( exceptionHandler )* ( finallyClause )? )
@@ -2000,7 +1900,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitExceptionGroup((retval.start as GrammarAST));
+            this.exitExceptionGroup(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2012,19 +1912,18 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "exceptionHandler"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:574:1: exceptionHandler : ^( CATCH ARG_ACTION ACTION ) ;
-    public exceptionHandler(): GrammarTreeVisitor.exceptionHandler_return {
-        const retval = new GrammarTreeVisitor.exceptionHandler_return();
-        retval.start = this.input.LT(1);
+    public exceptionHandler(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ARG_ACTION18 = null;
         let ACTION19 = null;
 
-        this.enterExceptionHandler((retval.start as GrammarAST));
+        this.enterExceptionHandler(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:581:2: ( ^( CATCH ARG_ACTION ACTION ) )
@@ -2039,7 +1938,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 this.ruleCatch(ARG_ACTION18, ACTION19 as ActionAST);
             }
 
-            this.exitExceptionHandler((retval.start as GrammarAST));
+            this.exitExceptionHandler(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2051,18 +1950,17 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "finallyClause"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:584:1: finallyClause : ^( FINALLY ACTION ) ;
-    public finallyClause(): GrammarTreeVisitor.finallyClause_return {
-        const retval = new GrammarTreeVisitor.finallyClause_return();
-        retval.start = this.input.LT(1);
+    public finallyClause(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ACTION20 = null;
 
-        this.enterFinallyClause((retval.start as GrammarAST));
+        this.enterFinallyClause(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:591:2: ( ^( FINALLY ACTION ) )
@@ -2076,7 +1974,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 this.finallyAction(ACTION20 as ActionAST);
             }
 
-            this.exitFinallyClause((retval.start as GrammarAST));
+            this.exitFinallyClause(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2088,16 +1986,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "locals"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:594:1: locals : ^( LOCALS ARG_ACTION ) ;
-    public locals(): GrammarTreeVisitor.locals_return {
-        const retval = new GrammarTreeVisitor.locals_return();
-        retval.start = this.input.LT(1);
+    public locals(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLocals((retval.start as GrammarAST));
+        this.enterLocals(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:601:2: ( ^( LOCALS ARG_ACTION ) )
@@ -2110,7 +2007,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLocals((retval.start as GrammarAST));
+            this.exitLocals(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2122,16 +2019,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "ruleReturns"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:604:1: ruleReturns : ^( RETURNS ARG_ACTION ) ;
-    public ruleReturns(): GrammarTreeVisitor.ruleReturns_return {
-        const retval = new GrammarTreeVisitor.ruleReturns_return();
-        retval.start = this.input.LT(1);
+    public ruleReturns(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterRuleReturns((retval.start as GrammarAST));
+        this.enterRuleReturns(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:611:2: ( ^( RETURNS ARG_ACTION ) )
@@ -2144,7 +2040,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitRuleReturns((retval.start as GrammarAST));
+            this.exitRuleReturns(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2156,16 +2052,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "throwsSpec"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:614:1: throwsSpec : ^( THROWS ( ID )+ ) ;
-    public throwsSpec(): GrammarTreeVisitor.throwsSpec_return {
-        const retval = new GrammarTreeVisitor.throwsSpec_return();
-        retval.start = this.input.LT(1);
+    public throwsSpec(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterThrowsSpec((retval.start as GrammarAST));
+        this.enterThrowsSpec(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:621:5: ( ^( THROWS ( ID )+ ) )
@@ -2209,7 +2104,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitThrowsSpec((retval.start as GrammarAST));
+            this.exitThrowsSpec(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2221,16 +2116,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "ruleAction"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:624:1: ruleAction : ^( AT ID ACTION ) ;
-    public ruleAction(): GrammarTreeVisitor.ruleAction_return {
-        const retval = new GrammarTreeVisitor.ruleAction_return();
-        retval.start = this.input.LT(1);
+    public ruleAction(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterRuleAction((retval.start as GrammarAST));
+        this.enterRuleAction(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:631:2: ( ^( AT ID ACTION ) )
@@ -2244,7 +2138,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitRuleAction((retval.start as GrammarAST));
+            this.exitRuleAction(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2256,16 +2150,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "ruleModifier"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:634:1: ruleModifier : ( PUBLIC | PRIVATE | PROTECTED | FRAGMENT );
-    public ruleModifier(): GrammarTreeVisitor.ruleModifier_return {
-        const retval = new GrammarTreeVisitor.ruleModifier_return();
-        retval.start = this.input.LT(1);
+    public ruleModifier(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterRuleModifier((retval.start as GrammarAST));
+        this.enterRuleModifier(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:641:5: ( PUBLIC | PRIVATE | PROTECTED | FRAGMENT )
@@ -2280,7 +2173,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 }
             }
 
-            this.exitRuleModifier((retval.start as GrammarAST));
+            this.exitRuleModifier(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2292,16 +2185,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerRuleBlock"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:647:1: lexerRuleBlock : ^( BLOCK ( lexerOuterAlternative )+ ) ;
-    public lexerRuleBlock(): GrammarTreeVisitor.lexerRuleBlock_return {
-        const retval = new GrammarTreeVisitor.lexerRuleBlock_return();
-        retval.start = this.input.LT(1);
+    public lexerRuleBlock(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerRuleBlock((retval.start as GrammarAST));
+        this.enterLexerRuleBlock(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:654:5: ( ^( BLOCK ( lexerOuterAlternative )+ ) )
@@ -2350,7 +2242,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLexerRuleBlock((retval.start as GrammarAST));
+            this.exitLexerRuleBlock(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2362,16 +2254,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "ruleBlock"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:664:1: ruleBlock : ^( BLOCK ( outerAlternative )+ ) ;
-    public ruleBlock(): GrammarTreeVisitor.ruleBlock_return {
-        const retval = new GrammarTreeVisitor.ruleBlock_return();
-        retval.start = this.input.LT(1);
+    public ruleBlock(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterRuleBlock((retval.start as GrammarAST));
+        this.enterRuleBlock(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:671:5: ( ^( BLOCK ( outerAlternative )+ ) )
@@ -2420,7 +2311,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitRuleBlock((retval.start as GrammarAST));
+            this.exitRuleBlock(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2432,17 +2323,16 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerOuterAlternative"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:681:1: lexerOuterAlternative : lexerAlternative ;
-    public lexerOuterAlternative(): GrammarTreeVisitor.lexerOuterAlternative_return {
-        const retval = new GrammarTreeVisitor.lexerOuterAlternative_return();
-        retval.start = this.input.LT(1);
+    public lexerOuterAlternative(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerOuterAlternative((retval.start as GrammarAST) as AltAST);
-        this.discoverOuterAlt((retval.start as GrammarAST) as AltAST);
+        this.enterLexerOuterAlternative(start as AltAST);
+        this.discoverOuterAlt(start as AltAST);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:690:2: ( lexerAlternative )
@@ -2452,8 +2342,8 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.finishOuterAlt((retval.start as GrammarAST) as AltAST);
-            this.exitLexerOuterAlternative((retval.start as GrammarAST) as AltAST);
+            this.finishOuterAlt(start as AltAST);
+            this.exitLexerOuterAlternative(start as AltAST);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2465,17 +2355,16 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "outerAlternative"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:694:1: outerAlternative : alternative ;
-    public outerAlternative(): GrammarTreeVisitor.outerAlternative_return {
-        const retval = new GrammarTreeVisitor.outerAlternative_return();
-        retval.start = this.input.LT(1);
+    public outerAlternative(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterOuterAlternative((retval.start as GrammarAST) as AltAST);
-        this.discoverOuterAlt((retval.start as GrammarAST) as AltAST);
+        this.enterOuterAlternative(start as AltAST);
+        this.discoverOuterAlt(start as AltAST);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:703:2: ( alternative )
@@ -2485,8 +2374,8 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.finishOuterAlt((retval.start as GrammarAST) as AltAST);
-            this.exitOuterAlternative((retval.start as GrammarAST) as AltAST);
+            this.finishOuterAlt(start as AltAST);
+            this.exitOuterAlternative(start as AltAST);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2498,16 +2387,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerAlternative"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:706:1: lexerAlternative : ( ^( LEXER_ALT_ACTION lexerElements ( lexerCommand )+ ) | lexerElements );
-    public lexerAlternative(): GrammarTreeVisitor.lexerAlternative_return {
-        const retval = new GrammarTreeVisitor.lexerAlternative_return();
-        retval.start = this.input.LT(1);
+    public lexerAlternative(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerAlternative((retval.start as GrammarAST));
+        this.enterLexerAlternative(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:713:2: ( ^( LEXER_ALT_ACTION lexerElements ( lexerCommand )+ ) | lexerElements )
@@ -2585,7 +2473,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLexerAlternative((retval.start as GrammarAST));
+            this.exitLexerAlternative(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2597,16 +2485,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerElements"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:717:1: lexerElements : ^( ALT ( lexerElement )+ ) ;
-    public lexerElements(): GrammarTreeVisitor.lexerElements_return {
-        const retval = new GrammarTreeVisitor.lexerElements_return();
-        retval.start = this.input.LT(1);
+    public lexerElements(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerElements((retval.start as GrammarAST));
+        this.enterLexerElements(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:724:5: ( ^( ALT ( lexerElement )+ ) )
@@ -2651,7 +2538,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLexerElements((retval.start as GrammarAST));
+            this.exitLexerElements(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2663,21 +2550,20 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerElement"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:727:1: lexerElement : ( lexerAtom | lexerSubrule | ACTION | SEMPRED | ^( ACTION elementOptions ) | ^( SEMPRED elementOptions ) | EPSILON );
-    public lexerElement(): GrammarTreeVisitor.lexerElement_return {
-        const retval = new GrammarTreeVisitor.lexerElement_return();
-        retval.start = this.input.LT(1);
+    public lexerElement(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ACTION21 = null;
         let SEMPRED22 = null;
         let ACTION23 = null;
         let SEMPRED24 = null;
 
-        this.enterLexerElement((retval.start as GrammarAST));
+        this.enterLexerElement(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:734:2: ( lexerAtom | lexerSubrule | ACTION | SEMPRED | ^( ACTION elementOptions ) | ^( SEMPRED elementOptions ) | EPSILON )
@@ -2849,7 +2735,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLexerElement((retval.start as GrammarAST));
+            this.exitLexerElement(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2861,16 +2747,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerBlock"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:743:1: lexerBlock : ^( BLOCK ( optionsSpec )? ( lexerAlternative )+ ) ;
-    public lexerBlock(): GrammarTreeVisitor.lexerBlock_return {
-        const retval = new GrammarTreeVisitor.lexerBlock_return();
-        retval.start = this.input.LT(1);
+    public lexerBlock(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerBlock((retval.start as GrammarAST));
+        this.enterLexerBlock(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:750:3: ( ^( BLOCK ( optionsSpec )? ( lexerAlternative )+ ) )
@@ -2935,7 +2820,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLexerBlock((retval.start as GrammarAST));
+            this.exitLexerBlock(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -2947,16 +2832,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerAtom"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:753:1: lexerAtom : ( terminal | ^( NOT blockSet ) | blockSet | ^( WILDCARD elementOptions ) | WILDCARD | LEXER_CHAR_SET | range | ruleref );
-    public lexerAtom(): GrammarTreeVisitor.lexerAtom_return {
-        const retval = new GrammarTreeVisitor.lexerAtom_return();
-        retval.start = this.input.LT(1);
+    public lexerAtom(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerAtom((retval.start as GrammarAST));
+        this.enterLexerAtom(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:760:5: ( terminal | ^( NOT blockSet ) | blockSet | ^( WILDCARD elementOptions ) | WILDCARD | LEXER_CHAR_SET | range | ruleref )
@@ -3120,7 +3004,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLexerAtom((retval.start as GrammarAST));
+            this.exitLexerAtom(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3132,16 +3016,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "actionElement"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:770:1: actionElement : ( ACTION | ^( ACTION elementOptions ) | SEMPRED | ^( SEMPRED elementOptions ) );
-    public actionElement(): GrammarTreeVisitor.actionElement_return {
-        const retval = new GrammarTreeVisitor.actionElement_return();
-        retval.start = this.input.LT(1);
+    public actionElement(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterActionElement((retval.start as GrammarAST));
+        this.enterActionElement(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:777:2: ( ACTION | ^( ACTION elementOptions ) | SEMPRED | ^( SEMPRED elementOptions ) )
@@ -3242,7 +3125,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitActionElement((retval.start as GrammarAST));
+            this.exitActionElement(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3254,23 +3137,22 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "alternative"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:783:1: alternative : ( ^( ALT ( elementOptions )? ( element )+ ) | ^( ALT ( elementOptions )? EPSILON ) );
-    public alternative(): GrammarTreeVisitor.alternative_return {
-        const retval = new GrammarTreeVisitor.alternative_return();
-        retval.start = this.input.LT(1);
+    public alternative(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterAlternative((retval.start as GrammarAST) as AltAST);
-        this.discoverAlt((retval.start as GrammarAST) as AltAST);
+        this.enterAlternative(start as AltAST);
+        this.discoverAlt(start as AltAST);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:792:2: ( ^( ALT ( elementOptions )? ( element )+ ) | ^( ALT ( elementOptions )? EPSILON ) )
             // eslint-disable-next-line @typescript-eslint/no-inferrable-types
             let alt38: number = 1;
-            if (retval.start?.getChild(0)?.getType() === ANTLRv4Parser.EPSILON) { // Empty alternative.
+            if (start?.getChild(0)?.getType() === ANTLRv4Parser.EPSILON) { // Empty alternative.
                 alt38 = 2;
             }
 
@@ -3375,8 +3257,8 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.finishAlt((retval.start as GrammarAST) as AltAST);
-            this.exitAlternative((retval.start as GrammarAST) as AltAST);
+            this.finishAlt(start as AltAST);
+            this.exitAlternative(start as AltAST);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3388,16 +3270,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerCommandExpr"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:809:1: lexerCommandExpr : ( ID | INT );
-    public lexerCommandExpr(): GrammarTreeVisitor.lexerCommandExpr_return {
-        const retval = new GrammarTreeVisitor.lexerCommandExpr_return();
-        retval.start = this.input.LT(1);
+    public lexerCommandExpr(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerCommandExpr((retval.start as GrammarAST));
+        this.enterLexerCommandExpr(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:816:2: ( ID | INT )
@@ -3412,7 +3293,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 }
             }
 
-            this.exitLexerCommandExpr((retval.start as GrammarAST));
+            this.exitLexerCommandExpr(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3422,21 +3303,20 @@ export class GrammarTreeVisitor extends TreeParser {
             }
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "element"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:820:1: element : ( labeledElement | atom | subrule | ACTION | SEMPRED | ^( ACTION elementOptions ) | ^( SEMPRED elementOptions ) | range | ^( NOT blockSet ) | ^( NOT block ) );
-    public element(): GrammarTreeVisitor.element_return {
-        const retval = new GrammarTreeVisitor.element_return();
-        retval.start = this.input.LT(1);
+    public element(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ACTION28 = null;
         let SEMPRED29 = null;
         let ACTION30 = null;
         let SEMPRED31 = null;
 
-        this.enterElement((retval.start as GrammarAST));
+        this.enterElement(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:827:2: ( labeledElement | atom | subrule | ACTION | SEMPRED | ^( ACTION elementOptions ) | ^( SEMPRED elementOptions ) | range | ^( NOT blockSet ) | ^( NOT block ) )
@@ -3690,7 +3570,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitElement((retval.start as GrammarAST));
+            this.exitElement(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3702,16 +3582,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "astOperand"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:839:1: astOperand : ( atom | ^( NOT blockSet ) | ^( NOT block ) );
-    public astOperand(): GrammarTreeVisitor.astOperand_return {
-        const retval = new GrammarTreeVisitor.astOperand_return();
-        retval.start = this.input.LT(1);
+    public astOperand(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterAstOperand((retval.start as GrammarAST));
+        this.enterAstOperand(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:846:2: ( atom | ^( NOT blockSet ) | ^( NOT block ) )
@@ -3803,7 +3682,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitAstOperand((retval.start as GrammarAST));
+            this.exitAstOperand(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3815,18 +3694,17 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "labeledElement"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:851:1: labeledElement : ^( ( ASSIGN | PLUS_ASSIGN ) ID element ) ;
-    public labeledElement(): GrammarTreeVisitor.labeledElement_return {
-        const retval = new GrammarTreeVisitor.labeledElement_return();
-        retval.start = this.input.LT(1);
+    public labeledElement(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let ID32 = null;
 
-        this.enterLabeledElement((retval.start as GrammarAST));
+        this.enterLabeledElement(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:858:2: ( ^( ( ASSIGN | PLUS_ASSIGN ) ID element ) )
@@ -3846,10 +3724,10 @@ export class GrammarTreeVisitor extends TreeParser {
 
                 this.match(this.input, Constants.UP, null);
 
-                this.label((retval.start as GrammarAST | null), ID32, element33.start as GrammarAST | null);
+                this.label((start as GrammarAST | null), ID32, element33);
             }
 
-            this.exitLabeledElement((retval.start as GrammarAST));
+            this.exitLabeledElement(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3861,16 +3739,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "subrule"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:861:1: subrule : ( ^( blockSuffix block ) | block );
-    public subrule(): GrammarTreeVisitor.subrule_return {
-        const retval = new GrammarTreeVisitor.subrule_return();
-        retval.start = this.input.LT(1);
+    public subrule(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterSubrule((retval.start as GrammarAST));
+        this.enterSubrule(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:868:2: ( ^( blockSuffix block ) | block )
@@ -3916,7 +3793,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitSubrule((retval.start as GrammarAST));
+            this.exitSubrule(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3928,16 +3805,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "lexerSubrule"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:872:1: lexerSubrule : ( ^( blockSuffix lexerBlock ) | lexerBlock );
-    public lexerSubrule(): GrammarTreeVisitor.lexerSubrule_return {
-        const retval = new GrammarTreeVisitor.lexerSubrule_return();
-        retval.start = this.input.LT(1);
+    public lexerSubrule(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterLexerSubrule((retval.start as GrammarAST));
+        this.enterLexerSubrule(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:879:2: ( ^( blockSuffix lexerBlock ) | lexerBlock )
@@ -3983,7 +3859,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitLexerSubrule((retval.start as GrammarAST));
+            this.exitLexerSubrule(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -3995,16 +3871,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "blockSuffix"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:883:1: blockSuffix : ebnfSuffix ;
-    public blockSuffix(): GrammarTreeVisitor.blockSuffix_return {
-        const retval = new GrammarTreeVisitor.blockSuffix_return();
-        retval.start = this.input.LT(1);
+    public blockSuffix(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterBlockSuffix((retval.start as GrammarAST));
+        this.enterBlockSuffix(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:890:5: ( ebnfSuffix )
@@ -4014,7 +3889,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitBlockSuffix((retval.start as GrammarAST));
+            this.exitBlockSuffix(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4026,16 +3901,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "ebnfSuffix"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:893:1: ebnfSuffix : ( OPTIONAL | CLOSURE | POSITIVE_CLOSURE );
-    public ebnfSuffix(): GrammarTreeVisitor.ebnfSuffix_return {
-        const retval = new GrammarTreeVisitor.ebnfSuffix_return();
-        retval.start = this.input.LT(1);
+    public ebnfSuffix(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterEbnfSuffix((retval.start as GrammarAST));
+        this.enterEbnfSuffix(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:900:2: ( OPTIONAL | CLOSURE | POSITIVE_CLOSURE )
@@ -4050,7 +3924,7 @@ export class GrammarTreeVisitor extends TreeParser {
                 }
             }
 
-            this.exitEbnfSuffix((retval.start as GrammarAST));
+            this.exitEbnfSuffix(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4062,19 +3936,18 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "atom"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:905:1: atom : ( ^( DOT ID terminal ) | ^( DOT ID ruleref ) | ^( WILDCARD elementOptions ) | WILDCARD | terminal | blockSet | ruleref );
-    public atom(): GrammarTreeVisitor.atom_return {
-        const retval = new GrammarTreeVisitor.atom_return();
-        retval.start = this.input.LT(1);
+    public atom(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let WILDCARD34 = null;
         let WILDCARD35 = null;
 
-        this.enterAtom((retval.start as GrammarAST));
+        this.enterAtom(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:912:2: ( ^( DOT ID terminal ) | ^( DOT ID ruleref ) | ^( WILDCARD elementOptions ) | WILDCARD | terminal | blockSet | ruleref )
@@ -4274,7 +4147,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitAtom((retval.start as GrammarAST));
+            this.exitAtom(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4286,16 +4159,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "blockSet"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:921:1: blockSet : ^( SET ( setElement )+ ) ;
-    public blockSet(): GrammarTreeVisitor.blockSet_return {
-        const retval = new GrammarTreeVisitor.blockSet_return();
-        retval.start = this.input.LT(1);
+    public blockSet(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterBlockSet((retval.start as GrammarAST));
+        this.enterBlockSet(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:928:2: ( ^( SET ( setElement )+ ) )
@@ -4340,7 +4212,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitBlockSet((retval.start as GrammarAST));
+            this.exitBlockSet(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4352,14 +4224,13 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "setElement"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:931:1: setElement : ( ^( STRING_LITERAL elementOptions ) | ^( TOKEN_REF elementOptions ) | STRING_LITERAL | TOKEN_REF | ^( RANGE a= STRING_LITERAL b= STRING_LITERAL ) | LEXER_CHAR_SET );
-    public setElement(): GrammarTreeVisitor.setElement_return {
-        const retval = new GrammarTreeVisitor.setElement_return();
-        retval.start = this.input.LT(1);
+    public setElement(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let a = null;
         let b = null;
@@ -4368,7 +4239,7 @@ export class GrammarTreeVisitor extends TreeParser {
         let STRING_LITERAL38 = null;
         let TOKEN_REF39 = null;
 
-        this.enterSetElement((retval.start as GrammarAST));
+        this.enterSetElement(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:938:2: ( ^( STRING_LITERAL elementOptions ) | ^( TOKEN_REF elementOptions ) | STRING_LITERAL | TOKEN_REF | ^( RANGE a= STRING_LITERAL b= STRING_LITERAL ) | LEXER_CHAR_SET )
@@ -4520,7 +4391,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitSetElement((retval.start as GrammarAST));
+            this.exitSetElement(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4532,16 +4403,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "block"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:950:1: block : ^( BLOCK ( optionsSpec )? ( ruleAction )* ( ACTION )? ( alternative )+ ) ;
-    public block(): GrammarTreeVisitor.block_return {
-        const retval = new GrammarTreeVisitor.block_return();
-        retval.start = this.input.LT(1);
+    public block(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterBlock((retval.start as GrammarAST));
+        this.enterBlock(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:957:5: ( ^( BLOCK ( optionsSpec )? ( ruleAction )* ( ACTION )? ( alternative )+ ) )
@@ -4651,7 +4521,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitBlock((retval.start as GrammarAST));
+            this.exitBlock(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4663,19 +4533,18 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "ruleref"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:960:1: ruleref : ^( RULE_REF (arg= ARG_ACTION )? ( elementOptions )? ) ;
-    public ruleref(): GrammarTreeVisitor.ruleref_return {
-        const retval = new GrammarTreeVisitor.ruleRef_return();
-        retval.start = this.input.LT(1);
+    public ruleref(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let arg = null;
         let RULE_REF40 = null;
 
-        this.enterRuleref((retval.start as GrammarAST));
+        this.enterRuleref(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:967:5: ( ^( RULE_REF (arg= ARG_ACTION )? ( elementOptions )? ) )
@@ -4733,7 +4602,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitRuleref((retval.start as GrammarAST));
+            this.exitRuleref(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4745,16 +4614,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "range"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:974:1: range : ^( RANGE STRING_LITERAL STRING_LITERAL ) ;
-    public range(): GrammarTreeVisitor.range_return {
-        const retval = new GrammarTreeVisitor.range_return();
-        retval.start = this.input.LT(1);
+    public range(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterRange((retval.start as GrammarAST));
+        this.enterRange(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:981:5: ( ^( RANGE STRING_LITERAL STRING_LITERAL ) )
@@ -4768,7 +4636,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitRange((retval.start as GrammarAST));
+            this.exitRange(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4780,21 +4648,20 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "terminal"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:984:1: terminal : ( ^( STRING_LITERAL elementOptions ) | STRING_LITERAL | ^( TOKEN_REF elementOptions ) | TOKEN_REF );
-    public terminal(): GrammarTreeVisitor.terminal_return {
-        const retval = new GrammarTreeVisitor.terminal_return();
-        retval.start = this.input.LT(1);
+    public terminal(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
         let STRING_LITERAL41 = null;
         let STRING_LITERAL42 = null;
         let TOKEN_REF43 = null;
         let TOKEN_REF44 = null;
 
-        this.enterTerminal((retval.start as GrammarAST));
+        this.enterTerminal(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:991:5: ( ^( STRING_LITERAL elementOptions ) | STRING_LITERAL | ^( TOKEN_REF elementOptions ) | TOKEN_REF )
@@ -4914,7 +4781,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitTerminal((retval.start as GrammarAST));
+            this.exitTerminal(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4926,16 +4793,15 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     // $ANTLR start "elementOptions"
     // org/antlr/v4/parse/GrammarTreeVisitor.g:998:1: elementOptions : ^( ELEMENT_OPTIONS ( elementOption[(GrammarASTWithOptions)$start.getParent()] )* ) ;
-    public elementOptions(): GrammarTreeVisitor.elementOptions_return {
-        const retval = new GrammarTreeVisitor.elementOptions_return();
-        retval.start = this.input.LT(1);
+    public elementOptions(): GrammarAST | null {
+        const start = this.input.LT(1) as GrammarAST | null;
 
-        this.enterElementOptions((retval.start as GrammarAST));
+        this.enterElementOptions(start!);
 
         try {
             // org/antlr/v4/parse/GrammarTreeVisitor.g:1005:5: ( ^( ELEMENT_OPTIONS ( elementOption[(GrammarASTWithOptions)$start.getParent()] )* ) )
@@ -4957,7 +4823,7 @@ export class GrammarTreeVisitor extends TreeParser {
                             case 1: {
                                 // org/antlr/v4/parse/GrammarTreeVisitor.g:1005:25: elementOption[(GrammarASTWithOptions)$start.getParent()]
                                 {
-                                    this.elementOption((retval.start as GrammarAST).getParent() as GrammarASTWithOptions);
+                                    this.elementOption(start!.getParent() as GrammarASTWithOptions);
 
                                 }
                                 break;
@@ -4975,7 +4841,7 @@ export class GrammarTreeVisitor extends TreeParser {
 
             }
 
-            this.exitElementOptions((retval.start as GrammarAST));
+            this.exitElementOptions(start!);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -4987,7 +4853,7 @@ export class GrammarTreeVisitor extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return start;
     }
 
     protected enterGrammarSpec(tree: GrammarAST): void { /**/ }
@@ -5151,61 +5017,928 @@ export class GrammarTreeVisitor extends TreeParser {
 
     protected enterElementOption(tree: GrammarAST): void { /**/ }
     protected exitElementOption(tree: GrammarAST): void { /**/ }
-}
 
-export namespace GrammarTreeVisitor {
+    // The direct walking engine. Each method mirrors the tree grammar rule of the same name (without the "walk"
+    // prefix), but reads the node structure from the AST children instead of matching DOWN/UP navigation nodes
+    // in a node stream. The order of the hooks and callbacks, as well as the context fields, must stay in sync with
+    // the generated rules above.
+    // Blocks can be nested arbitrarily deep, so the methods for alternatives, elements, subrules and blocks don't
+    // recurse. Instead they schedule the walk of their children and their own exit on an explicit work stack
+    // (see runSteps), which keeps the native stack depth independent of the nesting depth.
+
+    private walkGrammarSpec(t: GrammarRootAST): void {
+        this.enterGrammarSpec(t);
+
+        const id = t.getChild(0) as GrammarAST;
+        this.grammarName = id.getText();
+        this.discoverGrammar(t, id);
+
+        const count = t.getChildCount();
+        let i = 1;
+
+        const first = t.getChild(i) as GrammarAST;
+        this.enterPrequelConstructs(first);
+        let firstOne: GrammarAST | null = null;
+        if (this.isPrequel(first)) {
+            firstOne = first;
+            while (i < count && this.isPrequel(t.getChild(i) as GrammarAST)) {
+                this.walkPrequelConstruct(t.getChild(i++) as GrammarAST);
+            }
+        }
+        this.exitPrequelConstructs(first);
+
+        this.finishPrequels(firstOne);
+        this.walkRules(t.getChild(i++) as GrammarAST);
+        while (i < count) {
+            this.walkMode(t.getChild(i++) as GrammarAST);
+        }
+
+        this.finishGrammar(t, id);
+        this.exitGrammarSpec(t);
+    }
+
+    private walkPrequelConstruct(t: GrammarAST): void {
+        this.enterPrequelConstructs(t);
+        switch (t.getType()) {
+            case ANTLRv4Parser.OPTIONS: {
+                this.walkOptionsSpec(t);
+                break;
+            }
+
+            case ANTLRv4Parser.IMPORT: {
+                this.walkDelegateGrammars(t);
+                break;
+            }
+
+            case ANTLRv4Parser.TOKENS: {
+                this.walkTokensSpec(t);
+                break;
+            }
+
+            case ANTLRv4Parser.CHANNELS: {
+                this.walkChannelsSpec(t);
+                break;
+            }
+
+            case ANTLRv4Parser.AT: {
+                this.walkAction(t);
+                break;
+            }
+
+            default:
+        }
+        this.exitPrequelConstructs(t);
+    }
+
+    private walkOptionsSpec(t: GrammarAST): void {
+        this.enterOptionsSpec(t);
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            this.walkOption(t.getChild(i) as GrammarAST);
+        }
+        this.exitOptionsSpec(t);
+    }
+
+    private walkOption(t: GrammarAST): void {
+        this.enterOption(t);
+        const rule = t.hasAncestor(ANTLRv4Parser.RULE);
+        const block = t.hasAncestor(ANTLRv4Parser.BLOCK);
+
+        const id = t.getChild(0) as GrammarAST;
+        const value = t.getChild(1) as GrammarAST;
+        this.enterOptionValue(value);
+        this.exitOptionValue(value);
+
+        if (block) {
+            this.blockOption(id, value);
+        } else {
+            // most specific first
+            if (rule) {
+                this.ruleOption(id, value);
+            } else {
+                this.grammarOption(id, value);
+            }
+        }
+        this.exitOption(t);
+    }
+
+    private walkDelegateGrammars(t: GrammarAST): void {
+        this.enterDelegateGrammars(t);
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const delegate = t.getChild(i) as GrammarAST;
+            this.enterDelegateGrammar(delegate);
+            if (delegate.getType() === ANTLRv4Parser.ASSIGN) {
+                this.importGrammar(delegate.getChild(0) as GrammarAST, delegate.getChild(1) as GrammarAST);
+            } else {
+                this.importGrammar(null, delegate);
+            }
+            this.exitDelegateGrammar(delegate);
+        }
+        this.exitDelegateGrammars(t);
+    }
+
+    private walkTokensSpec(t: GrammarAST): void {
+        this.enterTokensSpec(t);
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const id = t.getChild(i) as GrammarAST;
+            this.enterTokenSpec(id);
+            this.defineToken(id);
+            this.exitTokenSpec(id);
+        }
+        this.exitTokensSpec(t);
+    }
+
+    private walkChannelsSpec(t: GrammarAST): void {
+        this.enterChannelsSpec(t);
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const id = t.getChild(i) as GrammarAST;
+            this.enterChannelSpec(id);
+            this.defineChannel(id);
+            this.exitChannelSpec(id);
+        }
+        this.exitChannelsSpec(t);
+    }
+
+    private walkAction(t: GrammarAST): void {
+        this.enterAction(t);
+        if (t.getChildCount() === 3) {
+            this.globalNamedAction(t.getChild(0) as GrammarAST, t.getChild(1) as GrammarAST,
+                t.getChild(2) as ActionAST);
+        } else {
+            this.globalNamedAction(null, t.getChild(0) as GrammarAST, t.getChild(1) as ActionAST);
+        }
+        this.exitAction(t);
+    }
+
+    private walkRules(t: GrammarAST): void {
+        this.enterRules(t);
+        this.discoverRules(t);
+        if (t.getChildCount() > 0) {
+            for (let i = 0; i < t.getChildCount(); ++i) {
+                const rule = t.getChild(i) as GrammarAST;
+                if (rule.getChild(0)?.getType() === ANTLRv4Parser.RULE_REF) {
+                    this.walkRuleSpec(rule);
+                } else {
+                    this.walkLexerRule(rule);
+                }
+            }
+            this.finishRules(t);
+        }
+        this.exitRules(t);
+    }
+
+    private walkMode(t: GrammarAST): void {
+        this.enterMode(t);
+        const id = t.getChild(0) as GrammarAST;
+        this.currentModeName = id.getText();
+        this.modeDef(t, id);
+        for (let i = 1; i < t.getChildCount(); ++i) {
+            this.walkLexerRule(t.getChild(i) as GrammarAST);
+        }
+        this.exitMode(t);
+    }
+
+    private walkLexerRule(t: GrammarAST): void {
+        this.enterLexerRule(t);
+        const mods = new Array<GrammarAST>();
+        this.currentOuterAltNumber = 0;
+
+        const id = t.getChild(0) as GrammarAST;
+        this.currentRuleName = id.getText();
+        this.currentRuleAST = t;
+        this.instrumentation?.enterRule(this.constructor.name, this.currentRuleName);
+
+        let i = 1;
+        let child = t.getChild(i) as GrammarAST;
+        if (child.getType() === ANTLRv4Parser.RULEMODIFIERS) {
+            mods.push(child.getChild(0) as GrammarAST);
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        let opts: GrammarAST | null = null;
+        while (child.getType() === ANTLRv4Parser.OPTIONS) {
+            opts = child;
+            this.walkOptionsSpec(child);
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        this.discoverLexerRule(t as RuleAST, id, mods, opts, child);
+        this.walkLexerRuleBlock(child);
+        this.finishLexerRule(t as RuleAST, id, child);
+        this.instrumentation?.exitRule(this.constructor.name, id.getText(), t);
+        this.currentRuleName = null;
+        this.currentRuleAST = null;
+        this.exitLexerRule(t);
+    }
+
+    private walkRuleSpec(t: GrammarAST): void {
+        this.enterRule(t);
+        const mods = new Array<GrammarAST | null>();
+        const actions = new Array<GrammarAST | null>(); // track roots
+        this.currentOuterAltNumber = 0;
+
+        const id = t.getChild(0) as GrammarAST;
+        this.currentRuleName = id.getText();
+        this.currentRuleAST = t;
+        this.instrumentation?.enterRule(this.constructor.name, this.currentRuleName);
+
+        let i = 1;
+        let child = t.getChild(i) as GrammarAST;
+        if (child.getType() === ANTLRv4Parser.RULEMODIFIERS) {
+            for (let j = 0; j < child.getChildCount(); ++j) {
+                const modifier = child.getChild(j) as GrammarAST;
+                this.enterRuleModifier(modifier);
+                this.exitRuleModifier(modifier);
+                mods.push(modifier);
+            }
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        let arg: GrammarAST | null = null;
+        if (child.getType() === ANTLRv4Parser.ARG_ACTION) {
+            arg = child;
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        let returns: GrammarAST | null = null;
+        if (child.getType() === ANTLRv4Parser.RETURNS) {
+            returns = child;
+            this.enterRuleReturns(child);
+            this.exitRuleReturns(child);
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        let throws: GrammarAST | null = null;
+        if (child.getType() === ANTLRv4Parser.THROWS) {
+            throws = child;
+            this.enterThrowsSpec(child);
+            this.exitThrowsSpec(child);
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        let locals: GrammarAST | null = null;
+        if (child.getType() === ANTLRv4Parser.LOCALS) {
+            locals = child;
+            this.enterLocals(child);
+            this.exitLocals(child);
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        let opts: GrammarAST | null = null;
+        while (child.getType() === ANTLRv4Parser.OPTIONS || child.getType() === ANTLRv4Parser.AT) {
+            if (child.getType() === ANTLRv4Parser.OPTIONS) {
+                opts = child;
+                this.walkOptionsSpec(child);
+            } else {
+                this.enterRuleAction(child);
+                this.exitRuleAction(child);
+                actions.push(child);
+            }
+            child = t.getChild(++i) as GrammarAST;
+        }
+
+        this.discoverRule(t as RuleAST, id, mods, arg as ActionAST | null,
+            returns?.getChild(0) as ActionAST | null ?? null, throws, opts,
+            locals?.getChild(0) as ActionAST | null ?? null, actions, child);
+        this.walkRuleBlock(child);
+        this.walkExceptionGroup(t, i + 1);
+        this.finishRule(t as RuleAST, id, child);
+        this.instrumentation?.exitRule(this.constructor.name, id.getText(), t);
+        this.currentRuleName = null;
+        this.currentRuleAST = null;
+        this.exitRule(t);
+    }
+
+    /**
+     * Walks the exception handlers of a parser rule, starting with the child at the given index.
+     *
+     * @param rule The rule AST.
+     * @param start The index of the first child after the rule block.
+     */
+    private walkExceptionGroup(rule: GrammarAST, start: number): void {
+        // Without handlers the stream based walker sees the UP node of the rule here.
+        const count = rule.getChildCount();
+        const first = start < count ? rule.getChild(start) as GrammarAST : this.getUpNode();
+
+        this.enterExceptionGroup(first);
+        for (let i = start; i < count; ++i) {
+            const child = rule.getChild(i) as GrammarAST;
+            if (child.getType() === ANTLRv4Parser.CATCH) {
+                this.enterExceptionHandler(child);
+                this.ruleCatch(child.getChild(0) as GrammarAST, child.getChild(1) as ActionAST);
+                this.exitExceptionHandler(child);
+            } else {
+                this.enterFinallyClause(child);
+                this.finallyAction(child.getChild(0) as ActionAST);
+                this.exitFinallyClause(child);
+            }
+        }
+        this.exitExceptionGroup(first);
+    }
+
+    private walkLexerRuleBlock(t: GrammarAST): void {
+        this.enterLexerRuleBlock(t);
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const alt = t.getChild(i) as AltAST;
+            this.currentOuterAltRoot = alt;
+            this.currentOuterAltNumber++;
+
+            this.enterLexerOuterAlternative(alt);
+            this.discoverOuterAlt(alt);
+            this.walkLexerAlternative(alt);
+            this.finishOuterAlt(alt);
+            this.exitLexerOuterAlternative(alt);
+        }
+        this.exitLexerRuleBlock(t);
+    }
+
+    private walkRuleBlock(t: GrammarAST): void {
+        this.enterRuleBlock(t);
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const alt = t.getChild(i) as AltAST;
+            this.currentOuterAltRoot = alt;
+            this.currentOuterAltNumber++;
+
+            this.enterOuterAlternative(alt);
+            this.discoverOuterAlt(alt);
+            this.walkAlternative(alt);
+            this.finishOuterAlt(alt);
+            this.exitOuterAlternative(alt);
+        }
+        this.exitRuleBlock(t);
+    }
+
+    private walkLexerAlternative(t: GrammarAST): void {
+        this.runSteps(WalkStep.LexerAlternative, t);
+    }
+
+    private scheduleLexerAlternative(t: GrammarAST): void {
+        this.enterLexerAlternative(t);
+        this.pushStep(WalkStep.ExitLexerAlternative, t);
+
+        if (t.getType() === ANTLRv4Parser.LEXER_ALT_ACTION) {
+            for (let i = t.getChildCount() - 1; i > 0; --i) {
+                const command = t.getChild(i) as GrammarAST;
+                this.pushStep(WalkStep.LexerCommand, command);
+            }
+            this.scheduleLexerElements(t.getChild(0) as GrammarAST);
+        } else {
+            this.scheduleLexerElements(t);
+        }
+    }
+
+    private scheduleLexerElements(t: GrammarAST): void {
+        this.enterLexerElements(t);
+        this.pushStep(WalkStep.ExitLexerElements, t);
+
+        for (let i = t.getChildCount() - 1; i >= 0; --i) {
+            const element = t.getChild(i) as GrammarAST;
+            this.pushStep(WalkStep.LexerElement, element);
+        }
+    }
+
+    private scheduleLexerElement(t: GrammarAST): void {
+        this.enterLexerElement(t);
+        switch (t.getType()) {
+            case ANTLRv4Parser.BLOCK:
+            case ANTLRv4Parser.CLOSURE:
+            case ANTLRv4Parser.OPTIONAL:
+            case ANTLRv4Parser.POSITIVE_CLOSURE: {
+                this.pushStep(WalkStep.ExitLexerElement, t);
+                this.scheduleLexerSubrule(t);
+
+                return;
+            }
+
+            case ANTLRv4Parser.ACTION: {
+                if (t.getChildCount() > 0) {
+                    this.walkElementOptions(t.getChild(0) as GrammarAST);
+                }
+                this.actionInAlt(t as ActionAST);
+                break;
+            }
+
+            case ANTLRv4Parser.SEMPRED: {
+                if (t.getChildCount() > 0) {
+                    this.walkElementOptions(t.getChild(0) as GrammarAST);
+                }
+                this.sempredInAlt(t as PredAST);
+                break;
+            }
+
+            case ANTLRv4Parser.EPSILON: {
+                break;
+            }
+
+            default: {
+                this.walkLexerAtom(t);
+                break;
+            }
+        }
+        this.exitLexerElement(t);
+    }
+
+    private scheduleLexerBlock(t: GrammarAST): void {
+        this.enterLexerBlock(t);
+        this.pushStep(WalkStep.ExitLexerBlock, t);
+
+        for (let i = t.getChildCount() - 1; i >= 0; --i) {
+            const child = t.getChild(i) as GrammarAST;
+            if (child.getType() === ANTLRv4Parser.OPTIONS) {
+                this.pushStep(WalkStep.OptionsSpec, child);
+            } else {
+                this.pushStep(WalkStep.LexerAlternative, child);
+            }
+        }
+    }
+
+    private walkLexerAtom(t: GrammarAST): void {
+        this.enterLexerAtom(t);
+        switch (t.getType()) {
+            case ANTLRv4Parser.STRING_LITERAL:
+            case ANTLRv4Parser.TOKEN_REF: {
+                this.walkTerminal(t);
+                break;
+            }
+
+            case ANTLRv4Parser.NOT: {
+                this.walkBlockSet(t.getChild(0) as GrammarAST);
+                break;
+            }
+
+            case ANTLRv4Parser.SET: {
+                this.walkBlockSet(t);
+                break;
+            }
+
+            case ANTLRv4Parser.WILDCARD: {
+                if (t.getChildCount() > 0) {
+                    this.walkElementOptions(t.getChild(0) as GrammarAST);
+                }
+                break;
+            }
+
+            case ANTLRv4Parser.RANGE: {
+                this.enterRange(t);
+                this.exitRange(t);
+                break;
+            }
+
+            case ANTLRv4Parser.RULE_REF: {
+                this.walkRuleref(t);
+                break;
+            }
+
+            default:
+        }
+        this.exitLexerAtom(t);
+    }
+
+    private walkLexerCommand(t: GrammarAST): void {
+        this.enterLexerCommand(t);
+        if (t.getType() === ANTLRv4Parser.LEXER_ACTION_CALL) {
+            const expr = t.getChild(1) as GrammarAST;
+            this.enterLexerCommandExpr(expr);
+            this.exitLexerCommandExpr(expr);
+            this.lexerCallCommand(this.currentOuterAltNumber, t.getChild(0) as GrammarAST, expr);
+        } else {
+            this.lexerCommand(this.currentOuterAltNumber, t);
+        }
+        this.exitLexerCommand(t);
+    }
+
+    private walkAlternative(t: AltAST): void {
+        this.runSteps(WalkStep.Alternative, t);
+    }
+
+    private scheduleAlternative(t: AltAST): void {
+        this.enterAlternative(t);
+        this.discoverAlt(t);
+        this.pushStep(WalkStep.FinishAlternative, t);
+
+        for (let i = t.getChildCount() - 1; i >= 0; --i) {
+            const child = t.getChild(i) as GrammarAST;
+            switch (child.getType()) {
+                case ANTLRv4Parser.ELEMENT_OPTIONS: {
+                    this.pushStep(WalkStep.ElementOptions, child);
+                    break;
+                }
+
+                case ANTLRv4Parser.EPSILON: {
+                    break;
+                }
+
+                default: {
+                    this.pushStep(WalkStep.Element, child);
+                    break;
+                }
+            }
+        }
+    }
+
+    private scheduleElement(t: GrammarAST): void {
+        this.enterElement(t);
+        switch (t.getType()) {
+            case ANTLRv4Parser.ASSIGN:
+            case ANTLRv4Parser.PLUS_ASSIGN: {
+                this.enterLabeledElement(t);
+                this.pushStep(WalkStep.FinishLabeledElement, t);
+                this.scheduleElement(t.getChild(1) as GrammarAST);
+
+                return;
+            }
+
+            case ANTLRv4Parser.BLOCK:
+            case ANTLRv4Parser.CLOSURE:
+            case ANTLRv4Parser.OPTIONAL:
+            case ANTLRv4Parser.POSITIVE_CLOSURE: {
+                this.pushStep(WalkStep.ExitElement, t);
+                this.scheduleSubrule(t);
+
+                return;
+            }
+
+            case ANTLRv4Parser.ACTION: {
+                if (t.getChildCount() > 0) {
+                    this.walkElementOptions(t.getChild(0) as GrammarAST);
+                }
+                this.actionInAlt(t as ActionAST);
+                break;
+            }
+
+            case ANTLRv4Parser.SEMPRED: {
+                if (t.getChildCount() > 0) {
+                    this.walkElementOptions(t.getChild(0) as GrammarAST);
+                }
+                this.sempredInAlt(t as PredAST);
+                break;
+            }
+
+            case ANTLRv4Parser.RANGE: {
+                this.enterRange(t);
+                this.exitRange(t);
+                break;
+            }
+
+            case ANTLRv4Parser.NOT: {
+                const operand = t.getChild(0) as GrammarAST;
+                if (operand.getType() !== ANTLRv4Parser.SET) {
+                    this.pushStep(WalkStep.ExitElement, t);
+                    this.scheduleBlock(operand);
+
+                    return;
+                }
+
+                this.walkBlockSet(operand);
+                break;
+            }
+
+            default: {
+                this.walkAtom(t);
+                break;
+            }
+        }
+        this.exitElement(t);
+    }
+
+    private scheduleSubrule(t: GrammarAST): void {
+        this.enterSubrule(t);
+        this.pushStep(WalkStep.ExitSubrule, t);
+
+        if (t.getType() === ANTLRv4Parser.BLOCK) {
+            this.scheduleBlock(t);
+        } else {
+            this.walkBlockSuffix(t);
+            this.scheduleBlock(t.getChild(0) as GrammarAST);
+        }
+    }
+
+    private scheduleLexerSubrule(t: GrammarAST): void {
+        this.enterLexerSubrule(t);
+        this.pushStep(WalkStep.ExitLexerSubrule, t);
+
+        if (t.getType() === ANTLRv4Parser.BLOCK) {
+            this.scheduleLexerBlock(t);
+        } else {
+            this.walkBlockSuffix(t);
+            this.scheduleLexerBlock(t.getChild(0) as GrammarAST);
+        }
+    }
+
+    private walkBlockSuffix(t: GrammarAST): void {
+        this.enterBlockSuffix(t);
+        this.enterEbnfSuffix(t);
+        this.exitEbnfSuffix(t);
+        this.exitBlockSuffix(t);
+    }
+
+    private walkAtom(t: GrammarAST): void {
+        this.enterAtom(t);
+        switch (t.getType()) {
+            case ANTLRv4Parser.DOT: {
+                const target = t.getChild(1) as GrammarAST;
+                if (target.getType() === ANTLRv4Parser.RULE_REF) {
+                    this.walkRuleref(target);
+                } else {
+                    this.walkTerminal(target);
+                }
+                break;
+            }
+
+            case ANTLRv4Parser.WILDCARD: {
+                if (t.getChildCount() > 0) {
+                    this.walkElementOptions(t.getChild(0) as GrammarAST);
+                }
+                this.wildcardRef(t);
+                break;
+            }
+
+            case ANTLRv4Parser.SET: {
+                this.walkBlockSet(t);
+                break;
+            }
+
+            case ANTLRv4Parser.RULE_REF: {
+                this.walkRuleref(t);
+                break;
+            }
+
+            default: {
+                this.walkTerminal(t);
+                break;
+            }
+        }
+        this.exitAtom(t);
+    }
+
+    private walkBlockSet(t: GrammarAST): void {
+        this.enterBlockSet(t);
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const element = t.getChild(i) as GrammarAST;
+            this.enterSetElement(element);
+            switch (element.getType()) {
+                case ANTLRv4Parser.STRING_LITERAL: {
+                    if (element.getChildCount() > 0) {
+                        this.walkElementOptions(element.getChild(0) as GrammarAST);
+                    }
+                    this.stringRef(element as TerminalAST);
+                    break;
+                }
+
+                case ANTLRv4Parser.TOKEN_REF: {
+                    if (element.getChildCount() > 0) {
+                        this.walkElementOptions(element.getChild(0) as GrammarAST);
+                    }
+                    this.tokenRef(element as TerminalAST);
+                    break;
+                }
+
+                case ANTLRv4Parser.RANGE: {
+                    this.stringRef(element.getChild(0) as TerminalAST);
+                    this.stringRef(element.getChild(1) as TerminalAST);
+                    break;
+                }
+
+                default:
+            }
+            this.exitSetElement(element);
+        }
+        this.exitBlockSet(t);
+    }
+
+    private scheduleBlock(t: GrammarAST): void {
+        this.enterBlock(t);
+        this.pushStep(WalkStep.ExitBlock, t);
+
+        for (let i = t.getChildCount() - 1; i >= 0; --i) {
+            const child = t.getChild(i) as GrammarAST;
+            switch (child.getType()) {
+                case ANTLRv4Parser.OPTIONS: {
+                    this.pushStep(WalkStep.OptionsSpec, child);
+                    break;
+                }
+
+                case ANTLRv4Parser.AT: {
+                    this.pushStep(WalkStep.RuleAction, child);
+                    break;
+                }
+
+                case ANTLRv4Parser.ALT: {
+                    this.pushStep(WalkStep.Alternative, child);
+                    break;
+                }
+
+                default:
+            }
+        }
+    }
+
+    private walkRuleref(t: GrammarAST): void {
+        this.enterRuleref(t);
+        let arg: GrammarAST | null = null;
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const child = t.getChild(i) as GrammarAST;
+            if (child.getType() === ANTLRv4Parser.ARG_ACTION) {
+                arg = child;
+            } else {
+                this.walkElementOptions(child);
+            }
+        }
+
+        this.ruleRef(t, arg as ActionAST);
+        if (arg !== null) {
+            this.actionInAlt(arg as ActionAST);
+        }
+        this.exitRuleref(t);
+    }
+
+    private walkTerminal(t: GrammarAST): void {
+        this.enterTerminal(t);
+        if (t.getChildCount() > 0) {
+            this.walkElementOptions(t.getChild(0) as GrammarAST);
+        }
+
+        if (t.getType() === ANTLRv4Parser.STRING_LITERAL) {
+            this.stringRef(t as TerminalAST);
+        } else {
+            this.tokenRef(t as TerminalAST);
+        }
+        this.exitTerminal(t);
+    }
+
+    private walkElementOptions(t: GrammarAST): void {
+        this.enterElementOptions(t);
+        const owner = t.getParent() as GrammarASTWithOptions;
+        for (let i = 0; i < t.getChildCount(); ++i) {
+            const option = t.getChild(i) as GrammarAST;
+            this.enterElementOption(option);
+            if (option.getType() === ANTLRv4Parser.ID) {
+                this.elementOption(owner, option, null);
+            } else {
+                this.elementOption(owner, option.getChild(0) as GrammarAST, option.getChild(1) as GrammarAST);
+            }
+            this.exitElementOption(option);
+        }
+        this.exitElementOptions(t);
+    }
+
+    /**
+     * Runs the given step of the direct walk and all the steps it schedules, directly or indirectly. Steps which were
+     * pending before (for a walk started from a hook) are not touched.
+     *
+     * @param kind The kind of the step to start with.
+     * @param t The node of that step.
+     */
+    private runSteps(kind: WalkStep, t: GrammarAST): void {
+        const base = this.walkStepKinds.length;
+        this.pushStep(kind, t);
+        try {
+            while (this.walkStepKinds.length > base) {
+                this.runStep(this.walkStepKinds.pop()!, this.walkStepNodes.pop()!);
+            }
+        } finally {
+            // Drop what is left over after an exception.
+            this.walkStepKinds.length = base;
+            this.walkStepNodes.length = base;
+        }
+    }
+
+    private pushStep(kind: WalkStep, t: GrammarAST): void {
+        this.walkStepKinds.push(kind);
+        this.walkStepNodes.push(t);
+    }
+
+    private runStep(kind: WalkStep, t: GrammarAST): void {
+        switch (kind) {
+            case WalkStep.Alternative: {
+                this.scheduleAlternative(t as AltAST);
+                break;
+            }
+
+            case WalkStep.Element: {
+                this.scheduleElement(t);
+                break;
+            }
+
+            case WalkStep.ElementOptions: {
+                this.walkElementOptions(t);
+                break;
+            }
+
+            case WalkStep.OptionsSpec: {
+                this.walkOptionsSpec(t);
+                break;
+            }
+
+            case WalkStep.RuleAction: {
+                this.enterRuleAction(t);
+                this.exitRuleAction(t);
+                break;
+            }
+
+            case WalkStep.LexerAlternative: {
+                this.scheduleLexerAlternative(t);
+                break;
+            }
+
+            case WalkStep.LexerElement: {
+                this.scheduleLexerElement(t);
+                break;
+            }
+
+            case WalkStep.LexerCommand: {
+                this.walkLexerCommand(t);
+                break;
+            }
+
+            case WalkStep.FinishAlternative: {
+                this.finishAlt(t as AltAST);
+                this.exitAlternative(t as AltAST);
+                break;
+            }
+
+            case WalkStep.FinishLabeledElement: {
+                this.label(t, t.getChild(0) as GrammarAST, t.getChild(1) as GrammarAST);
+                this.exitLabeledElement(t);
+                this.exitElement(t);
+                break;
+            }
+
+            case WalkStep.ExitElement: {
+                this.exitElement(t);
+                break;
+            }
+
+            case WalkStep.ExitSubrule: {
+                this.exitSubrule(t);
+                break;
+            }
+
+            case WalkStep.ExitBlock: {
+                this.exitBlock(t);
+                break;
+            }
+
+            case WalkStep.ExitLexerAlternative: {
+                this.exitLexerAlternative(t);
+                break;
+            }
+
+            case WalkStep.ExitLexerElements: {
+                this.exitLexerElements(t);
+                break;
+            }
+
+            case WalkStep.ExitLexerElement: {
+                this.exitLexerElement(t);
+                break;
+            }
+
+            case WalkStep.ExitLexerSubrule: {
+                this.exitLexerSubrule(t);
+                break;
+            }
+
+            case WalkStep.ExitLexerBlock: {
+                this.exitLexerBlock(t);
+                break;
+            }
+
+            default:
+        }
+    }
+
+    /** @returns the navigation node the stream based walker passes to hooks of rules that matched nothing. */
+    private getUpNode(): GrammarAST {
+        if (!this.upNode) {
+            this.upNode = ClassFactory.createGrammarASTAdaptor().create(Constants.UP, "UP");
+        }
+
+        return this.upNode;
+    }
+
+    private isPrequel(t: GrammarAST): boolean {
+        switch (t.getType()) {
+            case ANTLRv4Parser.AT:
+            case ANTLRv4Parser.CHANNELS:
+            case ANTLRv4Parser.IMPORT:
+            case ANTLRv4Parser.OPTIONS:
+            case ANTLRv4Parser.TOKENS: {
+                return true;
+            }
+
+            default: {
+                return false;
+            }
+        }
+    }
+}
+
+export namespace GrammarTreeVisitor {
+    /** The walker rules which can be used as entry point for {@link GrammarTreeVisitor.visit}. */
+    export type EntryRule = typeof ANTLRv4Parser.RULE_grammarSpec | typeof ANTLRv4Parser.RULE_ruleSpec;
+
     export type grammarSpec_return = InstanceType<typeof GrammarTreeVisitor.grammarSpec_return>;
     export type prequelConstructs_return = InstanceType<typeof GrammarTreeVisitor.prequelConstructs_return>;
-    export type prequelConstruct_return = InstanceType<typeof GrammarTreeVisitor.prequelConstruct_return>;
-    export type optionsSpec_return = InstanceType<typeof GrammarTreeVisitor.optionsSpec_return>;
-    export type option_return = InstanceType<typeof GrammarTreeVisitor.option_return>;
-    export type optionValue_return = InstanceType<typeof GrammarTreeVisitor.optionValue_return>;
-    export type delegateGrammars_return = InstanceType<typeof GrammarTreeVisitor.delegateGrammars_return>;
-    export type delegateGrammar_return = InstanceType<typeof GrammarTreeVisitor.delegateGrammar_return>;
-    export type tokensSpec_return = InstanceType<typeof GrammarTreeVisitor.tokensSpec_return>;
-    export type tokenSpec_return = InstanceType<typeof GrammarTreeVisitor.tokenSpec_return>;
-    export type channelsSpec_return = InstanceType<typeof GrammarTreeVisitor.channelsSpec_return>;
-    export type channelSpec_return = InstanceType<typeof GrammarTreeVisitor.channelSpec_return>;
-    export type action_return = InstanceType<typeof GrammarTreeVisitor.action_return>;
-    export type rules_return = InstanceType<typeof GrammarTreeVisitor.rules_return>;
-    export type mode_return = InstanceType<typeof GrammarTreeVisitor.mode_return>;
-    export type lexerRule_return = InstanceType<typeof GrammarTreeVisitor.lexerRule_return>;
-    export type rule_return = InstanceType<typeof GrammarTreeVisitor.rule_return>;
-    export type exceptionGroup_return = InstanceType<typeof GrammarTreeVisitor.exceptionGroup_return>;
-    export type exceptionHandler_return = InstanceType<typeof GrammarTreeVisitor.exceptionHandler_return>;
-    export type finallyClause_return = InstanceType<typeof GrammarTreeVisitor.finallyClause_return>;
-    export type locals_return = InstanceType<typeof GrammarTreeVisitor.locals_return>;
-    export type ruleReturns_return = InstanceType<typeof GrammarTreeVisitor.ruleReturns_return>;
-    export type throwsSpec_return = InstanceType<typeof GrammarTreeVisitor.throwsSpec_return>;
-    export type ruleAction_return = InstanceType<typeof GrammarTreeVisitor.ruleAction_return>;
-    export type ruleModifier_return = InstanceType<typeof GrammarTreeVisitor.ruleModifier_return>;
-    export type lexerRuleBlock_return = InstanceType<typeof GrammarTreeVisitor.lexerRuleBlock_return>;
-    export type ruleBlock_return = InstanceType<typeof GrammarTreeVisitor.ruleBlock_return>;
-    export type lexerOuterAlternative_return = InstanceType<typeof GrammarTreeVisitor.lexerOuterAlternative_return>;
-    export type outerAlternative_return = InstanceType<typeof GrammarTreeVisitor.outerAlternative_return>;
-    export type lexerAlternative_return = InstanceType<typeof GrammarTreeVisitor.lexerAlternative_return>;
-    export type lexerElements_return = InstanceType<typeof GrammarTreeVisitor.lexerElements_return>;
-    export type lexerElement_return = InstanceType<typeof GrammarTreeVisitor.lexerElement_return>;
-    export type lexerBlock_return = InstanceType<typeof GrammarTreeVisitor.lexerBlock_return>;
-    export type lexerAtom_return = InstanceType<typeof GrammarTreeVisitor.lexerAtom_return>;
-    export type actionElement_return = InstanceType<typeof GrammarTreeVisitor.actionElement_return>;
-    export type alternative_return = InstanceType<typeof GrammarTreeVisitor.alternative_return>;
     export type lexerCommand_return = InstanceType<typeof GrammarTreeVisitor.lexerCommand_return>;
-    export type lexerCommandExpr_return = InstanceType<typeof GrammarTreeVisitor.lexerCommandExpr_return>;
-    export type element_return = InstanceType<typeof GrammarTreeVisitor.element_return>;
-    export type astOperand_return = InstanceType<typeof GrammarTreeVisitor.astOperand_return>;
-    export type labeledElement_return = InstanceType<typeof GrammarTreeVisitor.labeledElement_return>;
-    export type subrule_return = InstanceType<typeof GrammarTreeVisitor.subrule_return>;
-    export type lexerSubrule_return = InstanceType<typeof GrammarTreeVisitor.lexerSubrule_return>;
-    export type blockSuffix_return = InstanceType<typeof GrammarTreeVisitor.blockSuffix_return>;
-    export type ebnfSuffix_return = InstanceType<typeof GrammarTreeVisitor.ebnfSuffix_return>;
-    export type atom_return = InstanceType<typeof GrammarTreeVisitor.atom_return>;
-    export type blockSet_return = InstanceType<typeof GrammarTreeVisitor.blockSet_return>;
-    export type setElement_return = InstanceType<typeof GrammarTreeVisitor.setElement_return>;
-    export type block_return = InstanceType<typeof GrammarTreeVisitor.block_return>;
-    export type ruleref_return = InstanceType<typeof GrammarTreeVisitor.ruleRef_return>;
-    export type range_return = InstanceType<typeof GrammarTreeVisitor.range_return>;
-    export type terminal_return = InstanceType<typeof GrammarTreeVisitor.terminal_return>;
-    export type elementOptions_return = InstanceType<typeof GrammarTreeVisitor.elementOptions_return>;
     export type elementOption_return = InstanceType<typeof GrammarTreeVisitor.elementOption_return>;
 }
@@ -14,7 +14,6 @@ import { MismatchedSetException } from "../antlr3/MismatchedSetException.js";
 import { NoViableAltException } from "../antlr3/NoViableAltException.js";
 import type { TreeNodeStream } from "../antlr3/tree/TreeNodeStream.js";
 import { TreeParser } from "../antlr3/tree/TreeParser.js";
-import { TreeRuleReturnScope } from "../antlr3/tree/TreeRuleReturnScope.js";
 import { Constants } from "../Constants1.js";
 import { ANTLRv4Lexer } from "../generated/ANTLRv4Lexer.js";
 import type { AltAST } from "../tool/ast/AltAST.js";
@@ -39,21 +38,18 @@ export class LeftRecursiveRuleWalker extends TreeParser {
         "PUBLIC"
     ];
 
-    public static ruleBlock_return = class ruleBlock_return extends TreeRuleReturnScope {
-        public isLeftRec: boolean;
-    };
-
-    // $ANTLR end "ruleBlock"
-
-    public static outerAlternative_return = class outerAlternative_return extends TreeRuleReturnScope {
-        public isLeftRec: boolean;
-    };
-
-    protected static readonly DFA14_transition: Int16Array[]; // which outer alt of rule?
     public numAlts: number;
 
     protected ruleName: string;
 
+    /**
+     * When set, outer alternatives are classified the way the generated walker did it: by speculatively parsing each
+     * alternative as binary, prefix and suffix alternative in turn. Otherwise the shape of the alternative is
+     * determined with a single scan over its children, which gives the same result for any tree the grammar parser
+     * produces.
+     */
+    protected classifyBySpeculation = false;
+
     private currentOuterAltNumber: number;
 
     // delegators
@@ -377,7 +373,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
             }
 
             if (this.state.backtracking === 0) {
-                isLeftRec = ruleBlock1.isLeftRec;
+                isLeftRec = ruleBlock1;
             }
             this.exceptionGroup();
 
@@ -573,26 +569,26 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
     // $ANTLR start "ruleBlock"
     // org/antlr/v4/parse/LeftRecursiveRuleWalker.g:101:1: ruleBlock returns [boolean isLeftRec] : ^( BLOCK (o= outerAlternative )+ ) ;
-    public ruleBlock(): LeftRecursiveRuleWalker.ruleBlock_return {
-        const retval = new LeftRecursiveRuleWalker.ruleBlock_return();
-        retval.start = this.input.LT(1);
+    public ruleBlock(): boolean {
+        const start = this.input.LT(1) as GrammarAST;
+        let isLeftRec = false;
 
         let o = null;
 
-        this.numAlts = (retval.start as GrammarAST).getChildCount();
+        this.numAlts = start.getChildCount();
         // org/antlr/v4/parse/LeftRecursiveRuleWalker.g:103:2: ( ^( BLOCK (o= outerAlternative )+ ) )
         // org/antlr/v4/parse/LeftRecursiveRuleWalker.g:103:4: ^( BLOCK (o= outerAlternative )+ )
         {
             this.match(this.input, ANTLRv4Lexer.BLOCK, null);
 
             if (this.state.failed) {
-                return retval;
+                return isLeftRec;
             }
 
             this.match(this.input, Constants.DOWN, null);
             // eslint-disable-next-line @typescript-eslint/no-unnecessary-condition
             if (this.state.failed) {
-                return retval;
+                return isLeftRec;
             }
 
             // org/antlr/v4/parse/LeftRecursiveRuleWalker.g:104:4: (o= outerAlternative )+
@@ -612,12 +608,12 @@ export class LeftRecursiveRuleWalker extends TreeParser {
                             o = this.outerAlternative();
                             // eslint-disable-next-line @typescript-eslint/no-unnecessary-condition
                             if (this.state.failed) {
-                                return retval;
+                                return isLeftRec;
                             }
 
                             if (this.state.backtracking === 0) {
-                                if (o.isLeftRec) {
-                                    retval.isLeftRec = true;
+                                if (o) {
+                                    isLeftRec = true;
                                 }
                             }
                             if (this.state.backtracking === 0) {
@@ -635,7 +631,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
                         if (this.state.backtracking > 0) {
                             this.state.failed = true;
 
-                            return retval;
+                            return isLeftRec;
                         }
                         const eee = new EarlyExitException(8, this.input);
                         throw eee;
@@ -649,25 +645,27 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
             // eslint-disable-next-line @typescript-eslint/no-unnecessary-condition
             if (this.state.failed) {
-                return retval;
+                return isLeftRec;
             }
 
         }
 
-        return retval;
+        return isLeftRec;
     }
 
     // $ANTLR start "outerAlternative"
     // org/antlr/v4/parse/LeftRecursiveRuleWalker.g:113:1: outerAlternative returns [boolean isLeftRec] : ( ( binary )=> binary | ( prefix )=> prefix | ( suffix )=> suffix | nonLeftRecur );
-    public outerAlternative(): LeftRecursiveRuleWalker.outerAlternative_return {
-        const retval = new LeftRecursiveRuleWalker.outerAlternative_return();
-        retval.start = this.input.LT(1);
+    public outerAlternative(): boolean {
+        const start = this.input.LT(1) as GrammarAST;
+        let isLeftRec = false;
 
         // org/antlr/v4/parse/LeftRecursiveRuleWalker.g:114:5: ( ( binary )=> binary | ( prefix )=> prefix | ( suffix )=> suffix | nonLeftRecur )
         let alt9 = 4;
         const LA9_0 = this.input.LA(1);
         if ((LA9_0 === ANTLRv4Lexer.ALT)) {
-            if ((this.synpred1_LeftRecursiveRuleWalker())) {
+            if (!this.classifyBySpeculation) {
+                alt9 = this.classifyOuterAlternative(this.input.LT(1) as GrammarAST);
+            } else if ((this.synpred1_LeftRecursiveRuleWalker())) {
                 alt9 = 1;
             } else {
                 if ((this.synpred2_LeftRecursiveRuleWalker())) {
@@ -686,7 +684,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
             if (this.state.backtracking > 0) {
                 this.state.failed = true;
 
-                return retval;
+                return isLeftRec;
             }
             const nvae = new NoViableAltException("", 9, 0, this.input);
             throw nvae;
@@ -699,11 +697,11 @@ export class LeftRecursiveRuleWalker extends TreeParser {
                     this.binary();
 
                     if (this.state.failed) {
-                        return retval;
+                        return isLeftRec;
                     }
 
                     if (this.state.backtracking === 0) {
-                        this.binaryAlt((retval.start as GrammarAST) as AltAST, this.currentOuterAltNumber); retval.isLeftRec = true;
+                        this.binaryAlt(start as AltAST, this.currentOuterAltNumber); isLeftRec = true;
                     }
                 }
                 break;
@@ -715,11 +713,11 @@ export class LeftRecursiveRuleWalker extends TreeParser {
                     this.prefix();
 
                     if (this.state.failed) {
-                        return retval;
+                        return isLeftRec;
                     }
 
                     if (this.state.backtracking === 0) {
-                        this.prefixAlt((retval.start as GrammarAST) as AltAST, this.currentOuterAltNumber);
+                        this.prefixAlt(start as AltAST, this.currentOuterAltNumber);
                     }
                 }
                 break;
@@ -731,11 +729,11 @@ export class LeftRecursiveRuleWalker extends TreeParser {
                     this.suffix();
 
                     if (this.state.failed) {
-                        return retval;
+                        return isLeftRec;
                     }
 
                     if (this.state.backtracking === 0) {
-                        this.suffixAlt((retval.start as GrammarAST) as AltAST, this.currentOuterAltNumber); retval.isLeftRec = true;
+                        this.suffixAlt(start as AltAST, this.currentOuterAltNumber); isLeftRec = true;
                     }
                 }
                 break;
@@ -747,11 +745,11 @@ export class LeftRecursiveRuleWalker extends TreeParser {
                     this.nonLeftRecur();
 
                     if (this.state.failed) {
-                        return retval;
+                        return isLeftRec;
                     }
 
                     if (this.state.backtracking === 0) {
-                        this.otherAlt((retval.start as GrammarAST) as AltAST, this.currentOuterAltNumber);
+                        this.otherAlt(start as AltAST, this.currentOuterAltNumber);
                     }
                 }
                 break;
@@ -761,7 +759,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
         }
 
-        return retval;
+        return isLeftRec;
     }
     // $ANTLR end "outerAlternative"
 
@@ -1417,16 +1415,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return t;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 21, 3, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 21, 3, this.input);
                         }
                     }
 
@@ -1448,16 +1437,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return t;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 21, 4, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 21, 4, this.input);
                         }
                     }
 
@@ -1789,18 +1769,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                     return;
                                 }
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                        this.input.consume();
-                                    }
-                                    const nvae = new NoViableAltException("", 23, 4, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 23, 4, this.input);
                             }
 
                         }
@@ -1810,18 +1779,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                             return;
                         }
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                this.input.consume();
-                            }
-                            const nvae = new NoViableAltException("", 23, 3, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 23, 3, this.input);
                     }
 
                 } else {
@@ -1830,16 +1788,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                         return;
                     }
-                    const nvaeMark = this.input.mark();
-                    const lastIndex = this.input.index;
-                    try {
-                        this.input.consume();
-                        const nvae = new NoViableAltException("", 23, 2, this.input);
-                        throw nvae;
-                    } finally {
-                        this.input.seek(lastIndex);
-                        this.input.release(nvaeMark);
-                    }
+                    throw new NoViableAltException("", 23, 2, this.input);
                 }
 
             } else {
@@ -2058,16 +2007,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 25, 1, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 25, 1, this.input);
                         }
                     }
 
@@ -2451,16 +2391,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 26, 1, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 26, 1, this.input);
                         }
                     }
 
@@ -2482,16 +2413,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 26, 2, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 26, 2, this.input);
                         }
                     }
 
@@ -2650,16 +2572,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                         return;
                     }
-                    const nvaeMark = this.input.mark();
-                    const lastIndex = this.input.index;
-                    try {
-                        this.input.consume();
-                        const nvae = new NoViableAltException("", 27, 1, this.input);
-                        throw nvae;
-                    } finally {
-                        this.input.seek(lastIndex);
-                        this.input.release(nvaeMark);
-                    }
+                    throw new NoViableAltException("", 27, 1, this.input);
                 }
             }
 
@@ -2677,17 +2590,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                             return;
                         }
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae =
-                                new NoViableAltException("", 27, 2, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 27, 2, this.input);
                     }
                 }
 
@@ -3190,16 +3093,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 35, 2, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 35, 2, this.input);
                         }
                     }
 
@@ -3221,16 +3115,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 35, 3, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 35, 3, this.input);
                         }
                     }
 
@@ -3252,16 +3137,7 @@ export class LeftRecursiveRuleWalker extends TreeParser {
 
                                 return;
                             }
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 35, 4, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 35, 4, this.input);
                         }
                     }
 
@@ -3652,6 +3528,188 @@ export class LeftRecursiveRuleWalker extends TreeParser {
         return success;
     };
 
+    /**
+     * Determines which of the outer alternative forms (binary, prefix, suffix or other) matches the given ALT node,
+     * in a single scan over its children. This follows the rules binary, prefix and suffix exactly, including the
+     * greedy element loops and their prediction, but looks at the child nodes instead of parsing them.
+     *
+     * @param alt The ALT node to classify.
+     *
+     * @returns The alternative of the outerAlternative rule to take (1 = binary, 2 = prefix, 3 = suffix,
+     *          4 = nonLeftRecur).
+     */
+    private classifyOuterAlternative(alt: GrammarAST): number {
+        const count = alt.getChildCount();
+        if (count === 0) {
+            return 4;
+        }
+
+        const start = alt.getChild(0)!.getType() === ANTLRv4Lexer.ELEMENT_OPTIONS ? 1 : 0;
+
+        if (this.isRecursion(alt, start)) {
+            // binary: recurse element* recurse epsilonElement*
+            let i = this.skipElements(alt, start + 1);
+            if (this.isRecursion(alt, i) && this.skipEpsilonElements(alt, i + 1) === count) {
+                return 1;
+            }
+
+            // suffix: recurse element+
+            for (i = start + 1; i < count; ++i) {
+                if (!this.isElementType(alt.getChild(i)!.getType())) {
+                    break;
+                }
+            }
+
+            if (i > start + 1 && i === count) {
+                return 3;
+            }
+
+            return 4;
+        }
+
+        // prefix: element+ recurse epsilonElement*
+        const i = this.skipElements(alt, start);
+        if (i > start && this.isRecursion(alt, i) && this.skipEpsilonElements(alt, i + 1) === count) {
+            return 2;
+        }
+
+        return 4;
+    }
+
+    /**
+     * Skips all children of the given node, starting at the given index, for which the element loop in binary and
+     * prefix would continue (see {@link predictElement}).
+     *
+     * @param parent The node whose children are scanned.
+     * @param index The index of the first child to check.
+     *
+     * @returns The index of the first child not taken by the loop.
+     */
+    private skipElements(parent: GrammarAST, index: number): number {
+        const count = parent.getChildCount();
+        while (index < count) {
+            const child = parent.getChild(index)!;
+            switch (child.getType()) {
+                case ANTLRv4Lexer.RULE_REF: {
+                    if (index + 1 === count && child.getChildCount() === 0 && child.getText() === this.ruleName) {
+                        return index;
+                    }
+
+                    break;
+                }
+
+                case ANTLRv4Lexer.ASSIGN:
+                case ANTLRv4Lexer.PLUS_ASSIGN: {
+                    const labeled = child.getChild(1);
+                    if (labeled?.getType() === ANTLRv4Lexer.RULE_REF && labeled.getText() === this.ruleName) {
+                        return index;
+                    }
+
+                    break;
+                }
+
+                default: {
+                    if (!this.isElementType(child.getType())) {
+                        return index;
+                    }
+
+                    break;
+                }
+            }
+
+            ++index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Skips all children of the given node, starting at the given index, which the rule epsilonElement matches.
+     *
+     * @param parent The node whose children are scanned.
+     * @param index The index of the first child to check.
+     *
+     * @returns The index of the first child that is not an epsilon element.
+     */
+    private skipEpsilonElements(parent: GrammarAST, index: number): number {
+        const count = parent.getChildCount();
+        while (index < count) {
+            switch (parent.getChild(index)!.getType()) {
+                case ANTLRv4Lexer.ACTION:
+                case ANTLRv4Lexer.SEMPRED:
+                case ANTLRv4Lexer.EPSILON: {
+                    ++index;
+                    break;
+                }
+
+                default: {
+                    return index;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @param parent The parent of the node to check.
+     * @param index The index of the node to check.
+     *
+     * @returns `true` if the rule recurse matches the child at the given index, that is, if it is a reference to
+     *          the current rule, without arguments or options and with an optional label.
+     */
+    private isRecursion(parent: GrammarAST, index: number): boolean {
+        let ref = parent.getChild(index) as GrammarAST | null;
+        if (!ref) {
+            return false;
+        }
+
+        const type = ref.getType();
+        if (type === ANTLRv4Lexer.ASSIGN || type === ANTLRv4Lexer.PLUS_ASSIGN) {
+            if (ref.getChildCount() !== 2 || ref.getChild(0)!.getType() !== ANTLRv4Lexer.ID) {
+                return false;
+            }
+
+            ref = ref.getChild(1) as GrammarAST;
+        }
+
+        return ref.getType() === ANTLRv4Lexer.RULE_REF && ref.getChildCount() === 0
+            && ref.getText() === this.ruleName;
+    }
+
+    /**
+     * @param type The token type to check.
+     *
+     * @returns `true` if the element rule can start with the given token type.
+     */
+    private isElementType(type: number): boolean {
+        switch (type) {
+            case ANTLRv4Lexer.STRING_LITERAL:
+            case ANTLRv4Lexer.TOKEN_REF:
+            case ANTLRv4Lexer.RULE_REF:
+            case ANTLRv4Lexer.ASSIGN:
+            case ANTLRv4Lexer.PLUS_ASSIGN:
+            case ANTLRv4Lexer.DOT:
+            case ANTLRv4Lexer.NOT:
+            case ANTLRv4Lexer.RANGE:
+            case ANTLRv4Lexer.SET:
+            case ANTLRv4Lexer.BLOCK:
+            case ANTLRv4Lexer.CLOSURE:
+            case ANTLRv4Lexer.OPTIONAL:
+            case ANTLRv4Lexer.POSITIVE_CLOSURE:
+            case ANTLRv4Lexer.ACTION:
+            case ANTLRv4Lexer.SEMPRED:
+            case ANTLRv4Lexer.WILDCARD:
+            case ANTLRv4Lexer.EPSILON: {
+                return true;
+            }
+
+            default: {
+                return false;
+            }
+        }
+    }
+
     /**
      * A manual implementation of the ANTLR3 DFA prediction for the element rule.
      *
@@ -3708,8 +3766,3 @@ export class LeftRecursiveRuleWalker extends TreeParser {
         }
     }
 }
-
-export namespace LeftRecursiveRuleWalker {
-    export type ruleBlock_return = InstanceType<typeof LeftRecursiveRuleWalker.ruleBlock_return>;
-    export type outerAlternative_return = InstanceType<typeof LeftRecursiveRuleWalker.outerAlternative_return>;
-}
@@ -17,6 +17,7 @@ import type { ActionAST } from "../tool/ast/ActionAST.js";
 import type { AltAST } from "../tool/ast/AltAST.js";
 import type { BlockAST } from "../tool/ast/BlockAST.js";
 import type { GrammarAST } from "../tool/ast/GrammarAST.js";
+import type { CommonTree } from "../tree/CommonTree.js";
 
 /*
  * Copyright (c) The ANTLR Project. All rights reserved.
@@ -44,20 +45,13 @@ export class SourceGenTriggers extends TreeParser {
         "RULE", "RULEMODIFIERS", "RULES", "SET", "WILDCARD"
     ];
 
-    public static alternative_return = class alternative_return extends TreeRuleReturnScope {
-        public altCodeBlock: CodeBlockForAlt;
-        public ops: SrcOp[];
-    };
-
-    // $ANTLR end "alternative"
-
     public static alt_return = class alt_return extends TreeRuleReturnScope {
         public altCodeBlock: CodeBlockForAlt;
         public ops?: SrcOp[];
     };
 
     public controller?: OutputModelController;
-    public hasLookaheadBlock: boolean;
+    public hasLookaheadBlock = false;
 
     public constructor(input: TreeNodeStream, stateOrController?: IRecognizerSharedState | OutputModelController) {
         let state: IRecognizerSharedState | undefined;
@@ -75,6 +69,11 @@ export class SourceGenTriggers extends TreeParser {
         this.controller = controller;
     }
 
+    public override resetTo(tree: CommonTree): void {
+        super.resetTo(tree);
+        this.hasLookaheadBlock = false;
+    }
+
     public getDelegates(): TreeParser[] {
         return [];
     }
@@ -200,7 +199,7 @@ export class SourceGenTriggers extends TreeParser {
                             {
                                 alternative1 = this.alternative();
 
-                                alts.push(alternative1.altCodeBlock);
+                                alts.push(alternative1!);
                             }
                             break;
                         }
@@ -249,10 +248,9 @@ export class SourceGenTriggers extends TreeParser {
 
     // $ANTLR start "alternative"
     // ./SourceGenTriggers.g:79:1: alternative returns [CodeBlockForAlt altCodeBlock, List<SrcOp> ops] : a= alt[outerMost] ;
-    public alternative(): SourceGenTriggers.alternative_return {
-        const retval = new SourceGenTriggers.alternative_return();
-        retval.start = this.input.LT(1);
-
+    public alternative(): CodeBlockForAlt | undefined {
+        let altCodeBlock: CodeBlockForAlt | undefined;
+        let ops: SrcOp[] = [];
         let a = null;
 
         const outerMost = this.inContext("RULE BLOCK");
@@ -263,11 +261,11 @@ export class SourceGenTriggers extends TreeParser {
             {
                 a = this.alt(outerMost);
 
-                retval.altCodeBlock = a.altCodeBlock;
-                retval.ops = a.ops ?? [];
+                altCodeBlock = a.altCodeBlock;
+                ops = a.ops ?? [];
             }
 
-            this.controller!.finishAlternative(retval.altCodeBlock, retval.ops, outerMost);
+            this.controller!.finishAlternative(altCodeBlock, ops, outerMost);
 
         } catch (re) {
             if (re instanceof RecognitionException) {
@@ -279,7 +277,7 @@ export class SourceGenTriggers extends TreeParser {
             // do for sure before leaving
         }
 
-        return retval;
+        return altCodeBlock;
     }
 
     // $ANTLR start "alt"
@@ -497,16 +495,7 @@ export class SourceGenTriggers extends TreeParser {
                             if (((LA8_4 >= Constants.UP && LA8_4 <= ANTLRv4Lexer.ACTION) || LA8_4 === ANTLRv4Lexer.ASSIGN || LA8_4 === ANTLRv4Lexer.DOT || LA8_4 === ANTLRv4Lexer.NOT || LA8_4 === ANTLRv4Lexer.PLUS_ASSIGN || LA8_4 === ANTLRv4Lexer.RANGE || LA8_4 === ANTLRv4Lexer.RULE_REF || LA8_4 === ANTLRv4Lexer.SEMPRED || LA8_4 === ANTLRv4Lexer.STRING_LITERAL || LA8_4 === ANTLRv4Lexer.TOKEN_REF || (LA8_4 >= ANTLRv4Lexer.BLOCK && LA8_4 <= ANTLRv4Lexer.CLOSURE) || (LA8_4 >= ANTLRv4Lexer.OPTIONAL && LA8_4 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA8_4 >= ANTLRv4Lexer.SET && LA8_4 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt8 = 4;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae = new NoViableAltException("", 8, 4, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 8, 4, this.input);
                             }
                         }
 
@@ -523,16 +512,7 @@ export class SourceGenTriggers extends TreeParser {
                             if (((LA8_5 >= Constants.UP && LA8_5 <= ANTLRv4Lexer.ACTION) || LA8_5 === ANTLRv4Lexer.ASSIGN || LA8_5 === ANTLRv4Lexer.DOT || LA8_5 === ANTLRv4Lexer.NOT || LA8_5 === ANTLRv4Lexer.PLUS_ASSIGN || LA8_5 === ANTLRv4Lexer.RANGE || LA8_5 === ANTLRv4Lexer.RULE_REF || LA8_5 === ANTLRv4Lexer.SEMPRED || LA8_5 === ANTLRv4Lexer.STRING_LITERAL || LA8_5 === ANTLRv4Lexer.TOKEN_REF || (LA8_5 >= ANTLRv4Lexer.BLOCK && LA8_5 <= ANTLRv4Lexer.CLOSURE) || (LA8_5 >= ANTLRv4Lexer.OPTIONAL && LA8_5 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA8_5 >= ANTLRv4Lexer.SET && LA8_5 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt8 = 5;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae = new NoViableAltException("", 8, 5, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 8, 5, this.input);
                             }
                         }
 
@@ -671,47 +651,16 @@ export class SourceGenTriggers extends TreeParser {
                             if ((LA9_5 === ANTLRv4Lexer.BLOCK)) {
                                 alt9 = 3;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                        this.input.consume();
-                                    }
-                                    const nvae = new NoViableAltException("", 9, 5, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 9, 5, this.input);
                             }
                         }
 
                     } else {
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                this.input.consume();
-                            }
-                            const nvae = new NoViableAltException("", 9, 3, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 9, 3, this.input);
                     }
 
                 } else {
-                    const nvaeMark = this.input.mark();
-                    const lastIndex = this.input.index;
-                    try {
-                        this.input.consume();
-                        const nvae = new NoViableAltException("", 9, 1, this.input);
-                        throw nvae;
-                    } finally {
-                        this.input.seek(lastIndex);
-                        this.input.release(nvaeMark);
-                    }
+                    throw new NoViableAltException("", 9, 1, this.input);
                 }
 
             } else {
@@ -727,47 +676,16 @@ export class SourceGenTriggers extends TreeParser {
                                 if ((LA9_6 === ANTLRv4Lexer.BLOCK)) {
                                     alt9 = 4;
                                 } else {
-                                    const nvaeMark = this.input.mark();
-                                    const lastIndex = this.input.index;
-                                    try {
-                                        for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                            this.input.consume();
-                                        }
-                                        const nvae = new NoViableAltException("", 9, 6, this.input);
-                                        throw nvae;
-                                    } finally {
-                                        this.input.seek(lastIndex);
-                                        this.input.release(nvaeMark);
-                                    }
+                                    throw new NoViableAltException("", 9, 6, this.input);
                                 }
                             }
 
                         } else {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                    this.input.consume();
-                                }
-                                const nvae = new NoViableAltException("", 9, 4, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 9, 4, this.input);
                         }
 
                     } else {
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae = new NoViableAltException("", 9, 2, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 9, 2, this.input);
                     }
 
                 } else {
@@ -1113,47 +1031,16 @@ export class SourceGenTriggers extends TreeParser {
                                     if ((LA13_11 === ANTLRv4Lexer.RULE_REF)) {
                                         alt13 = 4;
                                     } else {
-                                        const nvaeMark = this.input.mark();
-                                        const lastIndex = this.input.index;
-                                        try {
-                                            for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                                this.input.consume();
-                                            }
-                                            const nvae = new NoViableAltException("", 13, 11, this.input);
-                                            throw nvae;
-                                        } finally {
-                                            this.input.seek(lastIndex);
-                                            this.input.release(nvaeMark);
-                                        }
+                                        throw new NoViableAltException("", 13, 11, this.input);
                                     }
                                 }
 
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                        this.input.consume();
-                                    }
-                                    const nvae = new NoViableAltException("", 13, 8, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 13, 8, this.input);
                             }
 
                         } else {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 13, 3, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 13, 3, this.input);
                         }
 
                     }
@@ -1169,16 +1056,7 @@ export class SourceGenTriggers extends TreeParser {
                             if (((LA13_4 >= Constants.UP && LA13_4 <= ANTLRv4Lexer.ACTION) || LA13_4 === ANTLRv4Lexer.ASSIGN || LA13_4 === ANTLRv4Lexer.DOT || LA13_4 === ANTLRv4Lexer.NOT || LA13_4 === ANTLRv4Lexer.PLUS_ASSIGN || LA13_4 === ANTLRv4Lexer.RANGE || LA13_4 === ANTLRv4Lexer.RULE_REF || LA13_4 === ANTLRv4Lexer.SEMPRED || LA13_4 === ANTLRv4Lexer.STRING_LITERAL || LA13_4 === ANTLRv4Lexer.TOKEN_REF || (LA13_4 >= ANTLRv4Lexer.BLOCK && LA13_4 <= ANTLRv4Lexer.CLOSURE) || (LA13_4 >= ANTLRv4Lexer.OPTIONAL && LA13_4 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA13_4 >= ANTLRv4Lexer.SET && LA13_4 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt13 = 6;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    this.input.consume();
-                                    const nvae = new NoViableAltException("", 13, 4, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 13, 4, this.input);
                             }
                         }
 
@@ -1467,16 +1345,7 @@ export class SourceGenTriggers extends TreeParser {
                     if (((LA16_1 >= Constants.UP && LA16_1 <= ANTLRv4Lexer.ACTION) || LA16_1 === ANTLRv4Lexer.ASSIGN || LA16_1 === ANTLRv4Lexer.DOT || LA16_1 === ANTLRv4Lexer.NOT || LA16_1 === ANTLRv4Lexer.PLUS_ASSIGN || LA16_1 === ANTLRv4Lexer.RANGE || LA16_1 === ANTLRv4Lexer.RULE_REF || LA16_1 === ANTLRv4Lexer.SEMPRED || LA16_1 === ANTLRv4Lexer.STRING_LITERAL || LA16_1 === ANTLRv4Lexer.TOKEN_REF || (LA16_1 >= ANTLRv4Lexer.BLOCK && LA16_1 <= ANTLRv4Lexer.CLOSURE) || (LA16_1 >= ANTLRv4Lexer.OPTIONAL && LA16_1 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA16_1 >= ANTLRv4Lexer.SET && LA16_1 <= ANTLRv4Lexer.WILDCARD))) {
                         alt16 = 2;
                     } else {
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae = new NoViableAltException("", 16, 1, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 16, 1, this.input);
                     }
                 }
 
@@ -1493,18 +1362,7 @@ export class SourceGenTriggers extends TreeParser {
                                 if (((LA16_7 >= Constants.DOWN && LA16_7 <= Constants.UP))) {
                                     alt16 = 4;
                                 } else {
-                                    const nvaeMark = this.input.mark();
-                                    const lastIndex = this.input.index;
-                                    try {
-                                        for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                            this.input.consume();
-                                        }
-                                        const nvae = new NoViableAltException("", 16, 7, this.input);
-                                        throw nvae;
-                                    } finally {
-                                        this.input.seek(lastIndex);
-                                        this.input.release(nvaeMark);
-                                    }
+                                    throw new NoViableAltException("", 16, 7, this.input);
                                 }
                             }
 
@@ -1512,18 +1370,7 @@ export class SourceGenTriggers extends TreeParser {
                             if (((LA16_5 >= ANTLRv4Lexer.ACTION && LA16_5 <= ANTLRv4Lexer.ACTION_STRING_LITERAL) || (LA16_5 >= ANTLRv4Lexer.ARG_OR_CHARSET && LA16_5 <= ANTLRv4Lexer.WILDCARD))) {
                                 alt16 = 4;
                             } else {
-                                const nvaeMark = this.input.mark();
-                                const lastIndex = this.input.index;
-                                try {
-                                    for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                        this.input.consume();
-                                    }
-                                    const nvae = new NoViableAltException("", 16, 5, this.input);
-                                    throw nvae;
-                                } finally {
-                                    this.input.seek(lastIndex);
-                                    this.input.release(nvaeMark);
-                                }
+                                throw new NoViableAltException("", 16, 5, this.input);
                             }
                         }
 
@@ -1531,16 +1378,7 @@ export class SourceGenTriggers extends TreeParser {
                         if (((LA16_2 >= Constants.UP && LA16_2 <= ANTLRv4Lexer.ACTION) || LA16_2 === ANTLRv4Lexer.ASSIGN || LA16_2 === ANTLRv4Lexer.DOT || LA16_2 === ANTLRv4Lexer.NOT || LA16_2 === ANTLRv4Lexer.PLUS_ASSIGN || LA16_2 === ANTLRv4Lexer.RANGE || LA16_2 === ANTLRv4Lexer.RULE_REF || LA16_2 === ANTLRv4Lexer.SEMPRED || LA16_2 === ANTLRv4Lexer.STRING_LITERAL || LA16_2 === ANTLRv4Lexer.TOKEN_REF || (LA16_2 >= ANTLRv4Lexer.BLOCK && LA16_2 <= ANTLRv4Lexer.CLOSURE) || (LA16_2 >= ANTLRv4Lexer.OPTIONAL && LA16_2 <= ANTLRv4Lexer.POSITIVE_CLOSURE) || (LA16_2 >= ANTLRv4Lexer.SET && LA16_2 <= ANTLRv4Lexer.WILDCARD))) {
                             alt16 = 5;
                         } else {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                this.input.consume();
-                                const nvae = new NoViableAltException("", 16, 2, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 16, 2, this.input);
                         }
                     }
 
@@ -1731,47 +1569,16 @@ export class SourceGenTriggers extends TreeParser {
                                 }
 
                                 default: {
-                                    const nvaeMark = this.input.mark();
-                                    const lastIndex = this.input.index;
-                                    try {
-                                        for (let nvaeConsume = 0; nvaeConsume < 4 - 1; nvaeConsume++) {
-                                            this.input.consume();
-                                        }
-                                        const nvae = new NoViableAltException("", 18, 4, this.input);
-                                        throw nvae;
-                                    } finally {
-                                        this.input.seek(lastIndex);
-                                        this.input.release(nvaeMark);
-                                    }
+                                    throw new NoViableAltException("", 18, 4, this.input);
                                 }
 
                             }
                         } else {
-                            const nvaeMark = this.input.mark();
-                            const lastIndex = this.input.index;
-                            try {
-                                for (let nvaeConsume = 0; nvaeConsume < 3 - 1; nvaeConsume++) {
-                                    this.input.consume();
-                                }
-                                const nvae = new NoViableAltException("", 18, 3, this.input);
-                                throw nvae;
-                            } finally {
-                                this.input.seek(lastIndex);
-                                this.input.release(nvaeMark);
-                            }
+                            throw new NoViableAltException("", 18, 3, this.input);
                         }
 
                     } else {
-                        const nvaeMark = this.input.mark();
-                        const lastIndex = this.input.index;
-                        try {
-                            this.input.consume();
-                            const nvae = new NoViableAltException("", 18, 2, this.input);
-                            throw nvae;
-                        } finally {
-                            this.input.seek(lastIndex);
-                            this.input.release(nvaeMark);
-                        }
+                        throw new NoViableAltException("", 18, 2, this.input);
                     }
 
                 } else {
@@ -1859,6 +1666,5 @@ export class SourceGenTriggers extends TreeParser {
 }
 
 export namespace SourceGenTriggers {
-    export type alternative_return = InstanceType<typeof SourceGenTriggers.alternative_return>;
     export type alt_return = InstanceType<typeof SourceGenTriggers.alt_return>;
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { Grammar } from "../src/tool/index.js";
+import type { AltAST } from "../src/tool/ast/AltAST.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import type { RuleAST } from "../src/tool/ast/RuleAST.js";
+import type { TerminalAST } from "../src/tool/ast/TerminalAST.js";
+import { CompositeGrammarTreeVisitor } from "../src/tree-walkers/CompositeGrammarTreeVisitor.js";
+import { GrammarTreeVisitor } from "../src/tree-walkers/GrammarTreeVisitor.js";
+
+describe("TestCompositeGrammarTreeVisitor", () => {
+    /** Records the callbacks it receives, together with the walker context at that time. */
+    class TraceVisitor extends GrammarTreeVisitor {
+        public readonly trace: string[] = [];
+
+        /** The number of full tree walks this visitor did itself. */
+        public passes = 0;
+
+        public override grammarSpec(): GrammarTreeVisitor.grammarSpec_return {
+            ++this.passes;
+
+            return super.grammarSpec();
+        }
+
+        public override discoverRule(rule: RuleAST | null, ID: GrammarAST | null): void {
+            this.trace.push(`discoverRule ${ID?.getText()}`);
+        }
+
+        public override finishRule(rule: RuleAST | null, ID: GrammarAST | null): void {
+            this.trace.push(`finishRule ${ID?.getText()}`);
+        }
+
+        public override discoverOuterAlt(alt: AltAST): void {
+            this.trace.push(`discoverOuterAlt ${this.currentRuleName}:${this.currentOuterAltNumber}`);
+        }
+
+        public override tokenRef(ref: TerminalAST): void {
+            this.trace.push(`tokenRef ${ref.getText()} in ${this.currentRuleName}:${this.currentOuterAltNumber}`);
+        }
+
+        public override stringRef(ref: TerminalAST): void {
+            this.trace.push(`stringRef ${ref.getText()} in ${this.currentRuleName}:${this.currentOuterAltNumber}`);
+        }
+
+        protected override enterElement(tree: GrammarAST): void {
+            this.trace.push(`enterElement ${tree.getText()}`);
+        }
+
+        protected override exitElement(tree: GrammarAST): void {
+            this.trace.push(`exitElement ${tree.getText()}`);
+        }
+    }
+
+    class CountingCompositeVisitor extends CompositeGrammarTreeVisitor {
+        public passes = 0;
+
+        public override grammarSpec(): GrammarTreeVisitor.grammarSpec_return {
+            ++this.passes;
+
+            return super.grammarSpec();
+        }
+    }
+
+    const createGrammar = (ruleCount: number): Grammar => {
+        let text = "parser grammar P;\n";
+        for (let i = 0; i < ruleCount; ++i) {
+            text += `r${i} : A 'x' r${(i + 1) % ruleCount} | B (C | 'y')* ;\n`;
+        }
+
+        return new Grammar(text);
+    };
+
+    it("Fans out callbacks in registration order", () => {
+        const g = createGrammar(1);
+
+        const tokens: string[] = [];
+        const single = new class extends GrammarTreeVisitor {
+            public override tokenRef(ref: TerminalAST): void {
+                tokens.push(ref.getText());
+            }
+        }();
+        single.visitGrammar(g.ast);
+
+        const order: string[] = [];
+        const first = new class extends GrammarTreeVisitor {
+            public override tokenRef(ref: TerminalAST): void {
+                order.push("first " + ref.getText());
+            }
+        }();
+
+        const second = new class extends GrammarTreeVisitor {
+            public override tokenRef(ref: TerminalAST): void {
+                order.push("second " + ref.getText());
+            }
+        }();
+
+        const composite = new CompositeGrammarTreeVisitor(first, second);
+        composite.visitGrammar(g.ast);
+
+        expect(tokens.length).toBeGreaterThan(0);
+        expect(order).toEqual(tokens.flatMap((token) => {
+            return ["first " + token, "second " + token];
+        }));
+    });
+
+    it("Produces the same callbacks and context as separate passes", () => {
+        const g = createGrammar(3);
+
+        const single = new TraceVisitor();
+        single.visitGrammar(g.ast);
+
+        const a = new TraceVisitor();
+        const b = new TraceVisitor();
+        const composite = new CompositeGrammarTreeVisitor(a, b);
+        composite.visitGrammar(g.ast);
+
+        expect(single.trace.length).toBeGreaterThan(0);
+        expect(a.trace).toEqual(single.trace);
+        expect(b.trace).toEqual(single.trace);
+    });
+
+    it("Benchmark: number of tree walks drops from N to 1", () => {
+        const g = createGrammar(1000);
+        const visitorCount = 5;
+
+        const separate: TraceVisitor[] = [];
+        for (let i = 0; i < visitorCount; ++i) {
+            const visitor = new TraceVisitor();
+            visitor.visitGrammar(g.ast);
+            separate.push(visitor);
+        }
+
+        const combined: TraceVisitor[] = [];
+        for (let i = 0; i < visitorCount; ++i) {
+            combined.push(new TraceVisitor());
+        }
+
+        const composite = new CountingCompositeVisitor(...combined);
+        composite.visitGrammar(g.ast);
+
+        let separatePasses = 0;
+        for (const visitor of separate) {
+            separatePasses += visitor.passes;
+        }
+
+        let combinedPasses = composite.passes;
+        for (const visitor of combined) {
+            combinedPasses += visitor.passes;
+        }
+
+        expect(separatePasses).toBe(visitorCount);
+        expect(combinedPasses).toBe(1);
+
+        for (let i = 0; i < visitorCount; ++i) {
+            expect(combined[i].trace).toEqual(separate[i].trace);
+        }
+    });
+});
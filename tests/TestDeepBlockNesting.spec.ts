@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { readFileSync } from "node:fs";
+import { dirname, join } from "node:path";
+
+import { ATN, ATNSerializer, CommonToken } from "antlr4ng";
+
+import { LexerATNFactory } from "../src/automata/LexerATNFactory.js";
+import { ParserATNFactory } from "../src/automata/ParserATNFactory.js";
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import { AltAST } from "../src/tool/ast/AltAST.js";
+import { BlockAST } from "../src/tool/ast/BlockAST.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { OptionalBlockAST } from "../src/tool/ast/OptionalBlockAST.js";
+import { TerminalAST } from "../src/tool/ast/TerminalAST.js";
+import { Grammar } from "../src/tool/index.js";
+import { LexerGrammar } from "../src/tool/LexerGrammar.js";
+import { GrammarTreeVisitor } from "../src/tree-walkers/GrammarTreeVisitor.js";
+
+/**
+ * The direct walking engines of the grammar tree visitor and the ATN builder keep nested blocks on an explicit work
+ * stack. They must handle any nesting depth and produce the same results as the stream based (recursive) walkers.
+ */
+describe("TestDeepBlockNesting", () => {
+    /** Records the blocks, alternatives and token references it sees, and how deeply blocks are nested. */
+    class NestingVisitor extends GrammarTreeVisitor {
+        public readonly trace: string[] = [];
+
+        public depth = 0;
+        public maxDepth = 0;
+
+        public override tokenRef(ref: TerminalAST): void {
+            this.trace.push(ref.getText());
+        }
+
+        protected override enterBlock(tree: GrammarAST): void {
+            this.trace.push("(");
+            this.maxDepth = Math.max(this.maxDepth, ++this.depth);
+        }
+
+        protected override exitBlock(tree: GrammarAST): void {
+            this.trace.push(")");
+            --this.depth;
+        }
+
+        protected override enterAlternative(tree: AltAST): void {
+            this.trace.push("alt");
+        }
+
+        protected override exitAlternative(tree: AltAST): void {
+            this.trace.push("end");
+        }
+    }
+
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    /** @returns The ATN of the given grammar, built with or without the `directAtnWalk` tool parameter. */
+    const createATN = (g: Grammar, direct: boolean): ATN => {
+        g.tool.toolParameters.directAtnWalk = direct;
+        const factory = g instanceof LexerGrammar ? new LexerATNFactory(g) : new ParserATNFactory(g);
+
+        return factory.createATN();
+    };
+
+    const createTokenRef = (name: string): TerminalAST => {
+        return new TerminalAST(CommonToken.fromType(ANTLRv4Parser.TOKEN_REF, name));
+    };
+
+    /**
+     * Builds a rule block with the given number of nested blocks. The tree is created directly, because the grammar
+     * parser recurses for each nesting level too.
+     *
+     * @param depth The number of nested blocks.
+     * @param optional If true the nested blocks are optional and have a second alternative:
+     *                 `A (A (... B)? | B)? | B`. Otherwise each block has a single alternative: `A (A (... B))`.
+     *
+     * @returns The outermost block.
+     */
+    const createNestedBlock = (depth: number, optional: boolean): BlockAST => {
+        let block = new BlockAST(ANTLRv4Parser.BLOCK);
+        const innermost = new AltAST(ANTLRv4Parser.ALT);
+        innermost.addChild(createTokenRef("B"));
+        block.addChild(innermost);
+
+        for (let i = 0; i < depth; ++i) {
+            const alt = new AltAST(ANTLRv4Parser.ALT);
+            alt.addChild(createTokenRef("A"));
+            if (optional) {
+                const subrule = new OptionalBlockAST(ANTLRv4Parser.OPTIONAL,
+                    CommonToken.fromType(ANTLRv4Parser.OPTIONAL, "?"), true);
+                subrule.addChild(block);
+                alt.addChild(subrule);
+            } else {
+                alt.addChild(block);
+            }
+
+            block = new BlockAST(ANTLRv4Parser.BLOCK);
+            block.addChild(alt);
+            if (optional) {
+                const second = new AltAST(ANTLRv4Parser.ALT);
+                second.addChild(createTokenRef("B"));
+                block.addChild(second);
+            }
+        }
+
+        return block;
+    };
+
+    /** @returns A processed grammar whose rule `a` has the given block. */
+    const createGrammar = (block: BlockAST): Grammar => {
+        const g = new Grammar("parser grammar P;\ntokens { A, B }\na : A ;\n");
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        const rule = g.getRule("a")!.ast;
+        rule.setChild(rule.getFirstChildWithType(ANTLRv4Parser.BLOCK)!.getChildIndex(), block);
+
+        return g;
+    };
+
+    /** @returns The number of transitions in the ATN which match the given token type. */
+    const countTransitions = (atn: ATN, type: number): number => {
+        let count = 0;
+        for (const state of atn.states) {
+            for (const transition of state?.transitions ?? []) {
+                if (transition.label?.contains(type)) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    };
+
+    /**
+     * Walks and builds a rule with the given nesting depth using the direct engines and checks the result.
+     *
+     * @param depth The number of nested blocks.
+     * @param optional Whether to use optional blocks with two alternatives.
+     *
+     * @returns The grammar with the nested rule.
+     */
+    const checkNesting = (depth: number, optional: boolean): Grammar => {
+        const g = createGrammar(createNestedBlock(depth, optional));
+        const rule = g.getRule("a")!.ast;
+
+        const visitor = new NestingVisitor();
+        visitor.directWalking = true;
+        visitor.visit(rule, ANTLRv4Parser.RULE_ruleSpec);
+        expect(visitor.maxDepth).toBe(depth);
+        expect(visitor.depth).toBe(0);
+        expect(visitor.trace.filter((entry) => { return entry === "A"; }).length).toBe(depth);
+
+        const atn = createATN(g, true);
+        const typeA = g.getTokenType("A");
+        const typeB = g.getTokenType("B");
+        expect(countTransitions(atn, typeA)).toBe(depth);
+        expect(countTransitions(atn, typeB)).toBe(optional ? depth + 1 : 1);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return g;
+    };
+
+    it("Direct ATN building gives the same ATN", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            const g = new Grammar(readGrammar(name));
+            g.tool.process(g, false);
+            expect(g.tool.getNumErrors()).toBe(0);
+
+            const atn = ATNSerializer.getSerialized(createATN(g, false));
+            expect(ATNSerializer.getSerialized(createATN(g, true))).toEqual(atn);
+        }
+
+        const lg = new LexerGrammar(
+            "lexer grammar L;\n" +
+            "A : 'a' ('b' | 'c')* -> skip ;\n" +
+            "B : ~[x-z] | 'd'..'f' | ~('g' | 'h') ;\n" +
+            "C : ('x' ('y' 'z'?)+)? 'w' -> type(A), channel(HIDDEN) ;\n" +
+            "D : [0-9]+ {action();} ;\n" +
+            "fragment E : . ;\n" +
+            "mode M;\n" +
+            "F : 'f' -> popMode, more ;\n");
+        lg.tool.process(lg, false);
+        expect(lg.tool.getNumErrors()).toBe(0);
+
+        const lexerATN = ATNSerializer.getSerialized(createATN(lg, false));
+        expect(ATNSerializer.getSerialized(createATN(lg, true))).toEqual(lexerATN);
+    });
+
+    it("Nesting depth 10", () => {
+        const g = checkNesting(10, true);
+        const rule = g.getRule("a")!.ast;
+
+        // Compare with the stream based walkers, which can still handle this depth.
+        const streamVisitor = new NestingVisitor();
+        streamVisitor.visit(rule, ANTLRv4Parser.RULE_ruleSpec);
+        const directVisitor = new NestingVisitor();
+        directVisitor.directWalking = true;
+        directVisitor.visit(rule, ANTLRv4Parser.RULE_ruleSpec);
+        expect(directVisitor.trace).toEqual(streamVisitor.trace);
+
+        const atn = ATNSerializer.getSerialized(createATN(g, false));
+        expect(ATNSerializer.getSerialized(createATN(g, true))).toEqual(atn);
+    });
+
+    it("Nesting depth 1000", () => {
+        checkNesting(1000, true);
+    });
+
+    it("Nesting depth 100000", () => {
+        // Blocks with a single alternative here. For blocks with several alternatives, the tail epsilon removal visits
+        // all inner states once per block, which is quadratic in the nesting depth.
+        checkNesting(100000, false);
+    });
+});
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { ATNSerializer, CharStream, RuleTransition } from "antlr4ng";
+
+import { FragmentRuleSharing } from "../src/automata/FragmentRuleSharing.js";
+import { LexerATNFactory } from "../src/automata/LexerATNFactory.js";
+import { LexerGrammar } from "../src/tool/index.js";
+
+describe("TestFragmentRuleSharing", () => {
+    const grammarText = `lexer grammar L;
+A : 'a' DIGITS ;
+B : 'b' NUMBER ;
+C : 'c' HEX ;
+D : LIST1 ';' ;
+E : LIST2 '.' ;
+F : 'f' MARKED ;
+fragment DIGITS : [0-9]+ ;
+fragment NUMBER : [0-9]+ ;
+fragment HEX : [0-9a-f]+ ;
+fragment LIST1 : DIGITS (',' DIGITS)* ;
+fragment LIST2 : NUMBER (',' NUMBER)* ;
+fragment MARKED : '!' {marked();} ;
+fragment MARKED2 : '!' {marked();} ;
+`;
+
+    const processGrammar = (shareFragments: boolean): LexerGrammar => {
+        const g = new LexerGrammar(grammarText);
+        g.tool.toolParameters.shareFragments = shareFragments;
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return g;
+    };
+
+    const getTokenNames = (g: LexerGrammar, text: string): string[] => {
+        const lexer = g.createLexerInterpreter(CharStream.fromString(text));
+
+        return lexer.getAllTokens().map((token) => {
+            return g.typeToTokenList[token.type]!;
+        });
+    };
+
+    it("Shares identical fragments", () => {
+        const g = processGrammar(false);
+        const atn = g.atn!;
+
+        // Sharing again finds NUMBER (like DIGITS) and then LIST2 (like LIST1), but not the fragments with actions.
+        expect(FragmentRuleSharing.share(g, atn)).toBe(2);
+        expect(FragmentRuleSharing.share(g, atn)).toBe(0);
+
+        const number = g.getRule("NUMBER")!.index;
+        const list2 = g.getRule("LIST2")!.index;
+        const calls = atn.states.flatMap((state) => {
+            return state?.transitions ?? [];
+        }).filter((transition) => {
+            return transition instanceof RuleTransition;
+        }).map((transition) => {
+            return g.getRule((transition as RuleTransition).ruleIndex)!.name;
+        });
+
+        expect(calls).not.toContain("NUMBER");
+        expect(calls).not.toContain("LIST2");
+        expect(calls.filter((name) => {
+            return name === "DIGITS";
+        }).length).toBe(4);
+        expect(calls).toContain("HEX");
+        expect(calls).toContain("MARKED");
+
+        for (const decision of atn.decisionToState) {
+            expect(atn.decisionToState[decision.decision]).toBe(decision);
+        }
+
+        // The removed fragments only lead from their start to their stop state.
+        for (const index of [number, list2]) {
+            const start = atn.ruleToStartState[index]!;
+            expect(start.transitions.length).toBe(1);
+            expect(start.transitions[0].target).toBe(atn.ruleToStopState[index]);
+        }
+    });
+
+    it("Is enabled by the tool parameter", () => {
+        const original = processGrammar(false);
+        const shared = processGrammar(true);
+
+        const originalSize = ATNSerializer.getSerialized(original.atn!).length;
+        const sharedSize = ATNSerializer.getSerialized(shared.atn!).length;
+        expect(sharedSize).toBeLessThan(originalSize);
+        expect(shared.atn!.states.length).toBeLessThan(original.atn!.states.length);
+
+        const input = "1,2;3,4.f!a1b2c3e";
+        const expected = ["D", "E", "F", "A", "B", "C"];
+        expect(getTokenNames(original, input)).toEqual(expected);
+        expect(getTokenNames(shared, input)).toEqual(expected);
+    });
+
+    it("Resolves chains of shared fragments", () => {
+        // X is shared with Y in the first pass, Y with Z in the second (after Q was shared with P), so calls of X
+        // must go to Z.
+        const chainText = `lexer grammar C;
+T1 : 'a' X ;
+T2 : 'b' Y ;
+T3 : 'c' Z ;
+fragment P : 'p' ;
+fragment Z : P 'z' ;
+fragment Y : Q 'z' ;
+fragment X : Q 'z' ;
+fragment Q : 'p' ;
+`;
+
+        const original = new LexerGrammar(chainText);
+        original.tool.process(original, false);
+        expect(original.tool.getNumErrors()).toBe(0);
+
+        const g = new LexerGrammar(chainText);
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+        expect(FragmentRuleSharing.share(g, g.atn!)).toBe(3);
+
+        const calls = g.atn!.states.flatMap((state) => {
+            return state?.transitions ?? [];
+        }).filter((transition) => {
+            return transition instanceof RuleTransition;
+        }).map((transition) => {
+            return g.getRule((transition as RuleTransition).ruleIndex)!.name;
+        });
+        expect(calls.sort()).toEqual(["P", "Z", "Z", "Z"]);
+
+        const input = "apzbpzcpz";
+        const expected = ["T1", "T2", "T3"];
+        expect(getTokenNames(original, input)).toEqual(expected);
+        expect(getTokenNames(g, input)).toEqual(expected);
+
+        const shared = new LexerGrammar(chainText);
+        shared.tool.toolParameters.shareFragments = true;
+        shared.tool.process(shared, false);
+        expect(shared.tool.getNumErrors()).toBe(0);
+        expect(getTokenNames(shared, input)).toEqual(expected);
+    });
+
+    it("Is off by default", () => {
+        class DefaultLexerATNFactory extends LexerATNFactory {
+            public get sharing(): boolean {
+                return this.shareFragments;
+            }
+        }
+
+        const g = new LexerGrammar(grammarText);
+        expect(new DefaultLexerATNFactory(g).sharing).toBe(false);
+    });
+});
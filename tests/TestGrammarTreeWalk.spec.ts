@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { readFileSync } from "node:fs";
+import { dirname, join } from "node:path";
+
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import type { GrammarRootAST } from "../src/tool/ast/GrammarRootAST.js";
+import { Grammar, Tool } from "../src/tool/index.js";
+import { GrammarTreeVisitor } from "../src/tree-walkers/GrammarTreeVisitor.js";
+import { ErrorQueue } from "./support/ErrorQueue.js";
+
+/**
+ * Conformance tests for the direct walking engine of the grammar tree visitor. Both engines must trigger the same
+ * callbacks and hooks, in the same order, with the same arguments and the same context.
+ */
+describe("TestGrammarTreeWalk", () => {
+    const callbacks = new Set([
+        "grammarOption", "ruleOption", "blockOption", "defineToken", "defineChannel", "globalNamedAction",
+        "importGrammar", "modeDef", "ruleCatch", "finallyAction", "ruleRef", "tokenRef", "stringRef", "wildcardRef",
+        "actionInAlt", "sempredInAlt", "label", "lexerCallCommand", "elementOption", "lexerCommand",
+    ]);
+
+    /** The number of arguments of the callback forms of the overloaded walker rules. */
+    const callbackArity = new Map([["elementOption", 3], ["lexerCommand", 2]]);
+
+    const describeValue = (value: unknown): string => {
+        if (value === null || value === undefined) {
+            return "null";
+        }
+
+        if (Array.isArray(value)) {
+            return "[" + value.map(describeValue).join(", ") + "]";
+        }
+
+        if (value instanceof GrammarAST) {
+            return `${value.getText()}(${value.getType()})@${value.getLine()}:${value.getCharPositionInLine()}`;
+        }
+
+        return String(value);
+    };
+
+    /**
+     * Creates a visitor that records every callback and enter/exit hook it receives, together with the walker
+     * context at that time.
+     *
+     * @param trace The list to record to.
+     * @param direct Whether the visitor walks the tree directly.
+     *
+     * @returns The new visitor.
+     */
+    const createRecorder = (trace: string[], direct: boolean): GrammarTreeVisitor => {
+        const visitor = new GrammarTreeVisitor();
+        visitor.directWalking = direct;
+        const prototype = GrammarTreeVisitor.prototype as unknown as Record<string, (...args: unknown[]) => unknown>;
+
+        for (const name of Object.getOwnPropertyNames(prototype)) {
+            if (!/^(enter|exit|discover|finish)[A-Z]/.test(name) && !callbacks.has(name)) {
+                continue;
+            }
+
+            const original = prototype[name];
+            const arity = callbackArity.get(name);
+            Object.defineProperty(visitor, name, {
+                value: (...args: unknown[]): unknown => {
+                    if (arity !== undefined && args.length !== arity) {
+                        // The walker rule form of an overloaded method.
+                        return original.apply(visitor, args);
+                    }
+
+                    trace.push(`${name}(${args.map(describeValue).join(", ")}) | ${visitor.grammarName} ` +
+                        `${visitor.currentModeName} ${visitor.currentRuleName} ${visitor.currentOuterAltNumber} ` +
+                        `${describeValue(visitor.currentOuterAltRoot)}`);
+
+                    return undefined;
+                },
+            });
+        }
+
+        return visitor;
+    };
+
+    const expectSameGrammarTrace = (ast: GrammarRootAST): void => {
+        const streamTrace: string[] = [];
+        createRecorder(streamTrace, false).visitGrammar(ast);
+
+        const directTrace: string[] = [];
+        createRecorder(directTrace, true).visitGrammar(ast);
+
+        expect(streamTrace.length).toBeGreaterThan(0);
+        expect(directTrace).toEqual(streamTrace);
+    };
+
+    const expectSameRuleTraces = (ast: GrammarRootAST): void => {
+        const rules = ast.getFirstChildWithType(ANTLRv4Parser.RULES) as GrammarAST;
+        for (const rule of rules.getChildrenAsArray()) {
+            if (rule.getChild(0)?.getType() !== ANTLRv4Parser.RULE_REF) {
+                continue;
+            }
+
+            const streamTrace: string[] = [];
+            createRecorder(streamTrace, false).visit(rule, ANTLRv4Parser.RULE_ruleSpec);
+
+            const directTrace: string[] = [];
+            createRecorder(directTrace, true).visit(rule, ANTLRv4Parser.RULE_ruleSpec);
+
+            expect(directTrace).toEqual(streamTrace);
+        }
+    };
+
+    const parse = (text: string): GrammarRootAST => {
+        const ast = new Tool().parseGrammarFromString(text);
+        expect(ast).toBeDefined();
+
+        return ast!;
+    };
+
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    /**
+     * Processes the given grammar with or without the `directTreeWalk` tool parameter.
+     *
+     * @param text The grammar text.
+     * @param direct Whether the semantic visitors walk the trees directly.
+     *
+     * @returns The reported messages and, if there were no errors, the generated parser.
+     */
+    const processGrammar = (text: string, direct: boolean): [string, string] => {
+        const g = new Grammar(text);
+        g.tool.toolParameters.directTreeWalk = direct;
+        const errors = new ErrorQueue(g.tool.errorManager);
+        g.tool.errorManager.addListener(errors);
+        g.tool.process(g, false);
+
+        if (errors.errors.length > 0) {
+            return [errors.toString(true), ""];
+        }
+
+        return [errors.toString(true), new CodeGenerator(g).generateParser(false).render()];
+    };
+
+    const expectSameProcessing = (text: string): void => {
+        const [streamMessages, streamParser] = processGrammar(text, false);
+        const [directMessages, directParser] = processGrammar(text, true);
+        expect(directMessages).toBe(streamMessages);
+        expect(directParser).toBe(streamParser);
+    };
+
+    it("Parser grammar features", () => {
+        const ast = parse(
+            "parser grammar P;\n" +
+            "options { tokenVocab = L; }\n" +
+            "import Q, R = S;\n" +
+            "tokens { A, B, C }\n" +
+            "@header { /* header */ }\n" +
+            "@parser::members { int i; }\n" +
+            "public r[int a] returns [int b] locals [int c] throws E, F\n" +
+            "options { caseInsensitive = false; }\n" +
+            "@init { init(); }\n" +
+            "@after { after(); }\n" +
+            "    : x = A y += B (C | A)* ~(A | B) s[1] {act();} {pred()}?<fail={\"msg\"}> .\n" +
+            "    | <assoc=right> (options { greedy = false; } : A | B)+ 'x' A<X=Y>\n" +
+            "    | A? ~B (B | C)\n" +
+            "    |\n" +
+            "    ;\n" +
+            "    catch [Exception e] { handle(); }\n" +
+            "    finally { cleanup(); }\n" +
+            "\n" +
+            "private s[int x] : A # first | s B # second ;\n");
+
+        expectSameGrammarTrace(ast);
+        expectSameRuleTraces(ast);
+    });
+
+    it("Lexer grammar features", () => {
+        const ast = parse(
+            "lexer grammar L;\n" +
+            "options { superClass = Base; }\n" +
+            "channels { COMMENTS }\n" +
+            "tokens { T }\n" +
+            "@members { int n; }\n" +
+            "A : 'a' -> type(T), channel(COMMENTS) ;\n" +
+            "B : ~[b] 'x'..'z' ~('q' | 'r') {act();} ;\n" +
+            "fragment F : [0-9]+ | . ;\n" +
+            "C options { caseInsensitive = true; } : (F | 'c')* {p()}? -> skip ;\n" +
+            "mode Other;\n" +
+            "D : 'd' -> popMode, more ;\n" +
+            "E : E2 ;\n" +
+            "fragment E2 : 'e' ;\n");
+
+        expectSameGrammarTrace(ast);
+    });
+
+    it("Test grammar corpus", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4", "PositionAdjustingLexer.g4"]) {
+            const ast = parse(readGrammar(name));
+
+            expectSameGrammarTrace(ast);
+            expectSameRuleTraces(ast);
+        }
+    });
+
+    it("Processed grammar", () => {
+        // After processing, the tree contains rewritten left recursive rules and sets instead of blocks.
+        const g = new Grammar(readGrammar("JavaLR.g4"));
+        g.tool.process(g, false);
+
+        expectSameGrammarTrace(g.ast);
+        expectSameRuleTraces(g.ast);
+    });
+
+    it("Processing with the direct walk gives the same results", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            expectSameProcessing(readGrammar(name));
+        }
+
+        // Errors and warnings of the semantic checks.
+        const withErrors = "grammar E;\n" +
+            "options { foo = bar; }\n" +
+            "tokens { A, A }\n" +
+            "a : b x = A x += B | c ;\n" +
+            "a : A ;\n" +
+            "b[int i] : A {$j = 1;} ;\n" +
+            "A : 'a' -> type(Q) ;\n" +
+            "B : 'b' ;\n";
+        expect(processGrammar(withErrors, true)[0]).not.toBe("");
+        expectSameProcessing(withErrors);
+    });
+});
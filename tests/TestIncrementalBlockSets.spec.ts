@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { Grammar } from "../src/tool/index.js";
+import { GrammarTransformPipeline } from "../src/tool/GrammarTransformPipeline.js";
+
+describe("TestIncrementalBlockSets", () => {
+    const createGrammarText = (ruleCount: number, editedRule = -1): string => {
+        let text = "parser grammar P;\ntokens { A, B, C, D }\n";
+        for (let i = 0; i < ruleCount; ++i) {
+            if (i === editedRule) {
+                text += `r${i} : (A | C)+ | ~(B | D) ;\n`;
+            } else {
+                text += `r${i} : (A | B | C) r${(i + 1) % ruleCount}? | D (A | B)* | C ;\n`;
+            }
+        }
+
+        return text;
+    };
+
+    /** @returns The tree of the given grammar, after all its blocks have been reduced to sets the normal way. */
+    const foldAll = (text: string): string => {
+        const g = new Grammar(text);
+        new GrammarTransformPipeline(g, g.tool).reduceBlocksToSets(g.ast);
+
+        return g.ast.toStringTree();
+    };
+
+    /** Replaces a rule in the tree of the first grammar by the same rule from the second grammar (an "edit"). */
+    const replaceRule = (target: Grammar, source: Grammar, index: number): GrammarAST => {
+        const rules = target.ast.getFirstChildWithType(ANTLRv4Parser.RULES) as GrammarAST;
+        const newRules = source.ast.getFirstChildWithType(ANTLRv4Parser.RULES) as GrammarAST;
+        const rule = newRules.getChild(index) as GrammarAST;
+        rules.setChild(index, rule);
+
+        return rule;
+    };
+
+    it("Only the given rules are folded", () => {
+        const text = createGrammarText(5);
+        const g = new Grammar(text);
+        const pipeline = new GrammarTransformPipeline(g, g.tool);
+        const rules = g.ast.getNodesWithType(ANTLRv4Parser.RULE);
+
+        pipeline.reduceChangedBlocksToSets(rules.slice(0, 2));
+        expect(g.ast.toStringTree()).not.toBe(foldAll(text));
+        expect(rules[2].toStringTree()).toBe(new Grammar(text).ast.getNodesWithType(ANTLRv4Parser.RULE)[2]
+            .toStringTree());
+
+        pipeline.reduceChangedBlocksToSets(rules.slice(2));
+        expect(g.ast.toStringTree()).toBe(foldAll(text));
+
+        // Nothing changes if no rule is given.
+        pipeline.reduceChangedBlocksToSets([]);
+        expect(g.ast.toStringTree()).toBe(foldAll(text));
+    });
+
+    it("Replaced rules are folded", () => {
+        const g = new Grammar(createGrammarText(5));
+        const pipeline = new GrammarTransformPipeline(g, g.tool);
+        pipeline.reduceChangedBlocksToSets(g.ast.getNodesWithType(ANTLRv4Parser.RULE));
+
+        const editedText = createGrammarText(5, 2);
+        const rule = replaceRule(g, new Grammar(editedText), 2);
+
+        pipeline.reduceChangedBlocksToSets([rule]);
+        expect(g.ast.toStringTree()).toBe(foldAll(editedText));
+    });
+
+    it("Rules changed in place are folded", () => {
+        const text = createGrammarText(3);
+        const g = new Grammar(text);
+        const pipeline = new GrammarTransformPipeline(g, g.tool);
+        pipeline.reduceChangedBlocksToSets(g.ast.getNodesWithType(ANTLRv4Parser.RULE));
+
+        // Put the unfolded block back into the first rule.
+        const rule = g.ast.getNodesWithType(ANTLRv4Parser.RULE)[0];
+        const unfolded = new Grammar(text).ast.getNodesWithType(ANTLRv4Parser.RULE)[0];
+        const index = rule.getFirstChildWithType(ANTLRv4Parser.BLOCK)!.getChildIndex();
+        rule.setChild(index, unfolded.getFirstChildWithType(ANTLRv4Parser.BLOCK)!);
+
+        pipeline.reduceChangedBlocksToSets([rule]);
+        expect(g.ast.toStringTree()).toBe(foldAll(text));
+    });
+
+    it("Rewritten left recursive rules are folded", () => {
+        const text = "grammar E;\ne : e ('*' | '/') e | e ('+' | '-') e | ('x' | 'y' | 'z') ;\n";
+        const g = new Grammar(text);
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        const rule = g.getRule("e")!.ast;
+        expect(rule.getNodesWithType(ANTLRv4Parser.SET).length).toBe(3);
+    });
+
+    it("Unchanged rules are not walked again", () => {
+        const ruleCount = 1000;
+        const g = new Grammar(createGrammarText(ruleCount));
+
+        // Record the rules the transformer walks.
+        const walked: string[] = [];
+        g.tool.instrumentation = {
+            enterGrammar: (): void => { /**/ },
+            exitGrammar: (): void => { /**/ },
+            enterRule: (phase: string, ruleName: string): void => {
+                walked.push(ruleName);
+            },
+            exitRule: (): void => { /**/ },
+            ruleATNCreated: (): void => { /**/ },
+        };
+
+        const pipeline = new GrammarTransformPipeline(g, g.tool);
+        pipeline.reduceChangedBlocksToSets(g.ast.getNodesWithType(ANTLRv4Parser.RULE));
+        expect(walked.length).toBe(ruleCount);
+
+        const editedText = createGrammarText(ruleCount, 500);
+        replaceRule(g, new Grammar(editedText), 500);
+
+        walked.length = 0;
+        pipeline.reduceChangedBlocksToSets(g.ast.getNodesWithType(ANTLRv4Parser.RULE));
+        expect(walked).toEqual(["r500"]);
+        expect(g.ast.toStringTree()).toBe(foldAll(editedText));
+
+        walked.length = 0;
+        pipeline.reduceChangedBlocksToSets(g.ast.getNodesWithType(ANTLRv4Parser.RULE));
+        expect(walked).toEqual([]);
+    });
+});
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { readFileSync } from "node:fs";
+import { dirname, join } from "node:path";
+
+import { CommonTreeNodeStream } from "../src/antlr3/tree/CommonTreeNodeStream.js";
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import { GrammarASTAdaptor } from "../src/parse/GrammarASTAdaptor.js";
+import type { AltAST } from "../src/tool/ast/AltAST.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { Grammar } from "../src/tool/index.js";
+import { LeftRecursiveRuleWalker } from "../src/tree-walkers/LeftRecursiveRuleWalker.js";
+
+/**
+ * The single scan classification of outer alternatives must produce the same callbacks as the classification
+ * by speculative parsing.
+ */
+describe("TestLeftRecursiveAltClassification", () => {
+    class RecordingWalker extends LeftRecursiveRuleWalker {
+        public readonly trace: string[] = [];
+
+        /** The number of element rule invocations, speculative or not. */
+        public elementCalls = 0;
+
+        public constructor(rule: GrammarAST, speculate: boolean) {
+            super(new CommonTreeNodeStream(new GrammarASTAdaptor(), rule));
+            this.ruleName = rule.getChild(0)!.getText()!;
+            this.classifyBySpeculation = speculate;
+        }
+
+        public override setAltAssoc(altTree: AltAST, alt: number): void {
+            this.trace.push(`assoc ${alt} ${altTree.toStringTree()}`);
+        }
+
+        public override binaryAlt(altTree: AltAST, alt: number): void {
+            this.trace.push(`binary ${alt} ${altTree.toStringTree()}`);
+        }
+
+        public override prefixAlt(altTree: AltAST, alt: number): void {
+            this.trace.push(`prefix ${alt} ${altTree.toStringTree()}`);
+        }
+
+        public override suffixAlt(altTree: AltAST, alt: number): void {
+            this.trace.push(`suffix ${alt} ${altTree.toStringTree()}`);
+        }
+
+        public override otherAlt(altTree: AltAST, alt: number): void {
+            this.trace.push(`other ${alt} ${altTree.toStringTree()}`);
+        }
+
+        public override element(): void {
+            ++this.elementCalls;
+            super.element();
+        }
+
+        public run(): void {
+            try {
+                this.trace.push(`isLeftRec ${this.rec_rule()}`);
+            } catch (e) {
+                this.trace.push(`error ${String(e)}`);
+            }
+        }
+    }
+
+    const getRules = (g: Grammar): GrammarAST[] => {
+        const rules = g.ast.getFirstChildWithType(ANTLRv4Parser.RULES) as GrammarAST;
+
+        return rules.getChildrenAsArray().filter((rule) => {
+            return rule.getChild(0)?.getType() === ANTLRv4Parser.RULE_REF;
+        });
+    };
+
+    const classify = (rule: GrammarAST, speculate: boolean): RecordingWalker => {
+        const walker = new RecordingWalker(rule, speculate);
+        walker.run();
+
+        return walker;
+    };
+
+    const expectSameClassification = (g: Grammar): void => {
+        for (const rule of getRules(g)) {
+            const speculative = classify(rule, true);
+            const single = classify(rule, false);
+
+            expect(single.trace).toEqual(speculative.trace);
+        }
+    };
+
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    it("Alternative shapes", () => {
+        const g = new Grammar(
+            "grammar T;\n" +
+            "e returns [int v]\n" +
+            "    : a = e '*' b += e\n" +
+            "    | e ('+' | '-') e {add();}\n" +
+            "    | <assoc=right> e '^' e\n" +
+            "    | e '?' e ':' e\n" +
+            "    | e '=' x = e {p()}?\n" +
+            "    | e e\n" +
+            "    | e '.' ID\n" +
+            "    | e '[' e ']'\n" +
+            "    | e '(' (e (',' e)*)? ')'\n" +
+            "    | e '++'\n" +
+            "    | e {act();}\n" +
+            "    | e[1] '!'\n" +
+            "    | '-' e\n" +
+            "    | '(' T ')' e\n" +
+            "    | 'new' x = e\n" +
+            "    | s = '~' e {neg();}\n" +
+            "    | f e '!'\n" +
+            "    | e\n" +
+            "    | '(' e ')'\n" +
+            "    | ID\n" +
+            "    | x = e\n" +
+            "    | {init();} INT\n" +
+            "    ;\n" +
+            "f : ID ;\n" +
+            "s : s ';' | ;\n" +
+            "ID : [a-z]+ ;\n" +
+            "INT : [0-9]+ ;\n" +
+            "T : 'int' ;\n");
+
+        expectSameClassification(g);
+    });
+
+    it("Test grammar corpus", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            expectSameClassification(new Grammar(readGrammar(name)));
+        }
+    });
+
+    it("Benchmark: element parses for a rule with many alternatives", () => {
+        const operators = ["*", "/", "%", "+", "-", "<<", ">>", "<", ">", "<=", ">=", "==", "!=", "&", "^", "|"];
+        let text = "grammar E;\ne\n";
+        let separator = ":";
+        for (const op of operators) {
+            text += `    ${separator} e '${op}' e\n    | e '${op}=' e\n    | '${op}' e\n    | e '${op}${op}'\n`;
+            separator = "|";
+        }
+
+        for (let i = 0; i < 16; ++i) {
+            text += `    | '(${i}' e ')'\n    | 'x${i}'\n`;
+        }
+        text += "    ;\n";
+
+        const rule = getRules(new Grammar(text))[0];
+        const speculative = classify(rule, true);
+        const single = classify(rule, false);
+
+        expect(rule.getFirstDescendantWithType(ANTLRv4Parser.BLOCK)!.getChildCount()).toBeGreaterThan(60);
+        expect(single.trace).toEqual(speculative.trace);
+
+        // Each alternative is parsed once instead of up to four times.
+        expect(speculative.elementCalls).toBeGreaterThanOrEqual(2 * single.elementCalls);
+    });
+});
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { mkdtempSync, readdirSync, readFileSync, rmSync, writeFileSync } from "node:fs";
+import { tmpdir } from "node:os";
+import { dirname, join } from "node:path";
+
+import { ATNSerializer } from "antlr4ng";
+
+import { LeftRecursiveRuleCache } from "../src/analysis/LeftRecursiveRuleCache.js";
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { Grammar } from "../src/tool/index.js";
+
+describe("TestLeftRecursiveRuleCache", () => {
+    const grammarText =
+        "grammar P;\n" +
+        "s : e EOF ;\n" +
+        "e : e '*' e # Mul | e '+' <assoc = right> e # Add | '-' e # Neg | '(' e ')' # Parens | A # Atom ;\n" +
+        "f returns [int v] : f '.' x = A {$v = 1;} | f '[' e ']' | B ;\n" +
+        "A : 'a' ;\n" +
+        "B : 'b' ;\n";
+
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    /** @returns The processed grammar, using the given cache for left-recursive rules. */
+    const processGrammar = (text: string, cache?: LeftRecursiveRuleCache): Grammar => {
+        const g = new Grammar(text);
+        g.tool.leftRecursiveRuleCache = cache;
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return g;
+    };
+
+    /** Processes the grammar with the cache and compares the results with those of processing it without a cache. */
+    const expectSameResult = (text: string, cache: LeftRecursiveRuleCache): void => {
+        const expected = processGrammar(text);
+        const g = processGrammar(text, cache);
+
+        expect(g.ast.toStringTree()).toBe(expected.ast.toStringTree());
+        expect(ATNSerializer.getSerialized(g.atn!)).toEqual(ATNSerializer.getSerialized(expected.atn!));
+        expect(new CodeGenerator(g).generateParser(false).render())
+            .toBe(new CodeGenerator(expected).generateParser(false).render());
+    };
+
+    it("Unchanged rules are taken from the cache", () => {
+        const cache = new LeftRecursiveRuleCache();
+        expectSameResult(grammarText, cache);
+        expect(cache.hits).toBe(0);
+        expect(cache.misses).toBe(2);
+
+        expectSameResult(grammarText, cache);
+        expect(cache.hits).toBe(2);
+        expect(cache.misses).toBe(2);
+    });
+
+    it("Moved rules are taken from the cache", () => {
+        const cache = new LeftRecursiveRuleCache();
+        processGrammar(grammarText, cache);
+
+        // All token indexes in the rules change.
+        const movedText = grammarText.replace("s : e EOF ;\n", "s : e EOF ;\n\n// A comment.\nt : B A* ;\n");
+        expectSameResult(movedText, cache);
+        expect(cache.hits).toBe(2);
+    });
+
+    it("Changed rules are parsed", () => {
+        const cache = new LeftRecursiveRuleCache();
+        processGrammar(grammarText, cache);
+
+        expectSameResult(grammarText.replace("e '*' e # Mul", "e '/' e # Div"), cache);
+        expect(cache.hits).toBe(1);
+        expect(cache.misses).toBe(3);
+
+        // A different target gives different rule texts.
+        const typeScriptText = grammarText.replace("grammar P;\n", "grammar P;\noptions { language = TypeScript; }\n");
+        expectSameResult(typeScriptText, cache);
+        expect(cache.misses).toBe(5);
+    });
+
+    it("Cache entries are kept between runs", () => {
+        const directory = mkdtempSync(join(tmpdir(), "lr-cache-"));
+        try {
+            const cache = new LeftRecursiveRuleCache(directory);
+            processGrammar(grammarText, cache);
+            expect(readdirSync(directory).length).toBe(2);
+
+            const nextRun = new LeftRecursiveRuleCache(directory);
+            expectSameResult(grammarText, nextRun);
+            expect(nextRun.hits).toBe(2);
+            expect(nextRun.misses).toBe(0);
+        } finally {
+            rmSync(directory, { recursive: true, force: true });
+        }
+    });
+
+    it("Damaged cache entries are parsed again", () => {
+        type Node = Record<string, unknown> & { children?: Node[]; };
+
+        /** @returns The first node in the tree (depth first) for which the predicate is true. */
+        const findNode = (node: Node, predicate: (n: Node) => boolean): Node | undefined => {
+            if (predicate(node)) {
+                return node;
+            }
+
+            for (const child of node.children ?? []) {
+                const result = findNode(child, predicate);
+                if (result) {
+                    return result;
+                }
+            }
+
+            return undefined;
+        };
+
+        const damages: Array<(root: Node) => unknown> = [
+            () => {
+                return { kind: "Rule" };
+            },
+            (root) => {
+                findNode(root, (n) => {
+                    return n.greedy !== undefined;
+                })!.greedy = undefined;
+
+                return root;
+            },
+            (root) => {
+                root.children![1].kind = "Unknown";
+
+                return root;
+            },
+            (root) => {
+                root.children = {} as Node[];
+
+                return root;
+            },
+            () => {
+                return [1, 2, 3];
+            },
+        ];
+
+        const directory = mkdtempSync(join(tmpdir(), "lr-cache-"));
+        try {
+            processGrammar(grammarText, new LeftRecursiveRuleCache(directory));
+            const files = readdirSync(directory);
+            expect(files.length).toBe(2);
+
+            for (const damage of damages) {
+                for (const file of files) {
+                    const path = join(directory, file);
+                    writeFileSync(path, JSON.stringify(damage(JSON.parse(readFileSync(path, "utf8")) as Node)));
+                }
+
+                const cache = new LeftRecursiveRuleCache(directory);
+                expectSameResult(grammarText, cache);
+                expect(cache.hits).toBe(0);
+                expect(cache.misses).toBe(2);
+
+                // The entries were written again.
+                const nextRun = new LeftRecursiveRuleCache(directory);
+                expectSameResult(grammarText, nextRun);
+                expect(nextRun.hits).toBe(2);
+            }
+        } finally {
+            rmSync(directory, { recursive: true, force: true });
+        }
+    });
+
+    it("Test grammar corpus", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            const cache = new LeftRecursiveRuleCache();
+            const text = readGrammar(name);
+            processGrammar(text, cache);
+            const misses = cache.misses;
+
+            expectSameResult(text, cache);
+            expect(cache.hits).toBe(misses);
+            expect(cache.misses).toBe(misses);
+        }
+    });
+});
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { ActionTransition, ATN, CharStream, PredicateTransition, type Transition } from "antlr4ng";
+
+import { LexerGrammar } from "../src/tool/index.js";
+
+describe("TestLexerATNMinimizer", () => {
+    const grammarText = `lexer grammar M;
+KEYWORD : ('if' | 'then' | 'else') {setKeyword();} ;
+ID : [a-z]+ ('_' [a-z]+)* ;
+INT : [0-9]+ ;
+STRING : '"' .*? '"' ;
+HEX : '0x' HEXDIGIT+ {isHex()}? ;
+OPEN : '<' -> pushMode(TAG) ;
+WS : [ \\t]+ -> skip ;
+fragment HEXDIGIT : [0-9a-f] ;
+
+mode TAG;
+NAME : [a-z]+ ;
+CLOSE : '>' -> popMode ;
+TAG_WS : ' ' -> skip ;
+`;
+
+    const processGrammar = (minimize: boolean): LexerGrammar => {
+        const g = new LexerGrammar(grammarText);
+        g.tool.toolParameters.minimizeLexerAtn = minimize;
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return g;
+    };
+
+    const getTokenNames = (g: LexerGrammar, text: string): string[] => {
+        const lexer = g.createLexerInterpreter(CharStream.fromString(text));
+
+        return lexer.getAllTokens().map((token) => {
+            return g.typeToTokenList[token.type]!;
+        });
+    };
+
+    const countTransitions = (atn: ATN, predicate: (transition: Transition) => boolean): number => {
+        return atn.states.flatMap((state) => {
+            return state?.transitions ?? [];
+        }).filter(predicate).length;
+    };
+
+    it("Removes states", () => {
+        const original = processGrammar(false).atn!;
+        const minimized = processGrammar(true).atn!;
+
+        expect(minimized.states.length).toBeLessThan(original.states.length);
+        expect(minimized.states).not.toContain(null);
+        expect(minimized.decisionToState.length).toBe(original.decisionToState.length);
+
+        // Actions and predicates are kept.
+        const isAction = (transition: Transition): boolean => {
+            return transition instanceof ActionTransition;
+        };
+        const isPredicate = (transition: Transition): boolean => {
+            return transition instanceof PredicateTransition;
+        };
+        expect(countTransitions(minimized, isAction)).toBe(countTransitions(original, isAction));
+        expect(countTransitions(minimized, isPredicate)).toBe(countTransitions(original, isPredicate));
+    });
+
+    it("Matches the same tokens", () => {
+        const original = processGrammar(false);
+        const minimized = processGrammar(true);
+
+        const inputs = [
+            "if foo_bar 123 \"a b\" 0x1f <tag name> else",
+            "then\"\"<a b c>x_y_z 0x0",
+            "elsewhere if_then 42",
+        ];
+        const expected = [
+            ["KEYWORD", "ID", "INT", "STRING", "HEX", "OPEN", "NAME", "NAME", "CLOSE", "KEYWORD"],
+            ["KEYWORD", "STRING", "OPEN", "NAME", "NAME", "NAME", "CLOSE", "ID", "HEX"],
+            ["ID", "ID", "INT"],
+        ];
+
+        for (let i = 0; i < inputs.length; ++i) {
+            expect(getTokenNames(original, inputs[i])).toEqual(expected[i]);
+            expect(getTokenNames(minimized, inputs[i])).toEqual(expected[i]);
+        }
+    });
+});
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { mkdtempSync, readdirSync, readFileSync, rmdirSync } from "node:fs";
+import { tmpdir } from "node:os";
+import { join } from "node:path";
+
+import { LexerDFABuilder } from "../src/automata/LexerDFABuilder.js";
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { LexerGrammar } from "../src/tool/index.js";
+import { ToolTestUtils } from "./ToolTestUtils.js";
+
+describe.sequential("TestLexerDFABuilder", () => {
+    const grammarText = `lexer grammar L;
+IF : 'if' ;
+ID : [a-zA-Z_] [a-zA-Z_0-9]* ;
+INT : DIGITS ('.' DIGITS)? ;
+COMMENT : '/*' .*? '*/' -> channel(HIDDEN) ;
+STRING : '"' (ESC | ~["\\\\])* '"' ;
+OP : '<' | '<=' | '<<' | '=' | '==' ;
+OPEN : '{' -> pushMode(INNER) ;
+NL : '\\r'? '\\n' -> skip ;
+WS : [ \\t]+ -> skip ;
+UNICODE : [\\u00C0-\\u00FF\\u{1F600}-\\u{1F64F}]+ ;
+fragment DIGITS : [0-9]+ ;
+fragment ESC : '\\\\' . ;
+
+mode INNER;
+WORD : ~[{} \\n]+ -> type(ID) ;
+NESTED : '{' -> pushMode(INNER) ;
+CLOSE : '}' -> popMode ;
+INNER_WS : [ \\n]+ -> more ;
+`;
+
+    const processGrammar = (text: string): LexerGrammar => {
+        const g = new LexerGrammar(text);
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return g;
+    };
+
+    /**
+     * Runs the lexer generated for the TypeScript target.
+     *
+     * @returns The tokens and the error output of the lexer, and whether it used the DFA simulator.
+     */
+    const tokenize = async (input: string, lexerDfa: boolean): Promise<[string, string, boolean]> => {
+        // Each run needs its own directory, as generated modules are cached by their path.
+        const tempDir = mkdtempSync(join(tmpdir(), "AntlrLexerDFA"));
+        try {
+            let generationErrors = 0;
+            const options = lexerDfa ? ["--lexer-dfa"] : [];
+            const output = await ToolTestUtils.captureTerminalOutput(async () => {
+                const queue = await ToolTestUtils.execLexer("L.g4", grammarText, "L", input, tempDir, ...options);
+                generationErrors = queue.errors.length;
+            });
+            expect(generationErrors).toBe(0);
+
+            const usesDFA = readdirSync(tempDir).some((name) => {
+                return name.endsWith(".ts")
+                    && readFileSync(join(tempDir, name), "utf8").includes("class LDFASimulator");
+            });
+
+            return [output.output, output.error, usesDFA];
+        } finally {
+            rmdirSync(tempDir, { recursive: true });
+        }
+    };
+
+    it("Converts all modes without predicates or custom actions", () => {
+        const g = processGrammar(grammarText);
+        const builder = new LexerDFABuilder(g.atn!);
+        for (let mode = 0; mode < g.atn!.modeToStartState.length; ++mode) {
+            const states = builder.buildMode(mode);
+            expect(states).toBeDefined();
+
+            // Keywords win over identifiers, because they are defined first.
+            if (mode === 0) {
+                const i = builder.getClass("i".codePointAt(0)!);
+                const f = builder.getClass("f".codePointAt(0)!);
+                const target = states![states![0].edges.get(i)!].edges.get(f)!;
+                expect(states![target].tokenType).toBe(g.getTokenType("IF"));
+            }
+        }
+    });
+
+    it("Leaves modes with predicates or custom actions to the ATN simulator", () => {
+        const g = processGrammar(`lexer grammar P;
+A : 'a' ;
+B : 'b' {check()}? ;
+mode M1;
+C : 'c' {log();} ;
+mode M2;
+D : 'd' -> skip ;
+`);
+        const builder = new LexerDFABuilder(g.atn!);
+        expect(builder.buildMode(0)).toBeUndefined();
+        expect(builder.buildMode(1)).toBeUndefined();
+        expect(builder.buildMode(2)).toBeDefined();
+
+        const data = LexerDFABuilder.build(g.atn!)!;
+        const modeCountIndex = 2 + data[1];
+        expect(data[modeCountIndex]).toBe(3);
+        expect(data[modeCountIndex + 1]).toBe(0);
+        expect(data[modeCountIndex + 2]).toBe(0);
+        expect(data[modeCountIndex + 3]).toBeGreaterThan(0);
+
+        // A state limit also leaves a mode to the ATN simulator.
+        expect(LexerDFABuilder.build(processGrammar(grammarText).atn!, 2)).toBeUndefined();
+    });
+
+    it("Generates a table driven lexer for the TypeScript target", () => {
+        const g = processGrammar(grammarText.replace("lexer grammar L;\n",
+            "lexer grammar L;\noptions { language = TypeScript; }\n"));
+
+        const withDFA = new CodeGenerator(g).generateLexer({ args: [], lexerDfa: true }).render();
+        expect(withDFA).toContain("class LDFASimulator extends antlr.LexerATNSimulator");
+        expect(withDFA).toContain("this.interpreter = new LDFASimulator(this, L._ATN, L.decisionsToDFA);");
+
+        const withoutDFA = new CodeGenerator(g).generateLexer({ args: [] }).render();
+        expect(withoutDFA).not.toContain("LDFASimulator");
+
+        // Other targets always use the ATN simulator.
+        const java = processGrammar(grammarText);
+        expect(new CodeGenerator(java).generateLexer({ args: [], lexerDfa: true }).render())
+            .not.toContain("DFASimulator");
+    });
+
+    it("The generated lexer matches the same tokens as the ATN simulator", async () => {
+        const inputs = [
+            "if iff x_1 42 3.14 7 <<= == =",
+            "/* a * b */ \"a\\\"b\" /* **/ if",
+            "a { b c { d } e\n f } 12\r\n{x}",
+            "äöü 😀 foo",
+            "x # y",
+            "",
+        ];
+
+        for (const input of inputs) {
+            const [expectedTokens, expectedErrors, atnUsesDFA] = await tokenize(input, false);
+            const [tokens, errors, usesDFA] = await tokenize(input, true);
+            expect(atnUsesDFA).toBe(false);
+            expect(usesDFA).toBe(true);
+            expect(tokens).toBe(expectedTokens);
+            expect(errors).toBe(expectedErrors);
+        }
+    });
+});
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { mkdtempSync, readFileSync, rmdirSync } from "node:fs";
+import { tmpdir } from "node:os";
+import { dirname, join } from "node:path";
+
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { parseToolParameters } from "../src/tool-parameters.js";
+import { Grammar } from "../src/tool/index.js";
+import { ToolTestUtils } from "./ToolTestUtils.js";
+
+describe("TestPrecedenceClimbing", () => {
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    const createGrammar = (text: string): Grammar => {
+        const g = new Grammar(text);
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return g;
+    };
+
+    const generateParser = (g: Grammar, precedenceClimbing: boolean): string => {
+        const gen = new CodeGenerator(g);
+        gen.precedenceClimbing = precedenceClimbing;
+        const text = gen.generateParser(false).render();
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return text;
+    };
+
+    const countPredictions = (text: string): number => {
+        return text.split("adaptivePredict(").length - 1;
+    };
+
+    it("Operator loop with table", () => {
+        const g = createGrammar(
+            "grammar P;\n" +
+            "s : e EOF ;\n" +
+            "e : e '*' e | e '+' e | '-' e | e '!' | '(' e ')' | A ;\n" +
+            "A : 'a' ;\n");
+
+        const predicted = generateParser(g, false);
+        expect(predicted).not.toContain("e_operatorAlts");
+
+        const text = generateParser(g, true);
+
+        // Operator alternatives are numbered in their order in the operator loop: binary, then suffix alternatives.
+        const operatorAlts: number[] = [];
+        ["'*'", "'+'", "'!'"].forEach((operator, index) => {
+            const type = g.getTokenType(operator);
+            for (let i = operatorAlts.length; i < type; ++i) {
+                operatorAlts.push(0);
+            }
+            operatorAlts[type] = index + 1;
+        });
+
+        expect(text).toContain(`private static readonly e_operatorAlts = [${operatorAlts.join(", ")}];`);
+        expect(text).toContain("private static readonly e_precedences = [0, 6, 5, 3];");
+        expect(text).toContain(".e_operatorAlts[this.tokenStream.LA(1)] ?? 0;");
+        expect(text).toContain("this.precpred(this.context, PParser.e_precedences[alternative])");
+
+        // The loop and the operator block are no longer predicted.
+        expect(countPredictions(text)).toBe(countPredictions(predicted) - 3);
+    });
+
+    it("Loops which need prediction are kept", () => {
+        // An operator token follows the rule.
+        let g = createGrammar(
+            "grammar P;\n" +
+            "s : e '!' EOF ;\n" +
+            "e : e '+' e | e '!' | A ;\n" +
+            "A : 'a' ;\n");
+        expect(generateParser(g, true)).toBe(generateParser(g, false));
+
+        // An operator token follows a rule which ends with the rule.
+        g = createGrammar(
+            "grammar P;\n" +
+            "s : t '+' EOF ;\n" +
+            "t : '-' e ;\n" +
+            "e : e '+' e | A ;\n" +
+            "A : 'a' ;\n");
+        expect(generateParser(g, true)).toBe(generateParser(g, false));
+
+        // An operator token closes another operator alternative, so it can end the right operand of that.
+        g = createGrammar(
+            "grammar P;\n" +
+            "s : e EOF ;\n" +
+            "e : e '[' e ']' | e ']' | A ;\n" +
+            "A : 'a' ;\n");
+        expect(generateParser(g, true)).toBe(generateParser(g, false));
+
+        // Operator alternatives which start with the same token.
+        g = createGrammar(
+            "grammar P;\n" +
+            "s : e EOF ;\n" +
+            "e : e '.' A | e '.' B | A ;\n" +
+            "A : 'a' ;\n" +
+            "B : 'b' ;\n");
+        expect(generateParser(g, true)).toBe(generateParser(g, false));
+
+        // A user predicate in an operator alternative.
+        g = createGrammar(
+            "grammar P;\n" +
+            "s : e EOF ;\n" +
+            "e : e {p()}? '+' e | A ;\n" +
+            "A : 'a' ;\n");
+        expect(generateParser(g, true)).toBe(generateParser(g, false));
+    });
+
+    it("Test grammar corpus", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            const g = createGrammar(readGrammar(name));
+            const text = generateParser(g, true);
+            expect(countPredictions(text)).toBeLessThanOrEqual(countPredictions(generateParser(g, false)));
+
+            if (name === "JavaLR.g4") {
+                // Member access and calls share the '.' operator.
+                expect(text).not.toContain("expression_operatorAlts");
+            }
+        }
+    });
+
+    describe.sequential("Generated parsers", () => {
+        const grammar = "grammar E;\n" +
+            "s @after {console.log($ctx.toStringTree(null, this));} : e EOF ;\n" +
+            "e : e '.' ID\n" +
+            "  | e '[' e ']'\n" +
+            "  | e '++'\n" +
+            "  | '-' e\n" +
+            "  | '!' e\n" +
+            "  | <assoc=right> e '^' e\n" +
+            "  | e '*' e\n" +
+            "  | e '/' e\n" +
+            "  | e '+' e\n" +
+            "  | e '-' e\n" +
+            "  | <assoc=right> e '?' e ':' e\n" +
+            "  | <assoc=right> e '=' e\n" +
+            "  | '(' e ')'\n" +
+            "  | INT\n" +
+            "  | ID\n" +
+            "  ;\n" +
+            "INT : [0-9]+ ;\n" +
+            "ID : [a-z]+ ;\n" +
+            "WS : [ \\t\\r\\n]+ -> skip ;\n";
+
+        /** Runs the generated TypeScript parser and returns its output (the parse tree) and its error output. */
+        const parse = async (input: string, precedenceClimbing: boolean): Promise<[string, string]> => {
+            // Each run needs its own directory, as generated modules are cached by their path.
+            const tempDir = mkdtempSync(join(tmpdir(), "AntlrPrecedenceClimbing"));
+            try {
+                let generationErrors = 0;
+                const options = precedenceClimbing ? ["--precedence-climbing"] : [];
+                const output = await ToolTestUtils.captureTerminalOutput(async () => {
+                    const queue = await ToolTestUtils.execParser("E.g4", grammar, "EParser", "ELexer", "s", input,
+                        false, false, tempDir, ...options);
+                    generationErrors = queue.errors.length;
+                });
+                expect(generationErrors).toBe(0);
+
+                return [output.output, output.error];
+            } finally {
+                rmdirSync(tempDir, { recursive: true });
+            }
+        };
+
+        it("The test grammar uses the operator table", () => {
+            const g = createGrammar(grammar);
+            expect(generateParser(g, true)).toContain("e_operatorAlts");
+        });
+
+        it("Same parse trees with and without precedence climbing", async () => {
+            const inputs = [
+                // Mixed precedence and left associativity.
+                "1 + 2 * 3 - 4 / 5 * 6 - 7",
+
+                // Right associativity.
+                "a = b = c ^ d ^ e + f",
+                "a ? b : c ? d = e : f",
+
+                // Prefix and suffix alternatives.
+                "-a.b[1 + 2]++ * !c++ ^ -d",
+                "(a + b).c[-d]++++",
+            ];
+
+            for (const input of inputs) {
+                const expected = await parse(input, false);
+                expect(expected[1]).toBe("");
+                expect(await parse(input, true)).toEqual(expected);
+            }
+
+            expect((await parse("1 + 2 * 3", true))[0]).toBe("(s (e (e 1) + (e (e 2) * (e 3))) <EOF>)\n");
+            expect((await parse("a ^ b ^ c", true))[0]).toBe("(s (e (e a) ^ (e (e b) ^ (e c))) <EOF>)\n");
+        });
+
+        it("Same error handling with and without precedence climbing", async () => {
+            const inputs = [
+                "1 + * 2",
+                "(a + b",
+                "a b + c",
+                "a ? b",
+                "a[1 +] * 2",
+            ];
+
+            for (const input of inputs) {
+                const expected = await parse(input, false);
+                expect(expected[1]).not.toBe("");
+                expect(await parse(input, true)).toEqual(expected);
+            }
+        });
+    });
+
+    it("Tool parameter", () => {
+        expect(parseToolParameters(["E.g4", "--precedence-climbing"]).precedenceClimbing).toBe(true);
+
+        const g = new Grammar("grammar P;\ns : A ;\nA : 'a' ;\n");
+        expect(new CodeGenerator(g).precedenceClimbing).toBe(false);
+        g.tool.toolParameters.precedenceClimbing = true;
+        expect(new CodeGenerator(g).precedenceClimbing).toBe(true);
+    });
+});
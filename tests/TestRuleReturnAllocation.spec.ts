@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { TreeRuleReturnScope } from "../src/antlr3/tree/TreeRuleReturnScope.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { Grammar } from "../src/tool/index.js";
+import { GrammarTreeVisitor } from "../src/tree-walkers/GrammarTreeVisitor.js";
+
+describe("TestRuleReturnAllocation", () => {
+    /** Counts the rule invocations of the walker and how many of them returned a return scope object. */
+    class CountingVisitor extends GrammarTreeVisitor {
+        public calls = 0;
+        public returnScopes = 0;
+
+        public readonly entered: GrammarAST[] = [];
+        public readonly returned: Array<GrammarAST | null> = [];
+
+        public constructor() {
+            super();
+
+            for (const name of Object.getOwnPropertyNames(GrammarTreeVisitor.prototype)) {
+                const descriptor = Object.getOwnPropertyDescriptor(GrammarTreeVisitor.prototype, name);
+                if (name === "constructor" || name.startsWith("walk") || name.startsWith("enter")
+                    || name.startsWith("exit") || typeof descriptor?.value !== "function") {
+                    continue;
+                }
+
+                // Take the method from this object, to include overrides.
+                const method = Reflect.get(this, name) as unknown;
+
+                Reflect.set(this, name, (...args: unknown[]): unknown => {
+                    const result = (method as (...args: unknown[]) => unknown).apply(this, args);
+                    ++this.calls;
+                    if (result instanceof TreeRuleReturnScope) {
+                        ++this.returnScopes;
+                    }
+
+                    return result;
+                });
+            }
+        }
+
+        public override element(): GrammarAST | null {
+            const start = super.element();
+            this.returned.push(start);
+
+            return start;
+        }
+
+        protected override enterElement(tree: GrammarAST): void {
+            this.entered.push(tree);
+        }
+    }
+
+    const createGrammar = (ruleCount: number): Grammar => {
+        let text = "parser grammar P;\ntokens { A, B, C }\n";
+        for (let i = 0; i < ruleCount; ++i) {
+            text += `r${i} : A 'x' r${(i + 1) % ruleCount} | B (C | 'y')* | x = A ;\n`;
+        }
+
+        return new Grammar(text);
+    };
+
+    it("Rules return their start node", () => {
+        const visitor = new CountingVisitor();
+        visitor.visitGrammar(createGrammar(3).ast);
+
+        expect(visitor.entered.length).toBeGreaterThan(0);
+        // Nested elements return before their parents, so only compare the nodes, not their order.
+        expect(visitor.returned.length).toBe(visitor.entered.length);
+        expect(new Set(visitor.returned)).toEqual(new Set(visitor.entered));
+    });
+
+    it("Benchmark: return scope objects for a 4000 rule grammar", () => {
+        const visitor = new CountingVisitor();
+        visitor.visitGrammar(createGrammar(4000).ast);
+
+        // Only grammarSpec and prequelConstructs still return a scope object, once per grammar.
+        expect(visitor.calls).toBeGreaterThan(4000 * 20);
+        expect(visitor.returnScopes).toBe(2);
+    });
+});
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { Grammar, LexerGrammar } from "../src/tool/index.js";
+import { createScalingGrammar, scalingAxes, scalingBaseSizes } from "./benchmarks/ScalingGrammars.js";
+import { fitGrowth, runScalingReport } from "./benchmarks/ScalingReport.js";
+
+describe("TestScalingGrammars", () => {
+    const processGrammar = (text: string, lexer: boolean): Grammar => {
+        const g = lexer ? new LexerGrammar(text) : new Grammar(text);
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return g;
+    };
+
+    it("Generates valid grammars", () => {
+        for (const axis of scalingAxes) {
+            for (const size of [1, scalingBaseSizes[axis]]) {
+                const grammar = createScalingGrammar(axis, size);
+                expect(grammar.name.endsWith(String(size))).toBe(true);
+                processGrammar(grammar.text, axis === "literals" || axis === "unicodeSet");
+            }
+        }
+    });
+
+    it("Grows one axis", () => {
+        let g = processGrammar(createScalingGrammar("rules", 20).text, false);
+        expect(g.rules.size).toBe(21);
+
+        g = processGrammar(createScalingGrammar("alternatives", 20).text, false);
+        const block = g.getRule("a")!.ast.getFirstChildWithType(ANTLRv4Parser.BLOCK) as GrammarAST;
+        expect(block.getChildCount()).toBe(1);
+        expect(block.getChild(0)!.getChild(0)!.getChildCount()).toBe(20);
+
+        g = processGrammar(createScalingGrammar("depth", 20).text, false);
+        expect(g.getRule("s")!.ast.getNodesWithType(ANTLRv4Parser.CLOSURE).length).toBe(20);
+
+        g = processGrammar(createScalingGrammar("operators", 20).text, false);
+        expect(g.getRule("e")!.getOriginalNumberOfAlts()).toBe(21);
+
+        g = processGrammar(createScalingGrammar("literals", 20).text, true);
+        expect(g.rules.size).toBe(22);
+
+        g = processGrammar(createScalingGrammar("unicodeSet", 20).text, true);
+        const set = g.getRule("U")!.ast.getNodesWithType(ANTLRv4Parser.LEXER_CHAR_SET)[0];
+        expect(set.getText().length).toBe(2 + 20 * "\\uXXXX".length);
+    });
+
+    it("Fits the growth", () => {
+        const sizes = [10, 100, 1000];
+
+        let fit = fitGrowth(sizes, sizes.map((size) => {
+            return 2 * size;
+        }));
+        expect(fit.exponent).toBeCloseTo(1);
+        expect(fit.coefficient).toBeCloseTo(2);
+
+        fit = fitGrowth(sizes, sizes.map((size) => {
+            return size * size / 10;
+        }));
+        expect(fit.exponent).toBeCloseTo(2);
+        expect(fit.coefficient).toBeCloseTo(0.1);
+    });
+
+    it("Reports each phase", () => {
+        const results = runScalingReport(["alternatives"], {
+            factors: [1, 2],
+            threshold: 1.2,
+            benchmark: { warmupIterations: 0, iterations: 1, iterationTime: 1 },
+        });
+
+        expect(results.map((result) => {
+            return result.phase;
+        })).toEqual(["RuleCollector", "BasicSemanticChecks", "SymbolCollector", "BlockSetTransformer", "ATNBuilder",
+            "SourceGenTriggers"]);
+
+        for (const result of results) {
+            expect(result.axis).toBe("alternatives");
+            expect(result.sizes).toEqual([100, 200]);
+            expect(result.times.length).toBe(2);
+            expect(result.superLinear).toBe(result.exponent > 1.2);
+        }
+    });
+});
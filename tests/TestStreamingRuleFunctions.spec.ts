@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { mkdtempSync, readFileSync, rmdirSync } from "node:fs";
+import { tmpdir } from "node:os";
+import { dirname, join } from "node:path";
+
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { OutputModelController } from "../src/codegen/OutputModelController.js";
+import { OutputModelWalker } from "../src/codegen/OutputModelWalker.js";
+import { ParserFactory } from "../src/codegen/ParserFactory.js";
+import type { ParserFile } from "../src/codegen/model/ParserFile.js";
+import { parseToolParameters } from "../src/tool-parameters.js";
+import { Grammar } from "../src/tool/index.js";
+
+describe("TestStreamingRuleFunctions", () => {
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    const buildModel = (g: Grammar, header: boolean, eager: boolean): [ParserFile, string] => {
+        const gen = new CodeGenerator(g);
+        const factory = new ParserFactory(gen);
+        const controller = new OutputModelController(factory);
+        factory.setController(controller);
+        controller.renderRuleFunctionsEagerly = eager;
+
+        const model = controller.buildParserOutputModel(header) as ParserFile;
+
+        return [model, new OutputModelWalker(g.tool, gen.getTemplates()).walk(model, header).render()];
+    };
+
+    /** Generates the parser for the given grammar with and without eager rendering and compares the results. */
+    const expectSameParser = (text: string, header = false): void => {
+        const g = new Grammar(text);
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        const [, expected] = buildModel(g, header, false);
+        const [model, streamed] = buildModel(g, header, true);
+        expect(streamed).toBe(expected);
+
+        // Only the generated text of each rule function is left.
+        expect(model.parser.funcs.length).toBe(g.rules.size);
+        for (const func of model.parser.funcs) {
+            expect(func.renderedText).toBeDefined();
+            expect(func.code).toEqual([]);
+        }
+    };
+
+    const smallGrammar = "grammar P;\n" +
+        "s : e (A | B)* EOF ;\n" +
+        "e : e '*' e # Mul | e '+' e # Add | '(' e ')' # Parens | A # Atom ;\n" +
+        "f returns [int v] locals [int w] : (x = A B?)+ {$v = 1;} | C* | ;\n" +
+        "g : {p()}? A | {q()}? . ;\n" +
+        "h : g {r()}? f ;\n" +
+        "A : 'a' ;\n" +
+        "B : 'b' ;\n" +
+        "C : 'c' ;\n";
+
+    it("Small grammar", () => {
+        expectSameParser(smallGrammar);
+    });
+
+    it("Small grammar, C++ source and header", () => {
+        const text = smallGrammar.replace("grammar P;\n", "grammar P;\noptions { language = Cpp; }\n");
+        expectSameParser(text);
+        expectSameParser(text, true);
+    });
+
+    it("Test grammar corpus", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            expectSameParser(readGrammar(name));
+        }
+    });
+
+    it("Code generator with eager rendering", () => {
+        const g = new Grammar(smallGrammar);
+        g.tool.process(g, false);
+
+        const expected = new CodeGenerator(g);
+        expect(expected.renderRuleFunctionsEagerly).toBe(false);
+
+        g.tool.toolParameters.streamRuleFunctions = true;
+        const gen = new CodeGenerator(g);
+        expect(gen.renderRuleFunctionsEagerly).toBe(true);
+        expect(gen.generateParser(false).render()).toBe(expected.generateParser(false).render());
+    });
+
+    it("Written parser with wrapped lines", () => {
+        // Enough operators to wrap the operator table of rule e (precedence climbing, TypeScript target only).
+        const operators: string[] = [];
+        for (let i = 0; i < 30; ++i) {
+            operators.push(`e 'op${i}' e`);
+        }
+        const text = "grammar P;\noptions { language = TypeScript; }\ns : e EOF ;\n" +
+            `e : ${operators.join(" | ")} | A ;\nA : 'a' ;\n`;
+
+        const writeParser = (streamRuleFunctions: boolean): string => {
+            const tempDir = mkdtempSync(join(tmpdir(), "AntlrStreamingRuleFunctions"));
+            try {
+                const g = new Grammar(join(tempDir, "P.g4"), text);
+                g.tool.toolParameters.precedenceClimbing = true;
+                g.tool.toolParameters.streamRuleFunctions = streamRuleFunctions;
+                g.tool.process(g, false);
+                expect(g.tool.getNumErrors()).toBe(0);
+
+                const gen = new CodeGenerator(g);
+                const fileName = gen.getRecognizerFileName(false);
+                gen.write(gen.generateParser(false), fileName);
+
+                return readFileSync(join(tempDir, fileName), "utf8");
+            } finally {
+                rmdirSync(tempDir, { recursive: true });
+            }
+        };
+
+        const expected = writeParser(false);
+        expect(expected).toMatch(/e_operatorAlts = \[[^\]]*\n/);
+        expect(writeParser(true)).toBe(expected);
+    });
+
+    it("Tool parameter", () => {
+        expect(parseToolParameters(["T.g4", "--stream-rule-functions"]).streamRuleFunctions).toBe(true);
+        expect(parseToolParameters(["T.g4"]).streamRuleFunctions).toBe(false);
+    });
+});
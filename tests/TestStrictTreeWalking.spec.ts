@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { readFileSync } from "node:fs";
+import { dirname, join } from "node:path";
+
+import { ATNSerializer } from "antlr4ng";
+
+import { TreeParserError } from "../src/antlr3/tree/TreeParserError.js";
+import { ParserATNFactory } from "../src/automata/ParserATNFactory.js";
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { OutputModelController } from "../src/codegen/OutputModelController.js";
+import { OutputModelWalker } from "../src/codegen/OutputModelWalker.js";
+import { ParserFactory } from "../src/codegen/ParserFactory.js";
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import { GrammarASTAdaptor } from "../src/parse/GrammarASTAdaptor.js";
+import { Grammar } from "../src/tool/index.js";
+import { ErrorType } from "../src/tool/ErrorType.js";
+import { GrammarTreeVisitor } from "../src/tree-walkers/GrammarTreeVisitor.js";
+import { ErrorQueue } from "./support/ErrorQueue.js";
+
+describe("TestStrictTreeWalking", () => {
+    class QuietVisitor extends GrammarTreeVisitor {
+        public readonly messages: string[] = [];
+
+        public override emitErrorMessage(msg: string): void {
+            this.messages.push(msg);
+        }
+    }
+
+    class StrictATNFactory extends ParserATNFactory {
+        public constructor(g: Grammar) {
+            super(g);
+            this.strictWalking = true;
+        }
+    }
+
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    /** @returns A grammar whose first alternative contains a node which cannot appear there. */
+    const createBrokenGrammar = (): Grammar => {
+        const g = new Grammar("grammar T;\na : A B | C ;\n");
+        const alt = g.ast.getNodesWithType(ANTLRv4Parser.ALT)[0];
+        alt.addChild(new GrammarASTAdaptor().create(ANTLRv4Parser.RULES, "RULES"));
+
+        return g;
+    };
+
+    const generateParser = (g: Grammar, strict: boolean): string => {
+        const gen = new CodeGenerator(g);
+        const factory = new ParserFactory(gen);
+        const controller = new OutputModelController(factory);
+        factory.setController(controller);
+        controller.strictWalking = strict;
+
+        const model = controller.buildParserOutputModel(false);
+
+        return new OutputModelWalker(g.tool, gen.getTemplates()).walk(model, false).render();
+    };
+
+    it("Recovering mode reports mismatches and continues", () => {
+        const visitor = new QuietVisitor();
+        visitor.visitGrammar(createBrokenGrammar().ast);
+
+        expect(visitor.getNumberOfSyntaxErrors()).toBeGreaterThan(0);
+        expect(visitor.messages.length).toBeGreaterThan(0);
+    });
+
+    it("Strict mode fails with a single structured error", () => {
+        const visitor = new QuietVisitor();
+        visitor.strict = true;
+
+        let error: unknown;
+        try {
+            visitor.visitGrammar(createBrokenGrammar().ast);
+        } catch (e) {
+            error = e;
+        }
+
+        expect(error).toBeInstanceOf(TreeParserError);
+        const walkerError = error as TreeParserError;
+        expect(walkerError.walker).toBe("QuietVisitor");
+        expect(walkerError.nodeType).toBe("RULES");
+        expect(walkerError.node?.getText()).toBe("RULES");
+        expect(walkerError.cause).toBeDefined();
+
+        // Nothing was reported before failing.
+        expect(visitor.messages).toEqual([]);
+    });
+
+    it("Strict mode gives the same results for valid grammars", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            const g = new Grammar(readGrammar(name));
+            g.tool.process(g, false);
+            expect(g.tool.getNumErrors()).toBe(0);
+
+            const atn = ATNSerializer.getSerialized(new ParserATNFactory(g).createATN());
+            expect(ATNSerializer.getSerialized(new StrictATNFactory(g).createATN())).toEqual(atn);
+
+            expect(generateParser(g, true)).toBe(generateParser(g, false));
+        }
+    });
+
+    it("Strict mode is enabled by the tool parameter", () => {
+        class ParameterATNFactory extends ParserATNFactory {
+            public get strict(): boolean {
+                return this.strictWalking;
+            }
+        }
+
+        const text = readGrammar("JavaLR.g4");
+        const g = new Grammar(text);
+        g.tool.process(g, false);
+        expect(new ParameterATNFactory(g).strict).toBe(false);
+
+        const strict = new Grammar(text);
+        strict.tool.toolParameters.strictWalking = true;
+        strict.tool.process(strict, false);
+        expect(strict.tool.getNumErrors()).toBe(0);
+        expect(new ParameterATNFactory(strict).strict).toBe(true);
+
+        expect(ATNSerializer.getSerialized(strict.atn!)).toEqual(ATNSerializer.getSerialized(g.atn!));
+        expect(new CodeGenerator(strict).generateParser(false).render())
+            .toBe(new CodeGenerator(g).generateParser(false).render());
+    });
+
+    it("The tool reports strict walker errors as internal errors", () => {
+        const g = new Grammar("grammar T;\na : A B | C ;\n");
+        g.tool.toolParameters.strictWalking = true;
+        const errors = new ErrorQueue(g.tool.errorManager);
+        g.tool.errorManager.addListener(errors);
+
+        // Break rule a right before the ATN builder walks it, after all semantic checks passed.
+        g.tool.instrumentation = {
+            enterGrammar: (): void => { /**/ },
+            exitGrammar: (): void => { /**/ },
+            enterRule: (phase: string, ruleName: string): void => {
+                if (phase === "ATNBuilder" && ruleName === "a") {
+                    const alt = g.getRule("a")!.ast.getNodesWithType(ANTLRv4Parser.ALT)[0];
+                    alt.addChild(new GrammarASTAdaptor().create(ANTLRv4Parser.RULES, "RULES"));
+                }
+            },
+            exitRule: (): void => { /**/ },
+            ruleATNCreated: (): void => { /**/ },
+        };
+
+        expect(() => {
+            g.tool.process(g, false);
+        }).not.toThrow();
+
+        expect(errors.errors.length).toBe(1);
+        expect(errors.errors[0].errorType).toBe(ErrorType.INTERNAL_ERROR);
+        expect(errors.toString(true)).toContain("internal error: ATNBuilder cannot match node RULES");
+    });
+});
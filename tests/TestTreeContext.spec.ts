@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import type { CommonTree } from "../src/antlr3/tree/CommonTree.js";
+import { TreeParser } from "../src/antlr3/tree/TreeParser.js";
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import { GrammarASTAdaptor } from "../src/parse/GrammarASTAdaptor.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { BlockSetTransformer } from "../src/tree-walkers/BlockSetTransformer.js";
+
+describe("TestTreeContext", () => {
+    const tokenNames = BlockSetTransformer.tokenNames;
+
+    /** Counts how often the tree structure is accessed. */
+    class CountingAdaptor extends GrammarASTAdaptor {
+        public accesses = 0;
+
+        public override getParent(t: CommonTree | null): CommonTree | null {
+            ++this.accesses;
+
+            return super.getParent(t);
+        }
+
+        public override getType(t: CommonTree | null): number {
+            ++this.accesses;
+
+            return super.getType(t);
+        }
+    }
+
+    it("Contexts are matched against the ancestors of a node", () => {
+        // (RULES (RULE (BLOCK (ALT (BLOCK (ALT))))))
+        const adaptor = new GrammarASTAdaptor();
+        const chain = ["RULES", "RULE", "BLOCK", "ALT", "BLOCK", "ALT"].map((name) => {
+            return adaptor.create(tokenNames.indexOf(name), name);
+        });
+        for (let i = 1; i < chain.length; ++i) {
+            chain[i - 1].addChild(chain[i]);
+        }
+
+        const expectations: Array<[string, boolean]> = [
+            ["BLOCK", true], ["ALT", false], ["ALT BLOCK", true], ["RULE BLOCK", false], ["RULE ... BLOCK", true],
+            ["RULE ... ALT BLOCK", true], ["... BLOCK", true], ["...", true], ["RULES RULE BLOCK ALT BLOCK", true],
+            ["GRAMMAR RULES RULE BLOCK ALT BLOCK", false], ["... UNKNOWN", false], ["  ALT   BLOCK  ", true],
+        ];
+
+        const innermost = chain[chain.length - 1];
+        for (const [context, expected] of expectations) {
+            expect(TreeParser.inContext(adaptor, tokenNames, innermost, context)).toBe(expected);
+            expect(TreeParser.inCompiledContext(adaptor, innermost, TreeParser.compileContext(tokenNames, context)))
+                .toBe(expected);
+        }
+    });
+
+    it("Benchmark: checking RULE BLOCK for 100k alternatives", () => {
+        const adaptor = new CountingAdaptor();
+        const rule = adaptor.create(ANTLRv4Parser.RULE, "RULE");
+        const block = adaptor.create(ANTLRv4Parser.BLOCK, "BLOCK");
+        adaptor.addChild(rule, block);
+
+        const alternatives: GrammarAST[] = [];
+        for (let i = 0; i < 100000; ++i) {
+            const alt = adaptor.create(ANTLRv4Parser.ALT, "ALT");
+            adaptor.addChild(alt, adaptor.create(ANTLRv4Parser.TOKEN_REF, "A"));
+            adaptor.addChild(block, alt);
+            alternatives.push(alt);
+        }
+
+        const context = TreeParser.compileContext(tokenNames, "RULE BLOCK");
+        adaptor.accesses = 0;
+        let compiledMatches = 0;
+        for (const alt of alternatives) {
+            if (TreeParser.inCompiledContext(adaptor, alt, context)) {
+                ++compiledMatches;
+            }
+
+            if (TreeParser.inCompiledContext(adaptor, alt.getChild(0) as GrammarAST, context)) {
+                ++compiledMatches;
+            }
+        }
+
+        expect(compiledMatches).toBe(alternatives.length);
+
+        // Only the ancestors are visited (at most 3 parents and 2 types per node) and no token names are looked up.
+        expect(adaptor.accesses).toBeLessThanOrEqual(alternatives.length * 8);
+
+        let textMatches = 0;
+        for (const alt of alternatives) {
+            if (TreeParser.inContext(adaptor, tokenNames, alt, "RULE BLOCK")) {
+                ++textMatches;
+            }
+        }
+
+        expect(textMatches).toBe(compiledMatches);
+    });
+});
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { Token } from "antlr4ng";
+
+import { CommonTreeNodeStream } from "../src/antlr3/tree/CommonTreeNodeStream.js";
+import { Constants } from "../src/Constants1.js";
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import { GrammarASTAdaptor } from "../src/parse/GrammarASTAdaptor.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { Grammar } from "../src/tool/index.js";
+import { BlockSetTransformer } from "../src/tree-walkers/BlockSetTransformer.js";
+
+describe("TestTreeNodeStreamReuse", () => {
+    /** Counts the navigation nodes (DOWN, UP, EOF) it creates. Every new node stream creates one of each. */
+    class CountingAdaptor extends GrammarASTAdaptor {
+        public navigationNodes = 0;
+
+        public override create(token: Token): GrammarAST;
+        public override create(tokenType: number, text: string): GrammarAST;
+        public override create(tokenType: number, fromToken: Token, text?: string): GrammarAST;
+        public override create(...args: unknown[]): GrammarAST {
+            if (args.length === 2 && (args[0] === Constants.DOWN || args[0] === Constants.UP
+                || args[0] === Token.EOF)) {
+                ++this.navigationNodes;
+            }
+
+            return super.create.apply(this, args) as GrammarAST;
+        }
+    }
+
+    /** A transformer that creates a new node stream for each subtree it visits (the old behavior). */
+    class FreshStreamTransformer extends BlockSetTransformer {
+        protected override reuseNodeStream = false;
+    }
+
+    const createGrammar = (ruleCount: number): Grammar => {
+        let text = "parser grammar P;\ntokens { A, B, C, D }\n";
+        for (let i = 0; i < ruleCount; ++i) {
+            text += `r${i} : (A | B | C) r${(i + 1) % ruleCount}? | D (A | B)+ | ~(C | D) ;\n`;
+        }
+
+        return new Grammar(text);
+    };
+
+    const collectTypes = (stream: CommonTreeNodeStream): number[] => {
+        const types: number[] = [];
+        while (stream.LA(1) !== Token.EOF) {
+            types.push(stream.LA(1));
+            stream.consume();
+        }
+
+        return types;
+    };
+
+    it("A stream reset to a new tree behaves like a new stream", () => {
+        const g = createGrammar(5);
+        const blocks = g.ast.getNodesWithType(ANTLRv4Parser.BLOCK);
+        expect(blocks.length).toBeGreaterThan(5);
+
+        const reused = new CommonTreeNodeStream(new GrammarASTAdaptor(), blocks[blocks.length - 1]);
+
+        // Leave the stream in the middle of the tree, with an open marker.
+        reused.consume();
+        reused.mark();
+        reused.consume();
+
+        for (const block of blocks) {
+            reused.reset(block);
+            const fresh = new CommonTreeNodeStream(new GrammarASTAdaptor(), block);
+
+            expect(collectTypes(reused)).toEqual(collectTypes(fresh));
+        }
+    });
+
+    it("Benchmark: node streams allocated while reducing blocks to sets", () => {
+        const ruleCount = 1000;
+
+        const run = (reuse: boolean): { tree: string, streams: number; } => {
+            const g = createGrammar(ruleCount);
+            const adaptor = new CountingAdaptor();
+            const nodes = new CommonTreeNodeStream(adaptor, g.ast);
+            const transformer = reuse ? new BlockSetTransformer(nodes, g) : new FreshStreamTransformer(nodes, g);
+            transformer.setTreeAdaptor(new GrammarASTAdaptor());
+            transformer.downUp(g.ast);
+
+            return { tree: g.ast.toStringTree(), streams: adaptor.navigationNodes / 3 };
+        };
+
+        const fresh = run(false);
+        const reused = run(true);
+
+        expect(reused.tree).toBe(fresh.tree);
+
+        // Every visited node gets at least a top down and a bottom up rule application.
+        expect(fresh.streams).toBeGreaterThan(2 * ruleCount);
+
+        // The stream passed in + the one shared by all rule applications.
+        expect(reused.streams).toBe(2);
+    });
+});
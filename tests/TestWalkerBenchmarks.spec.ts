@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { mkdtempSync, rmSync, writeFileSync } from "node:fs";
+import { tmpdir } from "node:os";
+import { dirname, join } from "node:path";
+
+import {
+    findRegressions, findUnknownCases, readBaseline, runBenchmark, writeBaseline, type IBenchmarkResult,
+} from "./benchmarks/BenchmarkRunner.js";
+import {
+    createAlternativesGrammar, createBenchmarkCases, loadCorpus, walkerNames,
+} from "./benchmarks/WalkerBenchmarks.js";
+
+describe("TestWalkerBenchmarks", () => {
+    const corpusFolder = join(dirname(import.meta.url), "grammars").substring("file:".length);
+
+    it("Creates runnable cases for the corpus", () => {
+        const corpus = loadCorpus(corpusFolder);
+        expect(corpus.map((grammar) => {
+            return grammar.name;
+        })).toEqual(expect.arrayContaining(["Java.g4", "JavaLR.g4", "PositionAdjustingLexer.g4"]));
+
+        for (const grammar of corpus) {
+            const cases = createBenchmarkCases(grammar);
+            expect(cases.length).toBeGreaterThan(0);
+
+            for (const benchmarkCase of cases) {
+                expect(benchmarkCase.name.endsWith("/" + grammar.name)).toBe(true);
+                expect(benchmarkCase.nodes).toBeGreaterThan(0);
+
+                // Twice, to make sure the setup prepares a fresh input.
+                for (let i = 0; i < 2; ++i) {
+                    benchmarkCase.setup?.();
+                    benchmarkCase.run();
+                }
+            }
+        }
+    });
+
+    it("Creates a case per walker", () => {
+        const grammar = createAlternativesGrammar(100);
+        const cases = createBenchmarkCases(grammar);
+
+        // The generated grammar has no left recursive rule.
+        expect(cases.map((benchmarkCase) => {
+            return benchmarkCase.name;
+        })).toEqual(walkerNames.filter((name) => {
+            return name !== "LeftRecursiveRuleWalker";
+        }).map((name) => {
+            return `${name}/Alternatives100`;
+        }));
+
+        const lrCases = createBenchmarkCases(loadCorpus(corpusFolder).find((entry) => {
+            return entry.name === "JavaLR.g4";
+        })!, ["LeftRecursiveRuleWalker"]);
+        expect(lrCases.length).toBe(1);
+
+        const result = runBenchmark(cases[0], { warmupIterations: 1, iterations: 2, iterationTime: 1 });
+        expect(result.opsPerSecond).toBeGreaterThan(0);
+        expect(result.nodesPerSecond).toBe(result.opsPerSecond * cases[0].nodes);
+        expect(result.relativeError).toBeGreaterThanOrEqual(0);
+    });
+
+    it("Finds regressions", () => {
+        const baseline: Record<string, IBenchmarkResult> = {
+            "A/G": { opsPerSecond: 100, relativeError: 0, nodesPerSecond: 1000, bytesPerOp: 1000 },
+            "B/G": { opsPerSecond: 100, relativeError: 0, nodesPerSecond: 1000, bytesPerOp: 1000 },
+            "C/G": { opsPerSecond: 100, relativeError: 0, nodesPerSecond: 1000 },
+        };
+
+        const results: Record<string, IBenchmarkResult> = {
+            "A/G": { opsPerSecond: 85, relativeError: 0, nodesPerSecond: 850, bytesPerOp: 1150 },
+            "B/G": { opsPerSecond: 70, relativeError: 0, nodesPerSecond: 700, bytesPerOp: 1300 },
+            "C/G": { opsPerSecond: 120, relativeError: 0, nodesPerSecond: 1200, bytesPerOp: 5000 },
+            "D/G": { opsPerSecond: 1, relativeError: 0, nodesPerSecond: 10 },
+        };
+
+        const regressions = findRegressions(results, { version: 1, results: baseline }, 0.2);
+        expect(regressions.length).toBe(2);
+        expect(regressions[0].startsWith("B/G: 70.00 ops/s")).toBe(true);
+        expect(regressions[1].startsWith("B/G: 1300 bytes/op")).toBe(true);
+    });
+
+    it("Rejects missing and incompatible baselines", () => {
+        const directory = mkdtempSync(join(tmpdir(), "benchmark-"));
+        try {
+            const fileName = join(directory, "baseline.json");
+            expect(() => {
+                return readBaseline(fileName);
+            }).toThrow("No baseline");
+
+            writeFileSync(fileName, JSON.stringify({ version: 0, results: {} }));
+            expect(() => {
+                return readBaseline(fileName);
+            }).toThrow("unsupported format");
+
+            writeFileSync(fileName, "[]");
+            expect(() => {
+                return readBaseline(fileName);
+            }).toThrow("unsupported format");
+
+            const results: Record<string, IBenchmarkResult> = {
+                "A/G": { opsPerSecond: 100, relativeError: 0, nodesPerSecond: 1000 },
+            };
+            writeBaseline(fileName, results);
+            const baseline = readBaseline(fileName);
+            expect(baseline.results).toEqual(results);
+
+            expect(findUnknownCases(results, baseline)).toEqual([]);
+            expect(findUnknownCases({ ...results, "B/G": results["A/G"] }, baseline)).toEqual(["B/G"]);
+        } finally {
+            rmSync(directory, { recursive: true, force: true });
+        }
+    });
+});
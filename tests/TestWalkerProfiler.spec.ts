@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it, vi } from "vitest";
+
+import { readFileSync } from "node:fs";
+import { dirname, join } from "node:path";
+
+import { ATNSerializer } from "antlr4ng";
+
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { WalkerProfiler, type IWalkerProfileReport } from "../src/support/WalkerProfiler.js";
+import { Grammar } from "../src/tool/index.js";
+
+describe("TestWalkerProfiler", () => {
+    const grammarText =
+        "grammar P;\n" +
+        "s : e EOF ;\n" +
+        "e : e '*' e | e '+' e | ('-' | '~') e | A ;\n" +
+        "A : 'a' ;\n";
+
+    const readGrammar = (name: string): string => {
+        const url = join(dirname(import.meta.url), "grammars", name).substring("file:".length);
+
+        return readFileSync(url, "utf8");
+    };
+
+    /** Processes the grammar and generates its parser, with the given profiler set on the tool. */
+    const processGrammar = (text: string, profiler?: WalkerProfiler): [Grammar, string] => {
+        const g = new Grammar(text);
+        g.tool.instrumentation = profiler;
+        g.tool.process(g, false);
+        expect(g.tool.getNumErrors()).toBe(0);
+
+        return [g, new CodeGenerator(g).generateParser(false).render()];
+    };
+
+    /** @returns The profile of the given profiler, as it is written to a file. */
+    const exportProfile = (profiler: WalkerProfiler): IWalkerProfileReport => {
+        return JSON.parse(JSON.stringify(profiler)) as IWalkerProfileReport;
+    };
+
+    it("Phases and rules", () => {
+        const profiler = new WalkerProfiler();
+        const [g] = processGrammar(grammarText, profiler);
+        const report = exportProfile(profiler);
+
+        expect(Object.keys(report.phases)).toEqual(expect.arrayContaining([
+            "CompositeGrammarTreeVisitor", "BlockSetTransformer", "BasicSemanticChecks", "LeftRecursiveRuleAnalyzer",
+            "RuleCollector", "SymbolCollector", "ATNBuilder", "SourceGenTriggers",
+        ]));
+
+        // The left recursive rule is checked again, after it was rewritten.
+        expect(report.phases.BasicSemanticChecks.rules["P.s"].count).toBe(1);
+        expect(report.phases.BasicSemanticChecks.rules["P.e"].count).toBe(2);
+        expect(report.phases.BlockSetTransformer.rules["P.e"].count).toBe(2);
+        expect(Object.keys(report.phases.RuleCollector.rules)).toEqual(["P.e"]);
+        expect(Object.keys(report.phases.LeftRecursiveRuleAnalyzer.rules)).toEqual(["P.e"]);
+
+        // The rule checks walk the whole rule, the ATN builder and the code generator only the rule block.
+        const sNodes = g.getRule("s")!.ast.getNodesWithType(null).length;
+        expect(report.phases.SymbolCollector.rules["P.s"].nodes).toBe(sNodes);
+        expect(report.phases.ATNBuilder.rules["P.s"].nodes).toBe(sNodes - 2);
+        expect(report.phases.SourceGenTriggers.rules["P.s"].nodes).toBe(sNodes - 2);
+
+        for (const phase of Object.values(report.phases)) {
+            const rules = Object.values(phase.rules);
+            expect(phase.count).toBe(rules.reduce((sum, profile) => { return sum + profile.count; }, 0));
+            expect(phase.nodes).toBe(rules.reduce((sum, profile) => { return sum + profile.nodes; }, 0));
+            for (const profile of rules) {
+                expect(profile.time).toBeGreaterThanOrEqual(0);
+                expect(profile.allocatedBytes).toBeGreaterThanOrEqual(0);
+            }
+        }
+
+        // Parser and lexer rules (including those for the literals) have their ATN states.
+        expect(Object.keys(report.atn)).toEqual(expect.arrayContaining(["PLexer.A", "P.e", "P.s"]));
+        for (const profile of Object.values(report.atn)) {
+            expect(profile.states).toBeGreaterThan(0);
+            expect(profile.transitions).toBeGreaterThanOrEqual(profile.states - 1);
+        }
+
+        // Start and stop states are not counted.
+        const states = report.atn["P.s"].states + report.atn["P.e"].states;
+        expect(states + 2 * g.rules.size).toBeLessThanOrEqual(g.atn!.states.length);
+    });
+
+    it("Heap per rule is only measured when enabled", () => {
+        const profiler = new WalkerProfiler();
+        processGrammar(grammarText, profiler);
+        const report = exportProfile(profiler);
+
+        for (const phase of Object.values(report.phases)) {
+            for (const profile of Object.values(phase.rules)) {
+                expect(profile.allocatedBytes).toBe(0);
+            }
+        }
+
+        // The blocks of all rules are reduced in one walk of the grammar, which reports each rule. That is before the
+        // lexer rules are moved to the implicit lexer.
+        expect(report.phases.BlockSetTransformer.rules["P.s"].count).toBe(1);
+        expect(report.phases.BlockSetTransformer.rules["P.A"].count).toBe(1);
+
+        const sampling = new WalkerProfiler(true);
+        const [g] = processGrammar(grammarText, sampling);
+        const sampled = exportProfile(sampling);
+        for (const r of g.rules.values()) {
+            expect(sampled.phases.SymbolCollector.rules[`P.${r.name}`].allocatedBytes).toBeGreaterThanOrEqual(0);
+        }
+    });
+
+    it("Test grammar corpus", () => {
+        for (const name of ["Java.g4", "JavaLR.g4", "Psl.g4"]) {
+            const text = readGrammar(name);
+            const [expected, expectedParser] = processGrammar(text);
+
+            // Measuring does not change the results.
+            const profiler = new WalkerProfiler();
+            const [g, parser] = processGrammar(text, profiler);
+            expect(g.ast.toStringTree()).toBe(expected.ast.toStringTree());
+            expect(ATNSerializer.getSerialized(g.atn!)).toEqual(ATNSerializer.getSerialized(expected.atn!));
+            expect(parser).toBe(expectedParser);
+
+            const report = exportProfile(profiler);
+            for (const r of g.rules.values()) {
+                const key = `${g.name}.${r.name}`;
+                expect(report.phases.SymbolCollector.rules[key].count).toBe(1);
+                expect(report.phases.ATNBuilder.rules[key].count).toBe(1);
+                expect(report.phases.SourceGenTriggers.rules[key].count).toBe(1);
+                expect(report.atn[key].states).toBeGreaterThan(0);
+            }
+        }
+    });
+
+    it("Rules of several grammars are kept apart", () => {
+        const profiler = new WalkerProfiler();
+        processGrammar(grammarText, profiler);
+        processGrammar(grammarText.replace("grammar P;", "grammar Q;"), profiler);
+        const report = exportProfile(profiler);
+
+        expect(report.phases.SymbolCollector.rules["P.s"].count).toBe(1);
+        expect(report.phases.SymbolCollector.rules["Q.s"].count).toBe(1);
+        expect(report.atn["P.e"].states).toBe(report.atn["Q.e"].states);
+        expect(report.atn["PLexer.A"].states).toBe(report.atn["QLexer.A"].states);
+    });
+
+    it("Each tree is counted once", () => {
+        const countNodes = vi.spyOn(WalkerProfiler, "countNodes");
+        try {
+            const profiler = new WalkerProfiler();
+            processGrammar(grammarText, profiler);
+            const report = exportProfile(profiler);
+
+            // The rule checks share the rule trees, the ATN builder and the code generator the rule blocks.
+            const exits = Object.values(report.phases).reduce((sum, phase) => { return sum + phase.count; }, 0);
+            expect(countNodes.mock.calls.length).toBeLessThan(exits);
+            expect(new Set(countNodes.mock.calls.map(([tree]) => { return tree; })).size)
+                .toBe(countNodes.mock.calls.length);
+        } finally {
+            countNodes.mockRestore();
+        }
+    });
+});
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { describe, expect, it } from "vitest";
+
+import { performance, PerformanceObserver, type PerformanceEntry } from "node:perf_hooks";
+
+import { CodeGenerator } from "../src/codegen/CodeGenerator.js";
+import { ANTLRv4Parser } from "../src/generated/ANTLRv4Parser.js";
+import { WalkerTimeline, type IWalkerMeasureDetail } from "../src/support/WalkerTimeline.js";
+import type { GrammarAST } from "../src/tool/ast/GrammarAST.js";
+import { Grammar } from "../src/tool/index.js";
+
+describe("TestWalkerTimeline", () => {
+    const grammarText =
+        "grammar P;\n" +
+        "s : e EOF ;\n" +
+        "e : e '*' e | e '+' e | '-' e | A ;\n" +
+        "A : 'a' ;\n";
+
+    /** @returns The walker measures created while processing the grammar and generating its parser. */
+    const recordMeasures = (g: Grammar): PerformanceEntry[] => {
+        const observer = new PerformanceObserver(() => { /**/ });
+        observer.observe({ entryTypes: ["measure"] });
+        try {
+            g.tool.instrumentation = new WalkerTimeline();
+            g.tool.process(g, false);
+            expect(g.tool.getNumErrors()).toBe(0);
+            new CodeGenerator(g).generateParser(false);
+
+            return observer.takeRecords().filter((entry) => {
+                return entry.name.startsWith(WalkerTimeline.prefix);
+            });
+        } finally {
+            observer.disconnect();
+        }
+    };
+
+    it("Measures per grammar and rule", () => {
+        const g = new Grammar(grammarText);
+        const measures = recordMeasures(g);
+
+        const find = (phase: string, rule: string): PerformanceEntry[] => {
+            return measures.filter((entry) => {
+                return entry.name === WalkerTimeline.prefix + phase
+                    && (entry.detail as IWalkerMeasureDetail).rule === rule;
+            });
+        };
+
+        // One measure for each walk of the whole grammar.
+        for (const phase of ["CompositeGrammarTreeVisitor", "BasicSemanticChecks", "SymbolCollector",
+            "BlockSetTransformer"]) {
+            const grammars = find(phase, "").map((entry) => {
+                return (entry.detail as IWalkerMeasureDetail).grammar;
+            });
+            expect(grammars).toContain("P");
+        }
+
+        // One measure per rule and walk.
+        expect(find("LeftRecursiveRuleAnalyzer", "e").length).toBe(1);
+        expect(find("BasicSemanticChecks", "e").length).toBe(2);
+        for (const phase of ["ATNBuilder", "SourceGenTriggers"]) {
+            for (const name of ["s", "e"]) {
+                const found = find(phase, name);
+                expect(found.length).toBe(1);
+
+                const block = g.getRule(name)!.ast.getFirstChildWithType(ANTLRv4Parser.BLOCK) as GrammarAST;
+                const detail = found[0].detail as IWalkerMeasureDetail;
+                expect(detail.grammar).toBe("P");
+                expect(detail.nodes).toBe(block.getNodesWithType(null).length);
+            }
+        }
+
+        for (const entry of measures) {
+            expect(entry.startTime).toBeGreaterThan(0);
+            expect(entry.duration).toBeGreaterThanOrEqual(0);
+        }
+
+        // The measures are not kept in the performance timeline.
+        expect(performance.getEntriesByType("measure").filter((entry) => {
+            return entry.name.startsWith(WalkerTimeline.prefix);
+        }).length).toBe(0);
+    });
+});
@@ -65,20 +65,20 @@ interface IGeneratedFile {
 
 export class ToolTestUtils {
     public static async execLexer(grammarFileName: string, grammarStr: string, lexerName: string, input: string,
-        workingDir: string): Promise<ErrorQueue> {
+        workingDir: string, ...extraOptions: string[]): Promise<ErrorQueue> {
         const runOptions = this.createOptionsForToolTests(grammarFileName, grammarStr, null, lexerName, false, false,
             null, input, false, false);
 
-        return await ToolTestUtils.execRecognizer(runOptions, workingDir);
+        return await ToolTestUtils.execRecognizer(runOptions, workingDir, ...extraOptions);
     }
 
     public static async execParser(grammarFileName: string, grammarStr: string, parserName: string, lexerName: string,
         startRuleName: string, input: string, profile: boolean, showDiagnosticErrors: boolean,
-        workingDir: string): Promise<ErrorQueue> {
+        workingDir: string, ...extraOptions: string[]): Promise<ErrorQueue> {
         const runOptions = this.createOptionsForToolTests(grammarFileName, grammarStr, parserName, lexerName,
             false, false, startRuleName, input, profile, showDiagnosticErrors);
 
-        return await ToolTestUtils.execRecognizer(runOptions, workingDir);
+        return await ToolTestUtils.execRecognizer(runOptions, workingDir, ...extraOptions);
     }
 
     public static createOptionsForToolTests(grammarFileName: string, grammarStr: string, parserName: string | null,
@@ -368,12 +368,13 @@ export class ToolTestUtils {
         }
     };
 
-    private static async execRecognizer(runOptions: IRunOptions, workDir: string): Promise<ErrorQueue> {
+    private static async execRecognizer(runOptions: IRunOptions, workDir: string,
+        ...extraOptions: string[]): Promise<ErrorQueue> {
         await this.setupRuntime(workDir);
 
         writeFileSync(join(workDir, runOptions.grammarFileName), runOptions.grammarStr);
 
-        const queue = this.antlrOnFile(workDir, "TypeScript", runOptions.grammarFileName, false);
+        const queue = this.antlrOnFile(workDir, "TypeScript", runOptions.grammarFileName, false, ...extraOptions);
 
         //const generatedFiles = this.getGeneratedFiles(runOptions);
 
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { existsSync, readFileSync, writeFileSync } from "node:fs";
+import { performance } from "node:perf_hooks";
+
+import type { IBenchmarkCase } from "./WalkerBenchmarks.js";
+
+/** Controls how long a benchmark case is run. */
+export interface IBenchmarkOptions {
+    /** The number of iterations to run before measuring, to let the JIT compiler settle. */
+    warmupIterations: number;
+
+    /** The number of measured iterations. */
+    iterations: number;
+
+    /** The minimum time of an iteration in milliseconds. An iteration runs the case at least once. */
+    iterationTime: number;
+}
+
+/** The result of a benchmark case, as stored in a baseline. */
+export interface IBenchmarkResult {
+    /** Runs per second, averaged over all iterations. */
+    opsPerSecond: number;
+
+    /** The standard deviation of the runs per second of the iterations, relative to the average. */
+    relativeError: number;
+
+    /** Tree nodes walked per second. */
+    nodesPerSecond: number;
+
+    /**
+     * The growth of the used heap in one run, which approximates the bytes allocated per run. Only available when
+     * garbage collection can be triggered (node option `--expose-gc`).
+     */
+    bytesPerOp?: number;
+}
+
+/** A set of results, keyed by the case names. */
+export interface IBenchmarkBaseline {
+    version: number;
+    results: Record<string, IBenchmarkResult>;
+}
+
+export const defaultBenchmarkOptions: IBenchmarkOptions = {
+    warmupIterations: 3,
+    iterations: 5,
+    iterationTime: 500,
+};
+
+const baselineVersion = 1;
+
+/** @returns The runs per second of one iteration. */
+const runIteration = (benchmarkCase: IBenchmarkCase, iterationTime: number): number => {
+    let ops = 0;
+    let time = 0;
+    do {
+        benchmarkCase.setup?.();
+        const start = performance.now();
+        benchmarkCase.run();
+        time += performance.now() - start;
+        ++ops;
+    } while (time < iterationTime);
+
+    return ops / (time / 1000);
+};
+
+/**
+ * Determines the heap growth of single runs, with garbage collection before each run. The smallest value of a few
+ * runs is taken, because collections can still happen during a run.
+ *
+ * @returns The bytes per run or `undefined` if garbage collection cannot be triggered.
+ */
+const measureAllocation = (benchmarkCase: IBenchmarkCase): number | undefined => {
+    const gc = (globalThis as { gc?: () => void; }).gc;
+    if (!gc) {
+        return undefined;
+    }
+
+    let bytes = Number.MAX_SAFE_INTEGER;
+    for (let i = 0; i < 3; ++i) {
+        benchmarkCase.setup?.();
+        gc();
+        const before = process.memoryUsage().heapUsed;
+        benchmarkCase.run();
+        bytes = Math.min(bytes, Math.max(0, process.memoryUsage().heapUsed - before));
+    }
+
+    return bytes;
+};
+
+/**
+ * Runs a benchmark case: first the warmup iterations, then the measured iterations and finally the allocation
+ * measurement.
+ *
+ * @param benchmarkCase The case to run.
+ * @param options The number and length of the iterations.
+ *
+ * @returns The result of the case.
+ */
+export const runBenchmark = (benchmarkCase: IBenchmarkCase,
+    options: IBenchmarkOptions = defaultBenchmarkOptions): IBenchmarkResult => {
+    for (let i = 0; i < options.warmupIterations; ++i) {
+        runIteration(benchmarkCase, options.iterationTime);
+    }
+
+    const samples: number[] = [];
+    for (let i = 0; i < options.iterations; ++i) {
+        samples.push(runIteration(benchmarkCase, options.iterationTime));
+    }
+
+    const opsPerSecond = samples.reduce((sum, value) => {
+        return sum + value;
+    }, 0) / samples.length;
+    const variance = samples.reduce((sum, value) => {
+        return sum + (value - opsPerSecond) ** 2;
+    }, 0) / samples.length;
+
+    return {
+        opsPerSecond,
+        relativeError: Math.sqrt(variance) / opsPerSecond,
+        nodesPerSecond: opsPerSecond * benchmarkCase.nodes,
+        bytesPerOp: measureAllocation(benchmarkCase),
+    };
+};
+
+/**
+ * Compares results with a baseline. A case regressed, if its throughput is lower or its allocation is higher than in
+ * the baseline, by more than the given tolerance. Cases which are not in the baseline are not compared.
+ *
+ * @param results The new results.
+ * @param baseline The baseline to compare with.
+ * @param tolerance The allowed relative deviation (e.g. 0.2 for 20%).
+ *
+ * @returns A description of each regression.
+ */
+export const findRegressions = (results: Record<string, IBenchmarkResult>, baseline: IBenchmarkBaseline,
+    tolerance: number): string[] => {
+    const regressions: string[] = [];
+    for (const [name, result] of Object.entries(results)) {
+        const expected = baseline.results[name] as IBenchmarkResult | undefined;
+        if (!expected) {
+            continue;
+        }
+
+        if (result.opsPerSecond < expected.opsPerSecond * (1 - tolerance)) {
+            regressions.push(`${name}: ${result.opsPerSecond.toFixed(2)} ops/s, baseline ` +
+                `${expected.opsPerSecond.toFixed(2)} ops/s`);
+        }
+
+        if (result.bytesPerOp !== undefined && expected.bytesPerOp !== undefined
+            && result.bytesPerOp > expected.bytesPerOp * (1 + tolerance)) {
+            regressions.push(`${name}: ${result.bytesPerOp} bytes/op, baseline ${expected.bytesPerOp} bytes/op`);
+        }
+    }
+
+    return regressions;
+};
+
+/**
+ * @param results The new results.
+ * @param baseline The baseline to compare with.
+ *
+ * @returns The names of the cases which have no result in the baseline. The baseline must be recorded again with the
+ *          same corpus and walkers, to compare them.
+ */
+export const findUnknownCases = (results: Record<string, IBenchmarkResult>, baseline: IBenchmarkBaseline): string[] => {
+    return Object.keys(results).filter((name) => {
+        return !(name in baseline.results);
+    });
+};
+
+/**
+ * @param fileName The baseline file.
+ *
+ * @returns The baseline in the file.
+ *
+ * @throws Error if there's no file, it cannot be parsed or it has a different version.
+ */
+export const readBaseline = (fileName: string): IBenchmarkBaseline => {
+    if (!existsSync(fileName)) {
+        throw new Error(`No baseline in ${fileName}, run with --update-baseline to create one.`);
+    }
+
+    const baseline = JSON.parse(readFileSync(fileName, "utf8")) as Partial<IBenchmarkBaseline> | null;
+    if (baseline?.version !== baselineVersion || typeof baseline.results !== "object") {
+        throw new Error(`The baseline in ${fileName} has an unsupported format (expected version ` +
+            `${baselineVersion}), run with --update-baseline to record it again.`);
+    }
+
+    return baseline as IBenchmarkBaseline;
+};
+
+/**
+ * Writes results as new baseline.
+ *
+ * @param fileName The baseline file.
+ * @param results The results to store.
+ */
+export const writeBaseline = (fileName: string, results: Record<string, IBenchmarkResult>): void => {
+    const baseline: IBenchmarkBaseline = { version: baselineVersion, results };
+    writeFileSync(fileName, JSON.stringify(baseline, null, 4) + "\n", "utf8");
+};
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import type { ICorpusGrammar } from "./WalkerBenchmarks.js";
+
+/**
+ * The dimensions along which a grammar can grow:
+ *
+ * - `rules`: the number of parser rules.
+ * - `alternatives`: the number of single token alternatives in a block, which are folded into a set.
+ * - `depth`: the nesting depth of loop blocks in a rule.
+ * - `operators`: the number of binary operators in a left recursive rule.
+ * - `literals`: the number of literal lexer rules (keywords).
+ * - `unicodeSet`: the number of code points in a lexer set, none of them adjacent.
+ */
+export const scalingAxes = ["rules", "alternatives", "depth", "operators", "literals", "unicodeSet"] as const;
+
+export type ScalingAxis = typeof scalingAxes[number];
+
+/** The size of each axis at scale 1x. */
+export const scalingBaseSizes: Record<ScalingAxis, number> = {
+    rules: 100,
+    alternatives: 100,
+    depth: 5,
+    operators: 10,
+    literals: 50,
+    unicodeSet: 100,
+};
+
+/** The number of tokens used by the parser grammars, except for the alternatives grammar. */
+const tokenCount = 10;
+
+/** @returns The declaration of the tokens `T0` ... `T<count - 1>`. */
+const declareTokens = (count: number): string => {
+    const tokens: string[] = [];
+    for (let i = 0; i < count; ++i) {
+        tokens.push(`T${i}`);
+    }
+
+    return `tokens { ${tokens.join(", ")} }`;
+};
+
+/** @returns A \uXXXX escape for the code point. */
+const escapeCodePoint = (codePoint: number): string => {
+    return "\\u" + codePoint.toString(16).toUpperCase().padStart(4, "0");
+};
+
+/**
+ * Generates a grammar, which grows along one axis only. Everything else is kept as small as possible, so that the
+ * work of a phase on different sizes shows how it scales with this axis.
+ *
+ * @param axis The dimension to grow.
+ * @param size The size of the dimension, e.g. the number of rules.
+ *
+ * @returns The grammar, named after the axis and size.
+ */
+export const createScalingGrammar = (axis: ScalingAxis, size: number): ICorpusGrammar => {
+    const name = axis[0].toUpperCase() + axis.substring(1) + String(size);
+    const lines: string[] = [];
+
+    switch (axis) {
+        case "rules": {
+            lines.push(`parser grammar ${name};`, declareTokens(tokenCount), "s : r0 EOF ;");
+            for (let i = 0; i < size; ++i) {
+                lines.push(`r${i} : T${i % tokenCount} T${(i + 1) % tokenCount} | T${(i + 2) % tokenCount} ;`);
+            }
+
+            break;
+        }
+
+        case "alternatives": {
+            const alts: string[] = [];
+            for (let i = 0; i < size; ++i) {
+                alts.push(`T${i}`);
+            }
+
+            lines.push(`parser grammar ${name};`, declareTokens(size), "s : a EOF ;",
+                `a : ${alts.join("\n    | ")}\n    ;`);
+
+            break;
+        }
+
+        case "depth": {
+            // Each level is a loop with two alternatives, the first of which contains the next level.
+            let block = "T0";
+            for (let i = 1; i <= size; ++i) {
+                block = `( T${i % tokenCount} ${block} | T${(i + 1) % tokenCount} )*`;
+            }
+
+            lines.push(`parser grammar ${name};`, declareTokens(tokenCount), `s : ${block} EOF ;`);
+
+            break;
+        }
+
+        case "operators": {
+            const alts: string[] = [];
+            for (let i = 0; i < size; ++i) {
+                // Every third operator is right associative and every fifth a suffix, as in real expression rules.
+                if (i % 5 === 4) {
+                    alts.push(`e O${i}`);
+                } else if (i % 3 === 2) {
+                    alts.push(`<assoc = right> e O${i} e`);
+                } else {
+                    alts.push(`e O${i} e`);
+                }
+            }
+
+            const tokens: string[] = ["ID"];
+            for (let i = 0; i < size; ++i) {
+                tokens.push(`O${i}`);
+            }
+
+            lines.push(`parser grammar ${name};`, `tokens { ${tokens.join(", ")} }`, "s : e EOF ;",
+                `e : ${alts.join("\n    | ")}\n    | ID\n    ;`);
+
+            break;
+        }
+
+        case "literals": {
+            lines.push(`lexer grammar ${name};`);
+            for (let i = 0; i < size; ++i) {
+                lines.push(`K${i} : 'keyword${i}' ;`);
+            }
+
+            lines.push("ID : [a-z] [a-z0-9]* ;", "WS : [ \\t\\r\\n]+ -> skip ;");
+
+            break;
+        }
+
+        case "unicodeSet": {
+            // Every other code point of the CJK block, which makes each of them a separate interval.
+            const codePoints: string[] = [];
+            for (let i = 0; i < size; ++i) {
+                codePoints.push(escapeCodePoint(0x4E00 + 2 * i));
+            }
+
+            lines.push(`lexer grammar ${name};`, `U : [${codePoints.join("")}]+ ;`, "WS : [ \\t\\r\\n]+ -> skip ;");
+
+            break;
+        }
+    }
+
+    return { name, text: lines.join("\n") + "\n" };
+};
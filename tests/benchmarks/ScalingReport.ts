@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { runBenchmark, type IBenchmarkOptions } from "./BenchmarkRunner.js";
+import { createScalingGrammar, scalingBaseSizes, type ScalingAxis } from "./ScalingGrammars.js";
+import { createBenchmarkCases, walkerNames, type WalkerName } from "./WalkerBenchmarks.js";
+
+/** The growth of a phase, as `time = coefficient * size ^ exponent`. */
+export interface IGrowthFit {
+    exponent: number;
+    coefficient: number;
+}
+
+/** How a phase scales along one axis. */
+export interface IScalingResult extends IGrowthFit {
+    axis: ScalingAxis;
+    phase: WalkerName;
+
+    /** The sizes of the axis, one per scale factor. */
+    sizes: number[];
+
+    /** The time of a run of the phase in milliseconds, for each size. */
+    times: number[];
+
+    /** Set if the exponent exceeds the threshold given to {@link runScalingReport}. */
+    superLinear: boolean;
+}
+
+/** The settings of a scaling report. */
+export interface IScalingOptions {
+    /** The factors to multiply the base sizes of the axes with. */
+    factors: number[];
+
+    /** The exponent above which a phase is flagged as super-linear. */
+    threshold: number;
+
+    /** Controls how long each phase is run on each size. */
+    benchmark: IBenchmarkOptions;
+}
+
+export const defaultScalingOptions: IScalingOptions = {
+    factors: [1, 10, 100],
+    threshold: 1.2,
+    benchmark: { warmupIterations: 2, iterations: 3, iterationTime: 200 },
+};
+
+/**
+ * Fits a power function to the measured times, by a least squares fit of a line in log-log space. The slope of this
+ * line is the exponent: 1 for linear growth, 2 for quadratic growth etc.
+ *
+ * Note: fixed costs of a phase flatten the curve at small sizes, so the exponent is rather under- than overestimated.
+ *
+ * @param sizes The input sizes (at least two different ones).
+ * @param times The times measured for the sizes.
+ *
+ * @returns The fitted function.
+ */
+export const fitGrowth = (sizes: number[], times: number[]): IGrowthFit => {
+    const xs = sizes.map(Math.log);
+    const ys = times.map(Math.log);
+    const n = xs.length;
+
+    const meanX = xs.reduce((sum, x) => {
+        return sum + x;
+    }, 0) / n;
+    const meanY = ys.reduce((sum, y) => {
+        return sum + y;
+    }, 0) / n;
+
+    let covariance = 0;
+    let variance = 0;
+    for (let i = 0; i < n; ++i) {
+        covariance += (xs[i] - meanX) * (ys[i] - meanY);
+        variance += (xs[i] - meanX) ** 2;
+    }
+
+    const exponent = covariance / variance;
+
+    return { exponent, coefficient: Math.exp(meanY - exponent * meanX) };
+};
+
+/**
+ * Runs each walker phase on generated grammars of increasing size, for each of the given axes, and determines how the
+ * time of the phases grows with the size.
+ *
+ * @param axes The axes to grow.
+ * @param options The scale factors, the flag threshold and the run time of the phases.
+ * @param progress Called after each size of an axis is done.
+ *
+ * @returns The results of all phases which ran on all sizes of an axis.
+ */
+export const runScalingReport = (axes: readonly ScalingAxis[], options: IScalingOptions = defaultScalingOptions,
+    progress?: (axis: ScalingAxis, size: number) => void): IScalingResult[] => {
+    const results: IScalingResult[] = [];
+
+    for (const axis of axes) {
+        const sizes = options.factors.map((factor) => {
+            return scalingBaseSizes[axis] * factor;
+        });
+
+        const times = new Map<WalkerName, number[]>();
+        for (const size of sizes) {
+            for (const benchmarkCase of createBenchmarkCases(createScalingGrammar(axis, size))) {
+                const phase = benchmarkCase.name.substring(0, benchmarkCase.name.indexOf("/")) as WalkerName;
+                const result = runBenchmark(benchmarkCase, options.benchmark);
+
+                let list = times.get(phase);
+                if (!list) {
+                    list = [];
+                    times.set(phase, list);
+                }
+                list.push(1000 / result.opsPerSecond);
+            }
+
+            progress?.(axis, size);
+        }
+
+        for (const phase of walkerNames) {
+            const list = times.get(phase);
+            if (list?.length !== sizes.length) {
+                continue;
+            }
+
+            const fit = fitGrowth(sizes, list);
+            results.push({
+                axis,
+                phase,
+                sizes,
+                times: list,
+                ...fit,
+                superLinear: fit.exponent > options.threshold,
+            });
+        }
+    }
+
+    return results;
+};
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+import { readdirSync, readFileSync } from "node:fs";
+import { join } from "node:path";
+
+import { LeftRecursiveRuleAnalyzer } from "../../src/analysis/LeftRecursiveRuleAnalyzer.js";
+import { LexerATNFactory } from "../../src/automata/LexerATNFactory.js";
+import { ParserATNFactory } from "../../src/automata/ParserATNFactory.js";
+import { CodeGenerator } from "../../src/codegen/CodeGenerator.js";
+import { OutputModelController } from "../../src/codegen/OutputModelController.js";
+import { ParserFactory } from "../../src/codegen/ParserFactory.js";
+import { ANTLRv4Parser } from "../../src/generated/ANTLRv4Parser.js";
+import { BasicSemanticChecks } from "../../src/semantics/BasicSemanticChecks.js";
+import { RuleCollector } from "../../src/semantics/RuleCollector.js";
+import { SymbolCollector } from "../../src/semantics/SymbolCollector.js";
+import { WalkerProfiler } from "../../src/support/WalkerProfiler.js";
+import type { GrammarAST } from "../../src/tool/ast/GrammarAST.js";
+import type { GrammarRootAST } from "../../src/tool/ast/GrammarRootAST.js";
+import { GrammarTransformPipeline } from "../../src/tool/GrammarTransformPipeline.js";
+import { Grammar, LexerGrammar } from "../../src/tool/index.js";
+
+/** A grammar to run the benchmarks on. */
+export interface ICorpusGrammar {
+    /** The file name of the grammar or a name for a generated grammar. */
+    name: string;
+    text: string;
+}
+
+/** One walker (pass) over one grammar. */
+export interface IBenchmarkCase {
+    /** The walker and grammar, as `walker/grammar`. Used as key in the baseline. */
+    name: string;
+
+    /** The number of tree nodes walked in one run. */
+    nodes: number;
+
+    /** Prepares the input for the next run of {@link run}, outside of the measured time. */
+    setup?: () => void;
+
+    /** Runs the walker once. */
+    run: () => void;
+}
+
+/** The walkers which can be benchmarked. Semantic checks are run separately, as they are separate passes. */
+export const walkerNames = [
+    "RuleCollector", "BasicSemanticChecks", "SymbolCollector", "BlockSetTransformer", "ATNBuilder",
+    "LeftRecursiveRuleWalker", "SourceGenTriggers",
+] as const;
+
+export type WalkerName = typeof walkerNames[number];
+
+/** Gives access to the ATN builder part of ATN construction. */
+class BenchmarkATNFactory extends ParserATNFactory {
+    /** Builds the states of all rules, without the analysis and optimization which follow in `createATN`. */
+    public buildRules(): void {
+        this._createATN(Array.from(this.g.rules.values()));
+    }
+}
+
+/** The same for lexer grammars. */
+class BenchmarkLexerATNFactory extends LexerATNFactory {
+    public buildRules(): void {
+        this._createATN(Array.from(this.g.rules.values()));
+    }
+}
+
+/** @returns The number of nodes in the rule blocks of the grammar. */
+const countBlockNodes = (g: Grammar): number => {
+    let nodes = 0;
+    for (const r of g.rules.values()) {
+        nodes += WalkerProfiler.countNodes(r.ast.getFirstChildWithType(ANTLRv4Parser.BLOCK) as GrammarAST);
+    }
+
+    return nodes;
+};
+
+/**
+ * Generates a grammar with a block of the given number of alternatives (two tokens each), which cannot be folded into
+ * a set, and a block of single token alternatives, which can.
+ *
+ * @param alternatives The number of alternatives in the large block.
+ *
+ * @returns The grammar.
+ */
+export const createAlternativesGrammar = (alternatives: number): ICorpusGrammar => {
+    const tokenCount = 1000;
+    const tokens: string[] = [];
+    for (let i = 0; i < tokenCount; ++i) {
+        tokens.push(`T${i}`);
+    }
+
+    const alts: string[] = [];
+    for (let i = 0; i < alternatives; ++i) {
+        alts.push(`T${i % tokenCount} T${(i * 7 + 1) % tokenCount}`);
+    }
+
+    const text = `parser grammar Alternatives;\n` +
+        `tokens { ${tokens.join(", ")} }\n` +
+        `s : a b EOF ;\n` +
+        `a : ${alts.join("\n    | ")}\n    ;\n` +
+        `b : ${tokens.join(" | ")} ;\n`;
+
+    return { name: `Alternatives${alternatives}`, text };
+};
+
+/**
+ * Loads all grammars (`*.g4`) in the given folder.
+ *
+ * @param folder The folder to load the grammars from.
+ *
+ * @returns The grammars, sorted by name.
+ */
+export const loadCorpus = (folder: string): ICorpusGrammar[] => {
+    return readdirSync(folder).filter((name) => {
+        return name.endsWith(".g4");
+    }).sort().map((name) => {
+        return { name, text: readFileSync(join(folder, name), "utf8") };
+    });
+};
+
+/**
+ * Creates the benchmark cases for a grammar. Each walker gets the input it sees in the tool: the semantic checks,
+ * the block set transformer and the left recursion walker work on the grammar as parsed, the symbol collector, the
+ * ATN builder and the code generation triggers on the processed grammar.
+ *
+ * @param grammar The grammar to benchmark.
+ * @param walkers The walkers to create cases for.
+ *
+ * @returns The cases. Lexer grammars have no cases for the left recursion walker and the code generation triggers.
+ */
+export const createBenchmarkCases = (grammar: ICorpusGrammar,
+    walkers: readonly WalkerName[] = walkerNames): IBenchmarkCase[] => {
+    const isLexer = /^\s*lexer\s+grammar/m.test(grammar.text);
+    const createGrammar = (): Grammar => {
+        return isLexer ? new LexerGrammar(grammar.text) : new Grammar(grammar.name, grammar.text);
+    };
+
+    // The tree as parsed, shared by the cases which don't change it.
+    const parsed = createGrammar();
+
+    let processed: Grammar | undefined;
+    const getProcessed = (): Grammar => {
+        if (!processed) {
+            processed = createGrammar();
+            processed.tool.process(processed, false);
+            if (processed.tool.getNumErrors() > 0) {
+                throw new Error(`${grammar.name} has errors`);
+            }
+        }
+
+        return processed;
+    };
+
+    const cases: IBenchmarkCase[] = [];
+    const add = (walker: WalkerName, nodes: number, run: () => void, setup?: () => void): void => {
+        cases.push({ name: `${walker}/${grammar.name}`, nodes, run, setup });
+    };
+
+    const parsedNodes = WalkerProfiler.countNodes(parsed.ast);
+    if (walkers.includes("RuleCollector")) {
+        add("RuleCollector", parsedNodes, () => {
+            new RuleCollector(parsed).visitGrammar(parsed.ast);
+        });
+    }
+
+    if (walkers.includes("BasicSemanticChecks")) {
+        // The checks need the rules, but collecting them is part of the rule collector case.
+        const ruleCollector = new RuleCollector(parsed);
+        ruleCollector.visitGrammar(parsed.ast);
+        add("BasicSemanticChecks", parsedNodes, () => {
+            new BasicSemanticChecks(parsed, ruleCollector).visitGrammar(parsed.ast);
+        });
+    }
+
+    if (walkers.includes("SymbolCollector")) {
+        const g = getProcessed();
+        add("SymbolCollector", WalkerProfiler.countNodes(g.ast), () => {
+            new SymbolCollector(g).visitGrammar(g.ast);
+        });
+    }
+
+    if (walkers.includes("BlockSetTransformer")) {
+        // The transformer folds the tree it walks, so each run needs a fresh copy.
+        let tree: GrammarRootAST | undefined;
+        add("BlockSetTransformer", parsedNodes, () => {
+            new GrammarTransformPipeline(parsed, parsed.tool).reduceBlocksToSets(tree!);
+        }, () => {
+            tree = parsed.ast.dupTree() as GrammarRootAST;
+        });
+    }
+
+    if (walkers.includes("ATNBuilder")) {
+        const g = getProcessed();
+        add("ATNBuilder", countBlockNodes(g), () => {
+            if (g instanceof LexerGrammar) {
+                new BenchmarkLexerATNFactory(g).buildRules();
+            } else {
+                new BenchmarkATNFactory(g).buildRules();
+            }
+        });
+    }
+
+    if (isLexer) {
+        return cases;
+    }
+
+    // The left recursive rules of the grammar as parsed. The walker is run on copies of them, like in the tool.
+    const language = parsed.getLanguage() ?? "Java";
+    const rules = parsed.ast.getFirstChildWithType(ANTLRv4Parser.RULES) as GrammarAST;
+    const leftRecursiveRules = rules.getChildrenAsArray().filter((rule) => {
+        const name = rule.getChild(0)!.getText();
+
+        return rule.getChild(0)!.getType() === ANTLRv4Parser.RULE_REF
+            && LeftRecursiveRuleAnalyzer.hasImmediateRecursiveRuleRefs(rule, name);
+    });
+
+    if (walkers.includes("LeftRecursiveRuleWalker") && leftRecursiveRules.length > 0) {
+        const nodes = leftRecursiveRules.reduce((sum, rule) => {
+            return sum + WalkerProfiler.countNodes(rule);
+        }, 0);
+
+        let copies: GrammarAST[] = [];
+        add("LeftRecursiveRuleWalker", nodes, () => {
+            for (const rule of copies) {
+                const walker = new LeftRecursiveRuleAnalyzer(rule, parsed.tool, rule.getChild(0)!.getText(),
+                    language);
+                if (walker.rec_rule()) {
+                    walker.getArtificialOpPrecRule();
+                }
+            }
+        }, () => {
+            copies = leftRecursiveRules.map((rule) => {
+                return rule.dupTree();
+            });
+        });
+    }
+
+    if (walkers.includes("SourceGenTriggers")) {
+        const g = getProcessed();
+        add("SourceGenTriggers", countBlockNodes(g), () => {
+            // The output model is built by the factory methods, which the triggers call for each tree node.
+            const factory = new ParserFactory(new CodeGenerator(g));
+            const controller = new OutputModelController(factory);
+            factory.setController(controller);
+            controller.buildParserOutputModel(false);
+        });
+    }
+
+    return cases;
+};
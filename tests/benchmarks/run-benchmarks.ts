@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+/**
+ * Runs the walker benchmarks and compares the results with the stored baseline. Exits with code 1 if a case
+ * regressed and with code 2 if the options are wrong, the baseline is missing or it has no result for a case. Run
+ * with `npm run benchmark -- [options]`:
+ *
+ * - `--corpus <folder>`: load the grammars in this folder too (can be given multiple times). The grammars in
+ *   `tests/grammars` are always loaded.
+ * - `--walker <name>`: only run cases for this walker (can be given multiple times).
+ * - `--alternatives <count>`: the size of the generated alternatives grammar (default 100000, 0 to skip it).
+ * - `--baseline <file>`: the baseline file (default `tests/benchmarks/baseline.json`).
+ * - `--update-baseline`: store the results as new baseline, instead of comparing them.
+ * - `--tolerance <fraction>`: the allowed deviation from the baseline (default 0.2).
+ * - `--warmup <count>`, `--iterations <count>`, `--iteration-time <ms>`: see `IBenchmarkOptions`.
+ * - `--output <file>`: write the results to this file too.
+ */
+
+import { writeFileSync } from "node:fs";
+import { dirname, join } from "node:path";
+import { fileURLToPath } from "node:url";
+import { parseArgs } from "node:util";
+
+import {
+    defaultBenchmarkOptions, findRegressions, findUnknownCases, readBaseline, runBenchmark, writeBaseline,
+    type IBenchmarkBaseline, type IBenchmarkResult,
+} from "./BenchmarkRunner.js";
+import {
+    createAlternativesGrammar, createBenchmarkCases, loadCorpus, walkerNames, type WalkerName,
+} from "./WalkerBenchmarks.js";
+
+const folder = dirname(fileURLToPath(import.meta.url));
+
+const { values } = parseArgs({
+    options: {
+        "corpus": { type: "string", multiple: true, default: [] },
+        "walker": { type: "string", multiple: true, default: [] },
+        "alternatives": { type: "string", default: "100000" },
+        "baseline": { type: "string", default: join(folder, "baseline.json") },
+        "update-baseline": { type: "boolean", default: false },
+        "tolerance": { type: "string", default: "0.2" },
+        "warmup": { type: "string", default: String(defaultBenchmarkOptions.warmupIterations) },
+        "iterations": { type: "string", default: String(defaultBenchmarkOptions.iterations) },
+        "iteration-time": { type: "string", default: String(defaultBenchmarkOptions.iterationTime) },
+        "output": { type: "string" },
+    },
+});
+
+const unknownWalkers = values.walker.filter((name) => {
+    return !(walkerNames as readonly string[]).includes(name);
+});
+if (unknownWalkers.length > 0) {
+    console.error(`Unknown walkers: ${unknownWalkers.join(", ")}. Valid are: ${walkerNames.join(", ")}`);
+    process.exit(2);
+}
+
+// Check the baseline before running the (long) benchmarks.
+let baseline: IBenchmarkBaseline | undefined;
+if (!values["update-baseline"]) {
+    try {
+        baseline = readBaseline(values.baseline);
+    } catch (e) {
+        console.error(e instanceof Error ? e.message : String(e));
+        process.exit(2);
+    }
+}
+
+const walkers = values.walker.length > 0 ? values.walker as WalkerName[] : walkerNames;
+const options = {
+    warmupIterations: Number(values.warmup),
+    iterations: Number(values.iterations),
+    iterationTime: Number(values["iteration-time"]),
+};
+
+const corpus = loadCorpus(join(folder, "../grammars"));
+for (const extra of values.corpus) {
+    corpus.push(...loadCorpus(extra));
+}
+
+const alternatives = Number(values.alternatives);
+if (alternatives > 0) {
+    corpus.push(createAlternativesGrammar(alternatives));
+}
+
+const results: Record<string, IBenchmarkResult> = {};
+for (const grammar of corpus) {
+    for (const benchmarkCase of createBenchmarkCases(grammar, walkers)) {
+        const result = runBenchmark(benchmarkCase, options);
+        results[benchmarkCase.name] = result;
+
+        const bytes = result.bytesPerOp === undefined ? "" : `, ${result.bytesPerOp} bytes/op`;
+        console.log(`${benchmarkCase.name}: ${result.opsPerSecond.toFixed(2)} ops/s ` +
+            `(± ${(result.relativeError * 100).toFixed(1)}%), ${Math.round(result.nodesPerSecond)} nodes/s${bytes}`);
+    }
+}
+
+if (values.output) {
+    writeFileSync(values.output, JSON.stringify(results, null, 4) + "\n", "utf8");
+}
+
+if (values["update-baseline"]) {
+    writeBaseline(values.baseline, results);
+    console.log(`Baseline written to ${values.baseline}`);
+} else if (baseline) {
+    const unknownCases = findUnknownCases(results, baseline);
+    if (unknownCases.length > 0) {
+        console.error(`No baseline for: ${unknownCases.join(", ")}. Run with --update-baseline to record it again.`);
+        process.exit(2);
+    }
+
+    const regressions = findRegressions(results, baseline, Number(values.tolerance));
+    if (regressions.length > 0) {
+        console.error("Regressions:\n" + regressions.join("\n"));
+        process.exit(1);
+    }
+
+    console.log("No regressions.");
+}
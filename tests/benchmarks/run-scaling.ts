@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Mike Lischke. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for license information.
+ */
+
+/**
+ * Runs the walker phases on generated grammars of growing size and reports how their time grows. Run with
+ * `npm run benchmark:scaling -- [options]`:
+ *
+ * - `--axis <name>`: only grow this axis (can be given multiple times). See `scalingAxes` for the names.
+ * - `--factors <list>`: the comma separated scale factors (default 1,10,100).
+ * - `--threshold <exponent>`: the growth exponent above which a phase is flagged (default 1.2).
+ * - `--output <file>`: write the results to this file too.
+ */
+
+import { writeFileSync } from "node:fs";
+import { parseArgs } from "node:util";
+
+import { scalingAxes, type ScalingAxis } from "./ScalingGrammars.js";
+import { defaultScalingOptions, runScalingReport } from "./ScalingReport.js";
+
+const { values } = parseArgs({
+    options: {
+        "axis": { type: "string", multiple: true, default: [] },
+        "factors": { type: "string", default: defaultScalingOptions.factors.join(",") },
+        "threshold": { type: "string", default: String(defaultScalingOptions.threshold) },
+        "output": { type: "string" },
+    },
+});
+
+const unknownAxes = values.axis.filter((name) => {
+    return !(scalingAxes as readonly string[]).includes(name);
+});
+if (unknownAxes.length > 0) {
+    console.error(`Unknown axes: ${unknownAxes.join(", ")}. Valid are: ${scalingAxes.join(", ")}`);
+    process.exit(2);
+}
+
+const axes = values.axis.length > 0 ? values.axis as ScalingAxis[] : scalingAxes;
+const results = runScalingReport(axes, {
+    ...defaultScalingOptions,
+    factors: values.factors.split(",").map(Number),
+    threshold: Number(values.threshold),
+}, (axis, size) => {
+    console.log(`${axis} ${size} done`);
+});
+
+for (const result of results) {
+    const times = result.times.map((time) => {
+        return time.toFixed(3);
+    }).join(" / ");
+    const flag = result.superLinear ? "  SUPER-LINEAR" : "";
+    console.log(`${result.axis.padEnd(12)} ${result.phase.padEnd(24)} ${times} ms, ` +
+        `exponent ${result.exponent.toFixed(2)}${flag}`);
+}
+
+if (values.output) {
+    writeFileSync(values.output, JSON.stringify(results, null, 4) + "\n", "utf8");
+}